@@ -0,0 +1,130 @@
+package io.nure.filestore.storage;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Compares writes and reads of small contents in {@link SegmentBlobStore} with {@link DiskBlobStore}, that keeps every
+ * content in a separate file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+public class BlobStoreBenchmark {
+
+    private static final int CONTENTS = 10_000;
+
+    private static final int SEGMENT_SIZE = 64 << 20;
+
+    private static final int SMALL_BLOB_LIMIT = 64 << 10;
+
+    @Param({"disk", "segment"})
+    private String store;
+
+    @Param({"1024", "16384"})
+    private int size;
+
+    private Path directory;
+
+    private BlobStore blobStore;
+
+    private byte[] content;
+
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(SMALL_BLOB_LIMIT);
+
+    private final Random random = new Random(42);
+
+    private int written;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("blob-store-benchmark");
+        content = new byte[size];
+        random.nextBytes(content);
+
+        DiskBlobStore disk = new DiskBlobStore(directory.resolve("blobs"));
+
+        blobStore = "disk".equals(store)
+            ? disk
+            : new SegmentBlobStore(directory.resolve("segments"), disk, SEGMENT_SIZE, SMALL_BLOB_LIMIT,
+            new MetricRegistry());
+
+        for (written = 0; written < CONTENTS; ++written) {
+            write(locator(written));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        if (blobStore instanceof SegmentBlobStore) {
+            ((SegmentBlobStore) blobStore).close();
+        }
+
+        try (Stream<Path> files = Files.walk(directory)) {
+
+            files.sorted(Comparator.reverseOrder())
+                .forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+
+        write(locator(written++));
+    }
+
+    @Benchmark
+    public int read() throws IOException {
+
+        int bytes = 0;
+
+        try (ReadableByteChannel channel = blobStore.open(locator(random.nextInt(CONTENTS)))) {
+
+            readBuffer.clear();
+
+            while (channel.read(readBuffer) > 0) {
+                bytes += readBuffer.position();
+                readBuffer.clear();
+            }
+        }
+
+        return bytes;
+    }
+
+    private void write(BlobLocator locator) throws IOException {
+
+        try (BlobWriter writer = blobStore.create()) {
+
+            writer.write(ByteBuffer.wrap(content));
+            writer.commit(locator);
+        }
+    }
+
+    private static BlobLocator locator(int number) {
+
+        return new BlobLocator(format("content-%08d", number));
+    }
+}
@@ -0,0 +1,124 @@
+package io.nure.filestore.storage;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Random;
+
+import static java.lang.String.format;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Measures CPU cost of each {@link ContentEncoding} against the bytes it saves, for the content that compresses well,
+ * as spreadsheets and documents, and for the content that doesn't, as images, videos and music.
+ *
+ * <p>The size of the encoded content is reported by {@code encodedBytes} counter next to the time of the encoding.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+public class ContentEncodingBenchmark {
+
+    private static final int CONTENT_SIZE = 1 << 20;
+
+    @Param({"IDENTITY", "GZIP", "DEFLATE"})
+    private ContentEncoding encoding;
+
+    @Param({"spreadsheet", "random"})
+    private String content;
+
+    private byte[] bytes;
+
+    private byte[] encodedBytes;
+
+    private final ByteBuffer chunk = ByteBuffer.allocate(1 << 16);
+
+    @Setup
+    public void setUp() throws IOException {
+
+        Random random = new Random(42);
+
+        if (content.equals("spreadsheet")) {
+
+            StringBuilder rows = new StringBuilder(CONTENT_SIZE);
+
+            while (rows.length() < CONTENT_SIZE) {
+                rows.append(format("%d,report-%d.pdf,%d,application/pdf%n", rows.length(), random.nextInt(1000),
+                    random.nextInt(1 << 20)));
+            }
+
+            bytes = rows.substring(0, CONTENT_SIZE).getBytes(UTF_8);
+
+        } else {
+
+            bytes = new byte[CONTENT_SIZE];
+            random.nextBytes(bytes);
+        }
+
+        encodedBytes = encode().toByteArray();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream encode(EncodedSize size) throws IOException {
+
+        ByteArrayOutputStream output = encode();
+        size.encodedBytes = output.size();
+
+        return output;
+    }
+
+    @Benchmark
+    public long decode() throws IOException {
+
+        long decoded = 0;
+
+        try (ReadableByteChannel decoder = encoding.decode(newChannel(new ByteArrayInputStream(encodedBytes)))) {
+
+            int read;
+
+            while ((read = decoder.read(chunk)) != -1) {
+
+                decoded += read;
+                chunk.clear();
+            }
+        }
+
+        return decoded;
+    }
+
+    private ByteArrayOutputStream encode() throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream(CONTENT_SIZE);
+
+        try (WritableByteChannel encoder = encoding.encode(newChannel(output))) {
+            encoder.write(ByteBuffer.wrap(bytes));
+        }
+
+        return output;
+    }
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class EncodedSize {
+
+        /**
+         * The size of the content after the last encoding.
+         */
+        public long encodedBytes;
+    }
+}
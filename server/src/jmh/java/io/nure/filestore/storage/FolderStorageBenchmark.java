@@ -0,0 +1,95 @@
+package io.nure.filestore.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Measures owner-scoped lookups of {@link FolderStorage} depending on the number of stored folders.
+ *
+ * <p>The {@code scan*} benchmarks reproduce the former full scan of {@link FolderStorage#getAll()} and serve as a
+ * baseline. The indexed lookups are expected to take the same time for every {@code users} value.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+public class FolderStorageBenchmark {
+
+    /**
+     * The number of registered users. Each of them owns a root folder and {@link #FOLDERS_PER_USER} child folders.
+     */
+    @Param({"1000", "10000", "100000"})
+    private int users;
+
+    private static final int FOLDERS_PER_USER = 4;
+
+    private final FolderStorage storage = new FolderStorage();
+
+    private UserId ownerId;
+
+    private FolderId folderId;
+
+    @Setup
+    public void setUp() {
+
+        for (int user = 0; user < users; ++user) {
+
+            UserId userId = new UserId(format("user-%d", user));
+            FolderId rootId = new FolderId(format("root-%d", user));
+
+            storage.put(new FolderRecord(rootId, new FolderName("Root"), null, userId));
+
+            for (int folder = 0; folder < FOLDERS_PER_USER; ++folder) {
+
+                FolderId childId = new FolderId(format("folder-%d-%d", user, folder));
+
+                storage.put(new FolderRecord(childId, new FolderName("Folder"), rootId, userId));
+            }
+        }
+
+        int lastUser = users - 1;
+
+        ownerId = new UserId(format("user-%d", lastUser));
+        folderId = new FolderId(format("folder-%d-%d", lastUser, FOLDERS_PER_USER - 1));
+    }
+
+    @Benchmark
+    public Optional<FolderRecord> getRoot() {
+        return storage.getRoot(ownerId);
+    }
+
+    @Benchmark
+    public Optional<FolderRecord> getByOwner() {
+        return storage.get(folderId, ownerId);
+    }
+
+    @Benchmark
+    public Optional<FolderRecord> scanRoot() {
+
+        return storage
+            .getAll()
+            .stream()
+            .filter(record -> record.ownerId().equals(ownerId) && record.parentId() == null)
+            .findFirst();
+    }
+
+    @Benchmark
+    public Optional<FolderRecord> scanByOwner() {
+
+        return storage
+            .getAll()
+            .stream()
+            .filter(record -> record.identifier().equals(folderId) && record.ownerId().equals(ownerId))
+            .findFirst();
+    }
+}
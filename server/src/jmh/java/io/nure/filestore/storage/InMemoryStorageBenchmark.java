@@ -0,0 +1,73 @@
+package io.nure.filestore.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Optional;
+
+import static java.lang.String.format;
+import static java.util.concurrent.ThreadLocalRandom.current;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Measures throughput of {@link InMemoryStorage} under concurrent access.
+ *
+ * <p>Run with different {@code -t} values to verify that reads scale with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MICROSECONDS)
+public class InMemoryStorageBenchmark {
+
+    private static final int USERS = 100_000;
+
+    private final UserStorage storage = new UserStorage();
+
+    private final UserId[] identifiers = new UserId[USERS];
+
+    @Setup
+    public void setUp() {
+
+        for (int user = 0; user < USERS; ++user) {
+
+            identifiers[user] = new UserId(format("user-%d", user));
+
+            storage.put(new UserRecord(identifiers[user], new LoginName(format("login%d", user)), "hash"));
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Optional<UserRecord> read() {
+        return storage.get(randomIdentifier());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(7)
+    public Optional<UserRecord> mixedRead() {
+        return storage.get(randomIdentifier());
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedWrite() {
+
+        int user = current().nextInt(USERS);
+
+        storage.put(new UserRecord(identifiers[user], new LoginName(format("login%d", user)), "newHash"));
+    }
+
+    private UserId randomIdentifier() {
+        return identifiers[current().nextInt(USERS)];
+    }
+}
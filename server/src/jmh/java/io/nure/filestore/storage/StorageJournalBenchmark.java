@@ -0,0 +1,94 @@
+package io.nure.filestore.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.util.concurrent.ThreadLocalRandom.current;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Measures throughput of puts into {@link UserStorage} with attached {@link StorageJournal} depending on
+ * {@link Durability}.
+ *
+ * <p>Concurrent puts of {@link Durability#SYNC} journal share {@code fsync}s, so its throughput is expected to grow
+ * with the number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(MILLISECONDS)
+public class StorageJournalBenchmark {
+
+    private static final int USERS = 10_000;
+
+    @Param({"SYNC", "BATCHED", "OS_BUFFERED"})
+    private Durability durability;
+
+    private final UserId[] identifiers = new UserId[USERS];
+
+    private Path directory;
+
+    private StorageJournal<UserId, UserRecord> journal;
+
+    private UserStorage storage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        for (int user = 0; user < USERS; ++user) {
+            identifiers[user] = new UserId(format("user-%d", user));
+        }
+
+        directory = Files.createTempDirectory("journal-benchmark");
+        journal = new StorageJournal<>(
+            directory.resolve("users.journal"), new UserRecordCodec(), durability, Duration.ofMillis(10));
+        storage = new UserStorage();
+        storage.attachJournal(journal);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        journal.close();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void put() {
+        putRandomUser();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void concurrentPut() {
+        putRandomUser();
+    }
+
+    private void putRandomUser() {
+
+        int user = current().nextInt(USERS);
+
+        storage.put(new UserRecord(identifiers[user], new LoginName(format("login%d", user)), "hash"));
+    }
+}
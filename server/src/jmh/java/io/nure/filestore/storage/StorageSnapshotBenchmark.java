@@ -0,0 +1,74 @@
+package io.nure.filestore.storage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Measures the time to restore {@link FolderStorage} from {@link StorageSnapshot} depending on the number of records.
+ *
+ * <p>The restore time of a storage with 50 million records can be estimated from the results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(MILLISECONDS)
+public class StorageSnapshotBenchmark {
+
+    @Param({"100000", "1000000"})
+    private int records;
+
+    private Path directory;
+
+    private StorageSnapshot<FolderId, FolderRecord> snapshot;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("snapshot-benchmark");
+        snapshot = new StorageSnapshot<>(directory.resolve("folders.snapshot"), new FolderRecordCodec());
+
+        List<FolderRecord> folders = new ArrayList<>(records);
+        UserId ownerId = new UserId("owner");
+        FolderId rootId = new FolderId("root");
+
+        for (int folder = 0; folder < records; ++folder) {
+
+            folders.add(new FolderRecord(new FolderId(format("folder-%d", folder)), new FolderName("Folder"), rootId,
+                ownerId));
+        }
+
+        snapshot.write(0, folders);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        Files.delete(directory.resolve("folders.snapshot"));
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public FolderStorage load() {
+
+        FolderStorage storage = new FolderStorage();
+
+        snapshot.load(storage::put);
+
+        return storage;
+    }
+}
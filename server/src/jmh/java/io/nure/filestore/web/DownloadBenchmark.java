@@ -0,0 +1,157 @@
+package io.nure.filestore.web;
+
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.DiskBlobStore;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileId;
+import io.nure.filestore.storage.FileType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.channels.Channels.newOutputStream;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Compares the ways to send a 100 MB content of the file to a socket: encoded to Base64, as raw bytes chunk by chunk
+ * and as one memory-mapped buffer.
+ *
+ * <p>The content is sent over the loopback interface to a thread that discards it, so the results show the cost of
+ * the download on the server side. The Base64 output is buffered as Jetty buffers the output of the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MILLISECONDS)
+public class DownloadBenchmark {
+
+    private static final int CONTENT_SIZE = 100 << 20;
+
+    private Path directory;
+
+    private FileContentStorage storage;
+
+    private final FileId fileId = new FileId("benchmark");
+
+    private ServerSocketChannel server;
+
+    private SocketChannel client;
+
+    private Thread drain;
+
+    @Setup
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("download-benchmark");
+        storage = new FileContentStorage(new DiskBlobStore(directory), ContentEncoding.IDENTITY);
+
+        byte[] content = new byte[CONTENT_SIZE];
+        new Random(42).nextBytes(content);
+        storage.store(fileId, new FileContent(content), FileType.VIDEO);
+
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = SocketChannel.open(server.getLocalAddress());
+
+        SocketChannel accepted = server.accept();
+
+        drain = new Thread(() -> {
+
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+            try {
+
+                while (accepted.read(buffer) >= 0) {
+                    buffer.clear();
+                }
+
+            } catch (IOException e) {
+
+                // The benchmark is finished.
+            }
+        }, "download-benchmark-drain");
+
+        drain.setDaemon(true);
+        drain.start();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+
+        client.close();
+        server.close();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+
+            files.sorted(Comparator.reverseOrder())
+                .forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void base64() throws IOException {
+
+        try (FileContent content = storage.content(fileId).get();
+             OutputStream output = Base64.getEncoder().wrap(new FilterOutputStream(
+                 new BufferedOutputStream(newOutputStream(client), FileContent.CHUNK_SIZE)) {
+
+                 @Override
+                 public void write(byte[] bytes, int offset, int length) throws IOException {
+                     out.write(bytes, offset, length);
+                 }
+
+                 @Override
+                 public void close() throws IOException {
+                     flush();
+                 }
+             })) {
+
+            content.transferTo(newChannel(output));
+        }
+    }
+
+    @Benchmark
+    public long rawChunks() throws IOException {
+
+        try (FileContent content = storage.content(fileId).get()) {
+            return content.transferTo(client);
+        }
+    }
+
+    @Benchmark
+    public long rawMapped() throws IOException {
+
+        try (FileContent content = storage.content(fileId).get()) {
+
+            ByteBuffer mapped = content.map().get();
+            long sent = 0;
+
+            while (mapped.hasRemaining()) {
+                sent += client.write(mapped);
+            }
+
+            return sent;
+        }
+    }
+}
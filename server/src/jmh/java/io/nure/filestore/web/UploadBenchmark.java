@@ -0,0 +1,203 @@
+package io.nure.filestore.web;
+
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.FileUploading;
+import io.nure.filestore.api.MimeType;
+import io.nure.filestore.api.UploadFile;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.DiskBlobStore;
+import io.nure.filestore.storage.Durability;
+import io.nure.filestore.storage.FileContentRecord;
+import io.nure.filestore.storage.FileContentRecordCodec;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileId;
+import io.nure.filestore.storage.FileMetadataRecord;
+import io.nure.filestore.storage.FileMetadataRecordCodec;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.FolderName;
+import io.nure.filestore.storage.FolderRecord;
+import io.nure.filestore.storage.FolderStorage;
+import io.nure.filestore.storage.StorageJournal;
+import io.nure.filestore.storage.UserId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.stream.Stream;
+
+import static java.lang.String.format;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Compares the upload of 1,000 small files as 1,000 requests of one file, each stored and committed by itself, with
+ * the upload of them as one request, stored concurrently by {@link MultipartUploading} and committed in one batch.
+ *
+ * <p>The storages have {@link Durability#SYNC} journals, as a commit that is acknowledged must survive a crash, so
+ * the results mostly show how many {@code fsync}s the uploads share. The bodies are read from memory.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(MILLISECONDS)
+public class UploadBenchmark {
+
+    private static final int FILES = 1_000;
+
+    private static final int FILE_SIZE = 4 << 10;
+
+    private static final String BOUNDARY = "----benchmark";
+
+    private final UserId ownerId = new UserId("owner");
+
+    private final FolderId folderId = new FolderId("folder");
+
+    private final Random random = new Random(42);
+
+    private Path directory;
+
+    private StorageJournal<FileId, FileMetadataRecord> metadataJournal;
+
+    private StorageJournal<FileId, FileContentRecord> contentJournal;
+
+    private FileUploading process;
+
+    private ExecutorService ingestion;
+
+    private MultipartUploading uploading;
+
+    private byte[][] singleFileBodies;
+
+    private byte[] multipleFilesBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+
+        directory = Files.createTempDirectory("upload-benchmark");
+
+        metadataJournal = new StorageJournal<>(directory.resolve("metadata.journal"), new FileMetadataRecordCodec(),
+            Durability.SYNC, Duration.ofMillis(10));
+        contentJournal = new StorageJournal<>(directory.resolve("contents.journal"), new FileContentRecordCodec(),
+            Durability.SYNC, Duration.ofMillis(10));
+
+        FolderStorage folderStorage = new FolderStorage();
+        FileMetadataStorage fileMetadataStorage = new FileMetadataStorage();
+        FileContentStorage fileContentStorage = new FileContentStorage(
+            new DiskBlobStore(Files.createDirectory(directory.resolve("contents"))), ContentEncoding.IDENTITY);
+
+        fileMetadataStorage.attachJournal(metadataJournal);
+        fileContentStorage.attachJournal(contentJournal);
+        folderStorage.put(new FolderRecord(folderId, new FolderName("folder"), null, ownerId));
+
+        int threads = Runtime.getRuntime().availableProcessors();
+
+        process = new FileUploading(folderStorage, fileMetadataStorage, fileContentStorage);
+        ingestion = newFixedThreadPool(threads);
+        uploading = new MultipartUploading(process, ingestion, 2 * threads);
+    }
+
+    /**
+     * Creates the bodies of new contents, so the uploads are not deduplicated with the previous ones.
+     */
+    @Setup(Level.Invocation)
+    public void createBodies() throws IOException {
+
+        singleFileBodies = new byte[FILES][];
+
+        ByteArrayOutputStream multipleFiles = new ByteArrayOutputStream();
+
+        for (int file = 0; file < FILES; ++file) {
+
+            ByteArrayOutputStream part = new ByteArrayOutputStream();
+            byte[] content = new byte[FILE_SIZE];
+            random.nextBytes(content);
+
+            part.write(format("--%s\r\nContent-Disposition: form-data; name=\"file\"; filename=\"file-%d.bin\"\r\n"
+                + "Content-Type: application/octet-stream\r\n\r\n", BOUNDARY, file).getBytes(UTF_8));
+            part.write(content);
+            part.write("\r\n".getBytes(UTF_8));
+
+            singleFileBodies[file] = withClosingDelimiter(part);
+            part.writeTo(multipleFiles);
+        }
+
+        multipleFilesBody = withClosingDelimiter(multipleFiles);
+    }
+
+    private static byte[] withClosingDelimiter(ByteArrayOutputStream parts) {
+
+        byte[] delimiter = format("--%s--\r\n", BOUNDARY).getBytes(UTF_8);
+        byte[] body = new byte[parts.size() + delimiter.length];
+
+        System.arraycopy(parts.toByteArray(), 0, body, 0, parts.size());
+        System.arraycopy(delimiter, 0, body, parts.size(), delimiter.length);
+
+        return body;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+
+        ingestion.shutdown();
+        metadataJournal.close();
+        contentJournal.close();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+
+            files.sorted(Comparator.reverseOrder())
+                .forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public int requestPerFile() throws IOException {
+
+        int uploaded = 0;
+
+        for (byte[] body : singleFileBodies) {
+
+            MultipartStream.Part part = new MultipartStream(new ByteArrayInputStream(body), BOUNDARY).next().get();
+
+            process.handle(new UploadFile(
+                new FileName(part.fileName()),
+                new MimeType(part.header("Content-Type")),
+                folderId,
+                ownerId,
+                new FileContent(newChannel(part.content()))
+            ));
+
+            ++uploaded;
+        }
+
+        return uploaded;
+    }
+
+    @Benchmark
+    public List<MultipartUploading.Result> oneRequest() throws IOException {
+
+        return uploading.upload(
+            new MultipartStream(new ByteArrayInputStream(multipleFilesBody), BOUNDARY),
+            folderId,
+            ownerId
+        );
+    }
+}
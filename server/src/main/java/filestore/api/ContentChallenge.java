@@ -0,0 +1,110 @@
+package filestore.api;
+
+import java.time.Instant;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The challenge to prove that the client, that uploads the file by {@link UploadByHash}, has the content of the file
+ * and not only its hash: the client must send the bytes of the random range of the content.
+ */
+public final class ContentChallenge {
+
+    /**
+     * The identifier of the challenge.
+     */
+    private final String identifier;
+
+    /**
+     * The command of the upload, that is completed when the challenge is answered.
+     */
+    private final UploadByHash command;
+
+    /**
+     * The offset of the challenged range in the content.
+     */
+    private final long offset;
+
+    /**
+     * The length of the challenged range.
+     */
+    private final int length;
+
+    /**
+     * The time after which the challenge cannot be answered.
+     */
+    private final Instant expiresAt;
+
+    /**
+     * Instantiates ContentChallenge.
+     *
+     * @param identifier the identifier of the challenge.
+     * @param command    the command of the upload.
+     * @param offset     the offset of the challenged range in the content.
+     * @param length     the length of the challenged range.
+     * @param expiresAt  the time after which the challenge cannot be answered.
+     */
+    ContentChallenge(String identifier, UploadByHash command, long offset, int length, Instant expiresAt) {
+
+        this.identifier = checkNotNull(identifier);
+        this.command = checkNotNull(command);
+        this.offset = offset;
+        this.length = length;
+        this.expiresAt = checkNotNull(expiresAt);
+    }
+
+    /**
+     * Retrieves the identifier of the challenge.
+     *
+     * @return the identifier of the challenge.
+     */
+    public String identifier() {
+        return identifier;
+    }
+
+    /**
+     * Retrieves the command of the upload, that is completed when the challenge is answered.
+     *
+     * @return the command of the upload.
+     */
+    public UploadByHash command() {
+        return command;
+    }
+
+    /**
+     * Retrieves the offset of the challenged range in the content.
+     *
+     * @return the offset in bytes.
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Retrieves the length of the challenged range.
+     *
+     * @return the length in bytes.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Retrieves the time after which the challenge cannot be answered.
+     *
+     * @return the time of the expiration.
+     */
+    public Instant expiresAt() {
+        return expiresAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ContentChallenge{" +
+            "identifier='" + identifier + '\'' +
+            ", command=" + command +
+            ", offset=" + offset +
+            ", length=" + length +
+            '}';
+    }
+}
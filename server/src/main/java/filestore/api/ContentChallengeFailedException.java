@@ -0,0 +1,17 @@
+package filestore.api;
+
+/**
+ * An exception that is thrown when the answer to the {@link ContentChallenge} is not the challenged range of the
+ * content, so the client has not proved that it has the content.
+ */
+public class ContentChallengeFailedException extends RuntimeException {
+
+    /**
+     * Instantiates ContentChallengeFailedException.
+     *
+     * @param errorMessage error description.
+     */
+    public ContentChallengeFailedException(String errorMessage) {
+        super(errorMessage);
+    }
+}
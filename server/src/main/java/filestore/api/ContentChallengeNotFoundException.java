@@ -0,0 +1,17 @@
+package filestore.api;
+
+/**
+ * An exception that is thrown when the {@link ContentChallenge} was not found in {@link InstantUploading}, because it
+ * was never issued, is already answered or has expired, or when the challenged content is no longer kept.
+ */
+public class ContentChallengeNotFoundException extends RuntimeException {
+
+    /**
+     * Instantiates ContentChallengeNotFoundException.
+     *
+     * @param errorMessage error description.
+     */
+    public ContentChallengeNotFoundException(String errorMessage) {
+        super(errorMessage);
+    }
+}
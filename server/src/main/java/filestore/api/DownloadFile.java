@@ -1,10 +1,14 @@
 package filestore.api;
 
+import io.nure.filestore.storage.ContentEncoding;
 import io.nure.filestore.storage.FileId;
 import io.nure.filestore.storage.UserId;
 import io.nure.filestore.web.FileHubWebApplication;
 import org.slf4j.Logger;
 
+import java.util.EnumSet;
+import java.util.Set;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -26,14 +30,33 @@ public class DownloadFile implements Query {
     private final UserId fileOwnerId;
 
     /**
-     * Creates instance of the Download file command with the necessary data.
+     * The encodings the client accepts the content in as it is kept.
+     */
+    private final Set<ContentEncoding> acceptedEncodings;
+
+    /**
+     * Creates instance of the Download file command with the necessary data. The content is decoded.
      *
      * @param fileId       the file id
      * @param fileOwnerId    the identifier of the owner of the file.
      */
     public DownloadFile(FileId fileId, UserId fileOwnerId) {
+        this(fileId, fileOwnerId, EnumSet.noneOf(ContentEncoding.class));
+    }
+
+    /**
+     * Creates instance of the Download file command, that accepts the content kept in one of the encodings without
+     * decoding.
+     *
+     * @param fileId            the file id
+     * @param fileOwnerId       the identifier of the owner of the file.
+     * @param acceptedEncodings the encodings the client accepts the content in.
+     */
+    public DownloadFile(FileId fileId, UserId fileOwnerId, Set<ContentEncoding> acceptedEncodings) {
         this.fileId = checkNotNull(fileId);
         this.fileOwnerId = checkNotNull(fileOwnerId);
+        this.acceptedEncodings = EnumSet.noneOf(ContentEncoding.class);
+        this.acceptedEncodings.addAll(checkNotNull(acceptedEncodings));
 
         if (logger.isDebugEnabled()) {
             logger.debug("Created instance of the UploadFile command.");
@@ -58,11 +81,22 @@ public class DownloadFile implements Query {
         return fileOwnerId;
     }
 
+    /**
+     * Whether the client accepts the content kept in the encoding as it is.
+     *
+     * @param encoding the encoding of the kept content.
+     * @return {@code true} if the content may be sent without decoding.
+     */
+    public boolean accepts(ContentEncoding encoding) {
+        return acceptedEncodings.contains(encoding);
+    }
+
     @Override
     public String toString() {
         return "DownloadFile{" +
             "fileId=" + fileId +
             ", fileOwnerId=" + fileOwnerId +
+            ", acceptedEncodings=" + acceptedEncodings +
             '}';
     }
 }
@@ -1,20 +1,67 @@
 package filestore.api;
 
+import io.nure.filestore.storage.BlobStore;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.MappableChannel;
 import io.nure.filestore.web.FileHubWebApplication;
 
-import java.util.Arrays;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.channels.Channels.newChannel;
 
 /**
- * The value object for the content of the file of the {@link FileHubWebApplication}.
+ * The content of the file of the {@link FileHubWebApplication}.
+ *
+ * <p>The content is a stream of bytes that is read from the {@link ReadableByteChannel} in chunks of
+ * {@link #CHUNK_SIZE} bytes, so a file of any size is passed through a bounded amount of memory. The content can be
+ * read only once and must be closed after that.
  */
-public final class FileContent {
+public final class FileContent implements Closeable {
 
     /**
-     * The file content as {@link Byte} array.
+     * The size of a chunk of the content in bytes.
      */
-    private final byte[] value;
+    public static final int CHUNK_SIZE = BlobStore.CHUNK_SIZE;
+
+    /**
+     * The channel the content is read from.
+     */
+    private final ReadableByteChannel channel;
+
+    /**
+     * The encoding of the bytes of the channel.
+     */
+    private final ContentEncoding encoding;
+
+    /**
+     * Creates FileContent that is read from the channel as it is.
+     *
+     * @param channel the channel with the file content.
+     */
+    public FileContent(ReadableByteChannel channel) {
+        this(channel, ContentEncoding.IDENTITY);
+    }
+
+    /**
+     * Creates FileContent that is read from the channel in the encoding.
+     *
+     * @param channel  the channel with the encoded file content.
+     * @param encoding the encoding of the bytes of the channel.
+     */
+    public FileContent(ReadableByteChannel channel, ContentEncoding encoding) {
+
+        this.channel = checkNotNull(channel);
+        this.encoding = checkNotNull(encoding);
+    }
 
     /**
      * Creates FileContent from {@link Byte} array.
@@ -22,43 +69,159 @@ public final class FileContent {
      * @param value the file content as {@link Byte} array.
      */
     public FileContent(byte[] value) {
-        this.value = checkNotNull(value);
+        this(newChannel(new ByteArrayInputStream(checkNotNull(value))));
+    }
+
+    /**
+     * Allocates a buffer for one chunk of the content.
+     *
+     * @return the empty buffer of {@link #CHUNK_SIZE} bytes.
+     */
+    public static ByteBuffer allocateChunk() {
+
+        return ByteBuffer.allocate(CHUNK_SIZE);
     }
 
     /**
-     * Retrieves file content.
+     * Retrieves the encoding of the bytes of the content.
      *
-     * @return the file content as {@link Byte} array.
+     * @return the encoding of the content, {@link ContentEncoding#IDENTITY} for the decoded content.
      */
-    public byte[] value() {
-        return value;
+    public ContentEncoding encoding() {
+        return encoding;
     }
 
-    @Override
-    public boolean equals(Object o) {
+    /**
+     * Retrieves the channel the content is read from.
+     *
+     * @return the channel with the file content.
+     */
+    public ReadableByteChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Writes the rest of the content into the target channel chunk by chunk.
+     *
+     * @param target the channel to write the content into.
+     * @return the number of written bytes.
+     * @throws IOException if the content cannot be read or written.
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
 
-        if (this == o) {
-            return true;
+        return transferTo(target, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes at most the number of next bytes of the content into the target channel chunk by chunk.
+     *
+     * @param target the channel to write the content into.
+     * @param limit  the maximal number of bytes to write.
+     * @return the number of written bytes, less than the limit if the content ends earlier.
+     * @throws IOException if the content cannot be read or written.
+     */
+    public long transferTo(WritableByteChannel target, long limit) throws IOException {
+
+        checkNotNull(target);
+        checkArgument(limit >= 0, "Limit %s is negative.", limit);
+
+        ByteBuffer chunk = allocateChunk();
+        long transferred = 0;
+
+        while (transferred < limit) {
+
+            chunk.limit((int) Math.min(CHUNK_SIZE, limit - transferred));
+
+            if (channel.read(chunk) == -1) {
+                break;
+            }
+
+            chunk.flip();
+
+            while (chunk.hasRemaining()) {
+                transferred += target.write(chunk);
+            }
+
+            chunk.clear();
         }
 
-        if (o == null || getClass() != o.getClass()) {
-            return false;
+        return transferred;
+    }
+
+    /**
+     * Skips the number of next bytes of the content.
+     *
+     * <p>The content that is read from a file is positioned past the skipped bytes without reading them. Other
+     * contents, for example the decoded ones, are read chunk by chunk and the skipped bytes are discarded.
+     *
+     * @param count the number of bytes to skip.
+     * @return the number of skipped bytes, less than the count if the content ends earlier.
+     * @throws IOException if the content cannot be read.
+     */
+    public long skip(long count) throws IOException {
+
+        checkArgument(count >= 0, "Count %s is negative.", count);
+
+        if (channel instanceof SeekableByteChannel) {
+
+            SeekableByteChannel seekable = (SeekableByteChannel) channel;
+            long position = seekable.position();
+            long skipped = Math.max(0, Math.min(count, seekable.size() - position));
+            seekable.position(position + skipped);
+
+            return skipped;
         }
 
-        FileContent that = (FileContent) o;
+        ByteBuffer chunk = allocateChunk();
+        long skipped = 0;
+
+        while (skipped < count) {
+
+            chunk.limit((int) Math.min(CHUNK_SIZE, count - skipped));
+
+            int read = channel.read(chunk);
+
+            if (read == -1) {
+                break;
+            }
 
-        return Arrays.equals(value, that.value);
+            skipped += read;
+            chunk.clear();
+        }
+
+        return skipped;
     }
 
+    /**
+     * Takes the rest of the content as a read-only buffer without copying it, if the content is read from a file or
+     * from memory. Such a buffer may be written to a socket without copying it into the Java heap.
+     *
+     * @return the buffer with the rest of the content, or {@link Optional#empty()} if the content is only readable
+     * chunk by chunk.
+     * @throws IOException if the content cannot be mapped.
+     * @see MappableChannel
+     */
+    public Optional<ByteBuffer> map() throws IOException {
+
+        return MappableChannel.map(channel);
+    }
+
+    /**
+     * Closes the channel of the content.
+     *
+     * @throws IOException if the channel cannot be closed.
+     */
     @Override
-    public int hashCode() {
-        return Arrays.hashCode(value);
+    public void close() throws IOException {
+
+        channel.close();
     }
 
     @Override
     public String toString() {
         return "FileContent{" +
-            "value=" + Arrays.toString(value) +
+            "channel=" + channel +
+            ", encoding=" + encoding +
             '}';
     }
 }
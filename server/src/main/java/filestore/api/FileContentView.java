@@ -70,7 +70,7 @@ public class FileContentView implements View<FileContent, DownloadFile> {
             raiseFileNotFoundError(ownerId, fileId);
         }
 
-        return retrieveFile(fileId);
+        return retrieveFile(query);
     }
 
     /**
@@ -105,15 +105,24 @@ public class FileContentView implements View<FileContent, DownloadFile> {
     }
 
     /**
-     * Retrieves file content.
+     * Retrieves file content. The content is kept encoded if the client accepts its encoding, otherwise it is
+     * decoded.
      *
-     * @param file the identifier of the file
+     * @param query the query to retrieve content of the file.
      * @return retrieved file
      */
-    private FileContent retrieveFile(FileId file) {
-        return fileContentStorage
+    private FileContent retrieveFile(DownloadFile query) {
+
+        FileId file = query.fileId();
+        boolean encoded = fileContentStorage
                 .get(file)
-                .get()
-                .content();
+                .map(record -> query.accepts(record.encoding()))
+                .orElse(false);
+
+        return (encoded ? fileContentStorage.encodedContent(file) : fileContentStorage.content(file))
+                .orElseThrow(() -> new FileNotFoundException(format(
+                        "Content of the file with ID \"%s\" was not found.",
+                        file.value()
+                )));
     }
 }
@@ -1,10 +1,11 @@
 package filestore.api;
 
-import io.nure.filestore.storage.FileContentRecord;
 import io.nure.filestore.storage.FileContentStorage;
 import io.nure.filestore.storage.FileId;
 import io.nure.filestore.storage.FileMetadataRecord;
 import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FileSize;
+import io.nure.filestore.storage.FileType;
 import io.nure.filestore.storage.FolderId;
 import io.nure.filestore.storage.FolderRecord;
 import io.nure.filestore.storage.FolderStorage;
@@ -12,14 +13,25 @@ import io.nure.filestore.storage.UserId;
 import io.nure.filestore.web.FileHubWebApplication;
 import org.slf4j.Logger;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 import static io.nure.filestore.api.IdGenerator.generateId;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * The {@link ApplicationProcess} of uploading file into {@link FileHubWebApplication}.
  *
  * <p>The uploading file is a pair of the {@link FileMetadata} and the {@link FileContent} objects.
+ *
+ * <p>The thumbnails of the uploaded images are requested from {@link Thumbnails}, if they are given, once the files are
+ * committed. The upload does not wait for them.
  */
 public class FileUploading implements ApplicationProcess {
 
@@ -41,7 +53,13 @@ public class FileUploading implements ApplicationProcess {
     private final FileContentStorage fileContentStorage;
 
     /**
-     * Creates instance of FileUploading process with necessary storages.
+     * The generation of the thumbnails of the uploaded images, {@code null} if they are not generated.
+     */
+    @Nullable
+    private final Thumbnails thumbnails;
+
+    /**
+     * Creates instance of FileUploading process with necessary storages, that does not request the thumbnails.
      *
      * @param folderStorage       an instance of {@link FolderStorage}.
      * @param fileMetadataStorage an instance of {@link FileMetadataStorage}.
@@ -52,9 +70,28 @@ public class FileUploading implements ApplicationProcess {
         FileMetadataStorage fileMetadataStorage,
         FileContentStorage fileContentStorage) {
 
+        this(folderStorage, fileMetadataStorage, fileContentStorage, null);
+    }
+
+    /**
+     * Creates instance of FileUploading process with necessary storages, that requests the thumbnails of the uploaded
+     * images.
+     *
+     * @param folderStorage       an instance of {@link FolderStorage}.
+     * @param fileMetadataStorage an instance of {@link FileMetadataStorage}.
+     * @param fileContentStorage  an instance of {@link FileContentStorage}.
+     * @param thumbnails          the generation of the thumbnails, {@code null} to not request them.
+     */
+    public FileUploading(
+        FolderStorage folderStorage,
+        FileMetadataStorage fileMetadataStorage,
+        FileContentStorage fileContentStorage,
+        @Nullable Thumbnails thumbnails) {
+
         this.folderStorage = checkNotNull(folderStorage);
         this.fileMetadataStorage = checkNotNull(fileMetadataStorage);
         this.fileContentStorage = checkNotNull(fileContentStorage);
+        this.thumbnails = thumbnails;
 
         if (logger.isDebugEnabled()) {
             logger.debug("Created instance of FileUploading process.");
@@ -72,26 +109,130 @@ public class FileUploading implements ApplicationProcess {
      */
     public FileMetadata handle(UploadFile command) {
 
+        FileMetadataRecord uploadedFileMetadata = store(command);
+
+        try {
+
+            saveFileMetadata(uploadedFileMetadata);
+
+        } catch (RuntimeException e) {
+
+            discardUncommitted(singletonList(uploadedFileMetadata), e);
+
+            throw e;
+        }
+
+        requestThumbnail(uploadedFileMetadata);
+
+        return createFile(uploadedFileMetadata);
+    }
+
+    /**
+     * Stores the {@link FileContent} of the {@link UploadFile} command, but does not commit its metadata yet. The
+     * file becomes visible once its metadata is committed by {@link #commit(List)}.
+     *
+     * <p>The contents of several files may be stored concurrently and committed in one batch.
+     *
+     * @param command the command to upload file.
+     * @return the {@link FileMetadataRecord} of the uploaded file to commit.
+     * @throws FolderNotFoundException    in case the destination {@link Folder} of the uploading file is not found.
+     * @throws OwnershipViolatedException in case the owner of the uploading file doesn't own the destination
+     *                                    {@link Folder}.
+     */
+    public FileMetadataRecord store(UploadFile command) {
+
         checkNotNull(command);
 
         if (logger.isDebugEnabled()) {
             logger.debug("Handling the UploadFile command: {}", command);
         }
 
-        FolderId destinationFolderId = command.parentFolderId();
-        UserId fileOwnerId = command.fileOwnerId();
+        verifyDestination(command.parentFolderId(), command.fileOwnerId());
+
+        FileId uploadedFileId = new FileId(generateId());
+        FileSize uploadedFileSize = saveFileContent(uploadedFileId, command);
+
+        return createFileMetadata(uploadedFileId, uploadedFileSize, command);
+    }
+
+    /**
+     * Verifies that the destination {@link Folder} of the uploading file exists and is owned by the owner of the file.
+     *
+     * @param destinationFolderId the identifier of the destination {@link Folder}.
+     * @param fileOwnerId         the identifier of the owner of the uploading file.
+     * @throws FolderNotFoundException    in case the destination {@link Folder} of the uploading file is not found.
+     * @throws OwnershipViolatedException in case the owner of the uploading file doesn't own the destination
+     *                                    {@link Folder}.
+     */
+    public void verifyDestination(FolderId destinationFolderId, UserId fileOwnerId) {
 
         FolderRecord destinationFolder = retrieveFolder(destinationFolderId);
         verifyFolderOwner(destinationFolder, fileOwnerId);
+    }
 
-        FileContentRecord uploadedFileContent = createFileContent(command);
-        saveFileContent(uploadedFileContent);
+    /**
+     * Commits the metadata of the stored files in one batch of the {@link FileMetadataStorage}.
+     *
+     * <p>The batch is not atomic, so if it fails, the contents of only those files, which metadata was not committed,
+     * are discarded.
+     *
+     * @param uploadedFilesMetadata the metadata of the files, that are stored by {@link #store(UploadFile)}.
+     * @return the {@link FileMetadata} of the uploaded files in the same order.
+     */
+    public List<FileMetadata> commit(List<FileMetadataRecord> uploadedFilesMetadata) {
 
-        FileId uploadedFileId = uploadedFileContent.identifier();
-        FileMetadataRecord uploadedFileMetadata = createFileMetadata(uploadedFileId, command);
-        saveFileMetadata(uploadedFileMetadata);
+        try {
 
-        return createFile(uploadedFileMetadata);
+            fileMetadataStorage.putAll(uploadedFilesMetadata);
+
+        } catch (RuntimeException e) {
+
+            discardUncommitted(uploadedFilesMetadata, e);
+
+            throw e;
+        }
+
+        uploadedFilesMetadata.forEach(this::requestThumbnail);
+
+        return uploadedFilesMetadata.stream()
+            .map(this::createFile)
+            .collect(toList());
+    }
+
+    /**
+     * Deletes the {@link FileContent} of the stored file, that is not going to be committed.
+     *
+     * @param uploadedFileMetadata the metadata of the file, that is stored by {@link #store(UploadFile)}.
+     */
+    public void discard(FileMetadataRecord uploadedFileMetadata) {
+
+        fileContentStorage.delete(uploadedFileMetadata.identifier());
+    }
+
+    /**
+     * Discards the contents of the stored files, which metadata failed to be committed. The failures of the discarding
+     * are suppressed by the failure of the commit.
+     *
+     * @param uploadedFilesMetadata the metadata of the files, that were being committed.
+     * @param failure               the failure of the commit.
+     */
+    private void discardUncommitted(List<FileMetadataRecord> uploadedFilesMetadata, RuntimeException failure) {
+
+        for (FileMetadataRecord uploadedFileMetadata : uploadedFilesMetadata) {
+
+            if (fileMetadataStorage.get(uploadedFileMetadata.identifier()).isPresent()) {
+                continue;
+            }
+
+            try {
+
+                discard(uploadedFileMetadata);
+
+            } catch (RuntimeException e) {
+
+                failure.addSuppressed(e);
+            }
+        }
     }
 
     /**
@@ -131,42 +272,39 @@ public class FileUploading implements ApplicationProcess {
     }
 
     /**
-     * Creates {@link FileContentRecord} from {@link UploadFile} command.
+     * Saves uploaded {@link FileContent} in the {@link FileContentStorage} under the {@link FileId}.
+     *
+     * <p>The content is streamed into the storage, so its size is counted while it is stored.
      *
-     * @param command the {@link UploadFile} command that contains uploaded {@link FileContent}.
-     * @return created {@link FileContentRecord}.
+     * @param identifier the identifier of the uploaded file.
+     * @param command    the {@link UploadFile} command that contains uploaded {@link FileContent}.
+     * @return the size of the saved content.
      */
-    private FileContentRecord createFileContent(UploadFile command) {
-
-        FileId identifier = new FileId(generateId());
+    private FileSize saveFileContent(FileId identifier, UploadFile command) {
 
-        return new FileContentRecord(identifier, command.fileContent());
-    }
+        FileType fileType = FileTypeCreator.fromMimeType(command.mimeType());
+        CountingChannel content = new CountingChannel(command.fileContent().channel());
 
-    /**
-     * Saves {@link FileContentRecord} in the {@link FileContentStorage}.
-     *
-     * @param fileContentToSave the file content to save in the storage.
-     */
-    private void saveFileContent(FileContentRecord fileContentToSave) {
+        fileContentStorage.store(identifier, new FileContent(content), fileType);
 
-        fileContentStorage.put(fileContentToSave);
+        return new FileSize(content.count());
     }
 
     /**
      * Creates {@link FileMetadataRecord} from the provided {@link FileId} and {@link UploadFile} command.
      *
-     * @param fileId  the identifier of the file.
-     * @param command the {@link UploadFile} command, containing necessary data to create the file metadata.
+     * @param fileId   the identifier of the file.
+     * @param fileSize the size of the stored content of the file.
+     * @param command  the {@link UploadFile} command, containing necessary data to create the file metadata.
      * @return the created {@link FileMetadataRecord}.
      */
-    private FileMetadataRecord createFileMetadata(FileId fileId, UploadFile command) {
+    private FileMetadataRecord createFileMetadata(FileId fileId, FileSize fileSize, UploadFile command) {
 
         return new FileMetadataRecord(
             command.fileName(),
             fileId,
             FileTypeCreator.fromMimeType(command.mimeType()),
-            command.fileSize(),
+            fileSize,
             command.parentFolderId(),
             command.fileOwnerId()
         );
@@ -182,6 +320,18 @@ public class FileUploading implements ApplicationProcess {
         fileMetadataStorage.put(fileMetadataToSave);
     }
 
+    /**
+     * Requests the thumbnail of the committed file, if it is an image and the thumbnails are generated.
+     *
+     * @param uploadedFileMetadata the metadata of the committed file.
+     */
+    private void requestThumbnail(FileMetadataRecord uploadedFileMetadata) {
+
+        if (thumbnails != null && uploadedFileMetadata.fileType() == FileType.IMAGE) {
+            thumbnails.request(uploadedFileMetadata.identifier());
+        }
+    }
+
     /**
      * Creates {@link FileMetadata} based on the passed {@link FileMetadataRecord}.
      *
@@ -192,4 +342,49 @@ public class FileUploading implements ApplicationProcess {
 
         return new FileMetadata(record);
     }
+
+    /**
+     * The channel that counts the bytes read from the source channel.
+     */
+    private static final class CountingChannel implements ReadableByteChannel {
+
+        private final ReadableByteChannel source;
+
+        private long count;
+
+        private CountingChannel(ReadableByteChannel source) {
+            this.source = source;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+
+            int read = source.read(target);
+
+            if (read > 0) {
+                count += read;
+            }
+
+            return read;
+        }
+
+        /**
+         * Retrieves the number of bytes read from the source channel.
+         *
+         * @return the number of read bytes.
+         */
+        private long count() {
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return source.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
 }
@@ -76,7 +76,7 @@ public class FolderContentView implements View<FolderContent, GetFolderContentQu
             raiseFolderNotFoundError(folderOwnerId, parentFolderId);
         }
 
-        Collection<Folder> childrenFolders = retrieveFolders(parentFolderId);
+        Collection<Folder> childrenFolders = retrieveFolders(parentFolderId, folderOwnerId);
         Collection<FileMetadata> childrenFileMetadata = retrieveFiles(parentFolderId);
 
         FolderContent content = createFolderContent(childrenFolders, childrenFileMetadata);
@@ -120,15 +120,16 @@ public class FolderContentView implements View<FolderContent, GetFolderContentQu
     }
 
     /**
-     * Retrieves children folders of the parent folder with {@link FolderId}.
+     * Retrieves children folders of the parent folder with {@link FolderId}, that are owned by the {@link UserId}.
      *
      * @param parentFolderId the identifier of the parent folder.
+     * @param ownerId        the identifier of the owner of the folders.
      * @return collection of retrieved children folders.
      */
-    private Collection<Folder> retrieveFolders(FolderId parentFolderId) {
+    private Collection<Folder> retrieveFolders(FolderId parentFolderId, UserId ownerId) {
 
         return folderStorage
-            .getChildren(parentFolderId)
+            .getChildren(parentFolderId, ownerId)
             .stream()
             .map(this::createFolderFrom)
             .collect(toCollection(ArrayList::new));
@@ -0,0 +1,442 @@
+package filestore.api;
+
+import io.nure.filestore.storage.FileContentRecord;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileId;
+import io.nure.filestore.storage.FileMetadataRecord;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.UserId;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.nure.filestore.api.IdGenerator.generateId;
+import static java.lang.String.format;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The upload of the files, which contents the server already keeps, without transferring the contents.
+ *
+ * <p>The client sends {@link UploadByHash} with the hash and the size of the content. If a content with the same hash
+ * and size is kept for any file, the client gets {@link ContentChallenge} for a random range of the content and must
+ * answer it with the bytes of the range. Only then the file is created, and its record references the kept content.
+ * The challenge prevents a client, that knows only the hash, from getting the content of someone else's file.
+ *
+ * <p>The challenged range lies within the first {@link #CHALLENGE_WINDOW} bytes of the content, so that checking the
+ * answer decodes at most that many bytes of a compressed content.
+ *
+ * <p>The destination folder is verified and the file is committed by {@link FileUploading}, so the file uploaded by
+ * hash gets the same checks, the same thumbnail and the same cleanup of a failed commit as the uploaded one.
+ *
+ * <p>A challenge can be answered once and only within {@code expireAfter} after it was issued. The challenges are kept
+ * only in memory: a user has at most {@code maxChallengesPerUser} outstanding challenges, the oldest one is dropped
+ * when a new one is issued over the limit, and the expired challenges are removed by the periodic expiration.
+ *
+ * <p>This implementation is thread-safe.
+ */
+public final class InstantUploading implements Closeable {
+
+    private static final Logger logger = getLogger(InstantUploading.class);
+
+    /**
+     * The maximal time to wait for the running expiration on close.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The length of the challenged range, unless the content is shorter.
+     */
+    static final int CHALLENGE_LENGTH = 64;
+
+    /**
+     * The length of the beginning of the content, where the challenged range is chosen.
+     */
+    static final long CHALLENGE_WINDOW = 1024 * 1024;
+
+    /**
+     * The source of the challenged ranges, that the clients cannot predict.
+     */
+    private final SecureRandom random = new SecureRandom();
+
+    /**
+     * The upload, that verifies the destination folders and commits the files.
+     */
+    private final FileUploading fileUploading;
+
+    /**
+     * The storage of the metadata of the files.
+     */
+    private final FileMetadataStorage fileMetadataStorage;
+
+    /**
+     * The storage of the contents of the files.
+     */
+    private final FileContentStorage fileContentStorage;
+
+    /**
+     * The time after which a challenge expires.
+     */
+    private final Duration expireAfter;
+
+    /**
+     * The maximal number of the outstanding challenges of one user.
+     */
+    private final int maxChallengesPerUser;
+
+    /**
+     * The source of the current time.
+     */
+    private final Clock clock;
+
+    /**
+     * The issued challenges by their identifiers.
+     */
+    private final ConcurrentMap<String, ContentChallenge> challenges = new ConcurrentHashMap<>();
+
+    /**
+     * The identifiers of the outstanding challenges of the users, from the oldest to the newest. A queue is changed
+     * only inside the computation of its entry.
+     */
+    private final ConcurrentMap<UserId, Deque<String>> issued = new ConcurrentHashMap<>();
+
+    /**
+     * The executor of the expirations, {@code null} until they are scheduled.
+     */
+    private volatile ScheduledExecutorService expirations;
+
+    /**
+     * Instantiates InstantUploading.
+     *
+     * @param fileUploading        the upload, that verifies the destination folders and commits the files.
+     * @param fileMetadataStorage  the storage of metadata of files.
+     * @param fileContentStorage   the storage of contents of files.
+     * @param expireAfter          the time after which a challenge expires.
+     * @param maxChallengesPerUser the maximal number of the outstanding challenges of one user.
+     * @param clock                the source of the current time.
+     */
+    public InstantUploading(
+        FileUploading fileUploading,
+        FileMetadataStorage fileMetadataStorage,
+        FileContentStorage fileContentStorage,
+        Duration expireAfter,
+        int maxChallengesPerUser,
+        Clock clock
+    ) {
+
+        checkArgument(!expireAfter.isNegative() && !expireAfter.isZero(), "Expiration %s is not positive.",
+            expireAfter);
+        checkArgument(maxChallengesPerUser > 0, "Maximal number of challenges %s is not positive.",
+            maxChallengesPerUser);
+
+        this.fileUploading = checkNotNull(fileUploading);
+        this.fileMetadataStorage = checkNotNull(fileMetadataStorage);
+        this.fileContentStorage = checkNotNull(fileContentStorage);
+        this.expireAfter = expireAfter;
+        this.maxChallengesPerUser = maxChallengesPerUser;
+        this.clock = checkNotNull(clock);
+    }
+
+    /**
+     * Issues the challenge to upload the file by the hash of its content. If the user already has
+     * {@code maxChallengesPerUser} outstanding challenges, the oldest of them is dropped.
+     *
+     * @param command the command to upload the file by hash.
+     * @return the challenge to answer, or {@link Optional#empty()} if the content is not kept and must be uploaded.
+     * @throws FolderNotFoundException    in case the destination {@link Folder} of the file is not found.
+     * @throws OwnershipViolatedException in case the owner of the file doesn't own the destination {@link Folder}.
+     */
+    public Optional<ContentChallenge> challenge(UploadByHash command) {
+
+        checkNotNull(command);
+
+        fileUploading.verifyDestination(command.parentFolderId(), command.fileOwnerId());
+
+        if (!findContent(command).isPresent()) {
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Content of {} is not kept.", command);
+            }
+
+            return Optional.empty();
+        }
+
+        long window = Math.min(CHALLENGE_WINDOW, command.size().value());
+        int length = (int) Math.min(CHALLENGE_LENGTH, window);
+        long offset = Math.floorMod(random.nextLong(), window - length + 1);
+        Instant expiresAt = clock.instant().plus(expireAfter);
+        ContentChallenge challenge = new ContentChallenge(generateId(), command, offset, length, expiresAt);
+
+        issued.compute(command.fileOwnerId(), (ownerId, identifiers) -> {
+
+            Deque<String> queue = identifiers == null ? new ArrayDeque<>() : identifiers;
+
+            while (queue.size() >= maxChallengesPerUser) {
+                challenges.remove(queue.poll());
+            }
+
+            queue.add(challenge.identifier());
+            challenges.put(challenge.identifier(), challenge);
+
+            return queue;
+        });
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Issued {}.", challenge);
+        }
+
+        return Optional.of(challenge);
+    }
+
+    /**
+     * Checks the answer to the challenge and creates the file, that references the kept content. The challenge is
+     * removed whether the answer is right or not.
+     *
+     * @param challengeId the identifier of the challenge.
+     * @param ownerId     the identifier of the user that answers the challenge.
+     * @param answer      the bytes of the challenged range of the content.
+     * @return the {@link FileMetadata} of the uploaded file.
+     * @throws IOException                        if the answer or the content cannot be read.
+     * @throws ContentChallengeNotFoundException  if the challenge is not issued or has expired, or the content is no
+     *                                            longer kept.
+     * @throws OwnershipViolatedException         if the challenge is issued to another user.
+     * @throws ContentChallengeFailedException    if the answer is not the challenged range of the content.
+     * @throws FolderNotFoundException            in case the destination {@link Folder} of the file is not found.
+     */
+    public FileMetadata answer(String challengeId, UserId ownerId, ReadableByteChannel answer) throws IOException {
+
+        checkNotNull(challengeId);
+        checkNotNull(ownerId);
+        checkNotNull(answer);
+
+        ContentChallenge challenge = challenges.get(challengeId);
+
+        if (challenge == null || clock.instant().isAfter(challenge.expiresAt())) {
+            throw new ContentChallengeNotFoundException(format("Challenge \"%s\" was not found.", challengeId));
+        }
+
+        UploadByHash command = challenge.command();
+
+        if (!command.fileOwnerId().equals(ownerId)) {
+
+            throw new OwnershipViolatedException(format(
+                "User with id \"%s\" is not the owner of the challenge \"%s\".",
+                ownerId.value(),
+                challengeId
+            ));
+        }
+
+        if (!remove(challenge)) {
+            throw new ContentChallengeNotFoundException(format("Challenge \"%s\" was not found.", challengeId));
+        }
+
+        fileUploading.verifyDestination(command.parentFolderId(), ownerId);
+
+        FileContentRecord content = findContent(command)
+            .orElseThrow(() -> new ContentChallengeNotFoundException("Challenged content is no longer kept."));
+
+        byte[] expected = readRange(content, challenge.offset(), challenge.length());
+        byte[] received = read(answer, challenge.length() + 1);
+
+        if (!MessageDigest.isEqual(expected, received)) {
+            throw new ContentChallengeFailedException(format("Answer to challenge \"%s\" is wrong.", challengeId));
+        }
+
+        FileId fileId = new FileId(generateId());
+
+        fileContentStorage.link(fileId, content.locator())
+            .orElseThrow(() -> new ContentChallengeNotFoundException("Challenged content is no longer kept."));
+
+        FileMetadataRecord record = new FileMetadataRecord(
+            command.fileName(),
+            fileId,
+            FileTypeCreator.fromMimeType(command.mimeType()),
+            command.size(),
+            command.parentFolderId(),
+            ownerId
+        );
+
+        FileMetadata file = fileUploading.commit(singletonList(record)).get(0);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Uploaded file \"{}\" by hash.", fileId.value());
+        }
+
+        return file;
+    }
+
+    /**
+     * Retrieves the number of the challenges, that are not answered yet.
+     *
+     * @return the number of the issued challenges.
+     */
+    public int count() {
+        return challenges.size();
+    }
+
+    /**
+     * Schedules the periodic expiration of the challenges.
+     *
+     * @param interval the interval between the expirations.
+     */
+    public void scheduleExpiration(Duration interval) {
+
+        checkState(expirations == null, "Expiration is already scheduled.");
+
+        expirations = newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "challenge-expiration");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long intervalMillis = interval.toMillis();
+
+        expirations.scheduleWithFixedDelay(this::expire, intervalMillis, intervalMillis, MILLISECONDS);
+    }
+
+    /**
+     * Removes the challenges, that have expired.
+     */
+    public void expire() {
+
+        Instant now = clock.instant();
+
+        for (ContentChallenge challenge : challenges.values()) {
+
+            if (now.isAfter(challenge.expiresAt())) {
+                remove(challenge);
+            }
+        }
+    }
+
+    /**
+     * Removes the challenge together with its entry in the queue of its user.
+     *
+     * @param challenge the challenge to remove.
+     * @return {@code true} if the challenge was outstanding and is removed by this call.
+     */
+    private boolean remove(ContentChallenge challenge) {
+
+        AtomicBoolean removed = new AtomicBoolean();
+
+        issued.computeIfPresent(challenge.command().fileOwnerId(), (ownerId, queue) -> {
+
+            removed.set(challenges.remove(challenge.identifier(), challenge));
+            queue.remove(challenge.identifier());
+
+            return queue.isEmpty() ? null : queue;
+        });
+
+        return removed.get();
+    }
+
+    /**
+     * Waits for the running expiration and stops the expirations. The outstanding challenges are lost with the
+     * memory of the server.
+     */
+    @Override
+    public void close() {
+
+        ScheduledExecutorService executor = expirations;
+
+        if (executor != null) {
+
+            executor.shutdown();
+
+            try {
+
+                executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Finds the kept content with the hash and the size of the content of the command. The size is taken from the
+     * metadata of a file, that references the content.
+     *
+     * @param command the command to upload the file by hash.
+     * @return the record of the kept content, or {@link Optional#empty()} if the content is not kept.
+     */
+    private Optional<FileContentRecord> findContent(UploadByHash command) {
+
+        return fileContentStorage.findByHash(command.contentHash())
+            .stream()
+            .filter(record -> fileMetadataStorage.get(record.identifier())
+                .map(metadata -> metadata.size().equals(command.size()))
+                .orElse(false))
+            .findFirst();
+    }
+
+    /**
+     * Reads the range of the decoded content.
+     *
+     * @param record the record of the kept content.
+     * @param offset the offset of the range in the decoded content.
+     * @param length the length of the range.
+     * @return the bytes of the range, fewer if the content ends earlier.
+     * @throws IOException                       if the content cannot be read.
+     * @throws ContentChallengeNotFoundException if the content is no longer kept.
+     */
+    private byte[] readRange(FileContentRecord record, long offset, int length) throws IOException {
+
+        FileContent content = fileContentStorage.content(record.identifier())
+            .orElseThrow(() -> new ContentChallengeNotFoundException("Challenged content is no longer kept."));
+
+        try {
+
+            content.skip(offset);
+
+            return read(content.channel(), length);
+
+        } finally {
+            content.close();
+        }
+    }
+
+    /**
+     * Reads at most the limit of bytes from the channel. The answer is read with the limit one byte more than the
+     * length of the range, so a longer answer does not match the range.
+     *
+     * @param channel the channel to read.
+     * @param limit   the maximal number of bytes to read.
+     * @return the read bytes.
+     * @throws IOException if the channel cannot be read.
+     */
+    private static byte[] read(ReadableByteChannel channel, int limit) throws IOException {
+
+        ByteBuffer buffer = ByteBuffer.allocate(limit);
+
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            // The buffer is filled by the read.
+        }
+
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+}
@@ -0,0 +1,17 @@
+package filestore.api;
+
+/**
+ * An exception that is thrown when the chunk of {@link UploadSession} is out of the uploaded file or its length differs
+ * from the length of the chunk.
+ */
+public class InvalidUploadChunkException extends RuntimeException {
+
+    /**
+     * Instantiates InvalidUploadChunkException.
+     *
+     * @param errorMessage error description.
+     */
+    public InvalidUploadChunkException(String errorMessage) {
+        super(errorMessage);
+    }
+}
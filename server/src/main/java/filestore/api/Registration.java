@@ -64,18 +64,15 @@ public class Registration implements ApplicationProcess {
         UserId userId = new UserId(generateId());
         String encodedPassword = encode(command.password().value());
 
-        userStorage
-            .get(command.login())
-            .ifPresent(record -> {
+        UserRecord record = new UserRecord(userId, command.login(), encodedPassword);
 
-                throw new UserAlreadyExistsException(format(
-                    "There is already a user registered with such login name: %s.",
-                    command.login().value()
-                ));
-            });
+        if (!userStorage.putIfLoginAbsent(record)) {
 
-        UserRecord record = new UserRecord(userId, command.login(), encodedPassword);
-        userStorage.put(record);
+            throw new UserAlreadyExistsException(format(
+                "There is already a user registered with such login name: %s.",
+                command.login().value()
+            ));
+        }
 
         FolderRecord rootFolder = createRootFolder(record.identifier());
         folderStorage.put(rootFolder);
@@ -0,0 +1,322 @@
+package filestore.api;
+
+import io.nure.filestore.metrics.Counter;
+import io.nure.filestore.metrics.MetricRegistry;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileId;
+import org.slf4j.Logger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.nio.channels.Channels.newInputStream;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The generation of the thumbnails of the uploaded images in the background.
+ *
+ * <p>The upload only requests the thumbnail and does not wait for it. The thumbnails are generated by a fixed number of
+ * worker threads from a bounded queue; the requests that do not fit into the queue are dropped, so a burst of uploads
+ * never holds the memory of the server. The file, which thumbnail was dropped or failed, is shown without it.
+ *
+ * <p>The image is decoded with subsampling, so a large image is never held in memory at its full resolution. The
+ * thumbnail is scaled down to fit the square of the thumbnail size and is kept in {@link FileContentStorage} as PNG.
+ *
+ * <p>This implementation is thread-safe.
+ */
+public final class Thumbnails implements Closeable {
+
+    private static final Logger logger = getLogger(Thumbnails.class);
+
+    /**
+     * The type of the content of the thumbnails.
+     */
+    public static final String MIME_TYPE = "image/png";
+
+    /**
+     * The name of the format of the thumbnails for {@link ImageIO}.
+     */
+    private static final String FORMAT = "png";
+
+    /**
+     * How many times the decoded image may be larger than the thumbnail. The image is scaled down from a few times
+     * larger size, so the scaling has enough pixels to smooth the thumbnail.
+     */
+    private static final int DECODED_SIZE_FACTOR = 2;
+
+    /**
+     * The maximal time to wait for the running generations on close.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The storage of the contents of the files and their thumbnails.
+     */
+    private final FileContentStorage fileContentStorage;
+
+    /**
+     * The maximal width and height of a thumbnail in pixels.
+     */
+    private final int size;
+
+    /**
+     * The workers that generate the thumbnails.
+     */
+    private final ThreadPoolExecutor workers;
+
+    /**
+     * The number of the generated thumbnails.
+     */
+    private final Counter generated;
+
+    /**
+     * The number of the requests that did not fit into the queue.
+     */
+    private final Counter dropped;
+
+    /**
+     * The number of the contents that could not be decoded as images or their thumbnails could not be kept.
+     */
+    private final Counter failed;
+
+    /**
+     * Instantiates Thumbnails.
+     *
+     * @param fileContentStorage the storage of contents of files.
+     * @param size               the maximal width and height of a thumbnail in pixels.
+     * @param threads            the number of the worker threads.
+     * @param queueCapacity      the maximal number of the requests that wait for a worker.
+     * @param metrics            the registry of metrics, where the generation is published.
+     */
+    public Thumbnails(
+        FileContentStorage fileContentStorage,
+        int size,
+        int threads,
+        int queueCapacity,
+        MetricRegistry metrics
+    ) {
+
+        checkArgument(size > 0, "Thumbnail size %s is not positive.", size);
+        checkArgument(threads > 0, "Number of threads %s is not positive.", threads);
+        checkArgument(queueCapacity > 0, "Queue capacity %s is not positive.", queueCapacity);
+        checkNotNull(metrics);
+
+        this.fileContentStorage = checkNotNull(fileContentStorage);
+        this.size = size;
+        this.generated = metrics.counter("thumbnails.generated");
+        this.dropped = metrics.counter("thumbnails.dropped");
+        this.failed = metrics.counter("thumbnails.failed");
+        this.workers = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0,
+            MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            Thumbnails::newWorker,
+            (runnable, executor) -> dropped.increment()
+        );
+
+        metrics.gauge("thumbnails.queued", this::queued);
+    }
+
+    /**
+     * Creates the worker thread. The workers are daemons of the lowest priority, so they neither hold the shutdown nor
+     * take the processors from the requests.
+     */
+    private static Thread newWorker(Runnable runnable) {
+
+        Thread thread = new Thread(runnable, "thumbnails");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+
+        return thread;
+    }
+
+    /**
+     * Requests the thumbnail of the image file. Returns at once, the thumbnail is generated in the background.
+     *
+     * @param fileId the identifier of the image file.
+     */
+    public void request(FileId fileId) {
+
+        checkNotNull(fileId);
+
+        workers.execute(() -> generate(fileId));
+    }
+
+    /**
+     * Generates the thumbnail of the image file and keeps it in {@link FileContentStorage}, unless the content already
+     * has one. The errors are logged, so they do not stop the worker.
+     *
+     * @param fileId the identifier of the image file.
+     */
+    void generate(FileId fileId) {
+
+        try {
+
+            if (hasThumbnail(fileId)) {
+                return;
+            }
+
+            Optional<BufferedImage> image = decode(fileId);
+
+            if (!image.isPresent()) {
+
+                failed.increment();
+
+                if (logger.isInfoEnabled()) {
+                    logger.info("File \"{}\" is deleted or is not a known image.", fileId.value());
+                }
+
+                return;
+            }
+
+            if (fileContentStorage.storeThumbnail(fileId, new FileContent(encode(scale(image.get()))))) {
+                generated.increment();
+            }
+
+        } catch (IOException | RuntimeException e) {
+
+            failed.increment();
+
+            if (logger.isWarnEnabled()) {
+                logger.warn(format("Cannot generate thumbnail of file \"%s\".", fileId.value()), e);
+            }
+        }
+    }
+
+    private boolean hasThumbnail(FileId fileId) throws IOException {
+
+        Optional<FileContent> thumbnail = fileContentStorage.thumbnail(fileId);
+
+        if (thumbnail.isPresent()) {
+            thumbnail.get().close();
+        }
+
+        return thumbnail.isPresent();
+    }
+
+    /**
+     * Decodes the image from the content of the file. The image is subsampled while it is read down to a few sizes
+     * of the thumbnail.
+     *
+     * @param fileId the identifier of the image file.
+     * @return the decoded image, or {@link Optional#empty()} if the file was deleted or its content has no known
+     * image format.
+     * @throws IOException if the content cannot be read or decoded.
+     */
+    private Optional<BufferedImage> decode(FileId fileId) throws IOException {
+
+        Optional<FileContent> content = fileContentStorage.content(fileId);
+
+        if (!content.isPresent()) {
+            return Optional.empty();
+        }
+
+        try (FileContent source = content.get();
+             ImageInputStream input = ImageIO.createImageInputStream(newInputStream(source.channel()))) {
+
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+
+            if (readers == null || !readers.hasNext()) {
+                return Optional.empty();
+            }
+
+            ImageReader reader = readers.next();
+
+            try {
+
+                reader.setInput(input, true, true);
+
+                int longerSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int subsampling = Math.max(1, longerSide / (DECODED_SIZE_FACTOR * size));
+                ImageReadParam parameters = reader.getDefaultReadParam();
+
+                parameters.setSourceSubsampling(subsampling, subsampling, 0, 0);
+
+                return Optional.of(reader.read(0, parameters));
+
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scales the image down to fit the square of the thumbnail size, keeping its aspect ratio. The smaller image is
+     * not scaled up.
+     */
+    private BufferedImage scale(BufferedImage image) {
+
+        double ratio = Math.min(1, (double) size / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * ratio));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = thumbnail.createGraphics();
+
+        try {
+
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(image, 0, 0, width, height, null);
+
+        } finally {
+            graphics.dispose();
+        }
+
+        return thumbnail;
+    }
+
+    private static byte[] encode(BufferedImage thumbnail) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        ImageIO.write(thumbnail, FORMAT, output);
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Retrieves the number of the requests that wait for a worker.
+     *
+     * @return the number of the queued requests.
+     */
+    public int queued() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * Stops the workers. The queued requests are dropped and the running generations are interrupted and waited for.
+     */
+    @Override
+    public void close() {
+
+        workers.shutdownNow();
+
+        try {
+
+            workers.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package filestore.api;
+
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FileSize;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.UserId;
+
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The command to upload the file, which content the server may already keep, by the hash of the content instead of
+ * the content itself.
+ */
+public class UploadByHash implements Command {
+
+    /**
+     * The format of SHA-256 hash in hex.
+     */
+    private static final Pattern SHA_256 = Pattern.compile("[0-9a-f]{64}");
+
+    /**
+     * The name of the file.
+     */
+    private final FileName fileName;
+
+    /**
+     * The {@link MimeType} of the file.
+     */
+    private final MimeType mimeType;
+
+    /**
+     * An identifier of the parent {@link Folder} of the file.
+     */
+    private final FolderId parentFolderId;
+
+    /**
+     * The identifier of the owner of the file.
+     */
+    private final UserId fileOwnerId;
+
+    /**
+     * The SHA-256 hash of the bytes of the content in lowercase hex.
+     */
+    private final String contentHash;
+
+    /**
+     * The size of the content.
+     */
+    private final FileSize size;
+
+    /**
+     * Creates instance of the UploadByHash command with necessary data.
+     *
+     * @param fileName       the name of the file.
+     * @param mimeType       the {@link MimeType} of the file.
+     * @param parentFolderId the identifier of the destination {@link Folder} of the file.
+     * @param fileOwnerId    the identifier of the owner of the file.
+     * @param contentHash    the SHA-256 hash of the bytes of the content in hex.
+     * @param size           the size of the content.
+     * @throws IllegalArgumentException if the hash is not SHA-256 hash in hex.
+     */
+    public UploadByHash(
+        FileName fileName,
+        MimeType mimeType,
+        FolderId parentFolderId,
+        UserId fileOwnerId,
+        String contentHash,
+        FileSize size
+    ) {
+
+        this.fileName = checkNotNull(fileName);
+        this.mimeType = checkNotNull(mimeType);
+        this.parentFolderId = checkNotNull(parentFolderId);
+        this.fileOwnerId = checkNotNull(fileOwnerId);
+        this.contentHash = checkNotNull(contentHash).toLowerCase(Locale.ROOT);
+        this.size = checkNotNull(size);
+
+        checkArgument(SHA_256.matcher(this.contentHash).matches(), "Hash \"%s\" is not SHA-256 hash.", contentHash);
+    }
+
+    /**
+     * Retrieves the name of the file.
+     *
+     * @return the name of the file.
+     */
+    public FileName fileName() {
+        return fileName;
+    }
+
+    /**
+     * Retrieves the {@link MimeType} of the file.
+     *
+     * @return the mime-type of the file.
+     */
+    public MimeType mimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Retrieves an identifier of the parent {@link Folder} of the file.
+     *
+     * @return the identifier of the parent {@link Folder} of the file.
+     */
+    public FolderId parentFolderId() {
+        return parentFolderId;
+    }
+
+    /**
+     * Retrieves an identifier of the owner of the file.
+     *
+     * @return the identifier of the owner of the file.
+     */
+    public UserId fileOwnerId() {
+        return fileOwnerId;
+    }
+
+    /**
+     * Retrieves the hash of the content of the file.
+     *
+     * @return the SHA-256 hash of the content in lowercase hex.
+     */
+    public String contentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Retrieves the size of the content of the file.
+     *
+     * @return the size of the content.
+     */
+    public FileSize size() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadByHash{" +
+            "fileName=" + fileName +
+            ", mimeType=" + mimeType +
+            ", folderId=" + parentFolderId +
+            ", fileOwnerId=" + fileOwnerId +
+            ", contentHash=" + contentHash +
+            ", size=" + size +
+            '}';
+    }
+}
@@ -1,7 +1,6 @@
 package filestore.api;
 
 import io.nure.filestore.storage.FileName;
-import io.nure.filestore.storage.FileSize;
 import io.nure.filestore.storage.FolderId;
 import io.nure.filestore.storage.UserId;
 import io.nure.filestore.web.FileHubWebApplication;
@@ -27,11 +26,6 @@ public class UploadFile implements Command {
      */
     private final MimeType mimeType;
 
-    /**
-     * The size of the file in bytes.
-     */
-    private final FileSize fileSize;
-
     /**
      * An identifier of the parent {@link Folder} of the file.
      */
@@ -52,7 +46,6 @@ public class UploadFile implements Command {
      *
      * @param fileName       the name of the file.
      * @param mimeType       the {@link MimeType} of the file.
-     * @param fileSize       the size of the file in bytes.
      * @param fileOwnerId    the identifier of the owner of the file.
      * @param parentFolderId the identifier of the destination {@link Folder} where the file is intended to be uploaded.
      * @param fileContent    the content of the file.
@@ -60,7 +53,6 @@ public class UploadFile implements Command {
     public UploadFile(
         FileName fileName,
         MimeType mimeType,
-        FileSize fileSize,
         FolderId parentFolderId,
         UserId fileOwnerId,
         FileContent fileContent
@@ -68,7 +60,6 @@ public class UploadFile implements Command {
 
         this.fileName = checkNotNull(fileName);
         this.mimeType = checkNotNull(mimeType);
-        this.fileSize = checkNotNull(fileSize);
         this.fileOwnerId = checkNotNull(fileOwnerId);
         this.parentFolderId = checkNotNull(parentFolderId);
         this.fileContent = checkNotNull(fileContent);
@@ -96,15 +87,6 @@ public class UploadFile implements Command {
         return mimeType;
     }
 
-    /**
-     * Retrieves the size of the file.
-     *
-     * @return the size of the file.
-     */
-    public FileSize fileSize() {
-        return fileSize;
-    }
-
     /**
      * Retrieves an identifier of the parent {@link Folder} of the file.
      *
@@ -137,7 +119,6 @@ public class UploadFile implements Command {
         return "UploadFile{" +
             "fileName=" + fileName +
             ", mimeType=" + mimeType +
-            ", fileSize=" + fileSize +
             ", folderId=" + parentFolderId +
             ", fileOwnerId=" + fileOwnerId +
             ", fileContent=" + fileContent +
@@ -0,0 +1,439 @@
+package filestore.api;
+
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.UserId;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.nio.file.Files.createFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The session of the upload of one file in chunks, that may be sent in any order, in parallel and again after a
+ * failure, until the upload is committed.
+ *
+ * <p>The file is split into the chunks of the same size, only the last chunk may be shorter. Each chunk is written
+ * straight into its place in the staging file of the session, and the session keeps the bitmap of the received
+ * chunks. The staging file is open only while a chunk is written into it, so an idle session holds no file
+ * descriptor. Once all chunks are received, the staging file is committed by {@link FileUploading} as the
+ * {@link FileContent} of the new file.
+ *
+ * <p>This implementation is thread-safe. The chunks are written in parallel, the seal of the session for the commit
+ * waits for the chunks that are being written. The same chunk must not be sent twice at the same time.
+ */
+public final class UploadSession implements Closeable {
+
+    /**
+     * The identifier of the session.
+     */
+    private final String identifier;
+
+    /**
+     * The name of the uploaded file.
+     */
+    private final FileName fileName;
+
+    /**
+     * The {@link MimeType} of the uploaded file.
+     */
+    private final MimeType mimeType;
+
+    /**
+     * The identifier of the destination {@link Folder} of the file.
+     */
+    private final FolderId parentFolderId;
+
+    /**
+     * The identifier of the owner of the file.
+     */
+    private final UserId ownerId;
+
+    /**
+     * The size of the file in bytes.
+     */
+    private final long size;
+
+    /**
+     * The size of a chunk in bytes.
+     */
+    private final int chunkSize;
+
+    /**
+     * The staging file of the session.
+     */
+    private final Path file;
+
+    /**
+     * The source of the current time.
+     */
+    private final Clock clock;
+
+    /**
+     * The bitmap of the received chunks, guarded by itself.
+     */
+    private final BitSet received = new BitSet();
+
+    /**
+     * The lock that is shared by the writes of the chunks and is taken exclusively to seal the session.
+     */
+    private final ReadWriteLock sealLock = new ReentrantReadWriteLock();
+
+    /**
+     * Whether the session is sealed for the commit, guarded by {@link #sealLock}.
+     */
+    private boolean sealed;
+
+    /**
+     * The time of the last access to the session in milliseconds.
+     */
+    private volatile long lastAccess;
+
+    /**
+     * Instantiates UploadSession and creates its staging file.
+     *
+     * @param identifier     the identifier of the session.
+     * @param fileName       the name of the uploaded file.
+     * @param mimeType       the {@link MimeType} of the uploaded file.
+     * @param parentFolderId the identifier of the destination {@link Folder} of the file.
+     * @param ownerId        the identifier of the owner of the file.
+     * @param size           the size of the file in bytes.
+     * @param chunkSize      the size of a chunk in bytes.
+     * @param file           the path to the staging file, that must not exist.
+     * @param clock          the source of the current time.
+     * @throws IOException if the staging file cannot be created.
+     */
+    UploadSession(
+        String identifier,
+        FileName fileName,
+        MimeType mimeType,
+        FolderId parentFolderId,
+        UserId ownerId,
+        long size,
+        int chunkSize,
+        Path file,
+        Clock clock
+    ) throws IOException {
+
+        checkArgument(size >= 0, "Size %s is negative.", size);
+        checkArgument(chunkSize > 0, "Chunk size %s is not positive.", chunkSize);
+        checkArgument((size + chunkSize - 1) / chunkSize <= Integer.MAX_VALUE,
+            "File of %s bytes has too many chunks of %s bytes.", size, chunkSize);
+
+        this.identifier = checkNotNull(identifier);
+        this.fileName = checkNotNull(fileName);
+        this.mimeType = checkNotNull(mimeType);
+        this.parentFolderId = checkNotNull(parentFolderId);
+        this.ownerId = checkNotNull(ownerId);
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.file = checkNotNull(file);
+        this.clock = checkNotNull(clock);
+        createFile(file);
+        this.lastAccess = clock.millis();
+    }
+
+    /**
+     * Retrieves the identifier of the session.
+     *
+     * @return the identifier of the session.
+     */
+    public String identifier() {
+        return identifier;
+    }
+
+    /**
+     * Retrieves the name of the uploaded file.
+     *
+     * @return the name of the file.
+     */
+    public FileName fileName() {
+        return fileName;
+    }
+
+    /**
+     * Retrieves the {@link MimeType} of the uploaded file.
+     *
+     * @return the mime-type of the file.
+     */
+    public MimeType mimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Retrieves an identifier of the destination {@link Folder} of the file.
+     *
+     * @return the identifier of the parent {@link Folder} of the file.
+     */
+    public FolderId parentFolderId() {
+        return parentFolderId;
+    }
+
+    /**
+     * Retrieves an identifier of the owner of the file.
+     *
+     * @return the identifier of the owner of the file.
+     */
+    public UserId ownerId() {
+        return ownerId;
+    }
+
+    /**
+     * Retrieves the size of the uploaded file.
+     *
+     * @return the size of the file in bytes.
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the size of a chunk of the file.
+     *
+     * @return the chunk size in bytes, the last chunk may be shorter.
+     */
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Retrieves the number of the chunks of the file.
+     *
+     * @return the number of chunks, {@code 0} for the empty file.
+     */
+    public int chunkCount() {
+
+        return (int) ((size + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Writes the chunk of the file from the source channel into its place in the staging file. A chunk that was
+     * received before is overwritten.
+     *
+     * @param index  the index of the chunk, starting from {@code 0}.
+     * @param source the channel with the bytes of the chunk. It is not closed.
+     * @throws InvalidUploadChunkException     if the index is out of the chunks or the source has another number of
+     *                                         bytes than the chunk.
+     * @throws UploadSessionConflictException if the session is already sealed for the commit.
+     * @throws IOException                     if the chunk cannot be read or written.
+     */
+    public void writeChunk(int index, ReadableByteChannel source) throws IOException {
+
+        checkNotNull(source);
+
+        if (index < 0 || index >= chunkCount()) {
+
+            throw new InvalidUploadChunkException(format(
+                "Chunk %d is out of %d chunks of the upload \"%s\".", index, chunkCount(), identifier));
+        }
+
+        long position = (long) index * chunkSize;
+        long length = Math.min(chunkSize, size - position);
+        Lock lock = sealLock.readLock();
+        lock.lock();
+
+        try {
+
+            if (sealed) {
+                throw new UploadSessionConflictException(format("Upload \"%s\" is already committed.", identifier));
+            }
+
+            synchronized (received) {
+                received.clear(index);
+            }
+
+            long written;
+
+            try (FileChannel channel = FileChannel.open(file, WRITE)) {
+                written = write(source, channel, position, length);
+            }
+
+            if (written != length) {
+
+                throw new InvalidUploadChunkException(format(
+                    "Chunk %d of the upload \"%s\" has %d bytes instead of %d.", index, identifier, written, length));
+            }
+
+            synchronized (received) {
+                received.set(index);
+            }
+
+        } finally {
+
+            lock.unlock();
+            touch();
+        }
+    }
+
+    /**
+     * Writes the bytes of the source channel into the staging file from the position, but not more than the length
+     * and one more chunk.
+     *
+     * @param source   the channel with the bytes of the chunk.
+     * @param channel  the channel of the staging file.
+     * @param position the position of the chunk in the staging file.
+     * @param length   the length of the chunk.
+     * @return the number of bytes read from the source, greater than the length if the source is longer.
+     */
+    private static long write(ReadableByteChannel source, FileChannel channel, long position, long length)
+        throws IOException {
+
+        ByteBuffer buffer = FileContent.allocateChunk();
+        long written = 0;
+
+        while (source.read(buffer) != -1) {
+
+            buffer.flip();
+
+            if (written + buffer.remaining() > length) {
+                return written + buffer.remaining();
+            }
+
+            while (buffer.hasRemaining()) {
+                written += channel.write(buffer, position + written);
+            }
+
+            buffer.clear();
+        }
+
+        return written;
+    }
+
+    /**
+     * Retrieves the indexes of the chunks that are not received yet.
+     *
+     * @return the ascending indexes of the missing chunks.
+     */
+    public List<Integer> missingChunks() {
+
+        List<Integer> missing = new ArrayList<>();
+
+        synchronized (received) {
+
+            for (int index = received.nextClearBit(0); index < chunkCount(); index = received.nextClearBit(index + 1)) {
+                missing.add(index);
+            }
+        }
+
+        return missing;
+    }
+
+    /**
+     * Seals the session for the commit, so no more chunks are accepted, and opens the received file. The chunks that
+     * are being written are waited for.
+     *
+     * <p>Only one commit may seal the session, so a repeated commit, for example a retry of the client after a
+     * timeout, cannot upload the file twice. The commit that has failed must {@link #unseal()} the session, so it can
+     * be committed again.
+     *
+     * @return the content of the uploaded file, that must be closed by the caller.
+     * @throws UploadSessionConflictException if the session is already sealed or some chunks are not received yet.
+     * @throws IOException                     if the staging file cannot be opened.
+     */
+    public FileContent seal() throws IOException {
+
+        Lock lock = sealLock.writeLock();
+        lock.lock();
+
+        try {
+
+            if (sealed) {
+                throw new UploadSessionConflictException(format("Upload \"%s\" is already being committed.",
+                    identifier));
+            }
+
+            List<Integer> missing = missingChunks();
+
+            if (!missing.isEmpty()) {
+
+                throw new UploadSessionConflictException(format(
+                    "Upload \"%s\" misses %d of %d chunks.", identifier, missing.size(), chunkCount()));
+            }
+
+            FileContent content = new FileContent(FileChannel.open(file, READ));
+            sealed = true;
+
+            return content;
+
+        } finally {
+
+            lock.unlock();
+            touch();
+        }
+    }
+
+    /**
+     * Unseals the session after its commit has failed, so it can be committed again.
+     */
+    public void unseal() {
+
+        Lock lock = sealLock.writeLock();
+        lock.lock();
+
+        try {
+
+            sealed = false;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the access to the session, that postpones its expiration.
+     */
+    void touch() {
+
+        lastAccess = clock.millis();
+    }
+
+    /**
+     * Retrieves the time of the last access to the session.
+     *
+     * @return the time in milliseconds.
+     */
+    long lastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Deletes the staging file.
+     *
+     * @throws IOException if the staging file cannot be deleted.
+     */
+    @Override
+    public void close() throws IOException {
+
+        deleteIfExists(file);
+    }
+
+    @Override
+    public String toString() {
+        return "UploadSession{" +
+            "identifier='" + identifier + '\'' +
+            ", fileName=" + fileName +
+            ", mimeType=" + mimeType +
+            ", parentFolderId=" + parentFolderId +
+            ", ownerId=" + ownerId +
+            ", size=" + size +
+            ", chunkSize=" + chunkSize +
+            '}';
+    }
+}
@@ -0,0 +1,17 @@
+package filestore.api;
+
+/**
+ * An exception that is thrown when the {@link UploadSession} is committed before all its chunks are received, or a
+ * chunk is sent after the commit has started.
+ */
+public class UploadSessionConflictException extends RuntimeException {
+
+    /**
+     * Instantiates UploadSessionConflictException.
+     *
+     * @param errorMessage error description.
+     */
+    public UploadSessionConflictException(String errorMessage) {
+        super(errorMessage);
+    }
+}
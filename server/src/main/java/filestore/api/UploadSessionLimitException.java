@@ -0,0 +1,16 @@
+package filestore.api;
+
+/**
+ * An exception that is thrown when the user opens more {@link UploadSession}s, than the user may keep open at once.
+ */
+public class UploadSessionLimitException extends RuntimeException {
+
+    /**
+     * Instantiates UploadSessionLimitException.
+     *
+     * @param errorMessage error description.
+     */
+    public UploadSessionLimitException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,17 @@
+package filestore.api;
+
+/**
+ * An exception that is thrown when the {@link UploadSession} was not found in {@link UploadSessions}, because it was never created, is committed or
+ * has expired.
+ */
+public class UploadSessionNotFoundException extends RuntimeException {
+
+    /**
+     * Instantiates UploadSessionNotFoundException.
+     *
+     * @param errorMessage error description.
+     */
+    public UploadSessionNotFoundException(String errorMessage) {
+        super(errorMessage);
+    }
+}
@@ -0,0 +1,313 @@
+package filestore.api;
+
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.UserId;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static io.nure.filestore.api.IdGenerator.generateId;
+import static java.lang.String.format;
+import static java.nio.file.Files.createDirectories;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The registry of the open {@link UploadSession}s, that keeps their staging files in one directory.
+ *
+ * <p>A session that is not accessed for {@code expireAfter} is abandoned: it is removed with its staging file by the
+ * periodic expiration. The sessions are kept only in memory, so the staging files that are left in the directory
+ * after a restart are deleted on start.
+ *
+ * <p>A user may keep at most {@code maxSessionsPerUser} sessions open, so one client cannot take all staging files
+ * of the server.
+ *
+ * <p>This implementation is thread-safe.
+ */
+public final class UploadSessions implements Closeable {
+
+    private static final Logger logger = getLogger(UploadSessions.class);
+
+    /**
+     * The maximal time to wait for the running expiration on close.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The directory of the staging files of the sessions.
+     */
+    private final Path directory;
+
+    /**
+     * The size of a chunk of the uploaded files in bytes.
+     */
+    private final int chunkSize;
+
+    /**
+     * The time after the last access after which a session expires.
+     */
+    private final Duration expireAfter;
+
+    /**
+     * The maximal number of the open sessions of one user.
+     */
+    private final int maxSessionsPerUser;
+
+    /**
+     * The source of the current time.
+     */
+    private final Clock clock;
+
+    /**
+     * The open sessions by their identifiers.
+     */
+    private final ConcurrentMap<String, UploadSession> sessions = new ConcurrentHashMap<>();
+
+    /**
+     * The numbers of the open sessions of the users. A user without open sessions has no entry.
+     */
+    private final ConcurrentMap<UserId, Integer> userSessions = new ConcurrentHashMap<>();
+
+    /**
+     * The executor of the expirations, {@code null} until they are scheduled.
+     */
+    private volatile ScheduledExecutorService expirations;
+
+    /**
+     * Instantiates UploadSessions and deletes the staging files that are left in the directory.
+     *
+     * @param directory          the directory of the staging files of the sessions.
+     * @param chunkSize          the size of a chunk of the uploaded files in bytes.
+     * @param expireAfter        the time after the last access after which a session expires.
+     * @param maxSessionsPerUser the maximal number of the open sessions of one user.
+     * @param clock              the source of the current time.
+     * @throws IOException if the directory cannot be created or cleaned.
+     */
+    public UploadSessions(Path directory, int chunkSize, Duration expireAfter, int maxSessionsPerUser, Clock clock)
+        throws IOException {
+
+        checkArgument(chunkSize > 0, "Chunk size %s is not positive.", chunkSize);
+        checkArgument(maxSessionsPerUser > 0, "Maximal number of sessions %s is not positive.", maxSessionsPerUser);
+
+        this.directory = checkNotNull(directory);
+        this.chunkSize = chunkSize;
+        this.expireAfter = checkNotNull(expireAfter);
+        this.maxSessionsPerUser = maxSessionsPerUser;
+        this.clock = checkNotNull(clock);
+
+        createDirectories(directory);
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Opens the session of the upload of a file.
+     *
+     * @param fileName       the name of the uploaded file.
+     * @param mimeType       the {@link MimeType} of the uploaded file.
+     * @param size           the size of the file in bytes.
+     * @param parentFolderId the identifier of the destination {@link Folder} of the file.
+     * @param ownerId        the identifier of the owner of the file.
+     * @return the opened session.
+     * @throws UploadSessionLimitException if the user already keeps {@code maxSessionsPerUser} sessions open.
+     * @throws IOException                 if the staging file of the session cannot be created.
+     */
+    public UploadSession create(FileName fileName, MimeType mimeType, long size, FolderId parentFolderId,
+                                UserId ownerId) throws IOException {
+
+        checkNotNull(ownerId);
+
+        userSessions.merge(ownerId, 1, (opened, one) -> {
+
+            if (opened >= maxSessionsPerUser) {
+
+                throw new UploadSessionLimitException(format(
+                    "User with id \"%s\" already has %d open upload sessions.", ownerId.value(), opened));
+            }
+
+            return opened + one;
+        });
+
+        String identifier = generateId();
+        UploadSession session;
+
+        try {
+
+            session = new UploadSession(identifier, fileName, mimeType, parentFolderId, ownerId, size, chunkSize,
+                directory.resolve(identifier), clock);
+
+        } catch (IOException | RuntimeException e) {
+
+            release(ownerId);
+
+            throw e;
+        }
+
+        sessions.put(identifier, session);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Opened upload session: {}.", session);
+        }
+
+        return session;
+    }
+
+    /**
+     * Retrieves the open session of the user. The access postpones the expiration of the session.
+     *
+     * @param identifier the identifier of the session.
+     * @param ownerId    the identifier of the user that accesses the session.
+     * @return the session.
+     * @throws UploadSessionNotFoundException if the session is not open.
+     * @throws OwnershipViolatedException     if the session is opened by another user.
+     */
+    public UploadSession session(String identifier, UserId ownerId) {
+
+        checkNotNull(ownerId);
+
+        UploadSession session = sessions.get(checkNotNull(identifier));
+
+        if (session == null) {
+            throw new UploadSessionNotFoundException(format("Upload session \"%s\" was not found.", identifier));
+        }
+
+        if (!session.ownerId().equals(ownerId)) {
+
+            throw new OwnershipViolatedException(format(
+                "User with id \"%s\" is not the owner of the upload session \"%s\".", ownerId.value(), identifier));
+        }
+
+        session.touch();
+
+        return session;
+    }
+
+    /**
+     * Closes the session and deletes its staging file, after the session is committed or aborted.
+     *
+     * @param session the session to remove.
+     * @throws IOException if the staging file cannot be deleted.
+     */
+    public void remove(UploadSession session) throws IOException {
+
+        session.close();
+
+        if (sessions.remove(session.identifier(), session)) {
+            release(session.ownerId());
+        }
+    }
+
+    /**
+     * Releases the place of the closed session of the user.
+     *
+     * @param ownerId the identifier of the owner of the session.
+     */
+    private void release(UserId ownerId) {
+
+        userSessions.computeIfPresent(ownerId, (owner, opened) -> opened == 1 ? null : opened - 1);
+    }
+
+    /**
+     * Retrieves the number of the open sessions.
+     *
+     * @return the number of sessions.
+     */
+    public int count() {
+        return sessions.size();
+    }
+
+    /**
+     * Schedules the periodic expiration of the abandoned sessions.
+     *
+     * @param interval the interval between the expirations.
+     */
+    public void scheduleExpiration(Duration interval) {
+
+        checkState(expirations == null, "Expiration is already scheduled.");
+
+        expirations = newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "upload-expiration");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long intervalMillis = interval.toMillis();
+
+        expirations.scheduleWithFixedDelay(this::expire, intervalMillis, intervalMillis, MILLISECONDS);
+    }
+
+    /**
+     * Removes the sessions that were not accessed for {@code expireAfter}. A session that cannot be removed is logged
+     * and removed on the next run.
+     */
+    public void expire() {
+
+        long expiredBefore = clock.millis() - expireAfter.toMillis();
+
+        for (UploadSession session : sessions.values()) {
+
+            if (session.lastAccess() < expiredBefore) {
+
+                try {
+
+                    remove(session);
+
+                    if (logger.isInfoEnabled()) {
+                        logger.info("Upload session \"{}\" has expired.", session.identifier());
+                    }
+
+                } catch (IOException e) {
+
+                    if (logger.isWarnEnabled()) {
+                        logger.warn(format("Cannot remove expired upload session \"%s\".", session.identifier()), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the running expiration and stops the expirations. The open sessions are left to be deleted on the
+     * next start.
+     */
+    @Override
+    public void close() {
+
+        ScheduledExecutorService executor = expirations;
+
+        if (executor != null) {
+
+            executor.shutdown();
+
+            try {
+
+                executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package filestore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A monotonically increasing metric, for example the number of handled requests.
+ *
+ * <p>This implementation is thread-safe and is cheap to increment from many threads.
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    /**
+     * Increments the counter by one.
+     */
+    public void increment() {
+        value.increment();
+    }
+
+    /**
+     * Increments the counter by the passed amount.
+     *
+     * @param amount non-negative amount to add.
+     */
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    /**
+     * Retrieves the current value of the counter.
+     *
+     * @return the value of the counter.
+     */
+    public long value() {
+        return value.sum();
+    }
+}
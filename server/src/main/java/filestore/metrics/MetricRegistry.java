@@ -0,0 +1,64 @@
+package filestore.metrics;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The registry of named metrics of the application: {@link Counter}s and gauges.
+ *
+ * <p>A gauge is a value that is calculated when it is read, for example the number of stored records.
+ *
+ * <p>This implementation is thread-safe.
+ */
+public final class MetricRegistry {
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, Supplier<? extends Number>> gauges = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the counter with the passed name. Creates it if it doesn't exist yet.
+     *
+     * @param name the name of the counter.
+     * @return the counter.
+     */
+    public Counter counter(String name) {
+
+        return counters.computeIfAbsent(checkNotNull(name), key -> new Counter());
+    }
+
+    /**
+     * Registers the gauge with the passed name. Replaces the previous gauge with the same name.
+     *
+     * @param name  the name of the gauge.
+     * @param value calculates the value of the gauge.
+     */
+    public void gauge(String name, Supplier<? extends Number> value) {
+
+        gauges.put(checkNotNull(name), checkNotNull(value));
+    }
+
+    /**
+     * Reads the current values of all metrics.
+     *
+     * @return the values of the metrics, sorted by their names.
+     */
+    public SortedMap<String, Number> values() {
+
+        SortedMap<String, Number> values = new TreeMap<>();
+
+        counters.forEach((name, counter) -> values.put(name, counter.value()));
+
+        for (Map.Entry<String, Supplier<? extends Number>> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().get());
+        }
+
+        return values;
+    }
+}
@@ -0,0 +1,64 @@
+package filestore.storage;
+
+import com.google.errorprone.annotations.Immutable;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Objects.hash;
+
+/**
+ * A value object for the locator of the content of the file in the {@link BlobStore}.
+ */
+@Immutable
+public final class BlobLocator {
+
+    /**
+     * The value of the locator.
+     */
+    private final String value;
+
+    /**
+     * Instantiates BlobLocator with provided value.
+     *
+     * @param value the value of the locator.
+     */
+    public BlobLocator(String value) {
+        this.value = checkNotNull(value);
+    }
+
+    /**
+     * Getter for the value of the locator.
+     *
+     * @return the value of the locator.
+     */
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        BlobLocator that = (BlobLocator) o;
+
+        return value.equals(that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(value);
+    }
+
+    @Override
+    public String toString() {
+        return "BlobLocator{" +
+            "value='" + value + '\'' +
+            '}';
+    }
+}
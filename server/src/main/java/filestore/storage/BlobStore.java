@@ -0,0 +1,66 @@
+package filestore.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.List;
+
+/**
+ * A store of the contents of the files, kept outside of the Java heap.
+ *
+ * <p>Each content is addressed by {@link BlobLocator}, that is kept in {@link FileContentRecord}. The contents are
+ * written and read through channels, so they are never held in memory as a whole.
+ *
+ * <p>Implementations must be thread-safe.
+ */
+public interface BlobStore {
+
+    /**
+     * The size of a chunk, in which the contents are copied, in bytes.
+     */
+    int CHUNK_SIZE = 1 << 16;
+
+    /**
+     * Allocates a buffer for one chunk of a content.
+     *
+     * @return the empty buffer of {@link #CHUNK_SIZE} bytes.
+     */
+    static ByteBuffer allocateChunk() {
+
+        return ByteBuffer.allocate(CHUNK_SIZE);
+    }
+
+    /**
+     * Starts writing a new content.
+     *
+     * @return the writer of the content, that must be closed by the caller.
+     * @throws IOException if the content cannot be written.
+     */
+    BlobWriter create() throws IOException;
+
+    /**
+     * Opens the content by the locator for reading.
+     *
+     * @param locator the locator of the content.
+     * @return the channel with the content, that must be closed by the caller.
+     * @throws IOException if the content does not exist or cannot be read.
+     */
+    ReadableByteChannel open(BlobLocator locator) throws IOException;
+
+    /**
+     * Deletes the content by the locator.
+     *
+     * @param locator the locator of the content.
+     * @return {@code true} if the content existed.
+     * @throws IOException if the content cannot be deleted.
+     */
+    boolean delete(BlobLocator locator) throws IOException;
+
+    /**
+     * Lists the locators of all contents of the store.
+     *
+     * @return the locators of the committed contents.
+     * @throws IOException if the contents cannot be listed.
+     */
+    List<BlobLocator> locators() throws IOException;
+}
@@ -0,0 +1,17 @@
+package filestore.storage;
+
+/**
+ * An exception that is thrown when {@link BlobStore} fails to write, read or delete the content of the file.
+ */
+public class BlobStoreException extends RuntimeException {
+
+    /**
+     * Instantiates BlobStoreException.
+     *
+     * @param message error description.
+     * @param cause   the cause of the error.
+     */
+    public BlobStoreException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
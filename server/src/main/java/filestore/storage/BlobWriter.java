@@ -0,0 +1,24 @@
+package filestore.storage;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * The channel that writes a new content into {@link BlobStore}.
+ *
+ * <p>The written content becomes available in the store only when it is committed under its {@link BlobLocator}.
+ * The content that is closed without commit is discarded, so the locator of the content may be calculated from its
+ * bytes while they are written.
+ */
+public interface BlobWriter extends WritableByteChannel {
+
+    /**
+     * Makes the written content available under the locator, replacing the previous content if any.
+     *
+     * <p>The content is durable when the method returns. Nothing can be written after commit.
+     *
+     * @param locator the locator of the content.
+     * @throws IOException if the content cannot be committed.
+     */
+    void commit(BlobLocator locator) throws IOException;
+}
@@ -0,0 +1,84 @@
+package filestore.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+/**
+ * The {@link MappableChannel} over a buffer with the content, that is already in memory or memory-mapped.
+ */
+final class ByteBufferChannel implements MappableChannel {
+
+    private final ByteBuffer content;
+
+    /**
+     * The source of the buffer, that is closed with the channel, or {@code null} if there is nothing to close.
+     */
+    private final Closeable source;
+
+    private boolean open = true;
+
+    /**
+     * Instantiates ByteBufferChannel.
+     *
+     * @param content the buffer with the content, from its position to its limit.
+     */
+    ByteBufferChannel(ByteBuffer content) {
+        this(content, null);
+    }
+
+    /**
+     * Instantiates ByteBufferChannel over the buffer, that is mapped from the source.
+     *
+     * @param content the buffer with the content, from its position to its limit.
+     * @param source  the source of the buffer to close with the channel, or {@code null}.
+     */
+    ByteBufferChannel(ByteBuffer content, Closeable source) {
+        this.content = content.asReadOnlyBuffer();
+        this.source = source;
+    }
+
+    @Override
+    public int read(ByteBuffer target) {
+
+        if (!content.hasRemaining()) {
+            return -1;
+        }
+
+        int length = Math.min(content.remaining(), target.remaining());
+        ByteBuffer part = content.duplicate();
+        part.limit(part.position() + length);
+        target.put(part);
+        content.position(content.position() + length);
+
+        return length;
+    }
+
+    @Override
+    public Optional<ByteBuffer> map() {
+
+        ByteBuffer rest = content.slice();
+        content.position(content.limit());
+
+        return Optional.of(rest);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+
+        if (open) {
+
+            open = false;
+
+            if (source != null) {
+                source.close();
+            }
+        }
+    }
+}
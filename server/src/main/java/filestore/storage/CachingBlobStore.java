@@ -0,0 +1,434 @@
+package filestore.storage;
+
+import io.nure.filestore.metrics.Counter;
+import io.nure.filestore.metrics.MetricRegistry;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The {@link BlobStore} that keeps the most popular contents of another store in memory.
+ *
+ * <p>The cache is limited by the total size of the contents in bytes. The contents are kept as they are in the
+ * underlying store, so compressed contents take less memory. A content larger than 1/{@value #MAX_ENTRY_FRACTION} of
+ * the capacity is never cached.
+ *
+ * <p>The size of a content is checked before it is read, when the underlying channel can be memory-mapped. A content
+ * that is too large to be cached is then passed on as the mapped buffer, so it is still sent without copying it into
+ * the Java heap. A content that cannot be mapped is passed on as it is read, and its bytes are copied aside until they
+ * exceed the maximal size of a cached content. It is admitted once it is read to its end, so nothing is buffered
+ * before the first byte is served and the copy of a large content is dropped as soon as it cannot fit.
+ *
+ * <p>The contents are evicted in the least-recently-used order, but a new content is admitted only if it was read more
+ * often than every content it would evict (TinyLFU). The frequencies of the reads are counted by
+ * {@link FrequencySketch} for cached and not cached contents alike. So a scan over many rarely read contents, as a bulk
+ * export, doesn't replace the popular ones.
+ *
+ * <p>The reads that are served from memory never reach the underlying store. A store that tracks the reads of its
+ * contents, as {@link TieredBlobStore} does, is told about them by the listener of the hits.
+ *
+ * <p>The metrics {@code blob.cache.hits}, {@code blob.cache.misses}, {@code blob.cache.evictions},
+ * {@code blob.cache.rejections} and {@code blob.cache.bytes} are registered in {@link MetricRegistry}.
+ *
+ * <p>This implementation is thread-safe. The contents are read from the underlying store outside of the lock of the
+ * cache, and the reads are counted outside of it too, in the stripes of {@link StripedFrequencySketch}.
+ */
+public final class CachingBlobStore implements BlobStore {
+
+    /**
+     * The maximal part of the capacity a single content may take.
+     */
+    private static final int MAX_ENTRY_FRACTION = 64;
+
+    /**
+     * The expected average size of a cached content, that defines the size of {@link FrequencySketch}.
+     */
+    private static final int AVERAGE_ENTRY_SIZE = 1 << 14;
+
+    /**
+     * The minimal number of keys {@link FrequencySketch} is sized for, as it counts also the contents that are not
+     * cached.
+     */
+    private static final int MIN_SKETCH_KEYS = 1 << 12;
+
+    /**
+     * The maximal number of keys {@link FrequencySketch} is sized for.
+     */
+    private static final int MAX_SKETCH_KEYS = 1 << 24;
+
+    /**
+     * The number of the stripes of the sketch, that are counted in parallel.
+     */
+    private static final int SKETCH_STRIPES = 16;
+
+    /**
+     * The underlying store.
+     */
+    private final BlobStore delegate;
+
+    /**
+     * The maximal total size of the cached contents in bytes.
+     */
+    private final long capacity;
+
+    /**
+     * The maximal size of a cached content in bytes.
+     */
+    private final int maxEntrySize;
+
+    /**
+     * The cached contents in the order of their access, the least recently used first. Guarded by {@code this}.
+     */
+    private final LinkedHashMap<BlobLocator, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The frequencies of the reads of the contents.
+     */
+    private final StripedFrequencySketch<BlobLocator> sketch;
+
+    /**
+     * The total size of the cached contents in bytes. Guarded by {@code this}.
+     */
+    private long size;
+
+    /**
+     * The listener of the reads that are served from memory.
+     */
+    private final Consumer<BlobLocator> hitListener;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    private final Counter evictions;
+
+    private final Counter rejections;
+
+    /**
+     * Instantiates CachingBlobStore.
+     *
+     * @param delegate the underlying store.
+     * @param capacity the maximal total size of the cached contents in bytes.
+     * @param metrics  the registry to register the metrics of the cache in.
+     */
+    public CachingBlobStore(BlobStore delegate, long capacity, MetricRegistry metrics) {
+
+        this(delegate, capacity, metrics, locator -> {
+        });
+    }
+
+    /**
+     * Instantiates CachingBlobStore, that tells the listener about the reads served from memory.
+     *
+     * @param delegate    the underlying store.
+     * @param capacity    the maximal total size of the cached contents in bytes.
+     * @param metrics     the registry to register the metrics of the cache in.
+     * @param hitListener the listener of the reads that are served from memory, called outside of the lock of the
+     *                    cache.
+     */
+    public CachingBlobStore(BlobStore delegate, long capacity, MetricRegistry metrics,
+                            Consumer<BlobLocator> hitListener) {
+
+        checkArgument(capacity > 0, "Capacity of the cache must be positive: %s", capacity);
+        checkNotNull(metrics);
+
+        this.delegate = checkNotNull(delegate);
+        this.hitListener = checkNotNull(hitListener);
+        this.capacity = capacity;
+        this.maxEntrySize = (int) Math.min(capacity / MAX_ENTRY_FRACTION, Integer.MAX_VALUE - 1);
+        this.sketch = new StripedFrequencySketch<>(
+            (int) Math.max(MIN_SKETCH_KEYS, Math.min(capacity / AVERAGE_ENTRY_SIZE, MAX_SKETCH_KEYS)), SKETCH_STRIPES);
+
+        hits = metrics.counter("blob.cache.hits");
+        misses = metrics.counter("blob.cache.misses");
+        evictions = metrics.counter("blob.cache.evictions");
+        rejections = metrics.counter("blob.cache.rejections");
+        metrics.gauge("blob.cache.bytes", this::size);
+    }
+
+    @Override
+    public BlobWriter create() throws IOException {
+
+        BlobWriter writer = delegate.create();
+
+        return new BlobWriter() {
+
+            @Override
+            public void commit(BlobLocator locator) throws IOException {
+
+                writer.commit(locator);
+                invalidate(locator);
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                return writer.write(source);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return writer.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    @Override
+    public ReadableByteChannel open(BlobLocator locator) throws IOException {
+
+        checkNotNull(locator);
+
+        byte[] cached;
+        boolean admissible;
+
+        sketch.increment(locator);
+
+        synchronized (this) {
+
+            cached = entries.get(locator);
+            admissible = cached == null && isAdmissible(locator);
+        }
+
+        if (cached != null) {
+
+            hits.increment();
+            hitListener.accept(locator);
+
+            return new ByteBufferChannel(ByteBuffer.wrap(cached));
+        }
+
+        misses.increment();
+
+        ReadableByteChannel channel = delegate.open(locator);
+
+        if (!admissible) {
+            return channel;
+        }
+
+        try {
+
+            Optional<ByteBuffer> mapped = MappableChannel.map(channel);
+
+            if (mapped.isPresent()) {
+                return admitMapped(locator, channel, mapped.get());
+            }
+
+            return new AdmittingChannel(locator, channel);
+
+        } catch (IOException e) {
+
+            try {
+                channel.close();
+            } catch (IOException closeError) {
+                e.addSuppressed(closeError);
+            }
+
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean delete(BlobLocator locator) throws IOException {
+
+        boolean deleted = delegate.delete(locator);
+        invalidate(locator);
+
+        return deleted;
+    }
+
+    @Override
+    public List<BlobLocator> locators() throws IOException {
+
+        return delegate.locators();
+    }
+
+    /**
+     * Retrieves the total size of the cached contents.
+     *
+     * @return the size of the cache in bytes.
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /**
+     * Admits the mapped content, if it fits into an entry of the cache. The larger content is not copied and is read
+     * from the mapped buffer.
+     *
+     * @param locator the locator of the content.
+     * @param channel the channel, which content is mapped.
+     * @param mapped  the buffer with the whole content.
+     * @return the channel with the content, mappable either way.
+     * @throws IOException if the channel cannot be closed.
+     */
+    private ReadableByteChannel admitMapped(BlobLocator locator, ReadableByteChannel channel, ByteBuffer mapped)
+        throws IOException {
+
+        if (mapped.remaining() > maxEntrySize) {
+            return new ByteBufferChannel(mapped, channel);
+        }
+
+        byte[] content = new byte[mapped.remaining()];
+        mapped.get(content);
+        channel.close();
+        admit(locator, content);
+
+        return new ByteBufferChannel(ByteBuffer.wrap(content));
+    }
+
+    /**
+     * Checks whether the content may be admitted to the cache, so that it is worth reading it into memory.
+     *
+     * @param locator the locator of the content.
+     * @return {@code true} if the cache has free space or the content is read more often than the least recently
+     * used content.
+     */
+    private boolean isAdmissible(BlobLocator locator) {
+
+        if (size < capacity || entries.isEmpty()) {
+            return true;
+        }
+
+        BlobLocator eldest = entries.keySet().iterator().next();
+
+        return sketch.frequency(locator) > sketch.frequency(eldest);
+    }
+
+    /**
+     * Puts the content into the cache if it is read more often than every content it would evict.
+     *
+     * @param locator the locator of the content.
+     * @param content the content.
+     */
+    private synchronized void admit(BlobLocator locator, byte[] content) {
+
+        if (entries.containsKey(locator)) {
+            return;
+        }
+
+        int frequency = sketch.frequency(locator);
+        List<Map.Entry<BlobLocator, byte[]>> victims = new ArrayList<>();
+        long freed = 0;
+        Iterator<Map.Entry<BlobLocator, byte[]>> eldest = entries.entrySet().iterator();
+
+        while (size - freed + content.length > capacity) {
+
+            Map.Entry<BlobLocator, byte[]> victim = eldest.next();
+
+            if (sketch.frequency(victim.getKey()) >= frequency) {
+
+                rejections.increment();
+
+                return;
+            }
+
+            victims.add(victim);
+            freed += victim.getValue().length;
+        }
+
+        for (Map.Entry<BlobLocator, byte[]> victim : victims) {
+            entries.remove(victim.getKey());
+        }
+
+        evictions.add(victims.size());
+        entries.put(locator, content);
+        size += content.length - freed;
+    }
+
+    /**
+     * Removes the content from the cache.
+     *
+     * @param locator the locator of the content.
+     */
+    private synchronized void invalidate(BlobLocator locator) {
+
+        byte[] removed = entries.remove(locator);
+
+        if (removed != null) {
+            size -= removed.length;
+        }
+    }
+
+    /**
+     * The channel that passes on the content of the underlying channel and copies it aside, until the copy exceeds the
+     * maximal size of a cached content. The content is admitted to the cache once it is read to its end.
+     */
+    private final class AdmittingChannel implements ReadableByteChannel {
+
+        private final BlobLocator locator;
+
+        private final ReadableByteChannel channel;
+
+        /**
+         * The copy of the read bytes, {@code null} once the content cannot be admitted.
+         */
+        private ByteArrayOutputStream copy = new ByteArrayOutputStream();
+
+        private AdmittingChannel(BlobLocator locator, ReadableByteChannel channel) {
+
+            this.locator = locator;
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+
+            int position = target.position();
+            int read = channel.read(target);
+
+            if (copy == null) {
+                return read;
+            }
+
+            if (read == -1) {
+
+                admit(locator, copy.toByteArray());
+                copy = null;
+
+            } else if (copy.size() + read > maxEntrySize) {
+
+                copy = null;
+
+            } else if (read > 0) {
+
+                ByteBuffer part = target.duplicate();
+                part.limit(position + read);
+                part.position(position);
+
+                byte[] bytes = new byte[read];
+                part.get(bytes);
+                copy.write(bytes, 0, read);
+            }
+
+            return read;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            copy = null;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package filestore.storage;
+
+import com.google.common.collect.ImmutableList;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Arrays.asList;
+
+/**
+ * A key of {@link StorageIndex} that consists of several fields of the {@link Record}.
+ *
+ * <p>Two composite keys are equal if all their parts are equal and go in the same order.
+ */
+public final class CompositeKey {
+
+    /**
+     * Parts of the key.
+     */
+    private final ImmutableList<Object> parts;
+
+    /**
+     * Instantiates CompositeKey.
+     *
+     * @param parts parts of the key.
+     */
+    private CompositeKey(ImmutableList<Object> parts) {
+        this.parts = checkNotNull(parts);
+    }
+
+    /**
+     * Creates CompositeKey from the passed parts.
+     *
+     * <p>Returns {@code null} if any of the parts is {@code null}, so that the record without one of the fields is not
+     * indexed.
+     *
+     * @param parts parts of the key.
+     * @return created key or {@code null} if any of the parts is {@code null}.
+     */
+    @Nullable
+    public static CompositeKey of(Object... parts) {
+
+        checkNotNull(parts);
+
+        if (asList(parts).contains(null)) {
+            return null;
+        }
+
+        return new CompositeKey(ImmutableList.copyOf(parts));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        CompositeKey that = (CompositeKey) o;
+
+        return Objects.equals(parts, that.parts);
+    }
+
+    @Override
+    public int hashCode() {
+        return parts.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeKey{" +
+            "parts=" + parts +
+            '}';
+    }
+}
@@ -0,0 +1,220 @@
+package filestore.storage;
+
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.channels.Channels.newInputStream;
+import static java.nio.channels.Channels.newOutputStream;
+
+/**
+ * Enumeration of encodings the contents of the files are kept in {@link BlobStore} with.
+ *
+ * <p>The encoding of a content is marked by the extension of its {@link BlobLocator}, so the contents that are kept
+ * with different encodings never share a blob. The names of the encodings match the values of HTTP
+ * {@code Content-Encoding} header, so an encoded content can be sent to a client as it is.
+ */
+public enum ContentEncoding {
+
+    /**
+     * The content is kept as it is.
+     */
+    IDENTITY("identity", ""),
+
+    /**
+     * The content is compressed into GZIP format.
+     */
+    GZIP("gzip", ".gz"),
+
+    /**
+     * The content is compressed into ZLIB format.
+     */
+    DEFLATE("deflate", ".zz");
+
+    /**
+     * The name of the encoding.
+     */
+    private final String value;
+
+    /**
+     * The extension of the locators of the contents with the encoding.
+     */
+    private final String extension;
+
+    /**
+     * Instantiates ContentEncoding.
+     *
+     * @param value     the name of the encoding.
+     * @param extension the extension of the locators of the contents with the encoding.
+     */
+    ContentEncoding(String value, String extension) {
+
+        this.value = value;
+        this.extension = extension;
+    }
+
+    /**
+     * Retrieves the encoding of the content by its locator.
+     *
+     * @param locator the locator of the content.
+     * @return the encoding of the content.
+     */
+    public static ContentEncoding of(BlobLocator locator) {
+
+        String value = checkNotNull(locator).value();
+
+        for (ContentEncoding encoding : values()) {
+
+            if (encoding != IDENTITY && value.endsWith(encoding.extension)) {
+                return encoding;
+            }
+        }
+
+        return IDENTITY;
+    }
+
+    /**
+     * Whether the contents of files of the type are worth compression. Images, videos and music are already
+     * compressed by their formats.
+     *
+     * @param fileType the type of the file.
+     * @return {@code true} if the content of the file should be compressed.
+     */
+    public static boolean isCompressible(FileType fileType) {
+
+        switch (checkNotNull(fileType)) {
+
+            case IMAGE:
+            case VIDEO:
+            case MUSIC:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Getter for the name of the encoding.
+     *
+     * @return the name of the encoding.
+     */
+    public String value() {
+        return value;
+    }
+
+    /**
+     * Creates the locator of the content with the encoding.
+     *
+     * @param name the name of the content, for example its hash.
+     * @return the locator of the encoded content.
+     */
+    public BlobLocator locate(String name) {
+
+        return new BlobLocator(checkNotNull(name) + extension);
+    }
+
+    /**
+     * Retrieves the name of the content from its locator, the reverse of {@link #locate(String)}.
+     *
+     * @param locator the locator of the content with the encoding.
+     * @return the name of the content, for example its hash.
+     */
+    public String name(BlobLocator locator) {
+
+        String value = checkNotNull(locator).value();
+
+        return value.substring(0, value.length() - extension.length());
+    }
+
+    /**
+     * Wraps the target channel into the channel that encodes the written bytes.
+     *
+     * <p>Closing the returned channel finishes the encoding, but leaves the target channel open.
+     *
+     * @param target the channel to write the encoded bytes into.
+     * @return the channel to write the content into.
+     * @throws IOException if the encoding cannot be started.
+     */
+    public WritableByteChannel encode(WritableByteChannel target) throws IOException {
+
+        OutputStream output = new UnclosableOutputStream(newOutputStream(checkNotNull(target)));
+
+        switch (this) {
+
+            case GZIP:
+                return newChannel(new GZIPOutputStream(output, BlobStore.CHUNK_SIZE));
+            case DEFLATE:
+                return newChannel(new DeflaterOutputStream(new BufferedOutputStream(output, BlobStore.CHUNK_SIZE)));
+            default:
+                return newChannel(output);
+        }
+    }
+
+    /**
+     * Wraps the source channel into the channel that decodes the read bytes.
+     *
+     * <p>Closing the returned channel closes the source channel.
+     *
+     * @param source the channel with the encoded content.
+     * @return the channel to read the content from.
+     * @throws IOException if the encoded content is broken.
+     */
+    public ReadableByteChannel decode(ReadableByteChannel source) throws IOException {
+
+        checkNotNull(source);
+
+        switch (this) {
+
+            case GZIP:
+                return newChannel(new GZIPInputStream(newInputStream(source), BlobStore.CHUNK_SIZE));
+            case DEFLATE:
+                return newChannel(new InflaterInputStream(new BufferedInputStream(newInputStream(source),
+                    BlobStore.CHUNK_SIZE)));
+            default:
+                return source;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ContentEncoding{" +
+            "value='" + value + '\'' +
+            '}';
+    }
+
+    /**
+     * The stream that passes the bytes to the target stream, but only flushes it on close.
+     */
+    private static final class UnclosableOutputStream extends FilterOutputStream {
+
+        /**
+         * Instantiates UnclosableOutputStream.
+         *
+         * @param target the stream to write the bytes into.
+         */
+        private UnclosableOutputStream(OutputStream target) {
+            super(target);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
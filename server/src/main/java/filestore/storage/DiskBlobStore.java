@@ -0,0 +1,204 @@
+package filestore.storage;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link BlobStore} that keeps each content in a separate file under the root directory.
+ *
+ * <p>The files are spread over subdirectories named after the first characters of the locators, so that no directory
+ * holds too many files. A content is written into a temporary file in the root directory that replaces the previous
+ * content only when it is completely written and forced to the disk. Reads go through the page cache of the operating
+ * system.
+ */
+public final class DiskBlobStore implements BlobStore {
+
+    private static final Logger logger = getLogger(DiskBlobStore.class);
+
+    /**
+     * The characters that are allowed in a locator, so that it cannot point outside of the root directory.
+     */
+    private static final Pattern LOCATOR_PATTERN = Pattern.compile("[A-Za-z0-9_-]{3,}(\\.[a-z]+)?");
+
+    /**
+     * The number of the first characters of a locator that name its subdirectory.
+     */
+    private static final int SHARD_LENGTH = 2;
+
+    /**
+     * The directory with the contents.
+     */
+    private final Path root;
+
+    /**
+     * Instantiates DiskBlobStore. The directory is created on the first write.
+     *
+     * @param root the directory with the contents.
+     */
+    public DiskBlobStore(Path root) {
+        this.root = checkNotNull(root);
+    }
+
+    @Override
+    public BlobWriter create() throws IOException {
+
+        Path temporary = Files.createTempFile(Files.createDirectories(root), "blob", ".tmp");
+
+        return new FileBlobWriter(temporary);
+    }
+
+    @Override
+    public ReadableByteChannel open(BlobLocator locator) throws IOException {
+
+        return FileChannel.open(resolve(locator), READ);
+    }
+
+    @Override
+    public boolean delete(BlobLocator locator) throws IOException {
+
+        return Files.deleteIfExists(resolve(locator));
+    }
+
+    /**
+     * Retrieves the size of the content.
+     *
+     * @param locator the locator of the content.
+     * @return the size of the content in bytes.
+     * @throws IOException if the content does not exist or its size cannot be read.
+     */
+    public long size(BlobLocator locator) throws IOException {
+
+        return Files.size(resolve(locator));
+    }
+
+    @Override
+    public List<BlobLocator> locators() throws IOException {
+
+        if (!Files.isDirectory(root)) {
+            return new ArrayList<>();
+        }
+
+        try (Stream<Path> files = Files.walk(root, 2)) {
+
+            return files
+                .filter(file -> file.getNameCount() - root.getNameCount() == 2)
+                .map(file -> file.getFileName().toString())
+                .filter(name -> LOCATOR_PATTERN.matcher(name).matches())
+                .map(BlobLocator::new)
+                .collect(toList());
+        }
+    }
+
+    /**
+     * Resolves the file of the content.
+     *
+     * @param locator the locator of the content.
+     * @return path to the file.
+     */
+    private Path resolve(BlobLocator locator) {
+
+        String value = checkNotNull(locator).value();
+
+        checkArgument(LOCATOR_PATTERN.matcher(value).matches(), "Locator \"%s\" is not allowed.", value);
+
+        return root
+            .resolve(value.substring(0, SHARD_LENGTH))
+            .resolve(value);
+    }
+
+    /**
+     * The {@link BlobWriter} into a temporary file, that is moved to the file of the content on commit.
+     */
+    private final class FileBlobWriter implements BlobWriter {
+
+        /**
+         * The temporary file with the written content.
+         */
+        private final Path temporary;
+
+        /**
+         * The channel of the temporary file.
+         */
+        private final FileChannel channel;
+
+        /**
+         * Whether the content is committed.
+         */
+        private boolean committed;
+
+        /**
+         * Instantiates FileBlobWriter.
+         *
+         * @param temporary the temporary file to write the content into.
+         * @throws IOException if the temporary file cannot be opened.
+         */
+        private FileBlobWriter(Path temporary) throws IOException {
+
+            this.temporary = temporary;
+            this.channel = FileChannel.open(temporary, WRITE);
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+
+            checkState(!committed, "Content is already committed.");
+
+            return channel.write(source);
+        }
+
+        @Override
+        public void commit(BlobLocator locator) throws IOException {
+
+            checkState(!committed, "Content is already committed.");
+
+            Path file = resolve(locator);
+            long size = channel.size();
+
+            channel.force(true);
+            channel.close();
+
+            Files.createDirectories(file.getParent());
+            Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+            committed = true;
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Written {} bytes to {}.", size, file);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            if (!committed) {
+
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package filestore.storage;
+
+/**
+ * Durability modes of {@link StorageJournal}. Define when an entry of the journal is considered written.
+ */
+public enum Durability {
+
+    /**
+     * Each modification waits until its entry is forced to the disk. Concurrent modifications share a single
+     * {@code fsync} of the group of their entries.
+     */
+    SYNC,
+
+    /**
+     * Modifications do not wait for the disk. The journal is forced to the disk periodically, so the modifications of
+     * the last batch interval may be lost on a power failure.
+     */
+    BATCHED,
+
+    /**
+     * Modifications do not wait for the disk. Entries are handed to the operating system and are never forced
+     * explicitly, so they survive a crash of the application but not of the operating system.
+     */
+    OS_BUFFERED
+}
@@ -32,7 +32,7 @@ public class FileContentPostgresStorage extends PostgresStorage<FileId, FileCont
                             ":link, " +
                             ")")
                     .addParameter("fileId", record.identifier().value())
-                    .addParameter("link", record.content().value())
+                    .addParameter("link", record.locator().value())
                     .executeUpdate();
 
             if (logger.isDebugEnabled()) {
@@ -1,12 +1,11 @@
 package filestore.storage;
 
-import io.nure.filestore.api.FileContent;
-
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Objects.hash;
 
 /**
- * The {@link Record} that keeps content of the file. A unit of data of the {@link FileContentStorage}.
+ * The {@link Record} that locates content of the file in the {@link BlobStore}. A unit of data of the
+ * {@link FileContentStorage}.
  */
 public final class FileContentRecord implements Record<FileId> {
 
@@ -16,24 +15,24 @@ public final class FileContentRecord implements Record<FileId> {
     private final FileId identifier;
 
     /**
-     * The content of the file as {@link Byte} array.
+     * The locator of the content of the file in the {@link BlobStore}.
      */
-    private final FileContent content;
+    private final BlobLocator locator;
 
     /**
-     * Creates instance of FileContentRecord with passed identifier and content.
+     * Creates instance of FileContentRecord with passed identifier and locator of the content.
      *
      * @param identifier the identifier of the file.
-     * @param content    the content of the file as {@link Byte} array.
+     * @param locator    the locator of the content of the file in the {@link BlobStore}.
      */
-    public FileContentRecord(FileId identifier, FileContent content) {
+    public FileContentRecord(FileId identifier, BlobLocator locator) {
 
         this.identifier = checkNotNull(identifier);
-        this.content = checkNotNull(content);
+        this.locator = checkNotNull(locator);
     }
 
     public static FileContentRecord fromDto(Dto dto) {
-        return new FileContentRecord(new FileId(dto.file_id), new FileContent(dto.link));
+        return new FileContentRecord(new FileId(dto.file_id), new BlobLocator(dto.link));
     }
 
     /**
@@ -47,12 +46,21 @@ public final class FileContentRecord implements Record<FileId> {
     }
 
     /**
-     * Retrieves the content of the file.
+     * Retrieves the locator of the content of the file.
+     *
+     * @return the locator of the file content.
+     */
+    public BlobLocator locator() {
+        return locator;
+    }
+
+    /**
+     * Retrieves the encoding the content of the file is kept with.
      *
-     * @return the file content.
+     * @return the encoding of the file content.
      */
-    public FileContent content() {
-        return content;
+    public ContentEncoding encoding() {
+        return ContentEncoding.of(locator);
     }
 
     @Override
@@ -69,12 +77,12 @@ public final class FileContentRecord implements Record<FileId> {
         FileContentRecord that = (FileContentRecord) o;
 
         return identifier.equals(that.identifier) &&
-            content.equals(that.content);
+            locator.equals(that.locator);
     }
 
     @Override
     public int hashCode() {
-        return hash(identifier, content);
+        return hash(identifier, locator);
     }
 
     public static final class Dto implements RecordDto {
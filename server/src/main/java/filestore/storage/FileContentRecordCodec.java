@@ -0,0 +1,32 @@
+package filestore.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The {@link RecordCodec} of {@link FileContentRecord}s.
+ */
+public final class FileContentRecordCodec implements RecordCodec<FileId, FileContentRecord> {
+
+    @Override
+    public void write(FileContentRecord record, DataOutput output) throws IOException {
+
+        output.writeUTF(record.identifier().value());
+        output.writeUTF(record.locator().value());
+    }
+
+    @Override
+    public FileContentRecord read(DataInput input) throws IOException {
+
+        FileId identifier = new FileId(input.readUTF());
+        BlobLocator locator = new BlobLocator(input.readUTF());
+
+        return new FileContentRecord(identifier, locator);
+    }
+
+    @Override
+    public FileId identifier(String value) {
+        return new FileId(value);
+    }
+}
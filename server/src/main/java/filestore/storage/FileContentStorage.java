@@ -1,9 +1,458 @@
 package filestore.storage;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import io.nure.filestore.api.FileContent;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+
 /**
  * The {@link Storage} of {@link FileContentRecord}s.
  *
- * <p>Each record is identified among others by {@link FileId}.
+ * <p>Each record is identified among others by {@link FileId}. The records keep only locators of the contents of the
+ * files, the contents themselves are kept in {@link BlobStore}.
+ *
+ * <p>The contents are addressed by SHA-256 hash of their bytes, so files with equal contents share one blob. The
+ * number of records with the same locator is the reference count of the blob: the blob is written only for the first
+ * reference and deleted together with the last one.
+ *
+ * <p>As the locators are the hashes, a content that is already kept can be found by the hash and referenced by a new
+ * record without transferring it again.
+ *
+ * <p>The contents of compressible {@link FileType}s are compressed on write with the {@link ContentEncoding} of the
+ * storage and decompressed on read. They can also be read as they are kept, to send them compressed to clients.
+ *
+ * <p>A content may have a thumbnail, that is kept in its own blob next to the content. The thumbnail is addressed by
+ * the hash of the content, so the files with equal contents share it, and it is deleted together with the content.
  */
 public class FileContentStorage extends InMemoryStorage<FileId, FileContentRecord> {
+
+    /**
+     * The extension of the locators of the thumbnails of the contents.
+     */
+    private static final String THUMBNAIL_EXTENSION = ".thumbnail";
+
+    /**
+     * The number of locks that guard the reference counts of the blobs.
+     */
+    private static final int BLOB_LOCK_STRIPES = 256;
+
+    /**
+     * The index of the records by the locators of their contents.
+     */
+    private final MultiIndex<BlobLocator, FileId, FileContentRecord> locatorIndex =
+        multiIndex(FileContentRecord::locator);
+
+    /**
+     * Locks that make the check of the reference count and the write or delete of the blob atomic. The lock is taken
+     * by the hash of the content, so the blobs of the content in all encodings and its thumbnail share one lock.
+     */
+    private final Striped<Lock> blobLocks = Striped.lock(BLOB_LOCK_STRIPES);
+
+    /**
+     * The store of the contents of the files.
+     */
+    private final BlobStore blobStore;
+
+    /**
+     * The encoding of the contents of compressible {@link FileType}s.
+     */
+    private final ContentEncoding compression;
+
+    /**
+     * Instantiates FileContentStorage.
+     *
+     * @param blobStore   the store of the contents of the files.
+     * @param compression the encoding of the contents of compressible {@link FileType}s,
+     *                    {@link ContentEncoding#IDENTITY} to keep all contents uncompressed.
+     */
+    public FileContentStorage(BlobStore blobStore, ContentEncoding compression) {
+
+        this.blobStore = checkNotNull(blobStore);
+        this.compression = checkNotNull(compression);
+    }
+
+    /**
+     * Puts the record that references the content of the file into the storage. The content is streamed into
+     * {@link BlobStore} chunk by chunk while its hash is calculated, and is kept there only if no other record
+     * references the same content.
+     *
+     * <p>The content is committed before the record is put, so the record never points to a missing content.
+     *
+     * @param identifier the identifier of the file.
+     * @param content    the content of the file. It is read to the end, but not closed.
+     * @param fileType   the type of the file, that defines whether the content is compressed.
+     * @return the stored record.
+     * @throws BlobStoreException if the content cannot be read or written.
+     */
+    public FileContentRecord store(FileId identifier, FileContent content, FileType fileType) {
+
+        checkNotNull(identifier);
+        checkNotNull(content);
+
+        ContentEncoding encoding = ContentEncoding.isCompressible(fileType) ? compression : ContentEncoding.IDENTITY;
+
+        try (BlobWriter writer = blobStore.create()) {
+
+            BlobLocator locator = write(content, writer, encoding);
+            FileContentRecord record = new FileContentRecord(identifier, locator);
+            Lock lock = blobLock(locator);
+            lock.lock();
+
+            try {
+
+                if (locatorIndex.count(locator) == 0) {
+                    writer.commit(locator);
+                }
+
+                put(record);
+
+            } finally {
+                lock.unlock();
+            }
+
+            return record;
+
+        } catch (IOException e) {
+
+            throw new BlobStoreException(format("Cannot write content of the file \"%s\".", identifier.value()), e);
+        }
+    }
+
+    /**
+     * Puts the record that references the content, that is already kept for other records, into the storage. The
+     * content is not transferred.
+     *
+     * @param identifier the identifier of the file.
+     * @param locator    the locator of the kept content.
+     * @return the stored record wrapped in {@link Optional} or {@link Optional#empty()} if the content is no longer
+     * kept, because all records that referenced it were deleted.
+     */
+    public Optional<FileContentRecord> link(FileId identifier, BlobLocator locator) {
+
+        checkNotNull(identifier);
+        checkNotNull(locator);
+
+        Lock lock = blobLock(locator);
+        lock.lock();
+
+        try {
+
+            if (locatorIndex.count(locator) == 0) {
+                return Optional.empty();
+            }
+
+            FileContentRecord record = new FileContentRecord(identifier, locator);
+            put(record);
+
+            return Optional.of(record);
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Finds the records that reference the content with the hash, in any encoding.
+     *
+     * @param hash the SHA-256 hash of the bytes of the content in lowercase hex.
+     * @return the records that reference the content, empty if the content is not kept.
+     */
+    public Collection<FileContentRecord> findByHash(String hash) {
+
+        checkNotNull(hash);
+
+        List<FileContentRecord> records = new ArrayList<>();
+
+        for (ContentEncoding encoding : ContentEncoding.values()) {
+            records.addAll(locatorIndex.get(encoding.locate(hash)));
+        }
+
+        return records;
+    }
+
+    /**
+     * Keeps the thumbnail of the content of the file. The thumbnail is kept only while the content is referenced, and
+     * replaces the thumbnail that is already kept for the content.
+     *
+     * @param identifier the identifier of the file.
+     * @param thumbnail  the thumbnail of the content. It is read to the end, but not closed.
+     * @return {@code true} if the thumbnail is kept, {@code false} if the file was not found.
+     * @throws BlobStoreException if the thumbnail cannot be read or written.
+     */
+    public boolean storeThumbnail(FileId identifier, FileContent thumbnail) {
+
+        checkNotNull(thumbnail);
+
+        Optional<FileContentRecord> record = get(identifier);
+
+        if (!record.isPresent()) {
+            return false;
+        }
+
+        BlobLocator locator = record.get().locator();
+
+        try (BlobWriter writer = blobStore.create()) {
+
+            write(thumbnail, writer, ContentEncoding.IDENTITY);
+
+            Lock lock = blobLock(locator);
+            lock.lock();
+
+            try {
+
+                // The content may be deleted while its thumbnail is written, and the thumbnail would be left over.
+                if (findByHash(ContentEncoding.of(locator).name(locator)).isEmpty()) {
+                    return false;
+                }
+
+                writer.commit(thumbnailLocator(locator));
+
+                return true;
+
+            } finally {
+                lock.unlock();
+            }
+
+        } catch (IOException e) {
+
+            throw new BlobStoreException(format("Cannot write thumbnail of the file \"%s\".", identifier.value()), e);
+        }
+    }
+
+    /**
+     * Opens the thumbnail of the content of the file for reading.
+     *
+     * @param identifier the identifier of the file.
+     * @return the thumbnail wrapped in {@link Optional} or {@link Optional#empty()} if the file was not found or its
+     * thumbnail is not kept. The thumbnail must be closed by the caller.
+     * @throws BlobStoreException if the thumbnail cannot be opened.
+     */
+    public Optional<FileContent> thumbnail(FileId identifier) {
+
+        Optional<FileContentRecord> record = get(identifier);
+
+        if (!record.isPresent()) {
+            return Optional.empty();
+        }
+
+        try {
+
+            return Optional.of(new FileContent(blobStore.open(thumbnailLocator(record.get().locator()))));
+
+        } catch (NoSuchFileException e) {
+
+            return Optional.empty();
+
+        } catch (IOException e) {
+
+            throw new BlobStoreException(format("Cannot read thumbnail of the file \"%s\".", identifier.value()), e);
+        }
+    }
+
+    /**
+     * Creates the locator of the thumbnail of the content. The thumbnail of the content is the same in any encoding.
+     *
+     * @param locator the locator of the content.
+     * @return the locator of the thumbnail, that is SHA-256 hash of the content with the thumbnail extension.
+     */
+    public static BlobLocator thumbnailLocator(BlobLocator locator) {
+
+        return new BlobLocator(ContentEncoding.of(locator).name(locator) + THUMBNAIL_EXTENSION);
+    }
+
+    /**
+     * Encodes the content into the writer and calculates its locator.
+     *
+     * @param content  the content to write.
+     * @param writer   the writer of the content.
+     * @param encoding the encoding of the written content.
+     * @return the locator of the content, that is SHA-256 hash of its bytes with the extension of the encoding.
+     * @throws IOException if the content cannot be read or written.
+     */
+    private static BlobLocator write(FileContent content, BlobWriter writer, ContentEncoding encoding)
+        throws IOException {
+
+        Hasher hasher = Hashing.sha256().newHasher();
+        ByteBuffer chunk = BlobStore.allocateChunk();
+
+        try (WritableByteChannel encoder = encoding.encode(writer)) {
+
+            while (content.channel().read(chunk) != -1) {
+
+                chunk.flip();
+                hasher.putBytes(chunk.duplicate());
+
+                while (chunk.hasRemaining()) {
+                    encoder.write(chunk);
+                }
+
+                chunk.clear();
+            }
+        }
+
+        return encoding.locate(hasher.hash().toString());
+    }
+
+    /**
+     * Opens the content of the file in {@link BlobStore} for reading. The content is decoded while it is read.
+     *
+     * @param identifier the identifier of the file.
+     * @return the content of the file wrapped in {@link Optional} or {@link Optional#empty()} if the file was not
+     * found. The content must be closed by the caller.
+     * @throws BlobStoreException if the content cannot be opened.
+     */
+    public Optional<FileContent> content(FileId identifier) {
+
+        Optional<FileContentRecord> record = get(identifier);
+
+        if (!record.isPresent()) {
+            return Optional.empty();
+        }
+
+        BlobLocator locator = record.get().locator();
+        ReadableByteChannel channel = null;
+
+        try {
+
+            channel = blobStore.open(locator);
+
+            return Optional.of(new FileContent(ContentEncoding.of(locator).decode(channel)));
+
+        } catch (IOException e) {
+
+            closeAfterError(channel, e);
+
+            throw new BlobStoreException(format("Cannot read content of the file \"%s\".", identifier.value()), e);
+        }
+    }
+
+    /**
+     * Opens the content of the file in {@link BlobStore} for reading as it is kept, without decoding.
+     *
+     * @param identifier the identifier of the file.
+     * @return the encoded content of the file wrapped in {@link Optional} or {@link Optional#empty()} if the file was
+     * not found. The content must be closed by the caller. Its encoding is {@link FileContent#encoding()}.
+     * @throws BlobStoreException if the content cannot be opened.
+     */
+    public Optional<FileContent> encodedContent(FileId identifier) {
+
+        Optional<FileContentRecord> record = get(identifier);
+
+        if (!record.isPresent()) {
+            return Optional.empty();
+        }
+
+        try {
+
+            BlobLocator locator = record.get().locator();
+
+            return Optional.of(new FileContent(blobStore.open(locator), ContentEncoding.of(locator)));
+
+        } catch (IOException e) {
+
+            throw new BlobStoreException(format("Cannot read content of the file \"%s\".", identifier.value()), e);
+        }
+    }
+
+    /**
+     * Deletes the record from the storage. Deletes its content from {@link BlobStore} if no other record references
+     * it, and the thumbnail of the content if no record references the content in any encoding.
+     *
+     * @param identifier - {@link FileId} of record to delete.
+     * @return deleted record wrapped into {@link Optional} or {@link Optional#empty()} if record was not found in the
+     * storage.
+     * @throws BlobStoreException if the content cannot be deleted.
+     */
+    @Override
+    public Optional<FileContentRecord> delete(FileId identifier) {
+
+        Optional<FileContentRecord> record = get(identifier);
+
+        if (!record.isPresent()) {
+            return Optional.empty();
+        }
+
+        BlobLocator locator = record.get().locator();
+        Lock lock = blobLock(locator);
+        lock.lock();
+
+        try {
+
+            Optional<FileContentRecord> deleted = super.delete(identifier);
+
+            if (deleted.isPresent() && locatorIndex.count(locator) == 0) {
+
+                blobStore.delete(locator);
+
+                // The thumbnail is shared by the content in all encodings.
+                if (findByHash(ContentEncoding.of(locator).name(locator)).isEmpty()) {
+                    blobStore.delete(thumbnailLocator(locator));
+                }
+            }
+
+            return deleted;
+
+        } catch (IOException e) {
+
+            throw new BlobStoreException(format("Cannot delete content of the file \"%s\".", identifier.value()), e);
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the channel because of the error. The error of the close is suppressed by the original error.
+     *
+     * @param channel the channel to close, may be {@code null}.
+     * @param error   the error that caused the close.
+     */
+    private static void closeAfterError(ReadableByteChannel channel, IOException error) {
+
+        if (channel != null) {
+
+            try {
+                channel.close();
+            } catch (IOException e) {
+                error.addSuppressed(e);
+            }
+        }
+    }
+
+    /**
+     * Retrieves the lock of the blob. The blobs with the same hash share the lock.
+     *
+     * @param locator the locator of the blob.
+     * @return the lock of the blob.
+     */
+    private Lock blobLock(BlobLocator locator) {
+
+        return blobLocks.get(ContentEncoding.of(locator).name(locator));
+    }
+
+    /**
+     * Calculates the ratio of the number of stored files to the number of blobs that keep their contents.
+     *
+     * @return the deduplication ratio, {@code 1} if the storage is empty.
+     */
+    public double deduplicationRatio() {
+
+        int blobs = locatorIndex.keyCount();
+
+        return blobs == 0 ? 1 : (double) getAll().size() / blobs;
+    }
 }
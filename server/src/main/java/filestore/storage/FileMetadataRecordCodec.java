@@ -0,0 +1,40 @@
+package filestore.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The {@link RecordCodec} of {@link FileMetadataRecord}s.
+ */
+public final class FileMetadataRecordCodec implements RecordCodec<FileId, FileMetadataRecord> {
+
+    @Override
+    public void write(FileMetadataRecord record, DataOutput output) throws IOException {
+
+        output.writeUTF(record.name().value());
+        output.writeUTF(record.identifier().value());
+        output.writeUTF(record.fileType().name());
+        output.writeLong(record.size().value());
+        output.writeUTF(record.parentId().value());
+        output.writeUTF(record.ownerId().value());
+    }
+
+    @Override
+    public FileMetadataRecord read(DataInput input) throws IOException {
+
+        return new FileMetadataRecord(
+            new FileName(input.readUTF()),
+            new FileId(input.readUTF()),
+            FileType.valueOf(input.readUTF()),
+            new FileSize(input.readLong()),
+            new FolderId(input.readUTF()),
+            new UserId(input.readUTF())
+        );
+    }
+
+    @Override
+    public FileId identifier(String value) {
+        return new FileId(value);
+    }
+}
@@ -1,15 +1,24 @@
 package filestore.storage;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
-import static java.util.stream.Collectors.toCollection;
-
 /**
  * The {@link Storage} of {@link FileMetadataRecord}s. Each record is identified among others by {@link FileId}.
  */
 public class FileMetadataStorage extends InMemoryStorage<FileId, FileMetadataRecord> {
 
+    /**
+     * The index of files by their parent folder.
+     */
+    private final MultiIndex<FolderId, FileId, FileMetadataRecord> childrenIndex =
+        multiIndex(FileMetadataRecord::parentId);
+
+    /**
+     * The versions of the files of folders.
+     */
+    private final VersionIndex<FolderId, FileId, FileMetadataRecord> childrenVersions =
+        versionIndex(FileMetadataRecord::parentId);
+
     /**
      * Retrieves {@link Collection} of children {@link FileMetadataRecord}s of parent {@link FolderRecord} with
      * {@link FolderId}.
@@ -19,9 +28,18 @@ public class FileMetadataStorage extends InMemoryStorage<FileId, FileMetadataRec
      */
     public Collection<FileMetadataRecord> get(FolderId parentFolderId) {
 
-        return getAll()
-            .stream()
-            .filter(record -> record.parentId().equals(parentFolderId))
-            .collect(toCollection(ArrayList::new));
+        return childrenIndex.get(parentFolderId);
+    }
+
+    /**
+     * Retrieves the version of the children {@link FileMetadataRecord}s of parent {@link FolderRecord} with
+     * {@link FolderId}. The version changes whenever a file of the folder is uploaded, renamed, moved or removed.
+     *
+     * @param parentFolderId identifier of parent folder.
+     * @return the current version of the files of the folder.
+     */
+    public long childrenVersion(FolderId parentFolderId) {
+
+        return childrenVersions.version(parentFolderId);
     }
 }
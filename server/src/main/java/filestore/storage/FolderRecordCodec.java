@@ -0,0 +1,41 @@
+package filestore.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The {@link RecordCodec} of {@link FolderRecord}s.
+ */
+public final class FolderRecordCodec implements RecordCodec<FolderId, FolderRecord> {
+
+    @Override
+    public void write(FolderRecord record, DataOutput output) throws IOException {
+
+        output.writeUTF(record.identifier().value());
+        output.writeUTF(record.name().value());
+        output.writeBoolean(record.parentId() != null);
+
+        if (record.parentId() != null) {
+            output.writeUTF(record.parentId().value());
+        }
+
+        output.writeUTF(record.ownerId().value());
+    }
+
+    @Override
+    public FolderRecord read(DataInput input) throws IOException {
+
+        FolderId identifier = new FolderId(input.readUTF());
+        FolderName name = new FolderName(input.readUTF());
+        FolderId parentId = input.readBoolean() ? new FolderId(input.readUTF()) : null;
+        UserId ownerId = new UserId(input.readUTF());
+
+        return new FolderRecord(identifier, name, parentId, ownerId);
+    }
+
+    @Override
+    public FolderId identifier(String value) {
+        return new FolderId(value);
+    }
+}
@@ -1,16 +1,38 @@
 package filestore.storage;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Optional;
 
-import static java.util.stream.Collectors.toCollection;
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * A {@link Storage} of {@link FolderRecord}s. Each record is identified among others by {@link FolderId}.
  */
 public class FolderStorage extends InMemoryStorage<FolderId, FolderRecord> {
 
+    /**
+     * The index of folders by their parent folder.
+     */
+    private final MultiIndex<FolderId, FolderId, FolderRecord> childrenIndex = multiIndex(FolderRecord::parentId);
+
+    /**
+     * The index of folders by their parent folder and owner.
+     */
+    private final MultiIndex<CompositeKey, FolderId, FolderRecord> childrenByOwnerIndex =
+        multiIndex(record -> CompositeKey.of(record.parentId(), record.ownerId()));
+
+    /**
+     * The index of root folders by their owners.
+     */
+    private final UniqueIndex<UserId, FolderId, FolderRecord> rootIndex =
+        uniqueIndex(record -> record.parentId() == null ? record.ownerId() : null);
+
+    /**
+     * The versions of the children of folders.
+     */
+    private final VersionIndex<FolderId, FolderId, FolderRecord> childrenVersions =
+        versionIndex(FolderRecord::parentId);
+
     /**
      * Retrieves root {@link FolderRecord} of the user with {@link UserId}.
      *
@@ -20,10 +42,7 @@ public class FolderStorage extends InMemoryStorage<FolderId, FolderRecord> {
      */
     public Optional<FolderRecord> getRoot(UserId userId) {
 
-        return getAll()
-            .stream()
-            .filter(record -> record.ownerId().equals(userId) && record.parentId() == null)
-            .findFirst();
+        return rootIndex.get(userId);
     }
 
     /**
@@ -34,10 +53,35 @@ public class FolderStorage extends InMemoryStorage<FolderId, FolderRecord> {
      */
     public Collection<FolderRecord> getChildren(FolderId rootFolderId) {
 
-        return getAll()
-            .stream()
-            .filter(record -> record.parentId() != null && record.parentId().equals(rootFolderId))
-            .collect(toCollection(ArrayList::new));
+        return childrenIndex.get(rootFolderId);
+    }
+
+    /**
+     * Retrieves the version of the children {@link FolderRecord}s of the folder with {@link FolderId}. The version
+     * changes whenever a child folder is created, renamed, moved or deleted.
+     *
+     * @param parentFolderId identifier of the parent folder record.
+     * @return the current version of the children.
+     */
+    public long childrenVersion(FolderId parentFolderId) {
+
+        return childrenVersions.version(parentFolderId);
+    }
+
+    /**
+     * Retrieves children {@link FolderRecord}s of the folder with {@link FolderId} that are owned by the user with
+     * {@link UserId}.
+     *
+     * @param parentFolderId identifier of the parent folder record.
+     * @param ownerId        identifier of the owner of the children folders.
+     * @return children of the parent folder owned by the user.
+     */
+    public Collection<FolderRecord> getChildren(FolderId parentFolderId, UserId ownerId) {
+
+        checkNotNull(parentFolderId);
+        checkNotNull(ownerId);
+
+        return childrenByOwnerIndex.get(CompositeKey.of(parentFolderId, ownerId));
     }
 
     /**
@@ -49,9 +93,8 @@ public class FolderStorage extends InMemoryStorage<FolderId, FolderRecord> {
      */
     public Optional<FolderRecord> get(FolderId folderId, UserId ownerId) {
 
-        return getAll()
-            .stream()
-            .filter(record -> record.identifier().equals(folderId) && record.ownerId().equals(ownerId))
-            .findFirst();
+        checkNotNull(ownerId);
+
+        return get(folderId).filter(record -> record.ownerId().equals(ownerId));
     }
 }
@@ -0,0 +1,144 @@
+package filestore.storage;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The approximate counter of the frequencies of the keys, that takes a fixed amount of memory regardless of the number
+ * of the keys (count-min sketch).
+ *
+ * <p>Each key increments one counter in each of the rows of the table, chosen by a different hash function. The
+ * frequency of the key is the minimum of its counters, so collisions of the keys can only overestimate it. The
+ * counters saturate at {@link #MAX_FREQUENCY} and are halved after a number of increments, so the sketch forgets the
+ * keys that were popular only in the past.
+ *
+ * <p>This implementation is not thread-safe.
+ *
+ * @param <K> - counted key.
+ */
+final class FrequencySketch<K> {
+
+    /**
+     * The maximal frequency of a key.
+     */
+    static final int MAX_FREQUENCY = 15;
+
+    /**
+     * The seeds of the hash functions of the rows of the table.
+     */
+    private static final int[] SEEDS = {0x97CB3127, 0xB1A2F6D5, 0x5D8E8B7B, 0x3C6EF372};
+
+    /**
+     * The number of increments after which the counters are halved, per counter in a row.
+     */
+    private static final int SAMPLE_FACTOR = 10;
+
+    /**
+     * The counters, a row per hash function.
+     */
+    private final byte[][] table;
+
+    /**
+     * The mask that maps a hash to a counter of a row.
+     */
+    private final int mask;
+
+    /**
+     * The number of increments after which the counters are halved.
+     */
+    private final int sampleSize;
+
+    /**
+     * The number of increments since the counters were halved.
+     */
+    private int additions;
+
+    /**
+     * Instantiates FrequencySketch.
+     *
+     * @param expectedKeys the expected number of distinct keys, that defines the width of the table.
+     */
+    FrequencySketch(int expectedKeys) {
+
+        checkArgument(expectedKeys > 0, "Expected number of keys must be positive: %s", expectedKeys);
+
+        int width = Integer.highestOneBit(Math.min(expectedKeys, 1 << 30) - 1) << 1;
+
+        table = new byte[SEEDS.length][Math.max(width, 16)];
+        mask = table[0].length - 1;
+        sampleSize = SAMPLE_FACTOR * table[0].length;
+    }
+
+    /**
+     * Counts one more occurrence of the key.
+     *
+     * @param key the occurred key.
+     */
+    void increment(K key) {
+
+        int hash = checkNotNull(key).hashCode();
+        boolean incremented = false;
+
+        for (int row = 0; row < table.length; ++row) {
+
+            int index = index(hash, row);
+
+            if (table[row][index] < MAX_FREQUENCY) {
+
+                ++table[row][index];
+                incremented = true;
+            }
+        }
+
+        if (incremented && ++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    /**
+     * Estimates the frequency of the key.
+     *
+     * @param key the key.
+     * @return the estimated number of recent occurrences of the key, at most {@link #MAX_FREQUENCY}.
+     */
+    int frequency(K key) {
+
+        int hash = checkNotNull(key).hashCode();
+        int frequency = MAX_FREQUENCY;
+
+        for (int row = 0; row < table.length; ++row) {
+            frequency = Math.min(frequency, table[row][index(hash, row)]);
+        }
+
+        return frequency;
+    }
+
+    /**
+     * Halves all counters.
+     */
+    private void age() {
+
+        for (byte[] row : table) {
+
+            for (int index = 0; index < row.length; ++index) {
+                row[index] >>>= 1;
+            }
+        }
+
+        additions /= 2;
+    }
+
+    /**
+     * Calculates the index of the counter of the key in the row.
+     *
+     * @param hash the hash code of the key.
+     * @param row  the row of the table.
+     * @return the index of the counter.
+     */
+    private int index(int hash, int row) {
+
+        int mixed = (hash ^ SEEDS[row]) * 0x9E3779B9;
+
+        return (mixed ^ (mixed >>> 16)) & mask;
+    }
+}
@@ -1,39 +1,103 @@
 package filestore.storage;
 
+import com.google.common.util.concurrent.Striped;
+import org.slf4j.Logger;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
-import static java.util.Collections.synchronizedMap;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Collections.unmodifiableCollection;
 import static java.util.Optional.ofNullable;
+import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * Abstract implementation of {@link Storage} that stores {@link Record}s in JVM memory.
  *
- * <p>This implementation is based on {@link HashMap} and is synchronized.
+ * <p>This implementation is based on {@link ConcurrentHashMap} and is thread-safe. Reads never block. Modifications
+ * of the record are serialized by a lock, striped by {@link RecordId}, so modifications of different records mostly
+ * run in parallel.
+ *
+ * <p>Subclasses declare secondary indexes {@link StorageIndex} of the stored records with
+ * {@link #uniqueIndex(Function)}, {@link #multiIndex(Function)} and {@link #versionIndex(Function)}. The indexes are
+ * updated together with the primary map while the lock of the record is held.
+ *
+ * <p>The storage may be made durable by attaching {@link StorageJournal} with {@link #attachJournal(StorageJournal)}.
+ * Then each modification is logged in the journal, and the journal is replayed when it is attached. With
+ * {@link StorageSnapshot} attached as well, {@link #checkpoint()} saves all records, so only the tail of the journal
+ * is replayed on startup.
  *
  * @param <I> - identifier {@link RecordId} of record {@link Record}.
  * @param <R> - record - unit of data that is stored in storage.
  */
 public abstract class InMemoryStorage<I extends RecordId, R extends Record<I>> implements Storage<I, R> {
 
+    private static final Logger logger = getLogger(InMemoryStorage.class);
+
+    /**
+     * The number of locks that guard modifications of records.
+     */
+    private static final int LOCK_STRIPES = 256;
+
     /**
      * Actual storage of records.
      */
-    private final Map<I, R> storage = synchronizedMap(new HashMap<>());
+    private final ConcurrentMap<I, R> storage = new ConcurrentHashMap<>();
+
+    /**
+     * Locks that serialize modifications of the records with the same {@link RecordId}.
+     */
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+    /**
+     * All declared indexes of the storage.
+     */
+    private final List<StorageIndex<?, I, R>> indexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * Declared unique indexes of the storage.
+     */
+    private final List<UniqueIndex<?, I, R>> uniqueIndexes = new CopyOnWriteArrayList<>();
+
+    /**
+     * The journal of modifications of the storage or {@code null} if the storage is not durable.
+     */
+    private volatile StorageJournal<I, R> journal;
+
+    /**
+     * The snapshot of the storage or {@code null} if the storage is not checkpointed.
+     */
+    private volatile StorageSnapshot<I, R> snapshot;
+
+    /**
+     * Serializes checkpoints of the storage.
+     */
+    private final Object checkpointLock = new Object();
 
     /**
      * Retrieves {@link Collection} of all {@link Record}s that are currently in the storage.
      *
-     * <p>Constant-time operation.
+     * <p>Constant-time operation. The returned collection is an unmodifiable live view of the storage. Its iteration
+     * is weakly consistent: it never throws {@link java.util.ConcurrentModificationException} and may or may not
+     * reflect modifications made after the iteration was started.
      *
      * @return {@link Collection} of all storage records {@link Record}.
      */
     @Override
     public Collection<R> getAll() {
-        return storage.values();
+        return unmodifiableCollection(storage.values());
     }
 
     /**
@@ -54,13 +118,68 @@ public abstract class InMemoryStorage<I extends RecordId, R extends Record<I>> i
      * {@link RecordId}.
      *
      * @param record - {@link Record} to put in the storage.
+     * @throws IllegalArgumentException if a key of any {@link UniqueIndex} of the record is taken by another record.
      */
     @Override
     public void put(R record) {
 
-        checkNotNull(record);
+        checkArgument(
+            putIfUnique(record),
+            "A unique key of the record with identifier \"%s\" is taken by another record.",
+            record.identifier().value()
+        );
+    }
+
+    /**
+     * Puts the batch of records {@link Record} into the storage. Replaces existing records if they were found by
+     * their {@link RecordId}s.
+     *
+     * <p>The records are put one by one, and the entries of the journal are awaited only once for the whole batch, so
+     * the batch shares one group commit of the journal instead of waiting for it record by record. The batch is not
+     * atomic: the records put before a failed one stay in the storage.
+     *
+     * @param records the records to put in the storage.
+     * @throws IllegalArgumentException if a key of any {@link UniqueIndex} of a record is taken by another record.
+     */
+    public void putAll(Collection<R> records) {
+
+        checkNotNull(records);
+
+        List<CompletableFuture<Long>> logged = new ArrayList<>(records.size());
+
+        try {
+
+            for (R record : records) {
+
+                checkNotNull(record);
+
+                I identifier = checkNotNull(record.identifier());
+                Lock lock = locks.get(identifier);
+                lock.lock();
+
+                try {
+
+                    checkArgument(
+                        store(record),
+                        "A unique key of the record with identifier \"%s\" is taken by another record.",
+                        identifier.value()
+                    );
+
+                    StorageJournal<I, R> currentJournal = journal;
+
+                    if (currentJournal != null) {
+                        logged.add(currentJournal.logPut(record));
+                    }
+
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+        } finally {
 
-        storage.put(checkNotNull(record.identifier()), record);
+            logged.forEach(InMemoryStorage::awaitJournal);
+        }
     }
 
     /**
@@ -72,6 +191,298 @@ public abstract class InMemoryStorage<I extends RecordId, R extends Record<I>> i
      */
     @Override
     public Optional<R> delete(I identifier) {
-        return ofNullable(storage.remove(checkNotNull(identifier)));
+
+        checkNotNull(identifier);
+
+        CompletableFuture<Long> logged = null;
+        Lock lock = locks.get(identifier);
+        lock.lock();
+
+        try {
+
+            R removed = remove(identifier);
+
+            if (removed == null) {
+                return Optional.empty();
+            }
+
+            StorageJournal<I, R> currentJournal = journal;
+
+            if (currentJournal != null) {
+                logged = currentJournal.logDelete(identifier);
+            }
+
+            return Optional.of(removed);
+
+        } finally {
+
+            lock.unlock();
+
+            awaitJournal(logged);
+        }
+    }
+
+    /**
+     * Attaches the journal to the storage and restores the records logged in it.
+     *
+     * <p>Should be called once, before the storage is used.
+     *
+     * @param storageJournal the journal of modifications of the storage.
+     */
+    public void attachJournal(StorageJournal<I, R> storageJournal) {
+
+        checkNotNull(storageJournal);
+        checkState(journal == null, "The journal is already attached to the storage.");
+
+        storageJournal.replay(this::restore, this::remove);
+
+        journal = storageJournal;
+    }
+
+    /**
+     * Attaches the journal and the snapshot to the storage. Restores the records of the snapshot and then the
+     * records logged in the journal after the snapshot was taken.
+     *
+     * <p>Should be called once, before the storage is used.
+     *
+     * @param storageJournal  the journal of modifications of the storage.
+     * @param storageSnapshot the snapshot of the storage.
+     */
+    public void attachJournal(StorageJournal<I, R> storageJournal, StorageSnapshot<I, R> storageSnapshot) {
+
+        checkNotNull(storageJournal);
+        checkNotNull(storageSnapshot);
+        checkState(journal == null, "The journal is already attached to the storage.");
+
+        long sequence = storageSnapshot.load(this::restore);
+
+        storageJournal.replay(sequence, this::restore, this::remove);
+
+        journal = storageJournal;
+        snapshot = storageSnapshot;
+    }
+
+    /**
+     * Saves all records into the attached {@link StorageSnapshot} and discards the journal entries that it covers.
+     *
+     * <p>Does not block modifications of the storage. The records are read while they are modified, so the snapshot
+     * may contain modifications logged after its sequence number. Replaying them again on startup leads to the same
+     * state of the storage.
+     *
+     * @return the number of saved records.
+     * @throws IllegalStateException if the journal and the snapshot are not attached.
+     */
+    public long checkpoint() {
+
+        StorageJournal<I, R> currentJournal = journal;
+        StorageSnapshot<I, R> currentSnapshot = snapshot;
+
+        checkState(currentJournal != null && currentSnapshot != null, "The snapshot is not attached to the storage.");
+
+        synchronized (checkpointLock) {
+
+            long sequence;
+
+            try {
+
+                sequence = currentJournal.rotate().join();
+
+            } catch (CompletionException e) {
+
+                throw (StorageJournalException) e.getCause();
+            }
+
+            long records = currentSnapshot.write(sequence, storage.values());
+
+            currentJournal.discardThrough(sequence);
+
+            return records;
+        }
+    }
+
+    /**
+     * Puts record {@link Record} into the storage only if none of its keys of {@link UniqueIndex}es are taken by
+     * another record.
+     *
+     * <p>The check and the put is an atomic operation: the keys are reserved in the unique indexes before the record
+     * is put, and are released if any of them is taken.
+     *
+     * @param record the record to put into the storage.
+     * @return {@code true} if the record was put into the storage, {@code false} if any of its unique keys is taken.
+     */
+    protected boolean putIfUnique(R record) {
+
+        checkNotNull(record);
+
+        I identifier = checkNotNull(record.identifier());
+
+        CompletableFuture<Long> logged = null;
+        Lock lock = locks.get(identifier);
+        lock.lock();
+
+        try {
+
+            if (!store(record)) {
+                return false;
+            }
+
+            StorageJournal<I, R> currentJournal = journal;
+
+            if (currentJournal != null) {
+                logged = currentJournal.logPut(record);
+            }
+
+            return true;
+
+        } finally {
+
+            lock.unlock();
+
+            awaitJournal(logged);
+        }
+    }
+
+    /**
+     * Puts the record into the primary map and updates indexes, unless any of its unique keys is taken.
+     *
+     * <p>Should be called while the lock of the record is held.
+     *
+     * @param record the record to put.
+     * @return {@code true} if the record was put, {@code false} if any of its unique keys is taken.
+     */
+    private boolean store(R record) {
+
+        List<UniqueIndex<?, I, R>> reserved = new ArrayList<>();
+
+        for (UniqueIndex<?, I, R> index : uniqueIndexes) {
+
+            UniqueIndex.Reservation reservation = index.reserve(record);
+
+            if (reservation == UniqueIndex.Reservation.TAKEN) {
+
+                reserved.forEach(reservedIndex -> reservedIndex.remove(record));
+
+                return false;
+            }
+
+            if (reservation == UniqueIndex.Reservation.RESERVED) {
+                reserved.add(index);
+            }
+        }
+
+        R previous = storage.put(record.identifier(), record);
+
+        indexes.forEach(index -> index.update(previous, record));
+
+        return true;
+    }
+
+    /**
+     * Removes the record from the primary map and from the indexes.
+     *
+     * <p>Should be called while the lock of the record is held, or before the storage is used.
+     *
+     * @param identifier the identifier of the record to remove.
+     * @return the removed record or {@code null} if there was no such record.
+     */
+    @Nullable
+    private R remove(I identifier) {
+
+        R removed = storage.remove(identifier);
+
+        if (removed != null) {
+            indexes.forEach(index -> index.remove(removed));
+        }
+
+        return removed;
+    }
+
+    /**
+     * Restores the record replayed from the journal.
+     *
+     * @param record the record to restore.
+     */
+    private void restore(R record) {
+
+        if (!store(record) && logger.isWarnEnabled()) {
+            logger.warn("Cannot restore record {}: its unique key is taken.", record.identifier());
+        }
+    }
+
+    /**
+     * Waits until the entry of the journal is written.
+     *
+     * @param logged the result of appending the entry or {@code null} if nothing was logged.
+     * @throws StorageJournalException if the entry cannot be written.
+     */
+    private static void awaitJournal(@Nullable CompletableFuture<?> logged) {
+
+        if (logged == null) {
+            return;
+        }
+
+        try {
+
+            logged.join();
+
+        } catch (CompletionException e) {
+
+            throw (StorageJournalException) e.getCause();
+        }
+    }
+
+    /**
+     * Declares {@link UniqueIndex} of the storage.
+     *
+     * <p>Should be called on the initialization of the subclass before any record is put into the storage.
+     *
+     * @param keyExtractor function that extracts the key of the index from the record.
+     * @param <K>          key of the index.
+     * @return declared index.
+     */
+    protected final <K> UniqueIndex<K, I, R> uniqueIndex(Function<R, K> keyExtractor) {
+
+        UniqueIndex<K, I, R> index = new UniqueIndex<>(keyExtractor, this::get);
+
+        indexes.add(index);
+        uniqueIndexes.add(index);
+
+        return index;
+    }
+
+    /**
+     * Declares {@link MultiIndex} of the storage.
+     *
+     * <p>Should be called on the initialization of the subclass before any record is put into the storage.
+     *
+     * @param keyExtractor function that extracts the key of the index from the record.
+     * @param <K>          key of the index.
+     * @return declared index.
+     */
+    protected final <K> MultiIndex<K, I, R> multiIndex(Function<R, K> keyExtractor) {
+
+        MultiIndex<K, I, R> index = new MultiIndex<>(keyExtractor);
+
+        indexes.add(index);
+
+        return index;
+    }
+
+    /**
+     * Declares {@link VersionIndex} of the storage.
+     *
+     * <p>Should be called on the initialization of the subclass before any record is put into the storage.
+     *
+     * @param keyExtractor function that extracts the key of the index from the record.
+     * @param <K>          key of the index.
+     * @return declared index.
+     */
+    protected final <K> VersionIndex<K, I, R> versionIndex(Function<R, K> keyExtractor) {
+
+        VersionIndex<K, I, R> index = new VersionIndex<>(keyExtractor);
+
+        indexes.add(index);
+
+        return index;
     }
 }
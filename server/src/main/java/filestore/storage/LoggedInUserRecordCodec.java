@@ -0,0 +1,38 @@
+package filestore.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Instant;
+
+/**
+ * The {@link RecordCodec} of {@link LoggedInUserRecord}s.
+ */
+public final class LoggedInUserRecordCodec implements RecordCodec<Token, LoggedInUserRecord> {
+
+    @Override
+    public void write(LoggedInUserRecord record, DataOutput output) throws IOException {
+
+        Instant expirationTime = record.expirationTime().value();
+
+        output.writeUTF(record.identifier().value());
+        output.writeUTF(record.userId().value());
+        output.writeLong(expirationTime.getEpochSecond());
+        output.writeInt(expirationTime.getNano());
+    }
+
+    @Override
+    public LoggedInUserRecord read(DataInput input) throws IOException {
+
+        Token token = new Token(input.readUTF());
+        UserId userId = new UserId(input.readUTF());
+        Instant expirationTime = Instant.ofEpochSecond(input.readLong(), input.readInt());
+
+        return new LoggedInUserRecord(token, userId, new ExpirationTime(expirationTime));
+    }
+
+    @Override
+    public Token identifier(String value) {
+        return new Token(value);
+    }
+}
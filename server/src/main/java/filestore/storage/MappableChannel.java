@@ -0,0 +1,59 @@
+package filestore.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Optional;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+
+/**
+ * The channel of the content of {@link BlobStore}, which rest may be taken as a buffer without copying, for example
+ * when the content is kept in a memory-mapped file or in memory.
+ *
+ * <p>Such a buffer may be written to a socket directly, without copying the content into the Java heap.
+ */
+public interface MappableChannel extends ReadableByteChannel {
+
+    /**
+     * Takes the rest of the content as a read-only buffer. The channel is read to the end.
+     *
+     * @return the buffer with the rest of the content, or {@link Optional#empty()} if it cannot be mapped.
+     * @throws IOException if the content cannot be mapped.
+     */
+    Optional<ByteBuffer> map() throws IOException;
+
+    /**
+     * Takes the rest of the content of the channel as a read-only buffer, if the channel is {@link MappableChannel}
+     * or a {@link FileChannel} of less than 2 GiB.
+     *
+     * @param channel the channel with the content.
+     * @return the buffer with the rest of the content, or {@link Optional#empty()} if it cannot be mapped.
+     * @throws IOException if the content cannot be mapped.
+     */
+    static Optional<ByteBuffer> map(ReadableByteChannel channel) throws IOException {
+
+        if (channel instanceof MappableChannel) {
+            return ((MappableChannel) channel).map();
+        }
+
+        if (channel instanceof FileChannel) {
+
+            FileChannel file = (FileChannel) channel;
+            long position = file.position();
+            long size = file.size();
+
+            if (size - position > Integer.MAX_VALUE) {
+                return Optional.empty();
+            }
+
+            ByteBuffer mapped = file.map(READ_ONLY, position, size - position);
+            file.position(size);
+
+            return Optional.of(mapped);
+        }
+
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,114 @@
+package filestore.storage;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The {@link StorageIndex} that maps each key to any number of {@link Record}s.
+ *
+ * <p>Retrieving records by the key takes time proportional to the number of retrieved records instead of the total
+ * number of records in the storage.
+ *
+ * <p>This implementation is thread-safe. Groups of records are added and removed atomically per key, and reads
+ * never block.
+ *
+ * @param <K> - key of the index.
+ * @param <I> - identifier {@link RecordId} of the indexed record.
+ * @param <R> - indexed record.
+ */
+public final class MultiIndex<K, I extends RecordId, R extends Record<I>> extends StorageIndex<K, I, R> {
+
+    /**
+     * Records grouped by their keys.
+     */
+    private final ConcurrentMap<K, ConcurrentMap<I, R>> records = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates MultiIndex.
+     *
+     * @param keyExtractor function that extracts the key of the index from the record.
+     */
+    MultiIndex(Function<R, K> keyExtractor) {
+        super(keyExtractor);
+    }
+
+    /**
+     * Retrieves records by the key of the index.
+     *
+     * @param key the key of the records.
+     * @return copy of the records with such key.
+     */
+    public Collection<R> get(K key) {
+
+        ConcurrentMap<I, R> group = records.get(checkNotNull(key));
+
+        return group == null ? new ArrayList<>() : new ArrayList<>(group.values());
+    }
+
+    /**
+     * Retrieves the number of records with the key.
+     *
+     * @param key the key of the records.
+     * @return the number of records with such key.
+     */
+    public int count(K key) {
+
+        ConcurrentMap<I, R> group = records.get(checkNotNull(key));
+
+        return group == null ? 0 : group.size();
+    }
+
+    /**
+     * Retrieves the number of distinct keys of the indexed records.
+     *
+     * @return the number of keys.
+     */
+    public int keyCount() {
+
+        return records.size();
+    }
+
+    @Override
+    void update(@Nullable R previous, R record) {
+
+        K key = keyOf(record);
+
+        if (previous != null && !Objects.equals(keyOf(previous), key)) {
+            remove(previous);
+        }
+
+        if (key != null) {
+
+            records.compute(key, (k, group) -> {
+
+                ConcurrentMap<I, R> updatedGroup = group == null ? new ConcurrentHashMap<>() : group;
+                updatedGroup.put(record.identifier(), record);
+
+                return updatedGroup;
+            });
+        }
+    }
+
+    @Override
+    void remove(R record) {
+
+        K key = keyOf(record);
+
+        if (key != null) {
+
+            records.computeIfPresent(key, (k, group) -> {
+
+                group.remove(record.identifier());
+
+                return group.isEmpty() ? null : group;
+            });
+        }
+    }
+}
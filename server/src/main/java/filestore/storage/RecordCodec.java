@@ -0,0 +1,42 @@
+package filestore.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Converts {@link Record}s of the {@link Storage} into their binary representation and back.
+ *
+ * <p>Used to persist records of {@link InMemoryStorage} in {@link StorageJournal}.
+ *
+ * @param <I> - identifier {@link RecordId} of the record.
+ * @param <R> - converted record.
+ */
+public interface RecordCodec<I extends RecordId, R extends Record<I>> {
+
+    /**
+     * Writes the record into the output.
+     *
+     * @param record the record to write.
+     * @param output the destination of the record.
+     * @throws IOException if the output cannot be written.
+     */
+    void write(R record, DataOutput output) throws IOException;
+
+    /**
+     * Reads the record, previously written by {@link #write(Record, DataOutput)}, from the input.
+     *
+     * @param input the source of the record.
+     * @return read record.
+     * @throws IOException if the input cannot be read.
+     */
+    R read(DataInput input) throws IOException;
+
+    /**
+     * Creates {@link RecordId} of the record from its value.
+     *
+     * @param value the value of the identifier.
+     * @return created identifier.
+     */
+    I identifier(String value);
+}
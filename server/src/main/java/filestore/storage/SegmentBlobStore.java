@@ -0,0 +1,837 @@
+package filestore.storage;
+
+import io.nure.filestore.metrics.Counter;
+import io.nure.filestore.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link BlobStore} that packs small contents into large append-only segment files.
+ *
+ * <p>A content that is not larger than the small content limit is appended to the active segment as an entry:
+ * the type of the entry, the locator, the length and the bytes of the content, and CRC32 checksum of all of them.
+ * A deleted content is marked by an appended tombstone entry. Larger contents are passed to another store, one file
+ * per content. The segments are preallocated, so each of them is memory-mapped once and the contents are read
+ * straight from the mapping.
+ *
+ * <p>The index of the contents {@link BlobLocator} -> (segment, offset, length) is kept in memory and is rebuilt on
+ * start by scanning the segments in order. A torn entry at the end of the last segment is overwritten.
+ *
+ * <p>The space of the deleted contents is reclaimed by compaction: the live entries of a sealed segment, that has more
+ * than a half of its bytes deleted, are appended to the active segment and the segment file is deleted.
+ *
+ * <p>The metrics {@code blob.segments.count}, {@code blob.segments.dead.bytes}, {@code blob.segments.compactions} and
+ * {@code blob.segments.reclaimed.bytes} are registered in {@link MetricRegistry}.
+ *
+ * <p>This implementation is thread-safe. Appends and compactions are serialized, reads never block.
+ */
+public final class SegmentBlobStore implements BlobStore, Closeable {
+
+    private static final Logger logger = getLogger(SegmentBlobStore.class);
+
+    /**
+     * The type of the entry with a content.
+     */
+    private static final byte PUT = 1;
+
+    /**
+     * The type of the tombstone of a deleted content.
+     */
+    private static final byte DELETE = 2;
+
+    /**
+     * The size of the type, the length of the locator and the length of the content of an entry.
+     */
+    private static final int ENTRY_HEADER_SIZE = Byte.BYTES + Short.BYTES + Integer.BYTES;
+
+    /**
+     * The maximal part of the size of a segment that dead entries may take before it is compacted.
+     */
+    private static final double MAX_DEAD_FRACTION = 0.5;
+
+    /**
+     * The names of the segment files, that keep the numbers of the segments.
+     */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{10})\\.dat");
+
+    /**
+     * The maximal time to wait for the running compaction on close.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The directory with the segments.
+     */
+    private final Path directory;
+
+    /**
+     * The store of the contents that are larger than the small content limit.
+     */
+    private final BlobStore largeBlobs;
+
+    /**
+     * The size of a segment in bytes.
+     */
+    private final int segmentSize;
+
+    /**
+     * The maximal size of a content that is packed into the segments.
+     */
+    private final int smallBlobLimit;
+
+    /**
+     * The locations of the contents in the segments.
+     */
+    private final ConcurrentMap<BlobLocator, Location> index = new ConcurrentHashMap<>();
+
+    /**
+     * The segments by their numbers.
+     */
+    private final ConcurrentSkipListMap<Integer, Segment> segments = new ConcurrentSkipListMap<>();
+
+    private final Counter compactions;
+
+    private final Counter reclaimedBytes;
+
+    /**
+     * The segment the entries are appended to. Guarded by {@code this}.
+     */
+    private Segment active;
+
+    /**
+     * The executor of the compactions, {@code null} until they are scheduled.
+     */
+    private volatile ScheduledExecutorService compactor;
+
+    /**
+     * Instantiates SegmentBlobStore and restores the index of the contents from the segments in the directory.
+     *
+     * @param directory      the directory with the segments.
+     * @param largeBlobs     the store of the contents that are larger than the small content limit.
+     * @param segmentSize    the size of a segment in bytes.
+     * @param smallBlobLimit the maximal size of a content that is packed into the segments.
+     * @param metrics        the registry to register the metrics of the segments in.
+     * @throws IOException if the segments cannot be read.
+     */
+    public SegmentBlobStore(Path directory, BlobStore largeBlobs, int segmentSize, int smallBlobLimit,
+                            MetricRegistry metrics) throws IOException {
+
+        checkArgument(smallBlobLimit > 0, "Small content limit must be positive: %s", smallBlobLimit);
+        checkArgument(segmentSize >= 2 * smallBlobLimit, "Segment of %s bytes is too small for contents of %s bytes.",
+            segmentSize, smallBlobLimit);
+
+        this.directory = checkNotNull(directory);
+        this.largeBlobs = checkNotNull(largeBlobs);
+        this.segmentSize = segmentSize;
+        this.smallBlobLimit = smallBlobLimit;
+
+        Files.createDirectories(directory);
+        restore();
+
+        compactions = metrics.counter("blob.segments.compactions");
+        reclaimedBytes = metrics.counter("blob.segments.reclaimed.bytes");
+        metrics.gauge("blob.segments.count", segments::size);
+        metrics.gauge("blob.segments.dead.bytes", this::deadBytes);
+    }
+
+    @Override
+    public BlobWriter create() {
+
+        return new SegmentBlobWriter();
+    }
+
+    @Override
+    public ReadableByteChannel open(BlobLocator locator) throws IOException {
+
+        checkNotNull(locator);
+
+        while (true) {
+
+            Location location = index.get(locator);
+
+            if (location == null) {
+                return largeBlobs.open(locator);
+            }
+
+            Segment segment = segments.get(location.segment);
+
+            // The segment is deleted by compaction after the content is moved to another location.
+            if (segment != null) {
+                return new ByteBufferChannel(segment.slice(location.offset, location.length));
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(BlobLocator locator) throws IOException {
+
+        checkNotNull(locator);
+
+        boolean deleted = deleteSmall(locator);
+
+        return largeBlobs.delete(locator) || deleted;
+    }
+
+    @Override
+    public List<BlobLocator> locators() throws IOException {
+
+        List<BlobLocator> locators = new ArrayList<>(index.keySet());
+
+        for (BlobLocator locator : largeBlobs.locators()) {
+
+            // The content is kept on both sides only if the store was stopped while it was replaced.
+            if (!index.containsKey(locator)) {
+                locators.add(locator);
+            }
+        }
+
+        return locators;
+    }
+
+    /**
+     * Deletes the small content from the index and marks it deleted by the tombstone.
+     *
+     * @param locator the locator of the content.
+     * @return {@code true} if the small content existed.
+     * @throws IOException if the tombstone cannot be appended.
+     */
+    private synchronized boolean deleteSmall(BlobLocator locator) throws IOException {
+
+        Location location = index.remove(locator);
+
+        if (location == null) {
+            return false;
+        }
+
+        segments.get(location.segment).addDead(entrySize(locator, location.length));
+
+        long tombstone = append(DELETE, locator, ByteBuffer.allocate(0));
+        active.addDead(tombstone);
+
+        return true;
+    }
+
+    /**
+     * Starts periodic compactions of the segments.
+     *
+     * @param interval the interval between the searches for the segments to compact.
+     */
+    public void scheduleCompactions(Duration interval) {
+
+        checkState(compactor == null, "Compactions are already scheduled.");
+
+        compactor = newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "blob-segments-compaction");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long intervalMillis = interval.toMillis();
+
+        compactor.scheduleWithFixedDelay(this::compact, intervalMillis, intervalMillis, MILLISECONDS);
+    }
+
+    /**
+     * Compacts all sealed segments, that have more than a half of their bytes deleted. A failed compaction is logged
+     * and retried on the next run.
+     */
+    public void compact() {
+
+        for (Segment segment : segments.values()) {
+
+            try {
+
+                synchronized (this) {
+
+                    if (segment != active && segment.dead > segment.end * MAX_DEAD_FRACTION) {
+                        compact(segment);
+                    }
+                }
+
+            } catch (IOException e) {
+
+                if (logger.isErrorEnabled()) {
+                    logger.error(format("Cannot compact segment %s.", segment.file), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the running compaction, stops the compactions and closes the segments.
+     */
+    @Override
+    public void close() {
+
+        ScheduledExecutorService executor = compactor;
+
+        if (executor != null) {
+
+            executor.shutdown();
+
+            try {
+
+                executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized (this) {
+
+            for (Segment segment : segments.values()) {
+
+                try {
+
+                    segment.channel.close();
+
+                } catch (IOException e) {
+
+                    if (logger.isErrorEnabled()) {
+                        logger.error(format("Cannot close segment %s.", segment.file), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Restores the index from the segments in the order of their numbers and opens the last segment for appends.
+     *
+     * @throws IOException if the segments cannot be read.
+     */
+    private void restore() throws IOException {
+
+        List<Integer> numbers;
+
+        try (Stream<Path> files = Files.list(directory)) {
+
+            numbers = files
+                .map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                .filter(Matcher::matches)
+                .map(matcher -> Integer.parseInt(matcher.group(1)))
+                .sorted()
+                .collect(toList());
+        }
+
+        for (int number : numbers) {
+
+            Segment segment = openSegment(number);
+            segments.put(number, segment);
+            scan(segment);
+        }
+
+        synchronized (this) {
+
+            active = segments.isEmpty() ? startSegment(1) : segments.lastEntry().getValue();
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Restored {} contents from {} segments in {}.", index.size(), segments.size(), directory);
+        }
+    }
+
+    /**
+     * Applies the entries of the segment to the index and finds the end of the written entries.
+     *
+     * @param segment the segment to scan.
+     */
+    private void scan(Segment segment) {
+
+        int position = 0;
+
+        while (position < segmentSize) {
+
+            ByteBuffer entry = readEntry(segment, position);
+
+            if (entry == null) {
+                break;
+            }
+
+            byte type = entry.get();
+            BlobLocator locator = readLocator(entry);
+            int length = entry.getInt();
+            int size = entry.limit() + Integer.BYTES;
+
+            if (type == PUT) {
+
+                Location location = new Location(segment.number, position + entry.position(), length);
+                Location previous = index.put(locator, location);
+
+                if (previous != null) {
+                    segments.get(previous.segment).addDead(entrySize(locator, previous.length));
+                }
+
+            } else {
+
+                Location deleted = index.remove(locator);
+
+                if (deleted != null) {
+                    segments.get(deleted.segment).addDead(entrySize(locator, deleted.length));
+                }
+
+                segment.addDead(size);
+            }
+
+            position += size;
+        }
+
+        segment.end = position;
+    }
+
+    /**
+     * Reads the entry of the segment and verifies its checksum.
+     *
+     * @param segment  the segment with the entry.
+     * @param position the position of the entry in the segment.
+     * @return the entry without the checksum, or {@code null} if there are no more valid entries.
+     */
+    private ByteBuffer readEntry(Segment segment, int position) {
+
+        int available = segmentSize - position;
+
+        if (available < ENTRY_HEADER_SIZE + Integer.BYTES) {
+            return null;
+        }
+
+        ByteBuffer header = segment.slice(position, ENTRY_HEADER_SIZE);
+        byte type = header.get();
+        int locatorLength = header.getShort() & 0xFFFF;
+
+        if (type != PUT && type != DELETE || available < ENTRY_HEADER_SIZE + locatorLength + Integer.BYTES) {
+            return null;
+        }
+
+        int length = segment.slice(position + Byte.BYTES + Short.BYTES + locatorLength, Integer.BYTES).getInt();
+        int size = ENTRY_HEADER_SIZE + locatorLength;
+
+        if (length < 0 || length > available - size - Integer.BYTES) {
+            return null;
+        }
+
+        size += length;
+
+        ByteBuffer entry = segment.slice(position, size);
+        CRC32 checksum = new CRC32();
+        checksum.update(entry.duplicate());
+
+        if ((int) checksum.getValue() != segment.slice(position + size, Integer.BYTES).getInt()) {
+
+            if (logger.isWarnEnabled()) {
+                logger.warn("Entry at {} of segment {} is broken, the following entries are ignored.", position,
+                    segment.file);
+            }
+
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Reads the locator of the entry.
+     *
+     * @param entry the entry, positioned at the length of the locator.
+     * @return the locator.
+     */
+    private static BlobLocator readLocator(ByteBuffer entry) {
+
+        byte[] locator = new byte[entry.getShort() & 0xFFFF];
+        entry.get(locator);
+
+        return new BlobLocator(new String(locator, UTF_8));
+    }
+
+    /**
+     * Appends the content to the active segment and forces it to the disk.
+     *
+     * @param locator the locator of the content.
+     * @param content the bytes of the content.
+     * @throws IOException if the content cannot be appended.
+     */
+    private synchronized void put(BlobLocator locator, ByteBuffer content) throws IOException {
+
+        int length = content.remaining();
+        long position = append(PUT, locator, content);
+
+        active.channel.force(false);
+
+        Location previous = index.put(locator, new Location(active.number, (int) position, length));
+
+        if (previous != null) {
+            segments.get(previous.segment).addDead(entrySize(locator, previous.length));
+        }
+    }
+
+    /**
+     * Appends the entry to the active segment. Starts a new segment if the entry doesn't fit into the active one.
+     *
+     * @param type    the type of the entry.
+     * @param locator the locator of the content.
+     * @param content the bytes of the content.
+     * @return the position of the content in the active segment for the put entry, the size of the entry for the
+     * tombstone.
+     * @throws IOException if the entry cannot be written.
+     */
+    private long append(byte type, BlobLocator locator, ByteBuffer content) throws IOException {
+
+        byte[] locatorBytes = locator.value().getBytes(UTF_8);
+        int size = entrySize(locator, content.remaining());
+
+        if (active.end + size > segmentSize) {
+
+            Segment sealed = active;
+            active = startSegment(sealed.number + 1);
+            sealed.channel.force(false);
+        }
+
+        ByteBuffer entry = ByteBuffer.allocate(size);
+        entry.put(type);
+        entry.putShort((short) locatorBytes.length);
+        entry.put(locatorBytes);
+        entry.putInt(content.remaining());
+        entry.put(content);
+
+        CRC32 checksum = new CRC32();
+        checksum.update(entry.array(), 0, entry.position());
+        entry.putInt((int) checksum.getValue());
+        entry.flip();
+
+        int position = active.end;
+
+        while (entry.hasRemaining()) {
+            active.channel.write(entry, position + entry.position());
+        }
+
+        active.end += size;
+
+        return type == PUT ? position + ENTRY_HEADER_SIZE + locatorBytes.length : size;
+    }
+
+    /**
+     * Moves the live contents of the segment to the active segment and deletes the segment.
+     *
+     * <p>The tombstones are moved too, unless there are no older segments with the contents they delete.
+     *
+     * @param segment the segment to compact.
+     * @throws IOException if the segment cannot be compacted.
+     */
+    private void compact(Segment segment) throws IOException {
+
+        boolean oldest = segments.firstKey() == segment.number;
+        int position = 0;
+
+        while (position < segment.end) {
+
+            ByteBuffer entry = readEntry(segment, position);
+
+            if (entry == null) {
+                break;
+            }
+
+            byte type = entry.get();
+            BlobLocator locator = readLocator(entry);
+            int length = entry.getInt();
+            Location location = index.get(locator);
+
+            if (type == PUT && location != null && location.segment == segment.number
+                && location.offset == position + entry.position()) {
+
+                put(locator, entry.slice());
+
+            } else if (type == DELETE && !oldest && location == null) {
+
+                active.addDead(append(DELETE, locator, ByteBuffer.allocate(0)));
+            }
+
+            position += entrySize(locator, length);
+        }
+
+        active.channel.force(false);
+        segments.remove(segment.number);
+        segment.channel.close();
+        Files.delete(segment.file);
+
+        compactions.increment();
+        reclaimedBytes.add(segment.dead);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Compacted segment {}, reclaimed {} bytes.", segment.file, segment.dead);
+        }
+    }
+
+    /**
+     * Creates and opens a new segment.
+     *
+     * @param number the number of the segment.
+     * @return the new segment.
+     * @throws IOException if the segment cannot be created.
+     */
+    private Segment startSegment(int number) throws IOException {
+
+        Path file = segmentFile(number);
+
+        try (RandomAccessFile segmentFile = new RandomAccessFile(file.toFile(), "rw")) {
+            segmentFile.setLength(segmentSize);
+        }
+
+        Segment segment = openSegment(number);
+        segments.put(number, segment);
+
+        return segment;
+    }
+
+    /**
+     * Opens the existing segment and maps it into memory.
+     *
+     * @param number the number of the segment.
+     * @return the opened segment.
+     * @throws IOException if the segment cannot be opened.
+     */
+    private Segment openSegment(int number) throws IOException {
+
+        Path file = segmentFile(number);
+        FileChannel channel = FileChannel.open(file, READ, WRITE);
+
+        try {
+
+            if (channel.size() != segmentSize) {
+                throw new IOException(format("Segment %s has %d bytes instead of %d.", file, channel.size(),
+                    segmentSize));
+            }
+
+            return new Segment(number, file, channel, channel.map(READ_ONLY, 0, segmentSize));
+
+        } catch (IOException e) {
+
+            channel.close();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves the file of the segment.
+     *
+     * @param number the number of the segment.
+     * @return path to the segment file.
+     */
+    private Path segmentFile(int number) {
+
+        return directory.resolve(format("segment-%010d.dat", number));
+    }
+
+    /**
+     * Calculates the size of the entry.
+     *
+     * @param locator the locator of the content.
+     * @param length  the length of the content.
+     * @return the size of the entry with the checksum in bytes.
+     */
+    private static int entrySize(BlobLocator locator, int length) {
+
+        return ENTRY_HEADER_SIZE + locator.value().getBytes(UTF_8).length + length + Integer.BYTES;
+    }
+
+    /**
+     * Calculates the total size of the deleted entries and the tombstones.
+     *
+     * @return the number of bytes that may be reclaimed by compaction.
+     */
+    private long deadBytes() {
+
+        long dead = 0;
+
+        for (Segment segment : segments.values()) {
+            dead += segment.dead;
+        }
+
+        return dead;
+    }
+
+    /**
+     * The location of a content in a segment.
+     */
+    private static final class Location {
+
+        private final int segment;
+
+        private final int offset;
+
+        private final int length;
+
+        private Location(int segment, int offset, int length) {
+
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * A segment file, mapped into memory.
+     */
+    private static final class Segment {
+
+        private final int number;
+
+        private final Path file;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer mapping;
+
+        /**
+         * The size of the written entries. Guarded by the store.
+         */
+        private int end;
+
+        /**
+         * The size of the deleted entries and the tombstones. Written under the lock of the store.
+         */
+        private volatile long dead;
+
+        private Segment(int number, Path file, FileChannel channel, MappedByteBuffer mapping) {
+
+            this.number = number;
+            this.file = file;
+            this.channel = channel;
+            this.mapping = mapping;
+        }
+
+        /**
+         * Creates an independent view of the part of the segment.
+         *
+         * @param offset the offset of the part.
+         * @param length the length of the part.
+         * @return the buffer with the part of the segment.
+         */
+        private ByteBuffer slice(int offset, int length) {
+
+            ByteBuffer slice = mapping.duplicate();
+            slice.position(offset);
+            slice.limit(offset + length);
+
+            return slice.slice();
+        }
+
+        private void addDead(long size) {
+            dead += size;
+        }
+    }
+
+    /**
+     * The {@link BlobWriter} that buffers a small content in memory and passes a large content to the store of large
+     * contents.
+     */
+    private final class SegmentBlobWriter implements BlobWriter {
+
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        /**
+         * The writer of the large content, {@code null} while the content is small.
+         */
+        private BlobWriter largeWriter;
+
+        private boolean open = true;
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+
+            checkState(open, "Writer is closed.");
+
+            int length = source.remaining();
+
+            if (largeWriter == null && buffer.size() + length > smallBlobLimit) {
+
+                largeWriter = largeBlobs.create();
+                largeWriter.write(ByteBuffer.wrap(buffer.toByteArray()));
+                buffer.reset();
+            }
+
+            if (largeWriter != null) {
+                return largeWriter.write(source);
+            }
+
+            byte[] bytes = new byte[length];
+            source.get(bytes);
+            buffer.write(bytes, 0, length);
+
+            return length;
+        }
+
+        @Override
+        public void commit(BlobLocator locator) throws IOException {
+
+            checkState(open, "Writer is closed.");
+            checkNotNull(locator);
+
+            open = false;
+
+            // The content replaces the one with the same locator, that may be kept on the other side.
+            if (largeWriter != null) {
+
+                largeWriter.commit(locator);
+                deleteSmall(locator);
+
+            } else {
+
+                put(locator, ByteBuffer.wrap(buffer.toByteArray()));
+                largeBlobs.delete(locator);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            open = false;
+
+            if (largeWriter != null) {
+                largeWriter.close();
+            }
+        }
+    }
+}
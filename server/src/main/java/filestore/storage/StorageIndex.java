@@ -0,0 +1,63 @@
+package filestore.storage;
+
+import javax.annotation.Nullable;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A secondary index of {@link Record}s of {@link InMemoryStorage}.
+ *
+ * <p>The index maps a key, taken from the fields of the record, to the records with that key. Records for which the
+ * key is {@code null} are not indexed.
+ *
+ * <p>Indexes are declared by subclasses of {@link InMemoryStorage} and are maintained by the storage on every
+ * {@link Storage#put(Record)} and {@link Storage#delete(RecordId)} while the lock of the record is held. Implementations
+ * must be thread-safe, as records with different identifiers are modified concurrently.
+ *
+ * @param <K> - key of the index.
+ * @param <I> - identifier {@link RecordId} of the indexed record.
+ * @param <R> - indexed record.
+ */
+public abstract class StorageIndex<K, I extends RecordId, R extends Record<I>> {
+
+    /**
+     * Extracts the key of the index from the record.
+     */
+    private final Function<R, K> keyExtractor;
+
+    /**
+     * Instantiates StorageIndex.
+     *
+     * @param keyExtractor function that extracts the key of the index from the record.
+     */
+    StorageIndex(Function<R, K> keyExtractor) {
+        this.keyExtractor = checkNotNull(keyExtractor);
+    }
+
+    /**
+     * Extracts the key of the index from the record.
+     *
+     * @param record the record to extract the key from.
+     * @return the key of the record or {@code null} if the record is not indexed.
+     */
+    @Nullable
+    final K keyOf(R record) {
+        return keyExtractor.apply(record);
+    }
+
+    /**
+     * Updates the index after the record was put into the storage.
+     *
+     * @param previous the replaced record or {@code null} if there was no such record.
+     * @param record   the record that was put into the storage.
+     */
+    abstract void update(@Nullable R previous, R record);
+
+    /**
+     * Removes the record from the index after it was deleted from the storage.
+     *
+     * @param record the record that was deleted from the storage.
+     */
+    abstract void remove(R record);
+}
@@ -0,0 +1,799 @@
+package filestore.storage;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * An append-only write-ahead journal of modifications of {@link InMemoryStorage}.
+ *
+ * <p>Each {@link Storage#put(Record)} and {@link Storage#delete(RecordId)} is logged as an entry of the journal. On
+ * startup the journal is replayed to restore the state of the storage.
+ *
+ * <p>Entries are written by a single writer thread. The writer takes all entries that were appended while it was
+ * busy and writes them with a single write and, depending on {@link Durability}, a single {@code fsync}. So
+ * concurrent modifications share the cost of forcing the journal to the disk (group commit).
+ *
+ * <p>Each entry has the following layout: length of the body, body, CRC32 checksum of the body. The body consists of
+ * the sequence number of the entry, the type of the modification and the record or its identifier, written by
+ * {@link RecordCodec}. An entry with a wrong checksum or a truncated entry at the end of the journal is the result of
+ * an interrupted write, so it is discarded on replay.
+ *
+ * <p>The journal is split into segment files, named after the journal file and the sequence number of the first entry
+ * of the segment. {@link #rotate()} starts a new segment, so the segments that are covered by {@link StorageSnapshot}
+ * can be removed with {@link #discardThrough(long)}.
+ *
+ * <p>This implementation is thread-safe.
+ *
+ * @param <I> - identifier {@link RecordId} of the journaled records.
+ * @param <R> - journaled record.
+ */
+public final class StorageJournal<I extends RecordId, R extends Record<I>> implements Closeable {
+
+    private static final Logger logger = getLogger(StorageJournal.class);
+
+    /**
+     * The type of the entry that logs {@link Storage#put(Record)}.
+     */
+    private static final byte PUT = 1;
+
+    /**
+     * The type of the entry that logs {@link Storage#delete(RecordId)}.
+     */
+    private static final byte DELETE = 2;
+
+    /**
+     * The type of the entry that requests a new segment. It is not written into the journal.
+     */
+    private static final byte ROTATE = 3;
+
+    /**
+     * The size of the length and the checksum of the entry.
+     */
+    private static final int ENTRY_OVERHEAD = Integer.BYTES * 2;
+
+    /**
+     * The size of the sequence number and the type of the entry.
+     */
+    private static final int BODY_HEADER = Long.BYTES + Byte.BYTES;
+
+    /**
+     * The maximum number of entries written by the single write.
+     */
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    /**
+     * The longest time the writer waits for new entries before checking whether the journal is closed.
+     */
+    private static final long MAX_POLL_NANOS = Duration.ofMillis(100).toNanos();
+
+    /**
+     * The format of the suffix of a segment file: the sequence number of its first entry.
+     */
+    private static final String SEGMENT_SUFFIX_FORMAT = ".%020d";
+
+    /**
+     * The file of the journal. Segment files are named after it.
+     */
+    private final Path file;
+
+    /**
+     * The codec of the journaled records.
+     */
+    private final RecordCodec<I, R> codec;
+
+    /**
+     * The durability mode of the journal.
+     */
+    private final Durability durability;
+
+    /**
+     * The interval between forcing the journal to the disk in {@link Durability#BATCHED} mode.
+     */
+    private final long batchIntervalNanos;
+
+    /**
+     * Appended entries that are not written yet.
+     */
+    private final BlockingQueue<Entry> pending = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread that writes appended entries into the file.
+     */
+    private final Thread writer;
+
+    /**
+     * The channel to the last segment of the journal. Accessed only by the replay and by the writer thread.
+     */
+    private FileChannel channel;
+
+    /**
+     * The sequence number of the first entry of the last segment. Accessed only by the replay and by the writer
+     * thread.
+     */
+    private long segmentStart;
+
+    /**
+     * The sequence number of the last written entry. Accessed only by the replay and by the writer thread.
+     */
+    private long lastSequence;
+
+    /**
+     * Whether the journal is closed. Guarded by {@link #pending}.
+     */
+    private boolean closed;
+
+    /**
+     * The error that occurred while writing the journal. The journal cannot be appended after an error.
+     */
+    private volatile IOException failure;
+
+    /**
+     * Opens the journal stored in the file. Creates the first segment of the journal if it doesn't exist.
+     *
+     * @param file          the file of the journal.
+     * @param codec         the codec of the journaled records.
+     * @param durability    the durability mode of the journal.
+     * @param batchInterval the interval between forcing the journal to the disk in {@link Durability#BATCHED} mode.
+     * @throws IOException if the file cannot be opened.
+     */
+    public StorageJournal(Path file, RecordCodec<I, R> codec, Durability durability, Duration batchInterval)
+        throws IOException {
+
+        this.file = checkNotNull(file);
+        this.codec = checkNotNull(codec);
+        this.durability = checkNotNull(durability);
+
+        checkArgument(!batchInterval.isNegative() && !batchInterval.isZero(), "Batch interval must be positive.");
+        this.batchIntervalNanos = batchInterval.toNanos();
+
+        TreeMap<Long, Path> segments = segments();
+
+        segmentStart = segments.isEmpty() ? 1 : segments.lastKey();
+        lastSequence = segmentStart - 1;
+
+        this.channel = FileChannel.open(segmentFile(segmentStart), CREATE, READ, WRITE);
+        channel.position(channel.size());
+
+        this.writer = new Thread(this::writeEntries, format("journal-%s", file.getFileName()));
+        writer.setDaemon(true);
+        writer.start();
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Opened journal {} in {} mode.", file, durability);
+        }
+    }
+
+    /**
+     * Replays all entries of the journal in the order they were written.
+     *
+     * <p>Should be called before any entry is appended. Discards the entries, broken by an interrupted write, at the
+     * end of the journal.
+     *
+     * @param puts    consumer of the records that were put into the storage.
+     * @param deletes consumer of the identifiers of the records that were deleted from the storage.
+     */
+    public void replay(Consumer<R> puts, Consumer<I> deletes) {
+
+        replay(0, puts, deletes);
+    }
+
+    /**
+     * Replays the entries of the journal that follow the entry with the sequence number, in the order they were
+     * written.
+     *
+     * <p>Should be called before any entry is appended. Discards the entries, broken by an interrupted write, at the
+     * end of the journal.
+     *
+     * @param fromSequence the sequence number of the last entry that is already applied to the storage.
+     * @param puts         consumer of the records that were put into the storage.
+     * @param deletes      consumer of the identifiers of the records that were deleted from the storage.
+     */
+    public void replay(long fromSequence, Consumer<R> puts, Consumer<I> deletes) {
+
+        checkNotNull(puts);
+        checkNotNull(deletes);
+
+        try {
+
+            long entries = 0;
+
+            for (Path segment : segments().values()) {
+
+                boolean last = segment.equals(segmentFile(segmentStart));
+
+                entries += replaySegment(segment, last, fromSequence, puts, deletes);
+            }
+
+            lastSequence = Math.max(lastSequence, fromSequence);
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Replayed {} entries of journal {} after entry {}.", entries, file, fromSequence);
+            }
+
+        } catch (IOException e) {
+            throw new StorageJournalException(format("Cannot replay journal %s.", file), e);
+        }
+    }
+
+    /**
+     * Appends the entry that logs putting the record into the storage.
+     *
+     * @param record the record that was put into the storage.
+     * @return the future that is completed when the entry is written with the durability of the journal.
+     */
+    public CompletableFuture<Long> logPut(R record) {
+
+        checkNotNull(record);
+
+        return append(PUT, output -> codec.write(record, output));
+    }
+
+    /**
+     * Appends the entry that logs deleting the record from the storage.
+     *
+     * @param identifier the identifier of the deleted record.
+     * @return the future that is completed when the entry is written with the durability of the journal.
+     */
+    public CompletableFuture<Long> logDelete(I identifier) {
+
+        checkNotNull(identifier);
+
+        return append(DELETE, output -> output.writeUTF(identifier.value()));
+    }
+
+    /**
+     * Starts a new segment of the journal after all appended entries are written.
+     *
+     * <p>The previous segments are forced to the disk regardless of {@link Durability} of the journal.
+     *
+     * @return the future that is completed with the sequence number of the last entry of the previous segments.
+     */
+    public CompletableFuture<Long> rotate() {
+
+        Entry entry = enqueue(new Entry(ROTATE, new byte[0]));
+
+        return entry.written;
+    }
+
+    /**
+     * Deletes the segments of the journal that contain only the entries with sequence numbers up to the passed one.
+     *
+     * <p>The last segment is never deleted.
+     *
+     * @param sequence the sequence number of the last entry that is not needed anymore.
+     */
+    public void discardThrough(long sequence) {
+
+        try {
+
+            TreeMap<Long, Path> segments = segments();
+
+            for (Long start : segments.keySet()) {
+
+                Long nextStart = segments.higherKey(start);
+
+                if (nextStart == null || nextStart - 1 > sequence) {
+                    break;
+                }
+
+                Files.delete(segments.get(start));
+
+                if (logger.isInfoEnabled()) {
+                    logger.info("Deleted segment {} of journal {}.", start, file);
+                }
+            }
+
+        } catch (IOException e) {
+            throw new StorageJournalException(format("Cannot delete segments of journal %s.", file), e);
+        }
+    }
+
+    /**
+     * Writes all appended entries and closes the journal.
+     *
+     * @throws IOException if the journal cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+
+        synchronized (pending) {
+
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+        }
+
+        try {
+
+            writer.join();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        channel.close();
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Closed journal {}.", file);
+        }
+    }
+
+    /**
+     * Appends the entry to the queue of the writer.
+     *
+     * @param operation the type of the entry.
+     * @param payload   writes the payload of the entry.
+     * @return the future that is completed when the entry is written with the durability of the journal.
+     */
+    private CompletableFuture<Long> append(byte operation, PayloadWriter payload) {
+
+        IOException error = failure;
+
+        if (error != null) {
+            throw new StorageJournalException(format("Journal %s failed and cannot be appended.", file), error);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        try {
+
+            payload.write(new DataOutputStream(bytes));
+
+        } catch (IOException e) {
+            throw new StorageJournalException(format("Cannot write entry of journal %s.", file), e);
+        }
+
+        Entry entry = enqueue(new Entry(operation, bytes.toByteArray()));
+
+        return durability == Durability.SYNC ? entry.written : completedFuture(null);
+    }
+
+    /**
+     * Puts the entry into the queue of the writer.
+     *
+     * @param entry the entry to write.
+     * @return the passed entry.
+     */
+    private Entry enqueue(Entry entry) {
+
+        synchronized (pending) {
+
+            checkState(!closed, "Journal %s is closed.", file);
+
+            pending.add(entry);
+        }
+
+        IOException error = failure;
+
+        if (error != null) {
+            entry.written.completeExceptionally(
+                new StorageJournalException(format("Cannot write journal %s.", file), error));
+        }
+
+        return entry;
+    }
+
+    /**
+     * The loop of the writer thread. Writes appended entries in groups until the journal is closed.
+     */
+    private void writeEntries() {
+
+        List<Entry> batch = new ArrayList<>();
+        long pollNanos = durability == Durability.BATCHED ? Math.min(batchIntervalNanos, MAX_POLL_NANOS) :
+            MAX_POLL_NANOS;
+        long lastForceTime = System.nanoTime();
+        boolean unforced = false;
+
+        try {
+
+            while (!isClosed() || !pending.isEmpty()) {
+
+                Entry first = pending.poll(pollNanos, NANOSECONDS);
+
+                if (first != null) {
+
+                    batch.add(first);
+                    pending.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                    write(batch);
+                    unforced = true;
+                }
+
+                if (unforced && shouldForce(lastForceTime)) {
+
+                    channel.force(false);
+                    lastForceTime = System.nanoTime();
+                    unforced = false;
+                }
+
+                batch.forEach(entry -> entry.written.complete(entry.sequence));
+                batch.clear();
+            }
+
+            if (unforced) {
+                channel.force(false);
+            }
+
+        } catch (IOException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Cannot write journal {}: {}.", file, e.getMessage());
+            }
+
+            failure = e;
+
+            StorageJournalException error =
+                new StorageJournalException(format("Cannot write journal %s.", file), e);
+
+            batch.forEach(entry -> entry.written.completeExceptionally(error));
+            pending.forEach(entry -> entry.written.completeExceptionally(error));
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Writes the batch of entries at the end of the journal and starts new segments where they are requested.
+     *
+     * @param batch entries to write.
+     * @throws IOException if the journal cannot be written.
+     */
+    private void write(List<Entry> batch) throws IOException {
+
+        int start = 0;
+
+        for (int index = 0; index < batch.size(); ++index) {
+
+            Entry entry = batch.get(index);
+
+            if (entry.operation == ROTATE) {
+
+                writeEntries(batch.subList(start, index));
+                startSegment();
+
+                entry.sequence = lastSequence;
+                start = index + 1;
+            }
+        }
+
+        writeEntries(batch.subList(start, batch.size()));
+    }
+
+    /**
+     * Writes the entries at the end of the last segment with a single write.
+     *
+     * @param entries entries to write.
+     * @throws IOException if the journal cannot be written.
+     */
+    private void writeEntries(List<Entry> entries) throws IOException {
+
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        int size = entries
+            .stream()
+            .mapToInt(entry -> ENTRY_OVERHEAD + BODY_HEADER + entry.payload.length)
+            .sum();
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        for (Entry entry : entries) {
+
+            int bodyLength = BODY_HEADER + entry.payload.length;
+
+            buffer.putInt(bodyLength);
+
+            int bodyStart = buffer.position();
+
+            entry.sequence = ++lastSequence;
+
+            buffer.putLong(entry.sequence);
+            buffer.put(entry.operation);
+            buffer.put(entry.payload);
+            buffer.putInt(checksum(buffer.array(), bodyStart, bodyLength));
+        }
+
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Forces the last segment to the disk and starts a new one. Does nothing if the last segment is empty.
+     *
+     * @throws IOException if the segment cannot be created.
+     */
+    private void startSegment() throws IOException {
+
+        if (lastSequence + 1 == segmentStart) {
+            return;
+        }
+
+        channel.force(false);
+        channel.close();
+
+        segmentStart = lastSequence + 1;
+        channel = FileChannel.open(segmentFile(segmentStart), CREATE, READ, WRITE);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Started segment {} of journal {}.", segmentStart, file);
+        }
+    }
+
+    /**
+     * Replays the entries of the segment of the journal.
+     *
+     * @param segment      the segment file.
+     * @param last         whether the segment is the last one, so the broken entries at its end are discarded.
+     * @param fromSequence the sequence number of the last entry that is already applied to the storage.
+     * @param puts         consumer of the records that were put into the storage.
+     * @param deletes      consumer of the identifiers of the records that were deleted from the storage.
+     * @return the number of replayed entries.
+     * @throws IOException if the segment cannot be read.
+     */
+    private long replaySegment(Path segment, boolean last, long fromSequence, Consumer<R> puts,
+                               Consumer<I> deletes) throws IOException {
+
+        long fileSize = Files.size(segment);
+        long validSize = 0;
+        long entries = 0;
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(segment)))) {
+
+            while (validSize + ENTRY_OVERHEAD + BODY_HEADER <= fileSize) {
+
+                int length = input.readInt();
+
+                if (length < BODY_HEADER || validSize + ENTRY_OVERHEAD + length > fileSize) {
+                    break;
+                }
+
+                byte[] body = new byte[length];
+                input.readFully(body);
+
+                if (input.readInt() != checksum(body, 0, length)) {
+                    break;
+                }
+
+                if (apply(body, fromSequence, puts, deletes)) {
+                    ++entries;
+                }
+
+                validSize += ENTRY_OVERHEAD + length;
+            }
+
+        } catch (EOFException e) {
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Reached the end of segment {}.", segment);
+            }
+        }
+
+        if (validSize < fileSize) {
+
+            if (!last) {
+                throw new IOException(format("Segment %s is broken at position %d.", segment, validSize));
+            }
+
+            if (logger.isWarnEnabled()) {
+                logger.warn("Discarding {} bytes of broken entries at the end of journal {}.",
+                    fileSize - validSize, file);
+            }
+
+            channel.truncate(validSize);
+        }
+
+        if (last) {
+            channel.position(validSize);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Applies the body of the replayed entry, unless it is already applied to the storage.
+     *
+     * @param body         the body of the entry.
+     * @param fromSequence the sequence number of the last entry that is already applied to the storage.
+     * @param puts         consumer of the records that were put into the storage.
+     * @param deletes      consumer of the identifiers of the records that were deleted from the storage.
+     * @return {@code true} if the entry was applied.
+     * @throws IOException if the body cannot be read.
+     */
+    private boolean apply(byte[] body, long fromSequence, Consumer<R> puts, Consumer<I> deletes) throws IOException {
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(body));
+
+        lastSequence = input.readLong();
+
+        if (lastSequence <= fromSequence) {
+            return false;
+        }
+
+        byte operation = input.readByte();
+
+        if (operation == PUT) {
+
+            puts.accept(codec.read(input));
+
+        } else if (operation == DELETE) {
+
+            deletes.accept(codec.identifier(input.readUTF()));
+
+        } else {
+
+            throw new IOException(format("Unknown type %d of the entry %d.", operation, lastSequence));
+        }
+
+        return true;
+    }
+
+    /**
+     * Finds the segment files of the journal.
+     *
+     * @return the segment files, sorted by the sequence numbers of their first entries.
+     * @throws IOException if the directory of the journal cannot be read.
+     */
+    private TreeMap<Long, Path> segments() throws IOException {
+
+        TreeMap<Long, Path> segments = new TreeMap<>();
+        Path directory = file.toAbsolutePath().getParent();
+        String prefix = file.getFileName() + ".";
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*")) {
+
+            for (Path segment : files) {
+
+                String suffix = segment.getFileName().toString().substring(prefix.length());
+
+                if (!suffix.isEmpty() && suffix.chars().allMatch(Character::isDigit)) {
+                    segments.put(Long.parseLong(suffix), segment);
+                }
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Resolves the file of the segment.
+     *
+     * @param start the sequence number of the first entry of the segment.
+     * @return the segment file.
+     */
+    private Path segmentFile(long start) {
+
+        return file.resolveSibling(file.getFileName() + format(SEGMENT_SUFFIX_FORMAT, start));
+    }
+
+    /**
+     * Decides whether the written entries should be forced to the disk.
+     *
+     * @param lastForceTime the time of the last {@code fsync} in nanoseconds.
+     * @return {@code true} if the journal should be forced to the disk.
+     */
+    private boolean shouldForce(long lastForceTime) {
+
+        switch (durability) {
+
+            case SYNC:
+                return true;
+
+            case BATCHED:
+                return System.nanoTime() - lastForceTime >= batchIntervalNanos;
+
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Verifies whether the journal is closed.
+     *
+     * @return {@code true} if the journal is closed.
+     */
+    private boolean isClosed() {
+
+        synchronized (pending) {
+            return closed;
+        }
+    }
+
+    /**
+     * Calculates CRC32 checksum of the part of the array.
+     *
+     * @param bytes  the array.
+     * @param offset the start of the part.
+     * @param length the length of the part.
+     * @return checksum of the part of the array.
+     */
+    private static int checksum(byte[] bytes, int offset, int length) {
+
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes, offset, length);
+
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Writes the payload of the entry.
+     */
+    @FunctionalInterface
+    private interface PayloadWriter {
+
+        void write(DataOutput output) throws IOException;
+    }
+
+    /**
+     * The appended entry of the journal.
+     */
+    private static final class Entry {
+
+        /**
+         * The type of the entry.
+         */
+        private final byte operation;
+
+        /**
+         * The record or the identifier of the record, written by {@link RecordCodec}.
+         */
+        private final byte[] payload;
+
+        /**
+         * Completed with the sequence number of the entry when the entry is written.
+         */
+        private final CompletableFuture<Long> written = new CompletableFuture<>();
+
+        /**
+         * The sequence number of the entry. Assigned by the writer thread.
+         */
+        private long sequence;
+
+        private Entry(byte operation, byte[] payload) {
+            this.operation = operation;
+            this.payload = payload;
+        }
+    }
+}
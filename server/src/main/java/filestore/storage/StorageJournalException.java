@@ -0,0 +1,17 @@
+package filestore.storage;
+
+/**
+ * An exception that is thrown when {@link StorageJournal} fails to read or write its entries.
+ */
+public class StorageJournalException extends RuntimeException {
+
+    /**
+     * Instantiates StorageJournalException.
+     *
+     * @param message error description.
+     * @param cause   the cause of the error.
+     */
+    public StorageJournalException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
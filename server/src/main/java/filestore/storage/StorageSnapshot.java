@@ -0,0 +1,343 @@
+package filestore.storage;
+
+import org.slf4j.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * A binary snapshot of all records of {@link InMemoryStorage}, taken at a point of its {@link StorageJournal}.
+ *
+ * <p>The snapshot has the following layout: header with the magic number, the version of the format and the sequence
+ * number of the last journal entry reflected by the snapshot; records, each preceded by its length; the end marker;
+ * trailer with the number of records and CRC32 checksum of the records and the end marker.
+ *
+ * <p>The snapshot is written into a temporary file that replaces the previous snapshot only when it is completely
+ * written and forced to the disk. It is read through memory-mapped regions of the file.
+ *
+ * @param <I> - identifier {@link RecordId} of the records.
+ * @param <R> - record of the snapshot.
+ */
+public final class StorageSnapshot<I extends RecordId, R extends Record<I>> {
+
+    private static final Logger logger = getLogger(StorageSnapshot.class);
+
+    /**
+     * The first bytes of a snapshot file: {@code FHS1}.
+     */
+    private static final int MAGIC = 0x46485331;
+
+    /**
+     * The version of the format of a snapshot file.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The size of the magic number, the version and the sequence number.
+     */
+    private static final int HEADER_SIZE = Integer.BYTES * 2 + Long.BYTES;
+
+    /**
+     * The size of the number of records and the checksum.
+     */
+    private static final int TRAILER_SIZE = Long.BYTES + Integer.BYTES;
+
+    /**
+     * Written instead of the length of the record after the last record.
+     */
+    private static final int END_OF_RECORDS = -1;
+
+    /**
+     * The size of the buffer of the written snapshot.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The size of a part of the snapshot that is passed to the checksum at once.
+     */
+    private static final int CHECKSUM_CHUNK_SIZE = 1 << 20;
+
+    /**
+     * The file of the snapshot.
+     */
+    private final Path file;
+
+    /**
+     * The codec of the records.
+     */
+    private final RecordCodec<I, R> codec;
+
+    /**
+     * Instantiates StorageSnapshot, stored in the file.
+     *
+     * @param file  the file of the snapshot. May not exist yet.
+     * @param codec the codec of the records.
+     */
+    public StorageSnapshot(Path file, RecordCodec<I, R> codec) {
+        this.file = checkNotNull(file);
+        this.codec = checkNotNull(codec);
+    }
+
+    /**
+     * Reads all records of the snapshot.
+     *
+     * <p>The records are passed to the consumer only if the checksum of the snapshot is valid.
+     *
+     * @param records consumer of the records.
+     * @return the sequence number of the last journal entry reflected by the snapshot or {@code 0} if there is no
+     * snapshot yet.
+     * @throws StorageSnapshotException if the snapshot cannot be read or is broken.
+     */
+    public long load(Consumer<R> records) {
+
+        checkNotNull(records);
+
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+
+            long size = channel.size();
+
+            if (size < HEADER_SIZE + Integer.BYTES + TRAILER_SIZE) {
+                throw new IOException(format("Snapshot %s is truncated.", file));
+            }
+
+            MappedRegions regions = new MappedRegions(channel, size);
+            ByteBuffer header = regions.slice(0, HEADER_SIZE);
+
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException(format("File %s is not a snapshot of the supported version.", file));
+            }
+
+            long sequence = header.getLong();
+            ByteBuffer trailer = regions.slice(size - TRAILER_SIZE, TRAILER_SIZE);
+            long count = trailer.getLong();
+            int checksum = trailer.getInt();
+
+            if (checksum(regions, HEADER_SIZE, size - TRAILER_SIZE) != checksum) {
+                throw new IOException(format("Checksum of snapshot %s does not match.", file));
+            }
+
+            long position = HEADER_SIZE;
+            long loaded = 0;
+            int length;
+
+            while ((length = regions.slice(position, Integer.BYTES).getInt()) != END_OF_RECORDS) {
+
+                position += Integer.BYTES;
+
+                if (length < 0) {
+                    throw new IOException(format("Record of snapshot %s has negative length.", file));
+                }
+
+                InputStream body = new ByteBufferInputStream(regions.slice(position, length));
+
+                records.accept(codec.read(new DataInputStream(body)));
+
+                position += length;
+                ++loaded;
+            }
+
+            if (loaded != count) {
+                throw new IOException(format("Snapshot %s has %d records instead of %d.", file, loaded, count));
+            }
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Loaded {} records of snapshot {} at entry {}.", loaded, file, sequence);
+            }
+
+            return sequence;
+
+        } catch (IOException e) {
+            throw new StorageSnapshotException(format("Cannot load snapshot %s.", file), e);
+        }
+    }
+
+    /**
+     * Writes the records into the snapshot and replaces the previous snapshot.
+     *
+     * @param sequence the sequence number of the last journal entry reflected by the records.
+     * @param records  the records of the storage.
+     * @return the number of written records.
+     * @throws StorageSnapshotException if the snapshot cannot be written.
+     */
+    public long write(long sequence, Collection<R> records) {
+
+        checkNotNull(records);
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+        try {
+
+            long count = 0;
+
+            try (FileOutputStream fileOutput = new FileOutputStream(temporary.toFile())) {
+
+                BufferedOutputStream buffered = new BufferedOutputStream(fileOutput, BUFFER_SIZE);
+                DataOutputStream output = new DataOutputStream(buffered);
+                CRC32 checksum = new CRC32();
+                DataOutputStream checkedOutput = new DataOutputStream(new CheckedOutputStream(buffered, checksum));
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                DataOutputStream recordOutput = new DataOutputStream(record);
+
+                output.writeInt(MAGIC);
+                output.writeInt(VERSION);
+                output.writeLong(sequence);
+
+                for (R next : records) {
+
+                    record.reset();
+                    codec.write(next, recordOutput);
+
+                    checkedOutput.writeInt(record.size());
+                    record.writeTo(checkedOutput);
+
+                    ++count;
+                }
+
+                checkedOutput.writeInt(END_OF_RECORDS);
+
+                output.writeLong(count);
+                output.writeInt((int) checksum.getValue());
+                output.flush();
+
+                fileOutput.getChannel().force(true);
+            }
+
+            Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Written {} records to snapshot {} at entry {}.", count, file, sequence);
+            }
+
+            return count;
+
+        } catch (IOException e) {
+            throw new StorageSnapshotException(format("Cannot write snapshot %s.", file), e);
+        }
+    }
+
+    /**
+     * Calculates CRC32 checksum of the part of the file.
+     *
+     * @param regions mapped regions of the file.
+     * @param start   the start of the part.
+     * @param end     the end of the part, exclusive.
+     * @return checksum of the part.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private static int checksum(MappedRegions regions, long start, long end) throws IOException {
+
+        CRC32 checksum = new CRC32();
+
+        for (long position = start; position < end; position += CHECKSUM_CHUNK_SIZE) {
+
+            checksum.update(regions.slice(position, (int) Math.min(CHECKSUM_CHUNK_SIZE, end - position)));
+        }
+
+        return (int) checksum.getValue();
+    }
+
+    /**
+     * Maps the file into memory by regions of at most 2 GB, that is the limit of {@link ByteBuffer}.
+     */
+    private static final class MappedRegions {
+
+        private final FileChannel channel;
+
+        private final long size;
+
+        private ByteBuffer region;
+
+        private long regionStart;
+
+        private MappedRegions(FileChannel channel, long size) {
+            this.channel = channel;
+            this.size = size;
+        }
+
+        /**
+         * Retrieves the part of the file. Maps the next region if the part is not in the current one.
+         *
+         * @param position the start of the part.
+         * @param length   the length of the part.
+         * @return the buffer that contains exactly the part.
+         * @throws IOException if the part is out of the file or cannot be mapped.
+         */
+        private ByteBuffer slice(long position, int length) throws IOException {
+
+            if (position + length > size) {
+                throw new IOException("Snapshot is truncated.");
+            }
+
+            if (region == null || position < regionStart || position + length > regionStart + region.capacity()) {
+
+                regionStart = position;
+                region = channel.map(READ_ONLY, position, Math.min(Integer.MAX_VALUE, size - position));
+            }
+
+            ByteBuffer slice = region.duplicate();
+            int offset = (int) (position - regionStart);
+
+            slice.limit(offset + length);
+            slice.position(offset);
+
+            return slice.slice();
+        }
+    }
+
+    /**
+     * {@link InputStream} that reads the remaining bytes of {@link ByteBuffer}.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+
+            int read = Math.min(length, buffer.remaining());
+
+            buffer.get(bytes, offset, read);
+
+            return read;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package filestore.storage;
+
+/**
+ * An exception that is thrown when {@link StorageSnapshot} fails to read or write the records.
+ */
+public class StorageSnapshotException extends RuntimeException {
+
+    /**
+     * Instantiates StorageSnapshotException.
+     *
+     * @param message error description.
+     * @param cause   the cause of the error.
+     */
+    public StorageSnapshotException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
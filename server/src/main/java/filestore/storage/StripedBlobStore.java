@@ -0,0 +1,1047 @@
+package filestore.storage;
+
+import com.google.common.util.concurrent.Striped;
+import io.nure.filestore.metrics.Counter;
+import io.nure.filestore.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link BlobStore} that spreads the contents over several data directories, usually on separate disks.
+ *
+ * <p>A new content is placed into the least loaded directory: the one with the fewest reads and writes in progress
+ * and then with the fewest bytes of the contents. If the stripe unit is set, a content that is larger than the unit is striped:
+ * its units are written round-robin into separate stripes in different directories, like RAID-0, and a read fetches
+ * the next units of all stripes in parallel. The stripe {@code k} of {@code n} of the content {@code name.ext} with
+ * units of {@code u} bytes is kept under the locator {@code name__k_n_u.ext}.
+ *
+ * <p>The placements of the contents are kept in memory and are restored on start by listing the directories. The
+ * stripes of an incomplete content are deleted. When a directory is added, {@link #rebalance()} moves not striped
+ * contents into it from the other directories until they hold about the same number of bytes.
+ *
+ * <p>The metrics {@code blob.directories.<i>.read.bytes}, {@code blob.directories.<i>.written.bytes},
+ * {@code blob.directories.<i>.in-flight}, {@code blob.directories.<i>.blobs} and {@code blob.directories.<i>.bytes} of
+ * the directory with the index
+ * {@code i} in the list, and {@code blob.directories.rebalanced} are registered in {@link MetricRegistry}.
+ *
+ * <p>This implementation is thread-safe. Commits, deletions and moves of a content are serialized by a lock, striped
+ * by {@link BlobLocator}.
+ */
+public final class StripedBlobStore implements BlobStore, Closeable {
+
+    private static final Logger logger = getLogger(StripedBlobStore.class);
+
+    /**
+     * The locators of the stripes: the name of the content, the index of the stripe, the number of the stripes, the
+     * stripe unit and the extension of the content.
+     */
+    private static final Pattern STRIPE_PATTERN = Pattern.compile("(.+)__(\\d+)_(\\d+)_(\\d+)(\\.[a-z]+)?");
+
+    /**
+     * The locators of the contents: the name and the extension.
+     */
+    private static final Pattern LOCATOR_PATTERN = Pattern.compile("(.+?)(\\.[a-z]+)?");
+
+    /**
+     * The number of locks that guard commits, deletions and moves of the contents.
+     */
+    private static final int LOCK_STRIPES = 256;
+
+    /**
+     * The number of threads reading ahead the stripes per data directory.
+     */
+    private static final int READERS_PER_DIRECTORY = 4;
+
+    /**
+     * The maximal time to wait for the running rebalancing on close.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The data directories.
+     */
+    private final List<Directory> directories = new ArrayList<>();
+
+    /**
+     * The size of a stripe unit in bytes, {@code 0} if the contents are not striped.
+     */
+    private final int stripeUnit;
+
+    /**
+     * The placements of the contents in the directories.
+     */
+    private final ConcurrentMap<BlobLocator, Placement> placements = new ConcurrentHashMap<>();
+
+    /**
+     * Locks that serialize commits, deletions and moves of the contents.
+     */
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+    /**
+     * The executor of the reads ahead of the stripes.
+     */
+    private final ExecutorService stripeReaders;
+
+    /**
+     * The executor of the rebalancing.
+     */
+    private final ExecutorService rebalancing;
+
+    private final Counter rebalanced;
+
+    /**
+     * Instantiates StripedBlobStore and restores the placements of the contents that are already kept in the
+     * directories.
+     *
+     * @param directories the data directories.
+     * @param stripeUnit  the size of a stripe unit in bytes, {@code 0} to keep every content in one directory.
+     * @param metrics     the registry to register the metrics of the directories in.
+     * @throws IOException if the contents of the directories cannot be listed.
+     */
+    public StripedBlobStore(List<Path> directories, int stripeUnit, MetricRegistry metrics) throws IOException {
+
+        checkArgument(!directories.isEmpty(), "At least one data directory is required.");
+        checkArgument(stripeUnit >= 0, "Stripe unit must not be negative: %s", stripeUnit);
+
+        this.stripeUnit = stripeUnit;
+
+        for (Path path : directories) {
+            this.directories.add(new Directory(this.directories.size(), path, metrics));
+        }
+
+        restore();
+
+        stripeReaders = newFixedThreadPool(READERS_PER_DIRECTORY * directories.size(), daemonThreads("blob-stripes"));
+        rebalancing = newSingleThreadExecutor(daemonThreads("blob-rebalancing"));
+        rebalanced = metrics.counter("blob.directories.rebalanced");
+    }
+
+    @Override
+    public BlobWriter create() {
+
+        List<Directory> leastLoaded = new ArrayList<>(directories);
+        leastLoaded.sort(Comparator.<Directory>comparingInt(directory -> directory.inFlight.get())
+            .thenComparingLong(directory -> directory.bytes.get()));
+
+        return new StripedBlobWriter(stripeUnit == 0 ? leastLoaded.subList(0, 1) : leastLoaded);
+    }
+
+    @Override
+    public ReadableByteChannel open(BlobLocator locator) throws IOException {
+
+        checkNotNull(locator);
+
+        while (true) {
+
+            Placement placement = placements.get(locator);
+
+            if (placement == null) {
+                throw new NoSuchFileException(locator.value());
+            }
+
+            try {
+
+                if (!placement.isStriped()) {
+                    return directories.get(placement.directories[0]).open(locator);
+                }
+
+                List<ReadableByteChannel> stripes = new ArrayList<>(placement.directories.length);
+
+                try {
+
+                    for (int stripe = 0; stripe < placement.directories.length; ++stripe) {
+
+                        stripes.add(directories.get(placement.directories[stripe])
+                            .open(stripeLocator(locator, stripe, placement)));
+                    }
+
+                } catch (IOException | RuntimeException e) {
+
+                    closeQuietly(stripes);
+
+                    throw e;
+                }
+
+                return new StripedChannel(stripes, placement.unit);
+
+            } catch (NoSuchFileException e) {
+
+                // The content is moved into another directory after its placement was read.
+                if (placements.get(locator) == placement) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(BlobLocator locator) throws IOException {
+
+        checkNotNull(locator);
+
+        Lock lock = locks.get(locator);
+        lock.lock();
+
+        try {
+
+            Placement placement = placements.remove(locator);
+
+            if (placement == null) {
+                return false;
+            }
+
+            deleteBlobs(locator, placement);
+
+            return true;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<BlobLocator> locators() {
+
+        return new ArrayList<>(placements.keySet());
+    }
+
+    /**
+     * Moves not striped contents from the directories with more bytes into the directories with fewer bytes, while a
+     * move narrows the difference of their bytes. A content that cannot be moved is logged and left in place.
+     *
+     * @return the number of the moved contents.
+     */
+    public int rebalance() {
+
+        int moved = 0;
+
+        for (Map.Entry<BlobLocator, Placement> entry : placements.entrySet()) {
+
+            Placement placement = entry.getValue();
+
+            if (placement.isStriped()) {
+                continue;
+            }
+
+            Directory source = directories.get(placement.directories[0]);
+            Directory target = directories.stream()
+                .min(Comparator.comparingLong(directory -> directory.bytes.get()))
+                .orElseThrow(IllegalStateException::new);
+
+            if (source != target && move(entry.getKey(), placement, source, target)) {
+                ++moved;
+            }
+        }
+
+        if (moved > 0 && logger.isInfoEnabled()) {
+            logger.info("Moved {} contents between {} data directories.", moved, directories.size());
+        }
+
+        return moved;
+    }
+
+    /**
+     * Starts {@link #rebalance()} in the background.
+     */
+    public void scheduleRebalancing() {
+
+        rebalancing.execute(this::rebalance);
+    }
+
+    /**
+     * Waits for the running rebalancing and stops the reads ahead of the stripes.
+     */
+    @Override
+    public void close() {
+
+        rebalancing.shutdown();
+        stripeReaders.shutdown();
+
+        try {
+
+            rebalancing.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Restores the placements of the contents from the directories and deletes the stripes of the incomplete
+     * contents.
+     *
+     * @throws IOException if the contents of the directories cannot be listed.
+     */
+    private void restore() throws IOException {
+
+        Map<BlobLocator, Placement> striped = new HashMap<>();
+
+        for (Directory directory : directories) {
+
+            for (BlobLocator locator : directory.store.locators()) {
+
+                Matcher stripe = STRIPE_PATTERN.matcher(locator.value());
+
+                if (stripe.matches()) {
+
+                    BlobLocator content = new BlobLocator(stripe.group(1) + nullToEmpty(stripe.group(5)));
+                    int index = Integer.parseInt(stripe.group(2));
+                    int count = Integer.parseInt(stripe.group(3));
+                    int unit = Integer.parseInt(stripe.group(4));
+                    Placement placement = striped.computeIfAbsent(content, key -> Placement.incomplete(count, unit));
+
+                    if (placement.directories.length == count && placement.unit == unit && index < count) {
+                        placement.directories[index] = directory.index;
+                    }
+
+                } else if (placements.putIfAbsent(locator, Placement.single(directory.index)) != null) {
+
+                    // The content was copied by an interrupted move.
+                    directory.store.delete(locator);
+                    continue;
+                }
+
+                directory.blobs.incrementAndGet();
+                directory.bytes.addAndGet(directory.store.size(locator));
+            }
+        }
+
+        for (Map.Entry<BlobLocator, Placement> entry : striped.entrySet()) {
+
+            Placement placement = entry.getValue();
+
+            if (Arrays.stream(placement.directories).noneMatch(index -> index < 0)) {
+
+                placements.put(entry.getKey(), placement);
+
+            } else {
+
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Deleting incomplete stripes of content {}.", entry.getKey().value());
+                }
+
+                deleteBlobs(entry.getKey(), placement);
+            }
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Restored {} contents from {} data directories.", placements.size(), directories.size());
+        }
+    }
+
+    /**
+     * Deletes the blobs of the content.
+     *
+     * @param locator   the locator of the content.
+     * @param placement the placement of the content, with negative indexes of the directories of the missing stripes.
+     * @throws IOException if a blob cannot be deleted.
+     */
+    private void deleteBlobs(BlobLocator locator, Placement placement) throws IOException {
+
+        for (int stripe = 0; stripe < placement.directories.length; ++stripe) {
+
+            if (placement.directories[stripe] >= 0) {
+                directories.get(placement.directories[stripe]).delete(blobLocator(locator, stripe, placement));
+            }
+        }
+    }
+
+    /**
+     * Deletes the blobs of the previous placement of the content, that are not replaced by the blobs of its new
+     * placement. A blob is replaced if it has the same locator in the same directory.
+     *
+     * @param locator   the locator of the content.
+     * @param previous  the previous placement of the content.
+     * @param placement the new placement of the content, which blobs are committed.
+     * @throws IOException if a blob cannot be deleted.
+     */
+    private void deleteReplaced(BlobLocator locator, Placement previous, Placement placement) throws IOException {
+
+        boolean sameLayout = previous.unit == placement.unit
+            && previous.directories.length == placement.directories.length;
+
+        for (int stripe = 0; stripe < previous.directories.length; ++stripe) {
+
+            if (!sameLayout || previous.directories[stripe] != placement.directories[stripe]) {
+                directories.get(previous.directories[stripe]).delete(blobLocator(locator, stripe, previous));
+            }
+        }
+    }
+
+    /**
+     * Copies the content into the target directory and deletes it from the source directory, if the move narrows the
+     * difference of the bytes of the directories.
+     *
+     * @param locator   the locator of the content.
+     * @param placement the placement of the content in the source directory.
+     * @param source    the directory with the content.
+     * @param target    the directory to move the content into.
+     * @return {@code true} if the content is moved.
+     */
+    private boolean move(BlobLocator locator, Placement placement, Directory source, Directory target) {
+
+        Lock lock = locks.get(locator);
+        lock.lock();
+
+        try {
+
+            if (placements.get(locator) != placement) {
+                return false;
+            }
+
+            long size = source.size(locator);
+
+            if (size < 0 || source.bytes.get() - target.bytes.get() <= size) {
+                return false;
+            }
+
+            try (ReadableByteChannel channel = source.open(locator);
+                 BlobWriter writer = target.create()) {
+
+                ByteBuffer chunk = BlobStore.allocateChunk();
+
+                while (channel.read(chunk) >= 0) {
+
+                    chunk.flip();
+                    writer.write(chunk);
+                    chunk.compact();
+                }
+
+                chunk.flip();
+
+                while (chunk.hasRemaining()) {
+                    writer.write(chunk);
+                }
+
+                writer.commit(locator);
+            }
+
+            placements.put(locator, Placement.single(target.index));
+            source.delete(locator);
+
+            rebalanced.increment();
+
+            return true;
+
+        } catch (NoSuchFileException e) {
+
+            // The content was deleted before it was moved.
+            return false;
+
+        } catch (IOException | RuntimeException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error(format("Cannot move content %s into %s.", locator.value(), target.path), e);
+            }
+
+            return false;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Creates the locator of the stripe of the content.
+     *
+     * @param locator   the locator of the content.
+     * @param stripe    the index of the stripe.
+     * @param placement the placement of the content.
+     * @return the locator of the stripe.
+     */
+    private static BlobLocator stripeLocator(BlobLocator locator, int stripe, Placement placement) {
+
+        Matcher matcher = LOCATOR_PATTERN.matcher(locator.value());
+
+        checkState(matcher.matches());
+
+        return new BlobLocator(format("%s__%d_%d_%d%s", matcher.group(1), stripe, placement.directories.length,
+            placement.unit, nullToEmpty(matcher.group(2))));
+    }
+
+    /**
+     * Creates the locator of the blob of the content: the locator of the stripe of a striped content and the locator
+     * of the content otherwise.
+     *
+     * @param locator   the locator of the content.
+     * @param stripe    the index of the stripe.
+     * @param placement the placement of the content.
+     * @return the locator of the blob.
+     */
+    private static BlobLocator blobLocator(BlobLocator locator, int stripe, Placement placement) {
+
+        return placement.isStriped() ? stripeLocator(locator, stripe, placement) : locator;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+
+        return runnable -> {
+
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+
+            return thread;
+        };
+    }
+
+    private static void closeQuietly(List<? extends Closeable> channels) {
+
+        for (Closeable channel : channels) {
+
+            try {
+
+                channel.close();
+
+            } catch (IOException e) {
+
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Cannot close stripe.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The indexes of the directories with the stripes of a content and the stripe unit.
+     */
+    private static final class Placement {
+
+        /**
+         * The indexes of the directories with the stripes, one index for a not striped content.
+         */
+        private final int[] directories;
+
+        /**
+         * The size of a stripe unit in bytes, {@code 0} for a not striped content.
+         */
+        private final int unit;
+
+        private Placement(int[] directories, int unit) {
+
+            this.directories = directories;
+            this.unit = unit;
+        }
+
+        private static Placement single(int directory) {
+            return new Placement(new int[]{directory}, 0);
+        }
+
+        private static Placement incomplete(int count, int unit) {
+
+            int[] directories = new int[count];
+            Arrays.fill(directories, -1);
+
+            return new Placement(directories, unit);
+        }
+
+        private boolean isStriped() {
+            return unit > 0;
+        }
+    }
+
+    /**
+     * A data directory with its metrics.
+     */
+    private static final class Directory {
+
+        private final int index;
+
+        private final Path path;
+
+        private final DiskBlobStore store;
+
+        private final Counter readBytes;
+
+        private final Counter writtenBytes;
+
+        /**
+         * The number of the open channels and writers.
+         */
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        /**
+         * The number of the contents and the stripes.
+         */
+        private final AtomicInteger blobs = new AtomicInteger();
+
+        /**
+         * The number of the bytes of the contents and the stripes.
+         */
+        private final AtomicLong bytes = new AtomicLong();
+
+        private Directory(int index, Path path, MetricRegistry metrics) {
+
+            this.index = index;
+            this.path = checkNotNull(path);
+            this.store = new DiskBlobStore(path);
+
+            String prefix = "blob.directories." + index + '.';
+
+            readBytes = metrics.counter(prefix + "read.bytes");
+            writtenBytes = metrics.counter(prefix + "written.bytes");
+            metrics.gauge(prefix + "in-flight", inFlight::get);
+            metrics.gauge(prefix + "blobs", blobs::get);
+            metrics.gauge(prefix + "bytes", bytes::get);
+        }
+
+        /**
+         * Retrieves the size of the blob.
+         *
+         * @param locator the locator of the blob.
+         * @return the size of the blob in bytes, {@code -1} if the blob does not exist.
+         * @throws IOException if the size cannot be read.
+         */
+        private long size(BlobLocator locator) throws IOException {
+
+            try {
+
+                return store.size(locator);
+
+            } catch (NoSuchFileException e) {
+
+                return -1;
+            }
+        }
+
+        /**
+         * Deletes the blob and stops counting it.
+         *
+         * @param locator the locator of the blob.
+         * @throws IOException if the blob cannot be deleted.
+         */
+        private void delete(BlobLocator locator) throws IOException {
+
+            long size = size(locator);
+
+            if (size >= 0 && store.delete(locator)) {
+
+                blobs.decrementAndGet();
+                bytes.addAndGet(-size);
+            }
+        }
+
+        /**
+         * Opens the blob and counts the read and mapped bytes.
+         *
+         * @param locator the locator of the blob.
+         * @return the channel with the blob.
+         * @throws IOException if the blob cannot be opened.
+         */
+        private ReadableByteChannel open(BlobLocator locator) throws IOException {
+
+            ReadableByteChannel channel = store.open(locator);
+            inFlight.incrementAndGet();
+
+            return new MappableChannel() {
+
+                private boolean open = true;
+
+                @Override
+                public int read(ByteBuffer target) throws IOException {
+
+                    int read = channel.read(target);
+
+                    if (read > 0) {
+                        readBytes.add(read);
+                    }
+
+                    return read;
+                }
+
+                @Override
+                public Optional<ByteBuffer> map() throws IOException {
+
+                    Optional<ByteBuffer> mapped = MappableChannel.map(channel);
+                    mapped.ifPresent(buffer -> readBytes.add(buffer.remaining()));
+
+                    return mapped;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return open;
+                }
+
+                @Override
+                public void close() throws IOException {
+
+                    if (open) {
+
+                        open = false;
+                        inFlight.decrementAndGet();
+                        channel.close();
+                    }
+                }
+            };
+        }
+
+        /**
+         * Creates the writer of a blob. The committed blob is counted, and the blob it replaces stops being counted.
+         *
+         * @return the writer of the blob.
+         * @throws IOException if the writer cannot be created.
+         */
+        private BlobWriter create() throws IOException {
+
+            BlobWriter writer = store.create();
+            inFlight.incrementAndGet();
+
+            return new BlobWriter() {
+
+                private boolean open = true;
+
+                private long written;
+
+                @Override
+                public int write(ByteBuffer source) throws IOException {
+
+                    int length = writer.write(source);
+                    writtenBytes.add(length);
+                    written += length;
+
+                    return length;
+                }
+
+                @Override
+                public void commit(BlobLocator locator) throws IOException {
+
+                    long replaced = size(locator);
+
+                    writer.commit(locator);
+
+                    if (replaced < 0) {
+                        blobs.incrementAndGet();
+                    }
+
+                    bytes.addAndGet(written - Math.max(replaced, 0));
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return open;
+                }
+
+                @Override
+                public void close() throws IOException {
+
+                    if (open) {
+
+                        open = false;
+                        inFlight.decrementAndGet();
+                        writer.close();
+                    }
+                }
+            };
+        }
+    }
+
+    /**
+     * The {@link BlobWriter} that writes the units of the content round-robin into the stripes.
+     */
+    private final class StripedBlobWriter implements BlobWriter {
+
+        /**
+         * The directories of the stripes.
+         */
+        private final List<Directory> targets;
+
+        /**
+         * The writers of the stripes, that are created on the first unit of the stripe.
+         */
+        private final List<BlobWriter> stripes = new ArrayList<>();
+
+        /**
+         * The index of the unit being written.
+         */
+        private long unit;
+
+        /**
+         * The number of the bytes of the unit being written.
+         */
+        private int unitBytes;
+
+        private boolean open = true;
+
+        private StripedBlobWriter(List<Directory> targets) {
+            this.targets = targets;
+        }
+
+        @Override
+        public int write(ByteBuffer source) throws IOException {
+
+            checkState(open, "Writer is closed.");
+
+            int length = source.remaining();
+
+            while (source.hasRemaining()) {
+
+                int stripe = (int) (unit % targets.size());
+
+                if (stripe == stripes.size()) {
+                    stripes.add(targets.get(stripe).create());
+                }
+
+                if (targets.size() == 1) {
+
+                    stripes.get(stripe).write(source);
+                    continue;
+                }
+
+                ByteBuffer part = source.duplicate();
+                part.limit(part.position() + Math.min(part.remaining(), stripeUnit - unitBytes));
+
+                int written = stripes.get(stripe).write(part);
+                source.position(source.position() + written);
+                unitBytes += written;
+
+                if (unitBytes == stripeUnit) {
+
+                    ++unit;
+                    unitBytes = 0;
+                }
+            }
+
+            return length;
+        }
+
+        @Override
+        public void commit(BlobLocator locator) throws IOException {
+
+            checkState(open, "Writer is closed.");
+            checkNotNull(locator);
+
+            if (stripes.isEmpty()) {
+                stripes.add(targets.get(0).create());
+            }
+
+            int count = stripes.size();
+            Placement placement = new Placement(new int[count], count == 1 ? 0 : stripeUnit);
+            Lock lock = locks.get(locator);
+            lock.lock();
+
+            try {
+
+                // The first stripe is committed last, so an interrupted commit is recognized by it on restore.
+                for (int stripe = count - 1; stripe >= 0; --stripe) {
+
+                    stripes.get(stripe).commit(blobLocator(locator, stripe, placement));
+                    placement.directories[stripe] = targets.get(stripe).index;
+                }
+
+                // The previous content is deleted only once the new one is committed, so a failed commit keeps it.
+                Placement previous = placements.put(locator, placement);
+
+                if (previous != null) {
+                    deleteReplaced(locator, previous, placement);
+                }
+
+            } finally {
+                lock.unlock();
+            }
+
+            close();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() throws IOException {
+
+            open = false;
+            closeQuietly(stripes);
+        }
+    }
+
+    /**
+     * The {@link ReadableByteChannel} that reads the units of the content from the stripes in turn. The next unit of
+     * every stripe is read ahead in parallel.
+     */
+    private final class StripedChannel implements ReadableByteChannel {
+
+        private final List<ReadableByteChannel> stripes;
+
+        /**
+         * The size of a stripe unit in bytes.
+         */
+        private final int stripeUnit;
+
+        /**
+         * The units of the stripes being read ahead.
+         */
+        private final List<Future<ByteBuffer>> units = new ArrayList<>();
+
+        /**
+         * The index of the unit being read.
+         */
+        private long unit = -1;
+
+        /**
+         * The unit being read.
+         */
+        private ByteBuffer current = ByteBuffer.allocate(0);
+
+        /**
+         * Whether the unit being read is the last one.
+         */
+        private boolean last;
+
+        private boolean open = true;
+
+        private StripedChannel(List<ReadableByteChannel> stripes, int stripeUnit) {
+
+            this.stripes = stripes;
+            this.stripeUnit = stripeUnit;
+
+            for (ReadableByteChannel stripe : stripes) {
+                units.add(readAhead(stripe, ByteBuffer.allocate(stripeUnit)));
+            }
+        }
+
+        @Override
+        public int read(ByteBuffer target) throws IOException {
+
+            checkState(open, "Channel is closed.");
+
+            while (!current.hasRemaining()) {
+
+                if (last) {
+                    return -1;
+                }
+
+                if (unit >= 0) {
+
+                    int stripe = (int) (unit % stripes.size());
+                    units.set(stripe, readAhead(stripes.get(stripe), current));
+                }
+
+                ++unit;
+                current = await(units.get((int) (unit % stripes.size())));
+                last = current.remaining() < stripeUnit;
+            }
+
+            int length = Math.min(current.remaining(), target.remaining());
+            ByteBuffer part = current.duplicate();
+            part.limit(part.position() + length);
+            target.put(part);
+            current.position(current.position() + length);
+
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void close() {
+
+            if (open) {
+
+                open = false;
+
+                for (Future<ByteBuffer> future : units) {
+
+                    try {
+
+                        await(future);
+
+                    } catch (IOException e) {
+
+                        // The unit is not needed anymore.
+                    }
+                }
+
+                closeQuietly(stripes);
+            }
+        }
+
+        /**
+         * Starts reading the next unit of the stripe.
+         *
+         * @param stripe the channel of the stripe.
+         * @param buffer the buffer to read the unit into.
+         * @return the future of the unit, that is shorter than the stripe unit if it is the last one.
+         */
+        private Future<ByteBuffer> readAhead(ReadableByteChannel stripe, ByteBuffer buffer) {
+
+            return stripeReaders.submit(() -> {
+
+                buffer.clear();
+
+                while (buffer.hasRemaining() && stripe.read(buffer) >= 0) {
+                    // The unit is read until it is full or the stripe ends.
+                }
+
+                buffer.flip();
+
+                return buffer;
+            });
+        }
+
+        private ByteBuffer await(Future<ByteBuffer> unit) throws IOException {
+
+            try {
+
+                return unit.get();
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+
+                throw new InterruptedIOException("Interrupted while reading stripe.");
+
+            } catch (ExecutionException e) {
+
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+
+                throw new IOException("Cannot read stripe.", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package filestore.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The thread-safe {@link FrequencySketch}, that is split into stripes by the hashes of the keys.
+ *
+ * <p>Each stripe is a separate {@link FrequencySketch} guarded by its own lock, so the increments of different keys
+ * rarely wait for each other. A stripe counts and ages only its own keys.
+ *
+ * <p>This implementation is thread-safe.
+ *
+ * @param <K> - counted key.
+ */
+final class StripedFrequencySketch<K> {
+
+    /**
+     * The sketches of the stripes, their number is a power of two.
+     */
+    private final List<FrequencySketch<K>> stripes;
+
+    /**
+     * The number of the bits of a spread hash that choose a stripe.
+     */
+    private final int stripeBits;
+
+    /**
+     * Instantiates StripedFrequencySketch.
+     *
+     * @param expectedKeys the expected number of distinct keys, that are spread over the stripes.
+     * @param stripes      the number of the stripes, a power of two.
+     */
+    StripedFrequencySketch(int expectedKeys, int stripes) {
+
+        checkArgument(Integer.bitCount(stripes) == 1, "Number of stripes must be a power of two: %s", stripes);
+
+        this.stripes = new ArrayList<>(stripes);
+        this.stripeBits = Integer.numberOfTrailingZeros(stripes);
+
+        for (int stripe = 0; stripe < stripes; ++stripe) {
+            this.stripes.add(new FrequencySketch<>(Math.max(1, expectedKeys / stripes)));
+        }
+    }
+
+    /**
+     * Counts one more occurrence of the key.
+     *
+     * @param key the occurred key.
+     */
+    void increment(K key) {
+
+        FrequencySketch<K> stripe = stripe(key);
+
+        synchronized (stripe) {
+            stripe.increment(key);
+        }
+    }
+
+    /**
+     * Estimates the frequency of the key.
+     *
+     * @param key the key.
+     * @return the estimated number of recent occurrences of the key, at most {@link FrequencySketch#MAX_FREQUENCY}.
+     */
+    int frequency(K key) {
+
+        FrequencySketch<K> stripe = stripe(key);
+
+        synchronized (stripe) {
+            return stripe.frequency(key);
+        }
+    }
+
+    /**
+     * Chooses the stripe of the key by the high bits of its spread hash.
+     *
+     * @param key the key.
+     * @return the sketch of the stripe.
+     */
+    private FrequencySketch<K> stripe(K key) {
+
+        if (stripeBits == 0) {
+            return stripes.get(0);
+        }
+
+        int spread = checkNotNull(key).hashCode() * 0x85EBCA6B;
+
+        return stripes.get(spread >>> (Integer.SIZE - stripeBits));
+    }
+}
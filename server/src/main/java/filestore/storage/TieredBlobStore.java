@@ -0,0 +1,627 @@
+package filestore.storage;
+
+import com.google.common.util.concurrent.Striped;
+import io.nure.filestore.metrics.Counter;
+import io.nure.filestore.metrics.MetricRegistry;
+import org.slf4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link BlobStore} that keeps the contents in two tiers: the warm tier for the recently used contents and the
+ * compressed cold tier for the contents that were not read for a long time.
+ *
+ * <p>New contents are written into the warm tier. A content that was not read for {@code coldAfter} is demoted into
+ * the cold tier: it is copied there and deleted from the warm tier. A cold content that is read
+ * {@value #PROMOTION_READS} times is promoted back into the warm tier. The migrations run in the
+ * background, the readers see the same contents regardless of their tier. The hot tier in memory is
+ * {@link CachingBlobStore} in front of this store. Its hits never reach this store, so they must be passed to
+ * {@link #recordRead(BlobLocator)}, otherwise the most popular contents would be demoted.
+ *
+ * <p>The encoded contents are kept in the cold tier as they are. The identity contents are compressed there only if
+ * the compression of new contents is turned off. Otherwise they are identity because their type, such as an image or
+ * a video, does not compress, and are kept uncompressed under the locators with {@value #UNCOMPRESSED_SUFFIX}.
+ *
+ * <p>The times of the last reads of the warm contents are saved into the file after each search for the contents to
+ * demote and on close, and are restored on start. Only the warm content, which read time was never saved, is treated
+ * as read at the start.
+ *
+ * <p>The metrics {@code blob.tier.warm.blobs}, {@code blob.tier.cold.blobs}, {@code blob.tier.demotions},
+ * {@code blob.tier.promotions}, {@code blob.tier.migrated.bytes} and {@code blob.tier.migration.failures} are
+ * registered in {@link MetricRegistry}.
+ *
+ * <p>This implementation is thread-safe. A migration of a content and its deletion are serialized by a lock, striped
+ * by {@link BlobLocator}.
+ */
+public final class TieredBlobStore implements BlobStore, Closeable {
+
+    private static final Logger logger = getLogger(TieredBlobStore.class);
+
+    /**
+     * The number of reads of a cold content after which it is promoted into the warm tier.
+     */
+    private static final int PROMOTION_READS = 2;
+
+    /**
+     * The number of locks that guard migrations of the contents.
+     */
+    private static final int LOCK_STRIPES = 256;
+
+    /**
+     * The maximal time to wait for the running migration on close.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The suffix of the locators of the identity contents, that are kept uncompressed in the cold tier.
+     */
+    private static final String UNCOMPRESSED_SUFFIX = ".uncompressed";
+
+    /**
+     * The store of the warm tier.
+     */
+    private final BlobStore warm;
+
+    /**
+     * The store of the cold tier.
+     */
+    private final BlobStore cold;
+
+    /**
+     * The time after the last read after which a content is demoted.
+     */
+    private final Duration coldAfter;
+
+    /**
+     * Whether the identity contents are compressed in the cold tier. The identity content is not compressed either
+     * because its type is not compressible, or because the compression of new contents is turned off. Only in the
+     * latter case compressing it is worth the processor time.
+     */
+    private final boolean compressIdentity;
+
+    /**
+     * The file the times of the last reads of the warm contents are saved into.
+     */
+    private final Path readTimesFile;
+
+    /**
+     * The source of the current time.
+     */
+    private final Clock clock;
+
+    /**
+     * The times of the last reads of the warm contents in milliseconds.
+     */
+    private final ConcurrentMap<BlobLocator, Long> warmReads = new ConcurrentHashMap<>();
+
+    /**
+     * The numbers of the reads of the cold contents since their demotion.
+     */
+    private final ConcurrentMap<BlobLocator, AtomicInteger> coldReads = new ConcurrentHashMap<>();
+
+    /**
+     * The identity contents, that are kept uncompressed in the cold tier under the locators with
+     * {@link #UNCOMPRESSED_SUFFIX}.
+     */
+    private final Set<BlobLocator> uncompressedColdBlobs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Locks that serialize migrations and deletions of the contents.
+     */
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+
+    private final Counter demotions;
+
+    private final Counter promotions;
+
+    private final Counter migratedBytes;
+
+    private final Counter migrationFailures;
+
+    /**
+     * The executor of the migrations, {@code null} until they are scheduled.
+     */
+    private volatile ScheduledExecutorService migrations;
+
+    /**
+     * Instantiates TieredBlobStore and registers the contents that are already kept in the tiers with their saved
+     * times of the last reads.
+     *
+     * @param warm             the store of the warm tier.
+     * @param cold             the store of the cold tier.
+     * @param coldAfter        the time after the last read after which a content is demoted.
+     * @param compressIdentity whether the identity contents are compressed in the cold tier, that is whether the
+     *                         compression of new contents is turned off.
+     * @param readTimesFile    the file the times of the last reads of the warm contents are saved into.
+     * @param clock            the source of the current time.
+     * @param metrics          the registry to register the metrics of the tiers in.
+     * @throws IOException if the contents of the tiers cannot be listed or the saved read times cannot be read.
+     */
+    public TieredBlobStore(BlobStore warm, BlobStore cold, Duration coldAfter, boolean compressIdentity,
+                           Path readTimesFile, Clock clock, MetricRegistry metrics) throws IOException {
+
+        this.warm = checkNotNull(warm);
+        this.cold = checkNotNull(cold);
+        this.coldAfter = checkNotNull(coldAfter);
+        this.compressIdentity = compressIdentity;
+        this.readTimesFile = checkNotNull(readTimesFile);
+        this.clock = checkNotNull(clock);
+
+        long now = clock.millis();
+        Map<BlobLocator, Long> savedReads = loadReadTimes();
+
+        for (BlobLocator coldLocator : cold.locators()) {
+
+            String value = coldLocator.value();
+
+            if (value.endsWith(UNCOMPRESSED_SUFFIX)) {
+
+                BlobLocator locator =
+                    new BlobLocator(value.substring(0, value.length() - UNCOMPRESSED_SUFFIX.length()));
+
+                uncompressedColdBlobs.add(locator);
+                coldReads.put(locator, new AtomicInteger());
+
+            } else {
+                coldReads.put(coldLocator, new AtomicInteger());
+            }
+        }
+
+        for (BlobLocator locator : warm.locators()) {
+
+            warmReads.put(locator, savedReads.getOrDefault(locator, now));
+            coldReads.remove(locator);
+        }
+
+        demotions = metrics.counter("blob.tier.demotions");
+        promotions = metrics.counter("blob.tier.promotions");
+        migratedBytes = metrics.counter("blob.tier.migrated.bytes");
+        migrationFailures = metrics.counter("blob.tier.migration.failures");
+        metrics.gauge("blob.tier.warm.blobs", warmReads::size);
+        metrics.gauge("blob.tier.cold.blobs", coldReads::size);
+    }
+
+    @Override
+    public BlobWriter create() throws IOException {
+
+        BlobWriter writer = warm.create();
+
+        return new BlobWriter() {
+
+            @Override
+            public void commit(BlobLocator locator) throws IOException {
+
+                writer.commit(locator);
+                warmReads.put(locator, clock.millis());
+            }
+
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                return writer.write(source);
+            }
+
+            @Override
+            public boolean isOpen() {
+                return writer.isOpen();
+            }
+
+            @Override
+            public void close() throws IOException {
+                writer.close();
+            }
+        };
+    }
+
+    @Override
+    public ReadableByteChannel open(BlobLocator locator) throws IOException {
+
+        checkNotNull(locator);
+
+        try {
+
+            return openWarm(locator);
+
+        } catch (NoSuchFileException e) {
+
+            try {
+
+                return openCold(locator);
+
+            } catch (NoSuchFileException promoted) {
+
+                // The content was promoted after it was not found in the warm tier.
+                return openWarm(locator);
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(BlobLocator locator) throws IOException {
+
+        Lock lock = locks.get(checkNotNull(locator));
+        lock.lock();
+
+        try {
+
+            boolean deletedWarm = warm.delete(locator);
+            boolean deletedCold = cold.delete(locator);
+            boolean deletedUncompressedCold = cold.delete(uncompressedLocator(locator));
+
+            warmReads.remove(locator);
+            coldReads.remove(locator);
+            uncompressedColdBlobs.remove(locator);
+
+            return deletedWarm || deletedCold || deletedUncompressedCold;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<BlobLocator> locators() {
+
+        List<BlobLocator> locators = new ArrayList<>(warmReads.keySet());
+        locators.addAll(coldReads.keySet());
+
+        return locators;
+    }
+
+    /**
+     * Records the read of the content, that is served above this store, for example from the memory of
+     * {@link CachingBlobStore}. The read postpones the demotion of a warm content.
+     *
+     * @param locator the locator of the read content.
+     */
+    public void recordRead(BlobLocator locator) {
+
+        warmReads.replace(checkNotNull(locator), clock.millis());
+    }
+
+    /**
+     * Starts periodic demotions of the contents that were not read for a long time.
+     *
+     * @param interval the interval between the searches for the contents to demote.
+     */
+    public void scheduleMigrations(Duration interval) {
+
+        checkState(migrations == null, "Migrations are already scheduled.");
+
+        migrations = newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "blob-tiering");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long intervalMillis = interval.toMillis();
+
+        migrations.scheduleWithFixedDelay(this::demote, intervalMillis, intervalMillis, MILLISECONDS);
+    }
+
+    /**
+     * Demotes into the cold tier all warm contents that were not read for {@code coldAfter}, and saves the times of
+     * the last reads of the contents that stay warm. A failed demotion is logged and retried on the next run.
+     */
+    public void demote() {
+
+        long coldSince = clock.millis() - coldAfter.toMillis();
+
+        for (Map.Entry<BlobLocator, Long> read : warmReads.entrySet()) {
+
+            if (read.getValue() < coldSince) {
+                migrate(read.getKey(), true);
+            }
+        }
+
+        saveReadTimes();
+    }
+
+    /**
+     * Waits for the running migration, stops the migrations and saves the times of the last reads.
+     */
+    @Override
+    public void close() {
+
+        ScheduledExecutorService executor = migrations;
+
+        if (executor != null) {
+
+            executor.shutdown();
+
+            try {
+
+                executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        saveReadTimes();
+    }
+
+    /**
+     * Reads the saved times of the last reads of the warm contents.
+     *
+     * @return the times of the last reads in milliseconds by the locators, empty if they were never saved.
+     * @throws IOException if the file of the read times cannot be read.
+     */
+    private Map<BlobLocator, Long> loadReadTimes() throws IOException {
+
+        Map<BlobLocator, Long> reads = new HashMap<>();
+
+        if (!Files.exists(readTimesFile)) {
+            return reads;
+        }
+
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+            Files.newInputStream(readTimesFile)))) {
+
+            int count = input.readInt();
+
+            for (int read = 0; read < count; ++read) {
+                reads.put(new BlobLocator(input.readUTF()), input.readLong());
+            }
+        }
+
+        return reads;
+    }
+
+    /**
+     * Saves the times of the last reads of the warm contents and replaces the previously saved ones. A failure is
+     * logged, the times are saved again on the next run.
+     */
+    private void saveReadTimes() {
+
+        Map<BlobLocator, Long> reads = new HashMap<>(warmReads);
+        Path temporary = readTimesFile.resolveSibling(readTimesFile.getFileName() + ".tmp");
+
+        try {
+
+            try (FileOutputStream fileOutput = new FileOutputStream(temporary.toFile())) {
+
+                DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput));
+
+                output.writeInt(reads.size());
+
+                for (Map.Entry<BlobLocator, Long> read : reads.entrySet()) {
+
+                    output.writeUTF(read.getKey().value());
+                    output.writeLong(read.getValue());
+                }
+
+                output.flush();
+                fileOutput.getChannel().force(true);
+            }
+
+            Files.move(temporary, readTimesFile, ATOMIC_MOVE, REPLACE_EXISTING);
+
+        } catch (IOException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error(format("Cannot save read times of contents to %s.", readTimesFile), e);
+            }
+        }
+    }
+
+    /**
+     * Opens the content in the warm tier and records the time of the read.
+     *
+     * @param locator the locator of the content.
+     * @return the channel with the content.
+     * @throws IOException if the content is not in the warm tier or cannot be read.
+     */
+    private ReadableByteChannel openWarm(BlobLocator locator) throws IOException {
+
+        ReadableByteChannel channel = warm.open(locator);
+        warmReads.put(locator, clock.millis());
+
+        return channel;
+    }
+
+    /**
+     * Opens the content in the cold tier and schedules its promotion if it is read often enough.
+     *
+     * @param locator the locator of the content.
+     * @return the channel with the decompressed content.
+     * @throws IOException if the content is not in the cold tier or cannot be read.
+     */
+    private ReadableByteChannel openCold(BlobLocator locator) throws IOException {
+
+        ReadableByteChannel channel = cold.open(coldLocator(locator));
+        AtomicInteger reads = coldReads.computeIfAbsent(locator, key -> new AtomicInteger());
+        ScheduledExecutorService executor = migrations;
+
+        if (reads.incrementAndGet() == PROMOTION_READS && executor != null) {
+            executor.execute(() -> migrate(locator, false));
+        }
+
+        return isCompressedInColdTier(locator) ? ContentEncoding.GZIP.decode(channel) : channel;
+    }
+
+    /**
+     * Whether the content is compressed in the cold tier. The contents that are already encoded, and the identity
+     * contents that are kept uncompressed, are kept as they are.
+     *
+     * @param locator the locator of the content.
+     * @return {@code true} if the cold content is compressed.
+     */
+    private boolean isCompressedInColdTier(BlobLocator locator) {
+
+        return ContentEncoding.of(locator) == ContentEncoding.IDENTITY && !uncompressedColdBlobs.contains(locator);
+    }
+
+    /**
+     * Retrieves the locator the content is kept under in the cold tier.
+     *
+     * @param locator the locator of the content.
+     * @return the locator of the content in the cold tier.
+     */
+    private BlobLocator coldLocator(BlobLocator locator) {
+
+        return uncompressedColdBlobs.contains(locator) ? uncompressedLocator(locator) : locator;
+    }
+
+    /**
+     * Retrieves the locator the identity content is kept under in the cold tier, if it is not compressed there.
+     *
+     * @param locator the locator of the content.
+     * @return the locator of the uncompressed content in the cold tier.
+     */
+    private static BlobLocator uncompressedLocator(BlobLocator locator) {
+
+        return new BlobLocator(locator.value() + UNCOMPRESSED_SUFFIX);
+    }
+
+    /**
+     * Moves the content between the tiers. The content is committed into the target tier before it is deleted from
+     * the source tier, so it is always readable from one of them.
+     *
+     * @param locator  the locator of the content.
+     * @param demotion whether the content is moved from the warm tier into the cold one, otherwise it is promoted.
+     */
+    private void migrate(BlobLocator locator, boolean demotion) {
+
+        Lock lock = locks.get(locator);
+        lock.lock();
+
+        try {
+
+            if (!(demotion ? warmReads : coldReads).containsKey(locator)) {
+                return;
+            }
+
+            boolean identity = ContentEncoding.of(locator) == ContentEncoding.IDENTITY;
+
+            if (demotion) {
+
+                boolean compress = identity && compressIdentity;
+                BlobLocator coldLocator = identity && !compress ? uncompressedLocator(locator) : locator;
+                long bytes = copy(warm, locator, cold, coldLocator, compress, false);
+
+                if (!coldLocator.equals(locator)) {
+                    uncompressedColdBlobs.add(locator);
+                }
+
+                coldReads.put(locator, new AtomicInteger());
+                warmReads.remove(locator);
+                demotions.increment();
+                warm.delete(locator);
+                migratedBytes.add(bytes);
+
+            } else {
+
+                BlobLocator coldLocator = coldLocator(locator);
+                long bytes = copy(cold, coldLocator, warm, locator, false, isCompressedInColdTier(locator));
+
+                warmReads.put(locator, clock.millis());
+                coldReads.remove(locator);
+                promotions.increment();
+                cold.delete(coldLocator);
+                uncompressedColdBlobs.remove(locator);
+                migratedBytes.add(bytes);
+            }
+
+        } catch (NoSuchFileException e) {
+
+            // The content was deleted after it was read for the last time.
+            (demotion ? warmReads : coldReads).remove(locator);
+
+        } catch (IOException | RuntimeException e) {
+
+            migrationFailures.increment();
+
+            if (logger.isErrorEnabled()) {
+                logger.error(format("Cannot move content %s between tiers.", locator.value()), e);
+            }
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies the content between the stores chunk by chunk.
+     *
+     * @param source        the store to copy the content from.
+     * @param sourceLocator the locator of the content in the source store.
+     * @param target        the store to copy the content into.
+     * @param targetLocator the locator of the content in the target store.
+     * @param compress      whether the content is compressed on write.
+     * @param decompress    whether the content is decompressed on read.
+     * @return the number of read bytes.
+     * @throws IOException if the content cannot be copied.
+     */
+    private static long copy(BlobStore source, BlobLocator sourceLocator, BlobStore target, BlobLocator targetLocator,
+                             boolean compress, boolean decompress) throws IOException {
+
+        long copied = 0;
+        ByteBuffer chunk = BlobStore.allocateChunk();
+
+        try (ReadableByteChannel input = decompress
+            ? ContentEncoding.GZIP.decode(source.open(sourceLocator))
+            : source.open(sourceLocator);
+             BlobWriter writer = target.create()) {
+
+            WritableByteChannel output = compress ? ContentEncoding.GZIP.encode(writer) : writer;
+
+            while (input.read(chunk) != -1) {
+
+                chunk.flip();
+                copied += chunk.remaining();
+
+                while (chunk.hasRemaining()) {
+                    output.write(chunk);
+                }
+
+                chunk.clear();
+            }
+
+            if (compress) {
+
+                // Finishes the compression, but leaves the writer open.
+                output.close();
+            }
+
+            writer.commit(targetLocator);
+        }
+
+        return copied;
+    }
+}
@@ -0,0 +1,126 @@
+package filestore.storage;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Optional.ofNullable;
+
+/**
+ * The {@link StorageIndex} that maps each key to at most one {@link Record}.
+ *
+ * <p>The storage refuses to put a record whose key is already taken by another record. The key is reserved with
+ * {@link ConcurrentMap#putIfAbsent(Object, Object)}, so the uniqueness holds without a global lock.
+ *
+ * <p>This implementation is thread-safe.
+ *
+ * @param <K> - key of the index.
+ * @param <I> - identifier {@link RecordId} of the indexed record.
+ * @param <R> - indexed record.
+ */
+public final class UniqueIndex<K, I extends RecordId, R extends Record<I>> extends StorageIndex<K, I, R> {
+
+    /**
+     * Results of the reservation of the key of the record.
+     */
+    enum Reservation {
+
+        /**
+         * The key was free and is now reserved by the record.
+         */
+        RESERVED,
+
+        /**
+         * The key has already been reserved by the record or the record is not indexed.
+         */
+        OWNED,
+
+        /**
+         * The key is taken by another record.
+         */
+        TAKEN
+    }
+
+    /**
+     * Identifiers of the records by their keys.
+     */
+    private final ConcurrentMap<K, I> identifiers = new ConcurrentHashMap<>();
+
+    /**
+     * Retrieves the record from the storage by its identifier.
+     */
+    private final Function<I, Optional<R>> records;
+
+    /**
+     * Instantiates UniqueIndex.
+     *
+     * @param keyExtractor function that extracts the key of the index from the record.
+     * @param records      function that retrieves the record from the storage by its identifier.
+     */
+    UniqueIndex(Function<R, K> keyExtractor, Function<I, Optional<R>> records) {
+
+        super(keyExtractor);
+
+        this.records = checkNotNull(records);
+    }
+
+    /**
+     * Retrieves the record by the key of the index.
+     *
+     * @param key the key of the record.
+     * @return the record wrapped in {@link Optional} or {@link Optional#empty()} if there is no record with such key.
+     */
+    public Optional<R> get(K key) {
+
+        checkNotNull(key);
+
+        return ofNullable(identifiers.get(key))
+            .flatMap(records)
+            .filter(record -> key.equals(keyOf(record)));
+    }
+
+    /**
+     * Reserves the key of the record if it is not taken by another record.
+     *
+     * @param record the record to reserve the key for.
+     * @return the result of the reservation.
+     */
+    Reservation reserve(R record) {
+
+        K key = keyOf(record);
+
+        if (key == null) {
+            return Reservation.OWNED;
+        }
+
+        I owner = identifiers.putIfAbsent(key, record.identifier());
+
+        if (owner == null) {
+            return Reservation.RESERVED;
+        }
+
+        return owner.equals(record.identifier()) ? Reservation.OWNED : Reservation.TAKEN;
+    }
+
+    @Override
+    void update(@Nullable R previous, R record) {
+
+        if (previous != null && !Objects.equals(keyOf(previous), keyOf(record))) {
+            remove(previous);
+        }
+    }
+
+    @Override
+    void remove(R record) {
+
+        K key = keyOf(record);
+
+        if (key != null) {
+            identifiers.remove(key, record.identifier());
+        }
+    }
+}
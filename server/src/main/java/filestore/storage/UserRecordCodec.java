@@ -0,0 +1,30 @@
+package filestore.storage;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The {@link RecordCodec} of {@link UserRecord}s.
+ */
+public final class UserRecordCodec implements RecordCodec<UserId, UserRecord> {
+
+    @Override
+    public void write(UserRecord record, DataOutput output) throws IOException {
+
+        output.writeUTF(record.identifier().value());
+        output.writeUTF(record.loginName().value());
+        output.writeUTF(record.passwordHash());
+    }
+
+    @Override
+    public UserRecord read(DataInput input) throws IOException {
+
+        return new UserRecord(new UserId(input.readUTF()), new LoginName(input.readUTF()), input.readUTF());
+    }
+
+    @Override
+    public UserId identifier(String value) {
+        return new UserId(value);
+    }
+}
@@ -9,6 +9,25 @@ import static com.google.common.base.Preconditions.checkNotNull;
  */
 public class UserStorage extends InMemoryStorage<UserId, UserRecord> {
 
+    /**
+     * The index of users by their login names.
+     */
+    private final UniqueIndex<LoginName, UserId, UserRecord> loginIndex = uniqueIndex(UserRecord::loginName);
+
+    /**
+     * Puts {@link UserRecord} into the storage only if its {@link LoginName} is not taken by another user.
+     *
+     * <p>The check and the reservation of the login name is an atomic operation, so there is never more than one
+     * user with the same login name, even if they are registered concurrently.
+     *
+     * @param record the record to put into the storage.
+     * @return {@code true} if the record was put into the storage, {@code false} if the login name is already taken.
+     */
+    public boolean putIfLoginAbsent(UserRecord record) {
+
+        return putIfUnique(record);
+    }
+
     /**
      * Retrieves {@link UserRecord} from the storage by passed {@link LoginName}.
      *
@@ -19,10 +38,7 @@ public class UserStorage extends InMemoryStorage<UserId, UserRecord> {
 
         checkNotNull(loginName);
 
-        return getAll()
-            .stream()
-            .filter(userRecord -> userRecord.loginName().equals(loginName))
-            .findFirst();
+        return loginIndex.get(loginName);
     }
 
     /**
@@ -38,10 +54,6 @@ public class UserStorage extends InMemoryStorage<UserId, UserRecord> {
         checkNotNull(loginName);
         checkNotNull(passwordHash);
 
-        return getAll()
-            .stream()
-            .filter(userRecord -> userRecord.loginName().equals(loginName)
-                && userRecord.passwordHash().equals(passwordHash))
-            .findFirst();
+        return get(loginName).filter(userRecord -> userRecord.passwordHash().equals(passwordHash));
     }
 }
@@ -0,0 +1,123 @@
+package filestore.storage;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.System.currentTimeMillis;
+
+/**
+ * The {@link StorageIndex} that keeps a version of the group of {@link Record}s with each key. The version changes
+ * whenever a record with the key is put into the storage, deleted from it, or moved to another key.
+ *
+ * <p>A client may compare versions instead of the records themselves to find out whether the group was changed, for
+ * example to tell whether a listing of a folder is still fresh.
+ *
+ * <p>The versions are taken from one sequence, that starts from the current time in microseconds, so a version is
+ * never reused for another state of the group, also after the restart of the application. An empty group has the
+ * version the index started with, and the index keeps only the versions and the sizes of the groups with records, so
+ * it does not grow with the keys that were ever used.
+ *
+ * <p>This implementation is thread-safe and reads never block.
+ *
+ * @param <K> - key of the index.
+ * @param <I> - identifier {@link RecordId} of the indexed record.
+ * @param <R> - indexed record.
+ */
+public final class VersionIndex<K, I extends RecordId, R extends Record<I>> extends StorageIndex<K, I, R> {
+
+    /**
+     * The version of the groups that were not changed since the index was created.
+     */
+    private final long initialVersion = currentTimeMillis() * 1000;
+
+    /**
+     * The sequence of the versions.
+     */
+    private final AtomicLong sequence = new AtomicLong(initialVersion);
+
+    /**
+     * The versions and sizes of the non-empty groups by their keys.
+     */
+    private final ConcurrentMap<K, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * Instantiates VersionIndex.
+     *
+     * @param keyExtractor function that extracts the key of the index from the record.
+     */
+    VersionIndex(Function<R, K> keyExtractor) {
+        super(keyExtractor);
+    }
+
+    /**
+     * Retrieves the version of the group of records with the key.
+     *
+     * @param key the key of the records.
+     * @return the current version of the group.
+     */
+    public long version(K key) {
+
+        Group group = groups.get(checkNotNull(key));
+
+        return group == null ? initialVersion : group.version;
+    }
+
+    @Override
+    void update(@Nullable R previous, R record) {
+
+        K key = keyOf(record);
+
+        if (previous == null) {
+            change(key, 1);
+        } else if (Objects.equals(keyOf(previous), key)) {
+            change(key, 0);
+        } else {
+            change(keyOf(previous), -1);
+            change(key, 1);
+        }
+    }
+
+    @Override
+    void remove(R record) {
+
+        change(keyOf(record), -1);
+    }
+
+    /**
+     * Gives the group with the key a fresh version and changes its size, dropping the group once it becomes empty.
+     *
+     * @param key   the key of the group or {@code null} if the record is not indexed.
+     * @param delta the number of records added to the group, negative if the records are removed.
+     */
+    private void change(@Nullable K key, int delta) {
+
+        if (key != null) {
+            groups.compute(key, (groupKey, group) -> {
+
+                int size = (group == null ? 0 : group.size) + delta;
+
+                return size > 0 ? new Group(sequence.incrementAndGet(), size) : null;
+            });
+        }
+    }
+
+    /**
+     * The version and the number of records of a non-empty group.
+     */
+    private static final class Group {
+
+        private final long version;
+
+        private final int size;
+
+        private Group(long version, int size) {
+            this.version = version;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.nure.filestore.api.ContentChallenge;
+import io.nure.filestore.api.ContentChallengeFailedException;
+import io.nure.filestore.api.ContentChallengeNotFoundException;
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.FileMetadata;
+import io.nure.filestore.api.FolderNotFoundException;
+import io.nure.filestore.api.InstantUploading;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.OwnershipViolatedException;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.FORBIDDEN;
+import static io.nure.filestore.web.ResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static java.nio.channels.Channels.newChannel;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles client {@link Request}s to answer {@link ContentChallenge} and complete the upload
+ * of the file by the hash of its content.
+ *
+ * <p>The body of the request is the raw bytes of the challenged range of the content. The response is the uploaded
+ * file, or {@link ResponseStatus#FORBIDDEN} if the answer is wrong. The challenge is answered only once either way.
+ */
+public class AnswerContentChallengeRoute implements Route {
+
+    private static final Logger logger = getLogger(AnswerContentChallengeRoute.class);
+
+    /**
+     * The number of bytes, that the buffers of one request use: the chunk of the content, that is skipped to the
+     * challenged range, with the buffer of its decoding.
+     */
+    static final long MEMORY_FOOTPRINT = 2L * FileContent.CHUNK_SIZE;
+
+    /**
+     * The converter of the responses into JSON.
+     */
+    private final Gson jsonParser = new GsonBuilder()
+        .registerTypeAdapter(FileMetadata.class, new FileMetadataSerializer())
+        .create();
+
+    /**
+     * The upload of the files by the hashes of their contents.
+     */
+    private final InstantUploading instantUploading;
+
+    /**
+     * Instantiates AnswerContentChallengeRoute.
+     *
+     * @param instantUploading the upload of the files by hash.
+     */
+    public AnswerContentChallengeRoute(InstantUploading instantUploading) {
+
+        this.instantUploading = checkNotNull(instantUploading);
+    }
+
+    /**
+     * Handles {@link Request} of client to answer the {@link ContentChallenge} of the {@link LoggedInUser}.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return JSON of the uploaded {@link FileMetadata}, or the error message.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+        String challengeId = request.params("challengeId");
+
+        try {
+
+            FileMetadata uploadedFile = instantUploading.answer(
+                challengeId,
+                user.identifier(),
+                newChannel(request.raw().getInputStream())
+            );
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Uploaded file by hash: {}.", uploadedFile);
+            }
+
+            response.status(SUCCESS);
+
+            return jsonParser.toJson(uploadedFile, FileMetadata.class);
+
+        } catch (ContentChallengeNotFoundException | FolderNotFoundException e) {
+
+            return makeErrorResponse(response, NOT_FOUND, e.getMessage());
+
+        } catch (ContentChallengeFailedException | OwnershipViolatedException e) {
+
+            return makeErrorResponse(response, FORBIDDEN, e.getMessage());
+
+        } catch (IOException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Cannot answer challenge \"" + challengeId + "\".", e);
+            }
+
+            response.status(INTERNAL_SERVER_ERROR);
+
+            return "An error occurred when reading client request.";
+        }
+    }
+
+    /**
+     * Makes {@link Response} with the status and the message of the rejected answer.
+     *
+     * @param response server response.
+     * @param status   the status of the response.
+     * @param message  the message of the error.
+     * @return the message of the error.
+     */
+    private String makeErrorResponse(Response response, int status, String message) {
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Answer to challenge is rejected: {}.", message);
+        }
+
+        response.status(status);
+
+        return message;
+    }
+}
@@ -0,0 +1,511 @@
+package filestore.web;
+
+import com.google.common.base.Splitter;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.Durability;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
+
+import static java.lang.Integer.getInteger;
+import static java.lang.Long.getLong;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * A provider of configuration of {@link FileHubWebApplication}.
+ *
+ * <p>The configuration is read from the system properties, for example {@code -Dfilestore.data.directory=/var/data}.
+ */
+public class ApplicationConfiguration {
+
+    /**
+     * The name of the property with a path to the directory where the application keeps its data.
+     */
+    private static final String DATA_DIRECTORY_PROPERTY = "filestore.data.directory";
+
+    /**
+     * The name of the property with {@link Durability} of the storage journals.
+     */
+    private static final String JOURNAL_DURABILITY_PROPERTY = "filestore.journal.durability";
+
+    /**
+     * The name of the property with the interval in milliseconds between flushes of the batched storage journals.
+     */
+    private static final String JOURNAL_BATCH_INTERVAL_PROPERTY = "filestore.journal.batch.interval";
+
+    /**
+     * The name of the property with the interval in seconds between checkpoints of the storages.
+     */
+    private static final String CHECKPOINT_INTERVAL_PROPERTY = "filestore.checkpoint.interval";
+
+    /**
+     * The name of the property with {@link ContentEncoding} of the contents of the compressible files.
+     */
+    private static final String CONTENT_COMPRESSION_PROPERTY = "filestore.content.compression";
+
+    /**
+     * The name of the property with the capacity in megabytes of the cache of the contents of the files.
+     */
+    private static final String BLOB_CACHE_CAPACITY_PROPERTY = "filestore.blob.cache.capacity";
+
+    /**
+     * The name of the property with a path to the directory of the cold tier of the contents of the files.
+     */
+    private static final String COLD_DIRECTORY_PROPERTY = "filestore.cold.directory";
+
+    /**
+     * The name of the property with the time in hours after the last read after which a content becomes cold.
+     */
+    private static final String COLD_AFTER_PROPERTY = "filestore.cold.after";
+
+    /**
+     * The name of the property with the interval in minutes between the searches for the contents to make cold.
+     */
+    private static final String TIERING_INTERVAL_PROPERTY = "filestore.tiering.interval";
+
+    /**
+     * The name of the property with the maximal size in kilobytes of a content that is packed into the segments.
+     */
+    private static final String SMALL_BLOB_LIMIT_PROPERTY = "filestore.blob.small.limit";
+
+    /**
+     * The name of the property with the size in megabytes of a segment with the small contents.
+     */
+    private static final String SEGMENT_SIZE_PROPERTY = "filestore.blob.segment.size";
+
+    /**
+     * The name of the property with the interval in minutes between the compactions of the segments.
+     */
+    private static final String COMPACTION_INTERVAL_PROPERTY = "filestore.blob.compaction.interval";
+
+    /**
+     * The name of the property with the comma-separated paths to the directories the contents of the files are spread
+     * over.
+     */
+    private static final String BLOB_DIRECTORIES_PROPERTY = "filestore.blob.directories";
+
+    /**
+     * The name of the property with the size in kilobytes of a stripe unit of the large contents of the files.
+     */
+    private static final String STRIPE_UNIT_PROPERTY = "filestore.blob.stripe.unit";
+
+    /**
+     * The name of the property with the size in kilobytes of a chunk of the files uploaded in sessions.
+     */
+    private static final String UPLOAD_CHUNK_SIZE_PROPERTY = "filestore.upload.chunk.size";
+
+    /**
+     * The name of the property with the time in hours after the last access after which an upload session expires.
+     */
+    private static final String UPLOAD_EXPIRE_AFTER_PROPERTY = "filestore.upload.expire.after";
+
+    /**
+     * The name of the property with the interval in minutes between the searches for the expired upload sessions.
+     */
+    private static final String UPLOAD_EXPIRATION_INTERVAL_PROPERTY = "filestore.upload.expiration.interval";
+
+    /**
+     * The name of the property with the number of threads that store the files uploaded in one request.
+     */
+    private static final String UPLOAD_INGESTION_THREADS_PROPERTY = "filestore.upload.ingestion.threads";
+
+    /**
+     * The name of the property with the maximal number of files of one request, that are stored at once.
+     */
+    private static final String UPLOAD_INGESTION_FILES_PER_REQUEST_PROPERTY =
+        "filestore.upload.ingestion.files.per.request";
+
+    /**
+     * The name of the property with the maximal number of the upload sessions, that a user may keep open.
+     */
+    private static final String UPLOAD_MAX_SESSIONS_PER_USER_PROPERTY = "filestore.upload.max.sessions.per.user";
+
+    /**
+     * The name of the property with the memory in megabytes, that the buffers of the uploads in progress may use.
+     */
+    private static final String UPLOAD_MEMORY_BUDGET_PROPERTY = "filestore.upload.memory.budget";
+
+    /**
+     * The name of the property with the time in milliseconds an upload waits for the memory before it is rejected.
+     */
+    private static final String UPLOAD_MEMORY_WAIT_PROPERTY = "filestore.upload.memory.wait";
+
+    /**
+     * The name of the property with the time in seconds after which the challenge of the upload by hash expires.
+     */
+    private static final String UPLOAD_CHALLENGE_EXPIRE_AFTER_PROPERTY = "filestore.upload.challenge.expire.after";
+
+    /**
+     * The name of the property with the maximal number of the outstanding challenges of the upload by hash of a user.
+     */
+    private static final String UPLOAD_CHALLENGE_MAX_PER_USER_PROPERTY = "filestore.upload.challenge.max.per.user";
+
+    /**
+     * The name of the property with the maximal width and height of the thumbnails of the images in pixels.
+     */
+    private static final String THUMBNAIL_SIZE_PROPERTY = "filestore.thumbnail.size";
+
+    /**
+     * The name of the property with the number of threads that generate the thumbnails.
+     */
+    private static final String THUMBNAIL_THREADS_PROPERTY = "filestore.thumbnail.threads";
+
+    /**
+     * The name of the property with the number of the thumbnails that may wait for generation.
+     */
+    private static final String THUMBNAIL_QUEUE_CAPACITY_PROPERTY = "filestore.thumbnail.queue.capacity";
+
+    private static final String DEFAULT_DATA_DIRECTORY = "data";
+
+    private static final long DEFAULT_JOURNAL_BATCH_INTERVAL = 10;
+
+    private static final long DEFAULT_CHECKPOINT_INTERVAL = 300;
+
+    private static final long DEFAULT_BLOB_CACHE_CAPACITY = 256;
+
+    private static final long DEFAULT_COLD_AFTER = 720;
+
+    private static final long DEFAULT_TIERING_INTERVAL = 60;
+
+    private static final int DEFAULT_SMALL_BLOB_LIMIT = 64;
+
+    private static final int DEFAULT_SEGMENT_SIZE = 64;
+
+    private static final long DEFAULT_COMPACTION_INTERVAL = 10;
+
+    private static final int DEFAULT_STRIPE_UNIT = 0;
+
+    private static final int DEFAULT_UPLOAD_CHUNK_SIZE = 8 << 10;
+
+    private static final long DEFAULT_UPLOAD_EXPIRE_AFTER = 24;
+
+    private static final long DEFAULT_UPLOAD_EXPIRATION_INTERVAL = 10;
+
+    private static final int DEFAULT_UPLOAD_MAX_SESSIONS_PER_USER = 16;
+
+    private static final long DEFAULT_UPLOAD_MEMORY_BUDGET = 64;
+
+    private static final long DEFAULT_UPLOAD_MEMORY_WAIT = 2000;
+
+    private static final long DEFAULT_UPLOAD_CHALLENGE_EXPIRE_AFTER = 60;
+
+    private static final int DEFAULT_UPLOAD_CHALLENGE_MAX_PER_USER = 16;
+
+    private static final int DEFAULT_THUMBNAIL_SIZE = 256;
+
+    private static final int DEFAULT_THUMBNAIL_THREADS = 1;
+
+    private static final int DEFAULT_THUMBNAIL_QUEUE_CAPACITY = 1000;
+
+    private static final int BYTES_IN_KILOBYTE = 1 << 10;
+
+    private static final long BYTES_IN_MEGABYTE = 1 << 20;
+
+    /**
+     * This allows only static reference to class, because there is no use of the instance of this class.
+     */
+    private ApplicationConfiguration() {
+    }
+
+    /**
+     * Retrieves the directory where the application keeps its data.
+     *
+     * @return path to the data directory.
+     */
+    public static Path dataDirectory() {
+
+        return Paths.get(System.getProperty(DATA_DIRECTORY_PROPERTY, DEFAULT_DATA_DIRECTORY));
+    }
+
+    /**
+     * Retrieves {@link Durability} of the storage journals.
+     *
+     * @return durability of the journals, {@link Durability#SYNC} by default.
+     */
+    public static Durability journalDurability() {
+
+        return Durability.valueOf(System.getProperty(JOURNAL_DURABILITY_PROPERTY, Durability.SYNC.name()));
+    }
+
+    /**
+     * Retrieves the interval between flushes of the storage journals with {@link Durability#BATCHED}.
+     *
+     * @return the batch interval.
+     */
+    public static Duration journalBatchInterval() {
+
+        return Duration.ofMillis(getLong(JOURNAL_BATCH_INTERVAL_PROPERTY, DEFAULT_JOURNAL_BATCH_INTERVAL));
+    }
+
+    /**
+     * Retrieves the interval between checkpoints of the storages.
+     *
+     * @return the checkpoint interval.
+     */
+    public static Duration checkpointInterval() {
+
+        return Duration.ofSeconds(getLong(CHECKPOINT_INTERVAL_PROPERTY, DEFAULT_CHECKPOINT_INTERVAL));
+    }
+
+    /**
+     * Retrieves {@link ContentEncoding} the contents of the compressible files are kept with.
+     *
+     * @return the encoding of the compressible contents, {@link ContentEncoding#GZIP} by default.
+     */
+    public static ContentEncoding contentCompression() {
+
+        return ContentEncoding.valueOf(System.getProperty(CONTENT_COMPRESSION_PROPERTY, ContentEncoding.GZIP.name()));
+    }
+
+    /**
+     * Retrieves the capacity of the in-memory cache of the contents of the files.
+     *
+     * @return the capacity of the cache in bytes.
+     */
+    public static long blobCacheCapacity() {
+
+        return getLong(BLOB_CACHE_CAPACITY_PROPERTY, DEFAULT_BLOB_CACHE_CAPACITY) * BYTES_IN_MEGABYTE;
+    }
+
+    /**
+     * Retrieves the directory of the cold tier of the contents of the files.
+     *
+     * @return path to the cold directory, the {@code cold} subdirectory of the data directory by default.
+     */
+    public static Path coldDirectory() {
+
+        String coldDirectory = System.getProperty(COLD_DIRECTORY_PROPERTY);
+
+        return coldDirectory == null ? dataDirectory().resolve("cold") : Paths.get(coldDirectory);
+    }
+
+    /**
+     * Retrieves the time after the last read after which a content of the file is moved into the cold tier.
+     *
+     * @return the time to become cold.
+     */
+    public static Duration coldAfter() {
+
+        return Duration.ofHours(getLong(COLD_AFTER_PROPERTY, DEFAULT_COLD_AFTER));
+    }
+
+    /**
+     * Retrieves the interval between the searches for the contents of the files to move into the cold tier.
+     *
+     * @return the tiering interval.
+     */
+    public static Duration tieringInterval() {
+
+        return Duration.ofMinutes(getLong(TIERING_INTERVAL_PROPERTY, DEFAULT_TIERING_INTERVAL));
+    }
+
+    /**
+     * Retrieves the maximal size of a content of the file that is packed into the segments.
+     *
+     * @return the small content limit in bytes.
+     */
+    public static int smallBlobLimit() {
+
+        return getInteger(SMALL_BLOB_LIMIT_PROPERTY, DEFAULT_SMALL_BLOB_LIMIT) * BYTES_IN_KILOBYTE;
+    }
+
+    /**
+     * Retrieves the size of a segment with the small contents of the files.
+     *
+     * @return the segment size in bytes.
+     */
+    public static int segmentSize() {
+
+        return getInteger(SEGMENT_SIZE_PROPERTY, DEFAULT_SEGMENT_SIZE) * (int) BYTES_IN_MEGABYTE;
+    }
+
+    /**
+     * Retrieves the interval between the compactions of the segments with the small contents of the files.
+     *
+     * @return the compaction interval.
+     */
+    public static Duration compactionInterval() {
+
+        return Duration.ofMinutes(getLong(COMPACTION_INTERVAL_PROPERTY, DEFAULT_COMPACTION_INTERVAL));
+    }
+
+    /**
+     * Retrieves the directories the contents of the files are spread over, usually on separate disks.
+     *
+     * @return paths to the content directories, the {@code blobs} subdirectory of the data directory by default.
+     */
+    public static List<Path> blobDirectories() {
+
+        String blobDirectories = System.getProperty(BLOB_DIRECTORIES_PROPERTY);
+
+        if (blobDirectories == null) {
+            return singletonList(dataDirectory().resolve("blobs"));
+        }
+
+        return Splitter.on(',')
+            .trimResults()
+            .omitEmptyStrings()
+            .splitToList(blobDirectories)
+            .stream()
+            .map(Paths::get)
+            .collect(toList());
+    }
+
+    /**
+     * Retrieves the size of a stripe unit of the contents of the files that are striped over the content directories.
+     *
+     * @return the stripe unit in bytes, {@code 0} by default to keep every content in one directory.
+     */
+    public static int stripeUnit() {
+
+        return getInteger(STRIPE_UNIT_PROPERTY, DEFAULT_STRIPE_UNIT) * BYTES_IN_KILOBYTE;
+    }
+
+    /**
+     * Retrieves the directory of the staging files of the upload sessions.
+     *
+     * @return path to the upload directory, the {@code uploads} subdirectory of the data directory.
+     */
+    public static Path uploadDirectory() {
+
+        return dataDirectory().resolve("uploads");
+    }
+
+    /**
+     * Retrieves the size of a chunk of the files that are uploaded in sessions.
+     *
+     * @return the upload chunk size in bytes.
+     */
+    public static int uploadChunkSize() {
+
+        return getInteger(UPLOAD_CHUNK_SIZE_PROPERTY, DEFAULT_UPLOAD_CHUNK_SIZE) * BYTES_IN_KILOBYTE;
+    }
+
+    /**
+     * Retrieves the time after the last access after which an upload session is abandoned.
+     *
+     * @return the time to expire.
+     */
+    public static Duration uploadExpireAfter() {
+
+        return Duration.ofHours(getLong(UPLOAD_EXPIRE_AFTER_PROPERTY, DEFAULT_UPLOAD_EXPIRE_AFTER));
+    }
+
+    /**
+     * Retrieves the interval between the searches for the expired upload sessions.
+     *
+     * @return the expiration interval.
+     */
+    public static Duration uploadExpirationInterval() {
+
+        return Duration.ofMinutes(getLong(UPLOAD_EXPIRATION_INTERVAL_PROPERTY, DEFAULT_UPLOAD_EXPIRATION_INTERVAL));
+    }
+
+    /**
+     * Retrieves the maximal number of the upload sessions, that a user may keep open at once.
+     *
+     * @return the maximal number of the sessions of a user.
+     */
+    public static int uploadMaxSessionsPerUser() {
+
+        return getInteger(UPLOAD_MAX_SESSIONS_PER_USER_PROPERTY, DEFAULT_UPLOAD_MAX_SESSIONS_PER_USER);
+    }
+
+    /**
+     * Retrieves the number of threads that store the files, that are uploaded in one request, concurrently. A thread
+     * is held by a file while the client sends its content, so the threads should outnumber the files that the slow
+     * clients may send at once.
+     *
+     * @return the number of ingestion threads, by default the number of processors.
+     */
+    public static int uploadIngestionThreads() {
+
+        return getInteger(UPLOAD_INGESTION_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Retrieves the maximal number of files of one request, that are stored at once, and so the maximal number of
+     * the ingestion threads one request holds.
+     *
+     * @return the number of files of one request in flight, by default half of the ingestion threads.
+     */
+    public static int uploadIngestionFilesPerRequest() {
+
+        return getInteger(UPLOAD_INGESTION_FILES_PER_REQUEST_PROPERTY, Math.max(1, uploadIngestionThreads() / 2));
+    }
+
+    /**
+     * Retrieves the memory, that the buffers of the uploads in progress may use all together.
+     *
+     * @return the upload memory budget in bytes.
+     */
+    public static long uploadMemoryBudget() {
+
+        return getLong(UPLOAD_MEMORY_BUDGET_PROPERTY, DEFAULT_UPLOAD_MEMORY_BUDGET) * BYTES_IN_MEGABYTE;
+    }
+
+    /**
+     * Retrieves the time an upload waits for the memory of the budget before it is rejected.
+     *
+     * @return the maximal wait for the upload memory.
+     */
+    public static Duration uploadMemoryWait() {
+
+        return Duration.ofMillis(getLong(UPLOAD_MEMORY_WAIT_PROPERTY, DEFAULT_UPLOAD_MEMORY_WAIT));
+    }
+
+    /**
+     * Retrieves the time after which the challenge of the upload by hash cannot be answered.
+     *
+     * @return the time to expire.
+     */
+    public static Duration uploadChallengeExpireAfter() {
+
+        return Duration.ofSeconds(
+            getLong(UPLOAD_CHALLENGE_EXPIRE_AFTER_PROPERTY, DEFAULT_UPLOAD_CHALLENGE_EXPIRE_AFTER));
+    }
+
+    /**
+     * Retrieves the maximal number of the challenges of the upload by hash, that a user may have outstanding.
+     *
+     * @return the maximal number of the challenges of a user.
+     */
+    public static int uploadChallengeMaxPerUser() {
+
+        return getInteger(UPLOAD_CHALLENGE_MAX_PER_USER_PROPERTY, DEFAULT_UPLOAD_CHALLENGE_MAX_PER_USER);
+    }
+
+    /**
+     * Retrieves the maximal width and height of the thumbnails of the uploaded images.
+     *
+     * @return the thumbnail size in pixels.
+     */
+    public static int thumbnailSize() {
+
+        return getInteger(THUMBNAIL_SIZE_PROPERTY, DEFAULT_THUMBNAIL_SIZE);
+    }
+
+    /**
+     * Retrieves the number of threads that generate the thumbnails in the background.
+     *
+     * @return the number of thumbnail threads.
+     */
+    public static int thumbnailThreads() {
+
+        return getInteger(THUMBNAIL_THREADS_PROPERTY, DEFAULT_THUMBNAIL_THREADS);
+    }
+
+    /**
+     * Retrieves the number of the thumbnails that may wait for generation. The thumbnails that do not fit are not
+     * generated.
+     *
+     * @return the capacity of the thumbnail queue.
+     */
+    public static int thumbnailQueueCapacity() {
+
+        return getInteger(THUMBNAIL_QUEUE_CAPACITY_PROPERTY, DEFAULT_THUMBNAIL_QUEUE_CAPACITY);
+    }
+}
@@ -0,0 +1,233 @@
+package filestore.web;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+import com.google.errorprone.annotations.Immutable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.String.format;
+import static java.util.Objects.hash;
+
+/**
+ * Value object for a range of bytes of the content, that the client asks for by HTTP {@code Range} header.
+ * {@link "https://tools.ietf.org/html/rfc7233"}.
+ */
+@Immutable
+public final class ByteRange {
+
+    /**
+     * The unit of the ranges in {@code Range} header.
+     */
+    private static final String UNIT_PREFIX = "bytes=";
+
+    /**
+     * The maximal number of ranges in one request. The request with more ranges is served with the whole content, so
+     * a client cannot make the server send a lot of tiny parts.
+     */
+    private static final int MAX_RANGES = 64;
+
+    private static final CharMatcher DIGITS = CharMatcher.inRange('0', '9');
+
+    /**
+     * The position of the first byte of the range.
+     */
+    private final long first;
+
+    /**
+     * The position of the last byte of the range, inclusive.
+     */
+    private final long last;
+
+    /**
+     * Instantiates ByteRange.
+     *
+     * @param first the position of the first byte of the range.
+     * @param last  the position of the last byte of the range, inclusive.
+     */
+    public ByteRange(long first, long last) {
+
+        checkArgument(first >= 0 && first <= last, "Range %s-%s is invalid.", first, last);
+
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parses the value of {@code Range} header into the ranges of the content of the length.
+     *
+     * <p>The ranges are clipped to the content, sorted by their positions and the overlapping or adjacent ones are
+     * coalesced, as RFC 7233 allows. So the ranges may be read from the content in one pass.
+     *
+     * @param header the value of {@code Range} header.
+     * @param length the length of the content in bytes.
+     * @return the ranges of the content, empty list if none of the ranges overlaps the content, or
+     * {@link Optional#empty()} if the header is invalid and must be ignored.
+     */
+    public static Optional<List<ByteRange>> parse(String header, long length) {
+
+        checkArgument(length >= 0, "Length %s is negative.", length);
+
+        if (header == null || !header.startsWith(UNIT_PREFIX)) {
+            return Optional.empty();
+        }
+
+        List<String> specs = Splitter.on(',')
+            .trimResults()
+            .omitEmptyStrings()
+            .splitToList(header.substring(UNIT_PREFIX.length()));
+
+        if (specs.isEmpty() || specs.size() > MAX_RANGES) {
+            return Optional.empty();
+        }
+
+        List<ByteRange> ranges = new ArrayList<>();
+
+        for (String spec : specs) {
+
+            int dash = spec.indexOf('-');
+
+            if (dash < 0) {
+                return Optional.empty();
+            }
+
+            String first = spec.substring(0, dash);
+            String last = spec.substring(dash + 1);
+
+            boolean valid = first.isEmpty()
+                ? isNumber(last)
+                : isNumber(first) && (last.isEmpty() || isNumber(last));
+
+            if (!valid) {
+                return Optional.empty();
+            }
+
+            if (first.isEmpty()) {
+
+                long suffix = Long.parseLong(last);
+
+                if (suffix > 0 && length > 0) {
+                    ranges.add(new ByteRange(Math.max(0, length - suffix), length - 1));
+                }
+
+                continue;
+            }
+
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+
+            if (end < start) {
+                return Optional.empty();
+            }
+
+            if (start < length) {
+                ranges.add(new ByteRange(start, Math.min(end, length - 1)));
+            }
+        }
+
+        return Optional.of(coalesce(ranges));
+    }
+
+    private static boolean isNumber(String value) {
+
+        // Longer numbers may overflow and are far beyond any content anyway.
+        return !value.isEmpty() && value.length() <= 18 && DIGITS.matchesAllOf(value);
+    }
+
+    private static List<ByteRange> coalesce(List<ByteRange> ranges) {
+
+        ranges.sort(Comparator.comparingLong(ByteRange::first));
+
+        List<ByteRange> coalesced = new ArrayList<>();
+
+        for (ByteRange range : ranges) {
+
+            int previous = coalesced.size() - 1;
+
+            if (previous >= 0 && range.first <= coalesced.get(previous).last + 1) {
+
+                ByteRange merged = coalesced.get(previous);
+                coalesced.set(previous, new ByteRange(merged.first, Math.max(merged.last, range.last)));
+
+            } else {
+
+                coalesced.add(range);
+            }
+        }
+
+        return coalesced;
+    }
+
+    /**
+     * Getter for the position of the first byte of the range.
+     *
+     * @return the position of the first byte.
+     */
+    public long first() {
+        return first;
+    }
+
+    /**
+     * Getter for the position of the last byte of the range.
+     *
+     * @return the position of the last byte, inclusive.
+     */
+    public long last() {
+        return last;
+    }
+
+    /**
+     * Retrieves the number of bytes in the range.
+     *
+     * @return the length of the range.
+     */
+    public long length() {
+        return last - first + 1;
+    }
+
+    /**
+     * Creates the value of {@code Content-Range} header for the range of the content.
+     *
+     * @param length the length of the whole content.
+     * @return the value of the header.
+     */
+    public String contentRange(long length) {
+
+        return format("bytes %d-%d/%d", first, last, length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+            return true;
+        }
+
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+
+        ByteRange that = (ByteRange) o;
+
+        return first == that.first &&
+            last == that.last;
+    }
+
+    @Override
+    public int hashCode() {
+
+        return hash(first, last);
+    }
+
+    @Override
+    public String toString() {
+        return "ByteRange{" +
+            "first=" + first +
+            ", last=" + last +
+            '}';
+    }
+}
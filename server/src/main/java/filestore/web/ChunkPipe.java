@@ -0,0 +1,204 @@
+package filestore.web;
+
+import io.nure.filestore.api.FileContent;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The pipe that passes the content from the thread that reads it from the request to the thread that stores it, in
+ * chunks of at most {@link FileContent#CHUNK_SIZE} bytes.
+ *
+ * <p>The pipe holds a bounded number of chunks: the writer waits while the pipe is full, so a slow reader pauses the
+ * reads from the request instead of buffering the content in memory.
+ *
+ * <p>The pipe has one writer and one reader. The reader must read the pipe to the end, even if it fails to store the
+ * content, so the writer is never blocked forever.
+ */
+final class ChunkPipe implements ReadableByteChannel {
+
+    /**
+     * The chunk that marks the end of the content.
+     */
+    private static final byte[] END = new byte[0];
+
+    /**
+     * The chunk that marks the failure of the writer.
+     */
+    private static final byte[] FAILURE = new byte[0];
+
+    /**
+     * The written chunks, that are not read yet.
+     */
+    private final BlockingQueue<byte[]> chunks;
+
+    /**
+     * The chunk that is being read.
+     */
+    private ByteBuffer current = ByteBuffer.allocate(0);
+
+    /**
+     * Whether the end or the failure marker is read.
+     */
+    private boolean ended;
+
+    /**
+     * Whether the reader has closed the pipe.
+     */
+    private volatile boolean closed;
+
+    /**
+     * Instantiates ChunkPipe.
+     *
+     * @param capacity the maximal number of chunks in the pipe.
+     */
+    ChunkPipe(int capacity) {
+
+        checkArgument(capacity > 0, "Capacity %s is not positive.", capacity);
+
+        this.chunks = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Writes the copy of the bytes into the pipe. Waits while the pipe is full.
+     *
+     * @param bytes  the array with the bytes.
+     * @param offset the offset of the bytes in the array.
+     * @param length the number of the bytes, at most {@link FileContent#CHUNK_SIZE}.
+     * @throws InterruptedIOException if the writer is interrupted while it waits.
+     */
+    void write(byte[] bytes, int offset, int length) throws InterruptedIOException {
+
+        checkArgument(length <= FileContent.CHUNK_SIZE, "Chunk of %s bytes is too large.", length);
+
+        if (length > 0) {
+
+            byte[] chunk = new byte[length];
+            System.arraycopy(bytes, offset, chunk, 0, length);
+
+            put(chunk);
+        }
+    }
+
+    /**
+     * Marks the end of the content. Waits while the pipe is full.
+     *
+     * @throws InterruptedIOException if the writer is interrupted while it waits.
+     */
+    void end() throws InterruptedIOException {
+
+        put(END);
+    }
+
+    /**
+     * Marks the failure of the writer, so the reader fails instead of waiting for the rest of the content.
+     *
+     * @throws InterruptedIOException if the writer is interrupted while it waits.
+     */
+    void fail() throws InterruptedIOException {
+
+        put(FAILURE);
+    }
+
+    private void put(byte[] chunk) throws InterruptedIOException {
+
+        try {
+
+            chunks.put(chunk);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while waiting for the reader of the pipe.");
+        }
+    }
+
+    @Override
+    public int read(ByteBuffer target) throws IOException {
+
+        checkNotNull(target);
+
+        while (!current.hasRemaining()) {
+
+            if (ended) {
+                return -1;
+            }
+
+            byte[] chunk = take();
+
+            if (chunk == FAILURE) {
+
+                ended = true;
+
+                throw new IOException("Writer of the pipe has failed.");
+            }
+
+            if (chunk == END) {
+
+                ended = true;
+
+                return -1;
+            }
+
+            current = ByteBuffer.wrap(chunk);
+        }
+
+        int read = Math.min(target.remaining(), current.remaining());
+        ByteBuffer slice = current.duplicate();
+
+        slice.limit(slice.position() + read);
+        target.put(slice);
+        current.position(current.position() + read);
+
+        return read;
+    }
+
+    private byte[] take() throws InterruptedIOException {
+
+        try {
+
+            return chunks.take();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while waiting for the writer of the pipe.");
+        }
+    }
+
+    /**
+     * Reads and discards the rest of the content, so the writer is not blocked by the full pipe.
+     *
+     * @throws InterruptedIOException if the reader is interrupted while it waits.
+     */
+    void drain() throws InterruptedIOException {
+
+        current = ByteBuffer.allocate(0);
+
+        while (!ended) {
+
+            byte[] chunk = take();
+            ended = chunk == END || chunk == FAILURE;
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+
+        closed = true;
+    }
+}
@@ -0,0 +1,240 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.FileMetadata;
+import io.nure.filestore.api.FileUploading;
+import io.nure.filestore.api.FolderNotFoundException;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.OwnershipViolatedException;
+import io.nure.filestore.api.Thumbnails;
+import io.nure.filestore.api.UploadFile;
+import io.nure.filestore.api.UploadSession;
+import io.nure.filestore.api.UploadSessionConflictException;
+import io.nure.filestore.api.UploadSessionNotFoundException;
+import io.nure.filestore.api.UploadSessions;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FolderStorage;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.CONFLICT;
+import static io.nure.filestore.web.ResponseStatus.FORBIDDEN;
+import static io.nure.filestore.web.ResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles client {@link Request}s to commit {@link UploadSession}, once all chunks of the file
+ * are sent.
+ *
+ * <p>The received file is passed to {@link FileUploading} as {@link UploadFile} command, so the file is checked and
+ * stored the same way as the file uploaded in one request. The content is hashed, encoded and stored only at the
+ * commit, because the chunks may arrive in any order, while the hash of the content is computed in order. The session
+ * is removed after the commit, and is unsealed if the commit fails, so the client may retry it.
+ */
+public class CommitUploadSessionRoute implements Route {
+
+    private static final Logger logger = getLogger(CommitUploadSessionRoute.class);
+
+    /**
+     * The number of bytes, that the buffers of one request use: the chunk of the content with the buffer of its
+     * encoding.
+     */
+    static final long MEMORY_FOOTPRINT = 2L * FileContent.CHUNK_SIZE;
+
+    /**
+     * The converter of the responses into JSON.
+     */
+    private final Gson jsonParser = new GsonBuilder()
+        .registerTypeAdapter(FileMetadata.class, new FileMetadataSerializer())
+        .create();
+
+    /**
+     * The storage of the destination folders.
+     */
+    private final FolderStorage folderStorage;
+
+    /**
+     * The storage of metadata of the files.
+     */
+    private final FileMetadataStorage fileMetadataStorage;
+
+    /**
+     * The storage of contents of the files.
+     */
+    private final FileContentStorage fileContentStorage;
+
+    /**
+     * The registry of the open upload sessions.
+     */
+    private final UploadSessions uploadSessions;
+
+    /**
+     * The generation of the thumbnails of the uploaded images.
+     */
+    private final Thumbnails thumbnails;
+
+    /**
+     * Instantiates CommitUploadSessionRoute.
+     *
+     * @param folderStorage       the storage of folders.
+     * @param fileMetadataStorage the storage of metadata of files.
+     * @param fileContentStorage  the storage of contents of files.
+     * @param uploadSessions      the registry of upload sessions.
+     * @param thumbnails          the generation of the thumbnails of the uploaded images.
+     */
+    public CommitUploadSessionRoute(
+        FolderStorage folderStorage,
+        FileMetadataStorage fileMetadataStorage,
+        FileContentStorage fileContentStorage,
+        UploadSessions uploadSessions,
+        Thumbnails thumbnails
+    ) {
+
+        this.folderStorage = checkNotNull(folderStorage);
+        this.fileMetadataStorage = checkNotNull(fileMetadataStorage);
+        this.fileContentStorage = checkNotNull(fileContentStorage);
+        this.uploadSessions = checkNotNull(uploadSessions);
+        this.thumbnails = checkNotNull(thumbnails);
+    }
+
+    /**
+     * Handles {@link Request} of client to commit {@link UploadSession} of the {@link LoggedInUser}.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return JSON of the uploaded {@link FileMetadata}, or the error message with {@link ResponseStatus#CONFLICT}
+     * if some chunks are still missing or the session is already being committed.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+        String sessionId = request.params("sessionId");
+
+        try {
+
+            UploadSession session = uploadSessions.session(sessionId, user.identifier());
+            FileContent content = session.seal();
+            FileMetadata uploadedFile = null;
+
+            try {
+
+                UploadFile command = new UploadFile(session.fileName(), session.mimeType(), session.parentFolderId(),
+                    session.ownerId(), content);
+
+                uploadedFile = new FileUploading(folderStorage, fileMetadataStorage, fileContentStorage, thumbnails)
+                    .handle(command);
+
+            } finally {
+
+                if (uploadedFile == null) {
+                    session.unseal();
+                }
+
+                closeContent(session, content);
+            }
+
+            removeSession(session);
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Uploaded file: {}.", uploadedFile);
+            }
+
+            response.status(SUCCESS);
+
+            return jsonParser.toJson(uploadedFile, FileMetadata.class);
+
+        } catch (UploadSessionNotFoundException | FolderNotFoundException e) {
+
+            return makeErrorResponse(response, NOT_FOUND, e.getMessage());
+
+        } catch (OwnershipViolatedException e) {
+
+            return makeErrorResponse(response, FORBIDDEN, e.getMessage());
+
+        } catch (UploadSessionConflictException e) {
+
+            return makeErrorResponse(response, CONFLICT, e.getMessage());
+
+        } catch (IOException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Cannot commit upload session \"" + sessionId + "\".", e);
+            }
+
+            response.status(INTERNAL_SERVER_ERROR);
+
+            return "An error occurred when committing upload session.";
+        }
+    }
+
+    /**
+     * Closes the content of the staging file of the session. The content is already read, so the failure is only
+     * logged.
+     *
+     * @param session the sealed session.
+     * @param content the content of the staging file of the session.
+     */
+    private static void closeContent(UploadSession session, FileContent content) {
+
+        try {
+
+            content.close();
+
+        } catch (IOException e) {
+
+            if (logger.isWarnEnabled()) {
+                logger.warn("Cannot close staging file of upload session \"" + session.identifier() + "\".", e);
+            }
+        }
+    }
+
+    /**
+     * Removes the committed session. The file is already uploaded, so a staging file that cannot be deleted is only
+     * logged.
+     *
+     * @param session the committed session.
+     */
+    private void removeSession(UploadSession session) {
+
+        try {
+
+            uploadSessions.remove(session);
+
+        } catch (IOException e) {
+
+            if (logger.isWarnEnabled()) {
+                logger.warn("Cannot remove committed upload session \"" + session.identifier() + "\".", e);
+            }
+        }
+    }
+
+    /**
+     * Makes {@link Response} with the status and the message of the rejected commit.
+     *
+     * @param response server response.
+     * @param status   the status of the response.
+     * @param message  the message of the error.
+     * @return the message of the error.
+     */
+    private String makeErrorResponse(Response response, int status, String message) {
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Commit is rejected: {}.", message);
+        }
+
+        response.status(status);
+
+        return message;
+    }
+}
@@ -0,0 +1,35 @@
+package filestore.web;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import io.nure.filestore.api.ContentChallenge;
+
+import java.lang.reflect.Type;
+
+/**
+ * A {@link JsonSerializer} of {@link ContentChallenge} objects, that tells the client which range of the content to
+ * send.
+ */
+public class ContentChallengeSerializer implements JsonSerializer<ContentChallenge> {
+
+    /**
+     * Serializes passed {@link ContentChallenge} to {@link JsonElement}.
+     *
+     * @param challenge the challenge to serialize.
+     * @return serialized challenge.
+     */
+    @Override
+    public JsonElement serialize(ContentChallenge challenge, Type typeOfSrc, JsonSerializationContext context) {
+
+        JsonObject wrapper = new JsonObject();
+
+        wrapper.addProperty("id", challenge.identifier());
+        wrapper.addProperty("offset", challenge.offset());
+        wrapper.addProperty("length", challenge.length());
+        wrapper.addProperty("expiresAt", challenge.expiresAt().toString());
+
+        return wrapper;
+    }
+}
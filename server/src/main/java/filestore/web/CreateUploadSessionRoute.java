@@ -0,0 +1,158 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import io.nure.filestore.api.Folder;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.MimeType;
+import io.nure.filestore.api.UploadSession;
+import io.nure.filestore.api.UploadSessionLimitException;
+import io.nure.filestore.api.UploadSessions;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.FolderStorage;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.BAD_REQUEST;
+import static io.nure.filestore.web.ResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static io.nure.filestore.web.ResponseStatus.TOO_MANY_REQUESTS;
+import static java.lang.String.format;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles client {@link Request}s to start the upload of a file in chunks.
+ *
+ * <p>The body of the request is JSON with the {@code name}, the {@code size} in bytes and the optional
+ * {@code mimeType} of the file. The response is the opened {@link UploadSession}, that tells the chunk size and the
+ * chunks to send.
+ */
+public class CreateUploadSessionRoute implements Route {
+
+    private static final Logger logger = getLogger(CreateUploadSessionRoute.class);
+
+    /**
+     * The MIME type of the uploaded file, that is sent without it.
+     */
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    /**
+     * The converter of the requests and responses from and into JSON.
+     */
+    private final Gson jsonParser = new GsonBuilder()
+        .registerTypeAdapter(UploadSession.class, new UploadSessionSerializer())
+        .create();
+
+    /**
+     * The storage of the destination folders.
+     */
+    private final FolderStorage folderStorage;
+
+    /**
+     * The registry of the open upload sessions.
+     */
+    private final UploadSessions uploadSessions;
+
+    /**
+     * Instantiates CreateUploadSessionRoute.
+     *
+     * @param folderStorage  the storage of folders.
+     * @param uploadSessions the registry of upload sessions.
+     */
+    public CreateUploadSessionRoute(FolderStorage folderStorage, UploadSessions uploadSessions) {
+
+        this.folderStorage = checkNotNull(folderStorage);
+        this.uploadSessions = checkNotNull(uploadSessions);
+    }
+
+    /**
+     * Handles {@link Request} of client to open {@link UploadSession} of the file in the {@link Folder}, that is
+     * owned by the {@link LoggedInUser}. The folder is checked before any chunk is sent, and again on the commit.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return JSON of the opened {@link UploadSession}, or the error message with {@link ResponseStatus#NOT_FOUND} if
+     * the folder was not found, {@link ResponseStatus#BAD_REQUEST} if the body of the request is malformed or
+     * {@link ResponseStatus#TOO_MANY_REQUESTS} if the user already keeps too many sessions open.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+        FolderId folderId = new FolderId(request.params("folderId"));
+
+        if (!folderStorage.get(folderId, user.identifier()).isPresent()) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Destination folder with id \"{}\" was not found.", folderId.value());
+            }
+
+            response.status(NOT_FOUND);
+
+            return format("Destination folder was not found by id \"%s\".", folderId.value());
+        }
+
+        try {
+
+            JsonObject body = jsonParser.fromJson(request.body(), JsonObject.class);
+            JsonElement mimeType = body.get("mimeType");
+
+            UploadSession session = uploadSessions.create(
+                new FileName(body.get("name").getAsString()),
+                new MimeType(mimeType == null ? DEFAULT_MIME_TYPE : mimeType.getAsString()),
+                body.get("size").getAsLong(),
+                folderId,
+                user.identifier()
+            );
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Opened upload session: {}.", session);
+            }
+
+            response.status(SUCCESS);
+
+            return jsonParser.toJson(session, UploadSession.class);
+
+        } catch (UploadSessionLimitException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Upload session is rejected: {}.", e.getMessage());
+            }
+
+            response.status(TOO_MANY_REQUESTS);
+
+            return e.getMessage();
+
+        } catch (JsonParseException | NullPointerException | ClassCastException | IllegalStateException
+            | IllegalArgumentException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Invalid request body: {}. Error message: {}.", request.body(), e.getMessage());
+            }
+
+            response.status(BAD_REQUEST);
+
+            return format("Malformed request url: %s", request.url());
+
+        } catch (IOException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Cannot open upload session.", e);
+            }
+
+            response.status(INTERNAL_SERVER_ERROR);
+
+            return "An error occurred when opening upload session.";
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package filestore.web;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import io.nure.filestore.storage.Durability;
+import io.nure.filestore.storage.InMemoryStorage;
+import io.nure.filestore.storage.Record;
+import io.nure.filestore.storage.RecordCodec;
+import io.nure.filestore.storage.RecordId;
+import io.nure.filestore.storage.StorageJournal;
+import io.nure.filestore.storage.StorageSnapshot;
+import org.slf4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.String.format;
+import static java.nio.file.Files.createDirectories;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * Makes {@link InMemoryStorage}s of {@link FileHubWebApplication} durable.
+ *
+ * <p>Each registered storage is restored from its {@link StorageSnapshot} and the tail of its {@link StorageJournal}.
+ * The storages are restored in parallel. Then the storages are checkpointed periodically in the background.
+ */
+public class DurableStorages implements Closeable {
+
+    private static final Logger logger = getLogger(DurableStorages.class);
+
+    /**
+     * The longest time the running checkpoint is waited for on close.
+     */
+    private static final Duration CHECKPOINT_SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
+    /**
+     * The directory of the journals and the snapshots.
+     */
+    private final Path dataDirectory;
+
+    /**
+     * The durability of the journals.
+     */
+    private final Durability durability;
+
+    /**
+     * The interval between flushes of the batched journals.
+     */
+    private final Duration batchInterval;
+
+    /**
+     * The registry of metrics of recovery and checkpoints.
+     */
+    private final MetricRegistry metrics;
+
+    /**
+     * Registered storages.
+     */
+    private final List<DurableStorage<?, ?>> storages = new ArrayList<>();
+
+    /**
+     * Runs periodic checkpoints or {@code null} if they are not scheduled.
+     */
+    private ScheduledExecutorService checkpoints;
+
+    /**
+     * Instantiates DurableStorages.
+     *
+     * @param dataDirectory the directory of the journals and the snapshots.
+     * @param durability    the durability of the journals.
+     * @param batchInterval the interval between flushes of the batched journals.
+     * @param metrics       the registry of metrics of recovery and checkpoints.
+     */
+    public DurableStorages(Path dataDirectory, Durability durability, Duration batchInterval,
+                           MetricRegistry metrics) {
+
+        this.dataDirectory = checkNotNull(dataDirectory);
+        this.durability = checkNotNull(durability);
+        this.batchInterval = checkNotNull(batchInterval);
+        this.metrics = checkNotNull(metrics);
+    }
+
+    /**
+     * Registers the storage, which files are named after the passed name.
+     *
+     * @param name    the name of the storage.
+     * @param storage the storage.
+     * @param codec   the codec of the records of the storage.
+     */
+    public <I extends RecordId, R extends Record<I>> void register(String name, InMemoryStorage<I, R> storage,
+                                                                   RecordCodec<I, R> codec) {
+
+        storages.add(new DurableStorage<>(name, storage, codec));
+
+        metrics.gauge(format("storage.%s.records", name), () -> storage.getAll().size());
+    }
+
+    /**
+     * Restores the registered storages in parallel and attaches their journals.
+     *
+     * <p>The time of the recovery is reported as {@code startup.recovery.millis} metric.
+     *
+     * @throws IOException if the storages cannot be restored.
+     */
+    public void recover() throws IOException {
+
+        long start = System.nanoTime();
+
+        createDirectories(dataDirectory);
+
+        ExecutorService executor = newFixedThreadPool(storages.size());
+
+        try {
+
+            List<Future<?>> recoveries = new ArrayList<>();
+
+            for (DurableStorage<?, ?> storage : storages) {
+                recoveries.add(executor.submit(() -> {
+                    storage.recover();
+                    return null;
+                }));
+            }
+
+            for (Future<?> recovery : recoveries) {
+                recovery.get();
+            }
+
+        } catch (ExecutionException e) {
+
+            throw new IOException("Cannot restore storages.", e.getCause());
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new IOException("Recovery of storages is interrupted.", e);
+
+        } finally {
+
+            executor.shutdownNow();
+        }
+
+        long recoveryMillis = NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        metrics.gauge("startup.recovery.millis", () -> recoveryMillis);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Restored {} storages in {} ms.", storages.size(), recoveryMillis);
+        }
+    }
+
+    /**
+     * Starts periodic checkpoints of the restored storages.
+     *
+     * @param interval the interval between checkpoints of the storage.
+     */
+    public void scheduleCheckpoints(Duration interval) {
+
+        checkState(checkpoints == null, "Checkpoints are already scheduled.");
+
+        checkpoints = newSingleThreadScheduledExecutor(runnable -> {
+
+            Thread thread = new Thread(runnable, "storage-checkpoints");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+
+        long intervalMillis = interval.toMillis();
+
+        checkpoints.scheduleWithFixedDelay(this::checkpoint, intervalMillis, intervalMillis, MILLISECONDS);
+    }
+
+    /**
+     * Checkpoints all storages. A failed checkpoint is logged and retried on the next run.
+     */
+    public void checkpoint() {
+
+        for (DurableStorage<?, ?> storage : storages) {
+
+            long start = System.nanoTime();
+
+            try {
+
+                long records = storage.storage.checkpoint();
+
+                metrics.counter("storage.checkpoints").increment();
+
+                if (logger.isInfoEnabled()) {
+                    logger.info("Checkpointed {} records of storage {} in {} ms.", records, storage.name,
+                        NANOSECONDS.toMillis(System.nanoTime() - start));
+                }
+
+            } catch (RuntimeException e) {
+
+                metrics.counter("storage.checkpoint.failures").increment();
+
+                if (logger.isErrorEnabled()) {
+                    logger.error(format("Cannot checkpoint storage %s.", storage.name), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits for the running checkpoint, stops checkpoints and closes the journals of the storages.
+     */
+    @Override
+    public void close() {
+
+        if (checkpoints != null) {
+
+            checkpoints.shutdown();
+
+            try {
+
+                checkpoints.awaitTermination(CHECKPOINT_SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        for (DurableStorage<?, ?> storage : storages) {
+
+            try {
+
+                storage.close();
+
+            } catch (IOException e) {
+
+                if (logger.isErrorEnabled()) {
+                    logger.error(format("Cannot close journal of storage %s.", storage.name), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The registered storage with its journal and snapshot.
+     */
+    private final class DurableStorage<I extends RecordId, R extends Record<I>> {
+
+        private final String name;
+
+        private final InMemoryStorage<I, R> storage;
+
+        private final RecordCodec<I, R> codec;
+
+        private StorageJournal<I, R> journal;
+
+        private DurableStorage(String name, InMemoryStorage<I, R> storage, RecordCodec<I, R> codec) {
+            this.name = checkNotNull(name);
+            this.storage = checkNotNull(storage);
+            this.codec = checkNotNull(codec);
+        }
+
+        /**
+         * Opens the journal and the snapshot of the storage and restores the storage.
+         *
+         * @throws IOException if the journal cannot be opened.
+         */
+        private void recover() throws IOException {
+
+            journal = new StorageJournal<>(dataDirectory.resolve(name + ".journal"), codec, durability,
+                batchInterval);
+
+            storage.attachJournal(journal, new StorageSnapshot<>(dataDirectory.resolve(name + ".snapshot"), codec));
+        }
+
+        private void close() throws IOException {
+
+            if (journal != null) {
+                journal.close();
+            }
+        }
+    }
+}
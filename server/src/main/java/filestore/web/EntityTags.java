@@ -0,0 +1,78 @@
+package filestore.web;
+
+import com.google.common.base.Splitter;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Utilities of HTTP entity tags, that let a client check by {@code If-None-Match} and {@code If-Range} headers
+ * whether its copy of a response is still current. {@link "https://tools.ietf.org/html/rfc7232"}.
+ */
+public final class EntityTags {
+
+    /**
+     * The prefix of the weak entity tags.
+     */
+    private static final String WEAK_PREFIX = "W/";
+
+    /**
+     * Creates the strong entity tag.
+     *
+     * @param value the value of the tag, without quotes.
+     * @return the quoted entity tag.
+     */
+    public static String strong(String value) {
+
+        return '"' + checkNotNull(value) + '"';
+    }
+
+    /**
+     * Checks whether the value of {@code If-None-Match} header has the entity tag. The tags are compared by the weak
+     * comparison, as RFC 7232 requires for this header.
+     *
+     * @param ifNoneMatch the value of {@code If-None-Match} header.
+     * @param entityTag   the current entity tag of the response.
+     * @return {@code true} if the header has the tag or is {@code *}.
+     */
+    public static boolean matches(String ifNoneMatch, String entityTag) {
+
+        checkNotNull(ifNoneMatch);
+
+        String current = opaque(checkNotNull(entityTag));
+
+        for (String tag : Splitter.on(',').trimResults().omitEmptyStrings().split(ifNoneMatch)) {
+
+            if ("*".equals(tag) || opaque(tag).equals(current)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks whether the value of a header is the same strong entity tag, as {@code If-Range} header requires.
+     *
+     * @param value     the value of the header.
+     * @param entityTag the current strong entity tag of the response.
+     * @return {@code true} if the value is the strong tag equal to the current one.
+     */
+    public static boolean matchesStrongly(String value, String entityTag) {
+
+        return checkNotNull(value).trim().equals(checkNotNull(entityTag)) && !entityTag.startsWith(WEAK_PREFIX);
+    }
+
+    /**
+     * Takes the quoted value of the tag, without the mark of the weak tag.
+     */
+    private static String opaque(String entityTag) {
+
+        return entityTag.startsWith(WEAK_PREFIX) ? entityTag.substring(WEAK_PREFIX.length()) : entityTag;
+    }
+
+    /**
+     * This allows only static reference to class, because there is no use of the instance of this class.
+     */
+    private EntityTags() {
+    }
+}
@@ -1,22 +1,63 @@
 package filestore.web;
 
+import io.nure.filestore.api.FileUploading;
+import io.nure.filestore.api.InstantUploading;
+import io.nure.filestore.api.Thumbnails;
+import io.nure.filestore.api.UploadSessions;
+import io.nure.filestore.metrics.MetricRegistry;
+import io.nure.filestore.storage.BlobStore;
+import io.nure.filestore.storage.CachingBlobStore;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.DiskBlobStore;
+import io.nure.filestore.storage.FileContentRecordCodec;
 import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileMetadataRecordCodec;
 import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FolderRecordCodec;
 import io.nure.filestore.storage.FolderStorage;
+import io.nure.filestore.storage.LoggedInUserRecordCodec;
 import io.nure.filestore.storage.LoggedInUsersStorage;
+import io.nure.filestore.storage.SegmentBlobStore;
 import io.nure.filestore.storage.Storage;
+import io.nure.filestore.storage.StripedBlobStore;
+import io.nure.filestore.storage.TieredBlobStore;
+import io.nure.filestore.storage.UserRecordCodec;
 import io.nure.filestore.storage.UserStorage;
 import org.slf4j.Logger;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static java.lang.String.format;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
  * The FileHub web application. Initializes {@link Storage}s and {@link SparkStarter}.
+ *
+ * <p>The application is stopped by one shutdown hook in the order of the dependencies: the web server first, so no
+ * request is in progress, then the background workers, the blob stores and the storages with their journals last.
+ *
+ * <p>The storages are made durable by {@link DurableStorages} in the data directory of
+ * {@link ApplicationConfiguration}. The small contents of the files are packed into the {@code segments}
+ * subdirectory of it and the large ones are spread over the content directories, until they become cold.
  */
 public class FileHubWebApplication {
 
     private static final Logger logger = getLogger(FileHubWebApplication.class);
 
+    /**
+     * The maximal time to wait for the uploads that are being stored on shutdown.
+     */
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofMinutes(1);
+
     /**
      * Runs web application.
      */
@@ -26,20 +67,283 @@ public class FileHubWebApplication {
             logger.info("Call to FileHubWebApplication.run().");
         }
 
+        MetricRegistry metrics = new MetricRegistry();
         UserStorage userStorage = new UserStorage();
         LoggedInUsersStorage loggedInUsersStorage = new LoggedInUsersStorage();
         FolderStorage folderStorage = new FolderStorage();
         FileMetadataStorage fileMetadataStorage = new FileMetadataStorage();
-        FileContentStorage fileContentStorage = new FileContentStorage();
+
+        Path dataDirectory = ApplicationConfiguration.dataDirectory();
+        StripedBlobStore stripedBlobStore = createStripedBlobStore(metrics);
+        SegmentBlobStore segmentBlobStore = createSegmentBlobStore(dataDirectory, stripedBlobStore, metrics);
+        TieredBlobStore tieredBlobStore = createTieredBlobStore(dataDirectory, segmentBlobStore, metrics);
+        BlobStore blobStore = new CachingBlobStore(
+            tieredBlobStore,
+            ApplicationConfiguration.blobCacheCapacity(),
+            metrics,
+            tieredBlobStore::recordRead
+        );
+        FileContentStorage fileContentStorage = new FileContentStorage(
+            blobStore,
+            ApplicationConfiguration.contentCompression()
+        );
+        DurableStorages durableStorages = new DurableStorages(
+            dataDirectory,
+            ApplicationConfiguration.journalDurability(),
+            ApplicationConfiguration.journalBatchInterval(),
+            metrics
+        );
+
+        durableStorages.register("users", userStorage, new UserRecordCodec());
+        durableStorages.register("logged-in-users", loggedInUsersStorage, new LoggedInUserRecordCodec());
+        durableStorages.register("folders", folderStorage, new FolderRecordCodec());
+        durableStorages.register("file-metadata", fileMetadataStorage, new FileMetadataRecordCodec());
+        durableStorages.register("file-contents", fileContentStorage, new FileContentRecordCodec());
+
+        try {
+
+            durableStorages.recover();
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(format("Cannot restore storages from %s.", dataDirectory), e);
+        }
+
+        metrics.gauge("storage.file-contents.deduplication.ratio", fileContentStorage::deduplicationRatio);
+
+        durableStorages.scheduleCheckpoints(ApplicationConfiguration.checkpointInterval());
+
+        tieredBlobStore.scheduleMigrations(ApplicationConfiguration.tieringInterval());
+
+        segmentBlobStore.scheduleCompactions(ApplicationConfiguration.compactionInterval());
+        stripedBlobStore.scheduleRebalancing();
+
+        UploadSessions uploadSessions = createUploadSessions();
+
+        metrics.gauge("upload.sessions", uploadSessions::count);
+        uploadSessions.scheduleExpiration(ApplicationConfiguration.uploadExpirationInterval());
+
+        Thumbnails thumbnails = new Thumbnails(
+            fileContentStorage,
+            ApplicationConfiguration.thumbnailSize(),
+            ApplicationConfiguration.thumbnailThreads(),
+            ApplicationConfiguration.thumbnailQueueCapacity(),
+            metrics
+        );
+
+        InstantUploading instantUploading = new InstantUploading(
+            new FileUploading(folderStorage, fileMetadataStorage, fileContentStorage, thumbnails),
+            fileMetadataStorage,
+            fileContentStorage,
+            ApplicationConfiguration.uploadChallengeExpireAfter(),
+            ApplicationConfiguration.uploadChallengeMaxPerUser(),
+            Clock.systemUTC()
+        );
+
+        metrics.gauge("upload.challenges", instantUploading::count);
+        instantUploading.scheduleExpiration(ApplicationConfiguration.uploadChallengeExpireAfter());
+
+        ThreadPoolExecutor uploadIngestion = createUploadIngestion();
+
+        metrics.gauge("upload.ingestion.active", uploadIngestion::getActiveCount);
+        metrics.gauge("upload.ingestion.queued", () -> uploadIngestion.getQueue().size());
+        UploadMemoryBudget uploadMemory = new UploadMemoryBudget(
+            ApplicationConfiguration.uploadMemoryBudget(),
+            ApplicationConfiguration.uploadMemoryWait(),
+            metrics
+        );
+
         SparkStarter starter = new SparkStarter(
             userStorage,
             loggedInUsersStorage,
             folderStorage,
             fileMetadataStorage,
-            fileContentStorage
+            fileContentStorage,
+            uploadSessions,
+            instantUploading,
+            thumbnails,
+            uploadIngestion,
+            uploadMemory,
+            metrics
         );
 
         starter.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+
+            stopStep("web server", starter::stop);
+            stopStep("thumbnails", thumbnails::close);
+            stopStep("upload ingestion", () -> stopExecutor(uploadIngestion));
+            stopStep("upload sessions", uploadSessions::close);
+            stopStep("upload challenges", instantUploading::close);
+            stopStep("tiered blob store", tieredBlobStore::close);
+            stopStep("segment blob store", segmentBlobStore::close);
+            stopStep("striped blob store", stripedBlobStore::close);
+            stopStep("storages", durableStorages::close);
+
+        }, "filehub-shutdown"));
+    }
+
+    /**
+     * Runs one step of the shutdown. The failure of the step is logged, so the later steps still run.
+     *
+     * @param name the name of the stopped part of the application.
+     * @param step the step that stops the part.
+     */
+    private static void stopStep(String name, Runnable step) {
+
+        try {
+
+            step.run();
+
+        } catch (RuntimeException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error(format("Cannot stop %s.", name), e);
+            }
+        }
+    }
+
+    /**
+     * Stops the executor and waits for its running tasks.
+     *
+     * @param executor the executor to stop.
+     */
+    private static void stopExecutor(ExecutorService executor) {
+
+        executor.shutdown();
+
+        try {
+
+            executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), MILLISECONDS);
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates the store of the large contents of the files, that spreads them over the content directories of
+     * {@link ApplicationConfiguration}.
+     *
+     * @param metrics the registry of metrics of the application.
+     * @return the striped store of the contents.
+     */
+    private StripedBlobStore createStripedBlobStore(MetricRegistry metrics) {
+
+        List<Path> blobDirectories = ApplicationConfiguration.blobDirectories();
+
+        try {
+
+            return new StripedBlobStore(blobDirectories, ApplicationConfiguration.stripeUnit(), metrics);
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(format("Cannot list contents in %s.", blobDirectories), e);
+        }
+    }
+
+    /**
+     * Creates the store of the contents of the files, that packs the small contents into the segments in the
+     * {@code segments} subdirectory of the data directory and passes the large ones to the given store.
+     *
+     * @param dataDirectory the data directory of the application.
+     * @param largeBlobs    the store of the large contents.
+     * @param metrics       the registry of metrics of the application.
+     * @return the segment store of the contents.
+     */
+    private SegmentBlobStore createSegmentBlobStore(Path dataDirectory, BlobStore largeBlobs, MetricRegistry metrics) {
+
+        try {
+
+            return new SegmentBlobStore(
+                dataDirectory.resolve("segments"),
+                largeBlobs,
+                ApplicationConfiguration.segmentSize(),
+                ApplicationConfiguration.smallBlobLimit(),
+                metrics
+            );
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(format("Cannot restore segments from %s.", dataDirectory), e);
+        }
+    }
+
+    /**
+     * Creates the store of the contents of the files with the given warm tier and the cold tier in the cold directory
+     * of {@link ApplicationConfiguration}. The times of the last reads of the warm contents are saved into the
+     * {@code tier-reads} file of the data directory.
+     *
+     * @param dataDirectory the data directory of the application.
+     * @param warm          the warm tier of the contents.
+     * @param metrics       the registry of metrics of the application.
+     * @return the tiered store of the contents.
+     */
+    private TieredBlobStore createTieredBlobStore(Path dataDirectory, BlobStore warm, MetricRegistry metrics) {
+
+        Path coldDirectory = ApplicationConfiguration.coldDirectory();
+
+        try {
+
+            return new TieredBlobStore(
+                warm,
+                new DiskBlobStore(coldDirectory),
+                ApplicationConfiguration.coldAfter(),
+                ApplicationConfiguration.contentCompression() == ContentEncoding.IDENTITY,
+                dataDirectory.resolve("tier-reads"),
+                Clock.systemUTC(),
+                metrics
+            );
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(format("Cannot list contents in %s.", coldDirectory), e);
+        }
+    }
+
+    /**
+     * Creates the registry of the sessions of the uploads in chunks, that keeps their staging files in the upload
+     * directory of {@link ApplicationConfiguration}.
+     *
+     * @return the registry of the upload sessions.
+     */
+    private UploadSessions createUploadSessions() {
+
+        Path uploadDirectory = ApplicationConfiguration.uploadDirectory();
+
+        try {
+
+            return new UploadSessions(
+                uploadDirectory,
+                ApplicationConfiguration.uploadChunkSize(),
+                ApplicationConfiguration.uploadExpireAfter(),
+                ApplicationConfiguration.uploadMaxSessionsPerUser(),
+                Clock.systemUTC()
+            );
+
+        } catch (IOException e) {
+
+            throw new UncheckedIOException(format("Cannot clean uploads in %s.", uploadDirectory), e);
+        }
+    }
+
+    /**
+     * Creates the executor that stores the files, that are uploaded in one request, concurrently. Its threads are
+     * daemons, so the uploads in progress do not hold the shutdown.
+     *
+     * @return the executor of the ingestion of the uploaded files.
+     */
+    private ThreadPoolExecutor createUploadIngestion() {
+
+        return (ThreadPoolExecutor) newFixedThreadPool(ApplicationConfiguration.uploadIngestionThreads(), runnable -> {
+
+            Thread thread = new Thread(runnable, "upload-ingestion");
+            thread.setDaemon(true);
+
+            return thread;
+        });
     }
 
     public static void main(String[] args) {
@@ -1,22 +1,45 @@
 package filestore.web;
 
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
 import io.nure.filestore.api.DownloadFile;
 import io.nure.filestore.api.FileContent;
 import io.nure.filestore.api.FileContentView;
 import io.nure.filestore.api.FileNotFoundException;
 import io.nure.filestore.api.LoggedInUser;
 import io.nure.filestore.api.View;
+import io.nure.filestore.storage.BlobLocator;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.FileContentRecord;
 import io.nure.filestore.storage.FileContentStorage;
 import io.nure.filestore.storage.FileId;
+import io.nure.filestore.storage.FileMetadataRecord;
 import io.nure.filestore.storage.FileMetadataStorage;
+import org.eclipse.jetty.server.HttpOutput;
 import org.slf4j.Logger;
 import spark.Request;
 import spark.Response;
 import spark.Route;
 
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -26,6 +49,35 @@ public class GetFileContentRoute implements Route {
 
     private static final Logger logger = getLogger(GetFileContentRoute.class);
 
+    /**
+     * The name of the query parameter with the encoding of the content in the response.
+     */
+    private static final String ENCODING_PARAMETER = "encoding";
+
+    /**
+     * The value of the encoding parameter that asks for the content encoded to Base64, as the legacy clients expect.
+     */
+    private static final String BASE64_ENCODING = "base64";
+
+    /**
+     * The type of the content which type is not known by the name of the file.
+     */
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    /**
+     * The characters of a file name that are sent in {@code Content-Disposition} header without percent-encoding,
+     * as RFC 5987 allows.
+     */
+    private static final CharMatcher ATTRIBUTE_CHARACTERS = CharMatcher.inRange('a', 'z')
+        .or(CharMatcher.inRange('A', 'Z'))
+        .or(CharMatcher.inRange('0', '9'))
+        .or(CharMatcher.anyOf("!#$&+-.^_`|~"));
+
+    /**
+     * The line break after the bytes of a part of {@code multipart/byteranges} body.
+     */
+    private static final byte[] PART_SEPARATOR = "\r\n".getBytes(US_ASCII);
+
     private final FileContentStorage fileContentStorage;
 
     private final FileMetadataStorage fileMetadataStorage;
@@ -40,18 +92,57 @@ public class GetFileContentRoute implements Route {
 
         LoggedInUser user = getLoggedInUser();
         FileId fileId = getFileId(request);
-        DownloadFile query = createQuery(user, fileId);
-        FileContentView view = createView();
+        boolean base64 = BASE64_ENCODING.equals(request.queryParams(ENCODING_PARAMETER));
+        String range = base64 ? null : request.headers("Range");
+
+        // The ranges are the positions in the decoded content, so it is never sent encoded in parts.
+        DownloadFile query = createQuery(user, fileId, base64 || range != null ? EnumSet.noneOf(ContentEncoding.class)
+            : getAcceptedEncodings(request));
+        String ifNoneMatch = base64 ? null : request.headers("If-None-Match");
+
+        if (ifNoneMatch != null) {
+
+            Optional<String> entityTag = getCurrentEntityTag(query);
+
+            if (entityTag.isPresent() && EntityTags.matches(ifNoneMatch, entityTag.get())) {
+                return makeNotModifiedResponse(response, entityTag.get());
+            }
+        }
 
-        try {
+        FileContentView view = createView();
 
-            FileContent content = view.handle(query);
+        try (FileContent content = view.handle(query)) {
 
             if (logger.isInfoEnabled()) {
                 logger.info("Created folder content: {}.", content);
             }
 
-            return makeSuccessfulResponse(response, content);
+            FileMetadataRecord metadata = getFileMetadata(fileId);
+
+            if (base64) {
+                return makeBase64Response(response, content);
+            }
+
+            String entityTag = getEntityTag(fileId, content.encoding());
+            Optional<List<ByteRange>> ranges = range != null && isCurrent(request.headers("If-Range"), entityTag)
+                ? ByteRange.parse(range, metadata.size().value())
+                : Optional.empty();
+
+            if (ranges.isPresent()) {
+                return makePartialResponse(response, metadata, content, ranges.get(), entityTag);
+            }
+
+            return makeSuccessfulResponse(response, metadata, content, entityTag);
+
+        } catch (IOException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Cannot send content of file {}: {}", fileId.value(), e.getMessage());
+            }
+
+            response.status(ResponseStatus.INTERNAL_SERVER_ERROR);
+
+            return "";
 
         } catch (FileNotFoundException e) {
 
@@ -80,16 +171,133 @@ public class GetFileContentRoute implements Route {
         return new FileId(request.params(param));
     }
 
+    /**
+     * Retrieves the encodings of the content, that the client accepts by {@code Accept-Encoding} header.
+     *
+     * @param request the client request.
+     * @return the accepted encodings, except the ones with zero quality.
+     */
+    private static Set<ContentEncoding> getAcceptedEncodings(Request request) {
+
+        Set<ContentEncoding> accepted = EnumSet.noneOf(ContentEncoding.class);
+        String header = request.headers("Accept-Encoding");
+
+        if (header == null) {
+            return accepted;
+        }
+
+        for (String coding : Splitter.on(',').trimResults().omitEmptyStrings().split(header)) {
+
+            List<String> parameters = Splitter.on(';').trimResults().splitToList(coding);
+            boolean rejected = parameters.stream()
+                .skip(1)
+                .anyMatch(parameter -> parameter.matches("q=0(\\.0*)?"));
+
+            for (ContentEncoding encoding : ContentEncoding.values()) {
+
+                if (!rejected && encoding.value().equalsIgnoreCase(parameters.get(0))) {
+                    accepted.add(encoding);
+                }
+            }
+        }
+
+        return accepted;
+    }
+
     /**
      * Creates query todownload file.
      *
-     * @param user     owner of requested file
-     * @param fileId identifier of requested file
+     * @param user              owner of requested file
+     * @param fileId            identifier of requested file
+     * @param acceptedEncodings the encodings the client accepts the content in.
      * @return query to retrieve content of the parent folder.
      */
-    private DownloadFile createQuery(LoggedInUser user, FileId fileId) {
+    private DownloadFile createQuery(LoggedInUser user, FileId fileId, Set<ContentEncoding> acceptedEncodings) {
 
-        return new DownloadFile(fileId, user.identifier());
+        return new DownloadFile(fileId, user.identifier(), acceptedEncodings);
+    }
+
+    /**
+     * Retrieves the metadata of the downloaded file.
+     *
+     * @param fileId identifier of the file.
+     * @return metadata of the file.
+     * @throws FileNotFoundException if the file is deleted after its content was opened.
+     */
+    private FileMetadataRecord getFileMetadata(FileId fileId) {
+
+        return fileMetadataStorage.get(fileId).orElseThrow(() -> new FileNotFoundException(format(
+            "File with id \"%s\" was not found.", fileId.value())));
+    }
+
+    /**
+     * Creates the entity tag of the opened content of the file.
+     *
+     * @param fileId   identifier of the file.
+     * @param encoding the encoding the content is sent in.
+     * @return the entity tag of the content.
+     * @throws FileNotFoundException if the file is deleted after its content was opened.
+     */
+    private String getEntityTag(FileId fileId, ContentEncoding encoding) {
+
+        FileContentRecord record = fileContentStorage.get(fileId)
+            .orElseThrow(() -> new FileNotFoundException(format("File with id \"%s\" was not found.", fileId.value())));
+
+        return entityTag(record, encoding);
+    }
+
+    /**
+     * Creates the entity tag of the content of the file before the content is opened, to check whether the client
+     * already has it. The content is not read.
+     *
+     * @param query the query to download the file.
+     * @return the entity tag of the content that would be sent, or {@link Optional#empty()} if the user has no such
+     * file.
+     */
+    private Optional<String> getCurrentEntityTag(DownloadFile query) {
+
+        boolean owned = fileMetadataStorage.get(query.fileId())
+            .filter(metadata -> metadata.ownerId().equals(query.fileOwnerId()))
+            .isPresent();
+
+        if (!owned) {
+            return Optional.empty();
+        }
+
+        // The same choice of the encoding as FileContentView makes.
+        return fileContentStorage.get(query.fileId())
+            .map(record -> entityTag(record, query.accepts(record.encoding())
+                ? record.encoding() : ContentEncoding.IDENTITY));
+    }
+
+    /**
+     * Creates the strong entity tag of the content of the file. The tag is SHA-256 hash of the content, that is the
+     * name of its blob, with the extension of the encoding the content is sent in.
+     *
+     * @param record   the record of the content.
+     * @param encoding the encoding the content is sent in.
+     * @return the quoted entity tag.
+     */
+    private static String entityTag(FileContentRecord record, ContentEncoding encoding) {
+
+        BlobLocator locator = record.locator();
+
+        return EntityTags.strong(encoding.locate(record.encoding().name(locator)).value());
+    }
+
+    /**
+     * Checks whether the ranges may be sent by the value of {@code If-Range} header. The client sends the header to
+     * receive the ranges only if the content is not changed since it received the first part, and the whole
+     * content otherwise.
+     *
+     * @param ifRange   the value of {@code If-Range} header, or {@code null} if it is not sent.
+     * @param entityTag the entity tag of the content.
+     * @return {@code true} if the header is not sent or it has the entity tag of the content.
+     */
+    private static boolean isCurrent(String ifRange, String entityTag) {
+
+        // The dates are never equal to the last modification time, that is not sent.
+        return ifRange == null || EntityTags.matchesStrongly(ifRange, entityTag);
     }
 
     /**
@@ -103,22 +311,338 @@ public class GetFileContentRoute implements Route {
     }
 
     /**
-     * Makes successful {@link Response} with retrieved {@link FileContent}.
+     * Makes successful {@link Response} with the raw bytes of retrieved {@link FileContent}.
+     *
+     * <p>The type of the content is guessed by the name of the file. The content is sent as an attachment with the
+     * name of the file. The content that is kept compressed is sent as it is with {@code Content-Encoding} header, if
+     * the client accepts it.
+     *
+     * @param response  server response object.
+     * @param metadata  metadata of the file.
+     * @param content   retrieved content of the file.
+     * @param entityTag the entity tag of the content.
+     * @return empty body, as the content is already written.
+     * @throws IOException if the content cannot be read or sent.
+     */
+    private String makeSuccessfulResponse(Response response, FileMetadataRecord metadata, FileContent content,
+                                          String entityTag) throws IOException {
+
+        response.status(ResponseStatus.SUCCESS);
+        response.type(contentType(metadata));
+        setContentHeaders(response, metadata, entityTag);
+        response.header("Vary", "Accept-Encoding");
+
+        if (content.encoding() != ContentEncoding.IDENTITY) {
+            response.header("Content-Encoding", content.encoding().value());
+        }
+
+        sendContent(response.raw(), content, content.encoding() == ContentEncoding.IDENTITY
+            ? metadata.size().value() : -1);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Response created.");
+        }
+
+        return "";
+    }
+
+    /**
+     * Makes {@link Response} with the ranges of retrieved {@link FileContent}, that the client asked for by
+     * {@code Range} header.
+     *
+     * <p>One range is sent as it is with {@code Content-Range} header. Several ranges are sent as the parts of
+     * {@code multipart/byteranges} body. Only the bytes of the ranges are read from the content that is kept in a
+     * file, the other contents are read up to the last range.
+     *
+     * @param response  server response object.
+     * @param metadata  metadata of the file.
+     * @param content   retrieved content of the file, decoded.
+     * @param ranges    the sorted ranges of the content, or empty list if none of the asked ranges is satisfiable.
+     * @param entityTag the entity tag of the content.
+     * @return empty body, as the content is already written.
+     * @throws IOException if the content cannot be read or sent.
+     */
+    private String makePartialResponse(Response response, FileMetadataRecord metadata, FileContent content,
+                                       List<ByteRange> ranges, String entityTag) throws IOException {
+
+        long length = metadata.size().value();
+
+        if (ranges.isEmpty()) {
+
+            response.status(ResponseStatus.RANGE_NOT_SATISFIABLE);
+            response.header("Content-Range", format("bytes */%d", length));
+
+            return "";
+        }
+
+        response.status(ResponseStatus.PARTIAL_CONTENT);
+        setContentHeaders(response, metadata, entityTag);
+
+        HttpServletResponse raw = response.raw();
+        OutputStream output = raw.getOutputStream();
+        Optional<ByteBuffer> mapped = output instanceof HttpOutput ? content.map() : Optional.empty();
+
+        if (ranges.size() == 1) {
+
+            ByteRange range = ranges.get(0);
+
+            response.type(contentType(metadata));
+            response.header("Content-Range", range.contentRange(length));
+            raw.setContentLengthLong(range.length());
+
+            if (mapped.isPresent()) {
+                ((HttpOutput) output).sendContent(slice(mapped.get(), range));
+            } else {
+                writeRange(output, content, mapped, range, 0);
+            }
+
+        } else {
+
+            String boundary = UUID.randomUUID().toString().replace("-", "");
+            List<byte[]> partHeaders = new ArrayList<>();
+            byte[] closing = format("--%s--\r\n", boundary).getBytes(US_ASCII);
+            long bodyLength = closing.length;
+
+            for (ByteRange range : ranges) {
+
+                byte[] partHeader = format("--%s\r\nContent-Type: %s\r\nContent-Range: %s\r\n\r\n", boundary,
+                    contentType(metadata), range.contentRange(length)).getBytes(US_ASCII);
+
+                partHeaders.add(partHeader);
+                bodyLength += partHeader.length + range.length() + PART_SEPARATOR.length;
+            }
+
+            response.type("multipart/byteranges; boundary=" + boundary);
+            raw.setContentLengthLong(bodyLength);
+
+            long position = 0;
+
+            for (int part = 0; part < ranges.size(); ++part) {
+
+                ByteRange range = ranges.get(part);
+
+                output.write(partHeaders.get(part));
+                writeRange(output, content, mapped, range, position);
+                output.write(PART_SEPARATOR);
+
+                position = range.last() + 1;
+            }
+
+            output.write(closing);
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Partial response created: {}.", ranges);
+        }
+
+        return "";
+    }
+
+    /**
+     * Makes successful {@link Response} with retrieved {@link FileContent} encoded to Base64 for the legacy clients.
      *
      * @param response server response object.
      * @param content  retrieved content of the file.
-     * @return 200;
+     * @return empty body, as the content is already written.
+     * @throws IOException if the content cannot be read or sent.
      */
-    private int makeSuccessfulResponse(Response response, FileContent content) {
+    private String makeBase64Response(Response response, FileContent content) throws IOException {
 
         response.status(ResponseStatus.SUCCESS);
-        response.body(Base64.getEncoder().encodeToString(content.value()));
+        response.type("text/plain");
+
+        writeBase64(response.raw().getOutputStream(), content);
 
         if (logger.isInfoEnabled()) {
             logger.info("Response created.");
         }
 
-        return ResponseStatus.SUCCESS;
+        return "";
+    }
+
+    /**
+     * Guesses the type of the content by the name of the file.
+     *
+     * @param metadata metadata of the file.
+     * @return the MIME type of the content.
+     */
+    private static String contentType(FileMetadataRecord metadata) {
+
+        String contentType = URLConnection.guessContentTypeFromName(metadata.name().value());
+
+        return contentType == null ? DEFAULT_CONTENT_TYPE : contentType;
+    }
+
+    /**
+     * Sets the headers that describe the content of the file, both in the whole and in the partial responses.
+     *
+     * @param response  server response object.
+     * @param metadata  metadata of the file.
+     * @param entityTag the entity tag of the content.
+     */
+    private static void setContentHeaders(Response response, FileMetadataRecord metadata, String entityTag) {
+
+        response.header("Content-Disposition", contentDisposition(metadata.name().value()));
+        response.header("Accept-Ranges", "bytes");
+        response.header("ETag", entityTag);
+    }
+
+    /**
+     * Creates the value of {@code Content-Disposition} header of the attachment with the name of the file. The name is
+     * sent both as an ASCII fallback and as UTF-8 by RFC 6266.
+     *
+     * @param fileName the name of the file.
+     * @return the value of the header.
+     */
+    private static String contentDisposition(String fileName) {
+
+        String fallback = CharMatcher.ascii()
+            .and(CharMatcher.javaIsoControl().negate())
+            .and(CharMatcher.noneOf("\"\\"))
+            .negate()
+            .replaceFrom(fileName, '_');
+
+        StringBuilder encoded = new StringBuilder();
+
+        for (byte character : fileName.getBytes(UTF_8)) {
+
+            if (ATTRIBUTE_CHARACTERS.matches((char) character)) {
+                encoded.append((char) character);
+            } else {
+                encoded.append(format("%%%02X", character & 0xFF));
+            }
+        }
+
+        return format("attachment; filename=\"%s\"; filename*=UTF-8''%s", fallback, encoded);
+    }
+
+    /**
+     * Sends the bytes of the content.
+     *
+     * <p>The content that is kept in a file or in memory is passed to Jetty as one mapped buffer, that is written to
+     * the socket without copying it into the Java heap. Other contents are streamed by Jetty chunk by chunk through
+     * its pooled direct buffers.
+     *
+     * @param response the servlet response.
+     * @param content  the content of the file.
+     * @param length   the length of the content, or {@code -1} if it is not known before the content is read.
+     * @throws IOException if the content cannot be read or sent.
+     */
+    private static void sendContent(HttpServletResponse response, FileContent content, long length)
+        throws IOException {
+
+        OutputStream output = response.getOutputStream();
+        Optional<ByteBuffer> mapped = output instanceof HttpOutput ? content.map() : Optional.empty();
+
+        if (mapped.isPresent()) {
+
+            response.setContentLengthLong(mapped.get().remaining());
+            ((HttpOutput) output).sendContent(mapped.get());
+
+            return;
+        }
+
+        if (length >= 0) {
+            response.setContentLengthLong(length);
+        }
+
+        if (output instanceof HttpOutput) {
+            ((HttpOutput) output).sendContent(content.channel());
+        } else {
+            content.transferTo(newChannel(output));
+        }
+    }
+
+    /**
+     * Takes the range of the mapped content without copying it.
+     *
+     * @param mapped the buffer with the whole content.
+     * @param range  the range of the content.
+     * @return the buffer with the bytes of the range.
+     */
+    private static ByteBuffer slice(ByteBuffer mapped, ByteRange range) {
+
+        ByteBuffer slice = mapped.duplicate();
+        slice.limit(Math.toIntExact(range.last() + 1));
+        slice.position(Math.toIntExact(range.first()));
+
+        return slice;
+    }
+
+    /**
+     * Writes the range of the content. The mapped content is written without copying, other contents are skipped
+     * up to the range and read chunk by chunk.
+     *
+     * @param output   the output stream of the response.
+     * @param content  the content of the file.
+     * @param mapped   the buffer with the whole content, if it is mapped.
+     * @param range    the range of the content to write.
+     * @param position the position of the content, that is the end of the previously written range.
+     * @throws IOException if the content cannot be read or written, or it ends before the range.
+     */
+    private static void writeRange(OutputStream output, FileContent content, Optional<ByteBuffer> mapped,
+                                   ByteRange range, long position) throws IOException {
+
+        if (mapped.isPresent()) {
+
+            ((HttpOutput) output).write(slice(mapped.get(), range));
+
+            return;
+        }
+
+        long skipped = content.skip(range.first() - position);
+        long written = content.transferTo(newChannel(output), range.length());
+
+        if (position + skipped != range.first() || written != range.length()) {
+            throw new IOException(format("Content ends before the range %s.", range));
+        }
+    }
+
+    /**
+     * Writes the content encoded to Base64 chunk by chunk, so it is never held in memory as a whole.
+     *
+     * @param output  the output stream of the response.
+     * @param content the content of the file.
+     * @throws IOException if the content cannot be read or written.
+     */
+    private static void writeBase64(OutputStream output, FileContent content) throws IOException {
+
+        // Closing the encoder writes the padding, but the output stream of the response must stay open for Spark.
+        try (OutputStream base64Output = Base64.getEncoder().wrap(new FilterOutputStream(output) {
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                out.write(bytes, offset, length);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        })) {
+
+            content.transferTo(newChannel(base64Output));
+        }
+    }
+
+    /**
+     * Makes {@link Response} that tells the client that its copy of the content is still current.
+     *
+     * @param response  server response object.
+     * @param entityTag the entity tag of the content.
+     * @return empty body.
+     */
+    private String makeNotModifiedResponse(Response response, String entityTag) {
+
+        response.status(ResponseStatus.NOT_MODIFIED);
+        response.header("ETag", entityTag);
+        response.header("Vary", "Accept-Encoding");
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Content is not modified: {}.", entityTag);
+        }
+
+        return "";
     }
 
     /**
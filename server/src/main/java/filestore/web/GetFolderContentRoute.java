@@ -71,7 +71,8 @@ public class GetFolderContentRoute implements Route {
      *
      * @param request  request of the client.
      * @param response server response.
-     * @return successful {@link Response} with JSON of retrieved {@link FolderContent} or
+     * @return successful {@link Response} with JSON of retrieved {@link FolderContent},
+     * {@link ResponseStatus#NOT_MODIFIED} if the client has the current content by {@code If-None-Match} header or
      * {@link ResponseStatus#NOT_FOUND} if the parent {@link Folder} was not found.
      */
     @Override
@@ -80,6 +81,18 @@ public class GetFolderContentRoute implements Route {
         LoggedInUser user = getLoggedInUser();
         FolderId requestedFolderId = getFolderId(request);
         GetFolderContentQuery query = createQuery(user, requestedFolderId);
+
+        // The version is taken before the content, so a change made while the content is collected makes the
+        // client fetch it again.
+        String entityTag = getEntityTag(requestedFolderId);
+        String ifNoneMatch = request.headers("If-None-Match");
+
+        if (ifNoneMatch != null && EntityTags.matches(ifNoneMatch, entityTag)
+            && folderStorage.get(requestedFolderId, user.identifier()).isPresent()) {
+
+            return makeNotModifiedResponse(response, entityTag);
+        }
+
         FolderContentView view = createView();
 
         try {
@@ -90,7 +103,7 @@ public class GetFolderContentRoute implements Route {
                 logger.info("Created folder content: {}.", content);
             }
 
-            return makeSuccessfulResponse(response, content);
+            return makeSuccessfulResponse(response, content, entityTag);
 
         } catch (FolderNotFoundException e) {
 
@@ -152,6 +165,20 @@ public class GetFolderContentRoute implements Route {
         return new GetFolderContentQuery(user.identifier(), folderId);
     }
 
+    /**
+     * Creates the strong entity tag of the content of the folder from the versions of its children folders and
+     * files. The tag is changed by any modification of the children, so it is checked without collecting the
+     * content.
+     *
+     * @param folderId identifier of the folder.
+     * @return the entity tag of the content.
+     */
+    private String getEntityTag(FolderId folderId) {
+
+        return EntityTags.strong(Long.toHexString(folderStorage.childrenVersion(folderId)) + '-'
+            + Long.toHexString(fileMetadataStorage.childrenVersion(folderId)));
+    }
+
     /**
      * Creates {@link View} of the {@link FolderContent}.
      *
@@ -165,13 +192,15 @@ public class GetFolderContentRoute implements Route {
     /**
      * Makes successful {@link Response} with retrieved {@link FolderContent}.
      *
-     * @param response server response object.
-     * @param content  retrieved content of the folder.
+     * @param response  server response object.
+     * @param content   retrieved content of the folder.
+     * @param entityTag the entity tag of the content.
      * @return folder content in JSON format.
      */
-    private String makeSuccessfulResponse(Response response, FolderContent content) {
+    private String makeSuccessfulResponse(Response response, FolderContent content, String entityTag) {
 
         response.status(ResponseStatus.SUCCESS);
+        response.header("ETag", entityTag);
 
         String contentJson = jsonParser.toJson(content, FolderContent.class);
 
@@ -182,6 +211,25 @@ public class GetFolderContentRoute implements Route {
         return contentJson;
     }
 
+    /**
+     * Makes {@link Response} that tells the client that its copy of the content is still current.
+     *
+     * @param response  server response object.
+     * @param entityTag the entity tag of the content.
+     * @return empty body.
+     */
+    private String makeNotModifiedResponse(Response response, String entityTag) {
+
+        response.status(ResponseStatus.NOT_MODIFIED);
+        response.header("ETag", entityTag);
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Folder content is not modified: {}.", entityTag);
+        }
+
+        return "";
+    }
+
     /**
      * Makes {@link Response} of not found folder with {@link FolderId}.
      *
@@ -0,0 +1,53 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import io.nure.filestore.metrics.MetricRegistry;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+
+/**
+ * The {@link Route} that handles {@link Request}s to retrieve current values of the metrics of the application.
+ *
+ * <p>The metrics reveal the internals of the server, so they are sent only to the logged in users.
+ */
+public class GetMetricsRoute implements Route {
+
+    /**
+     * A utility class for serializing the values of the metrics to JSON.
+     */
+    private final Gson jsonParser = new Gson();
+
+    /**
+     * The registry of metrics of the application.
+     */
+    private final MetricRegistry metrics;
+
+    /**
+     * Instantiates GetMetricsRoute.
+     *
+     * @param metrics the registry of metrics of the application.
+     */
+    public GetMetricsRoute(MetricRegistry metrics) {
+        this.metrics = checkNotNull(metrics);
+    }
+
+    /**
+     * Handles {@link Request} to get metrics.
+     *
+     * @param request  the client request.
+     * @param response the server response.
+     * @return values of the metrics in JSON format.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        response.status(SUCCESS);
+        response.type("application/json");
+
+        return jsonParser.toJson(metrics.values());
+    }
+}
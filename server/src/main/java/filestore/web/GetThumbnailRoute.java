@@ -0,0 +1,158 @@
+package filestore.web;
+
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.Thumbnails;
+import io.nure.filestore.storage.FileContentRecord;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileId;
+import io.nure.filestore.storage.FileMetadataRecord;
+import io.nure.filestore.storage.FileMetadataStorage;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.storage.FileContentStorage.thumbnailLocator;
+import static io.nure.filestore.web.ResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.NOT_MODIFIED;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static java.lang.String.format;
+import static java.nio.channels.Channels.newChannel;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles {@link Request}s of client to retrieve the thumbnail of the image file, that is
+ * generated by {@link Thumbnails} after the upload.
+ *
+ * <p>The thumbnail of the content never changes, so the client may keep it for {@link #CACHE_MAX_AGE} and revalidate
+ * it by the entity tag afterwards. The file, which thumbnail is not generated yet or cannot be generated, is not
+ * found.
+ */
+public class GetThumbnailRoute implements Route {
+
+    private static final Logger logger = getLogger(GetThumbnailRoute.class);
+
+    /**
+     * The time the client may use the thumbnail without revalidation.
+     */
+    private static final Duration CACHE_MAX_AGE = Duration.ofDays(1);
+
+    /**
+     * The storage of the contents of the files and of their thumbnails.
+     */
+    private final FileContentStorage fileContentStorage;
+
+    /**
+     * The storage of {@link FileMetadataRecord}s, that tells the owners of the files.
+     */
+    private final FileMetadataStorage fileMetadataStorage;
+
+    /**
+     * Instantiates GetThumbnailRoute with necessary storages.
+     *
+     * @param fileContentStorage  the storage of contents of files.
+     * @param fileMetadataStorage the storage of metadata of files.
+     */
+    public GetThumbnailRoute(FileContentStorage fileContentStorage, FileMetadataStorage fileMetadataStorage) {
+
+        this.fileContentStorage = checkNotNull(fileContentStorage);
+        this.fileMetadataStorage = checkNotNull(fileMetadataStorage);
+    }
+
+    /**
+     * Handles {@link Request} of client to get the thumbnail of the image file, that is owned by the
+     * {@link LoggedInUser}.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return successful {@link Response} with the bytes of the thumbnail, {@link ResponseStatus#NOT_MODIFIED} if the
+     * client has the thumbnail by {@code If-None-Match} header or {@link ResponseStatus#NOT_FOUND} if the file is not
+     * found or has no thumbnail.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+        FileId fileId = new FileId(request.params("fileId"));
+
+        boolean owned = fileMetadataStorage.get(fileId)
+            .filter(metadata -> metadata.ownerId().equals(user.identifier()))
+            .isPresent();
+        Optional<FileContentRecord> record = fileContentStorage.get(fileId);
+
+        if (!owned || !record.isPresent()) {
+            return makeNotFoundResponse(response, fileId);
+        }
+
+        String entityTag = EntityTags.strong(thumbnailLocator(record.get().locator()).value());
+        String ifNoneMatch = request.headers("If-None-Match");
+
+        if (ifNoneMatch != null && EntityTags.matches(ifNoneMatch, entityTag)) {
+
+            response.status(NOT_MODIFIED);
+            setCacheHeaders(response, entityTag);
+
+            return "";
+        }
+
+        Optional<FileContent> thumbnail = fileContentStorage.thumbnail(fileId);
+
+        if (!thumbnail.isPresent()) {
+            return makeNotFoundResponse(response, fileId);
+        }
+
+        try (FileContent content = thumbnail.get()) {
+
+            response.status(SUCCESS);
+            response.type(Thumbnails.MIME_TYPE);
+            setCacheHeaders(response, entityTag);
+
+            content.transferTo(newChannel(response.raw().getOutputStream()));
+
+            return "";
+
+        } catch (IOException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Cannot send thumbnail of file {}: {}", fileId.value(), e.getMessage());
+            }
+
+            response.status(INTERNAL_SERVER_ERROR);
+
+            return "";
+        }
+    }
+
+    /**
+     * Sets the headers that let the client keep the thumbnail in its private cache.
+     *
+     * @param response  server response object.
+     * @param entityTag the entity tag of the thumbnail.
+     */
+    private static void setCacheHeaders(Response response, String entityTag) {
+
+        response.header("ETag", entityTag);
+        response.header("Cache-Control", format("private, max-age=%d", CACHE_MAX_AGE.getSeconds()));
+    }
+
+    /**
+     * Makes {@link Response} of the file, that is not found or has no thumbnail.
+     *
+     * @param response response object.
+     * @param fileId   identifier of the file.
+     * @return error message of not found thumbnail.
+     */
+    private String makeNotFoundResponse(Response response, FileId fileId) {
+
+        response.status(NOT_FOUND);
+
+        return format("Thumbnail of file with id \"%s\" was not found.", fileId.value());
+    }
+}
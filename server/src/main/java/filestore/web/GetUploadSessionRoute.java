@@ -0,0 +1,93 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.OwnershipViolatedException;
+import io.nure.filestore.api.UploadSession;
+import io.nure.filestore.api.UploadSessionNotFoundException;
+import io.nure.filestore.api.UploadSessions;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.FORBIDDEN;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles client {@link Request}s to find out which chunks of the file in
+ * {@link UploadSession} are still to be sent, for example to resume the upload after the connection was lost.
+ */
+public class GetUploadSessionRoute implements Route {
+
+    private static final Logger logger = getLogger(GetUploadSessionRoute.class);
+
+    /**
+     * The converter of the responses into JSON.
+     */
+    private final Gson jsonParser = new GsonBuilder()
+        .registerTypeAdapter(UploadSession.class, new UploadSessionSerializer())
+        .create();
+
+    /**
+     * The registry of the open upload sessions.
+     */
+    private final UploadSessions uploadSessions;
+
+    /**
+     * Instantiates GetUploadSessionRoute.
+     *
+     * @param uploadSessions the registry of upload sessions.
+     */
+    public GetUploadSessionRoute(UploadSessions uploadSessions) {
+
+        this.uploadSessions = checkNotNull(uploadSessions);
+    }
+
+    /**
+     * Handles {@link Request} of client to get {@link UploadSession} of the {@link LoggedInUser}.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return JSON of the {@link UploadSession}, or the error message with {@link ResponseStatus#NOT_FOUND} if the
+     * session is committed or has expired.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+
+        try {
+
+            UploadSession session = uploadSessions.session(request.params("sessionId"), user.identifier());
+
+            response.status(SUCCESS);
+
+            return jsonParser.toJson(session, UploadSession.class);
+
+        } catch (UploadSessionNotFoundException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info(e.getMessage());
+            }
+
+            response.status(NOT_FOUND);
+
+            return e.getMessage();
+
+        } catch (OwnershipViolatedException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info(e.getMessage());
+            }
+
+            response.status(FORBIDDEN);
+
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package filestore.web;
+
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.SERVICE_UNAVAILABLE;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles the upload {@link Request}s by another route within {@link UploadMemoryBudget}.
+ *
+ * <p>The memory of the buffers of the upload is reserved before the body of the request is read and is released
+ * when the route is done. If the budget stays used up, the request is rejected with
+ * {@link ResponseStatus#SERVICE_UNAVAILABLE} and {@code Retry-After} header, without reading its body.
+ */
+public class MemoryBudgetedRoute implements Route {
+
+    private static final Logger logger = getLogger(MemoryBudgetedRoute.class);
+
+    /**
+     * The budget of the memory of the uploads.
+     */
+    private final UploadMemoryBudget budget;
+
+    /**
+     * The number of bytes, that the buffers of one request use.
+     */
+    private final long footprint;
+
+    /**
+     * The route of the upload.
+     */
+    private final Route route;
+
+    /**
+     * Instantiates MemoryBudgetedRoute.
+     *
+     * @param budget    the budget of the memory of the uploads.
+     * @param footprint the number of bytes, that the buffers of one request of the route use.
+     * @param route     the route of the upload.
+     */
+    public MemoryBudgetedRoute(UploadMemoryBudget budget, long footprint, Route route) {
+
+        checkArgument(footprint > 0, "Footprint %s is not positive.", footprint);
+
+        this.budget = checkNotNull(budget);
+        this.footprint = footprint;
+        this.route = checkNotNull(route);
+    }
+
+    /**
+     * Handles {@link Request} of the client by the route of the upload, once the memory for it is reserved.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return the response of the route of the upload, or the error message with
+     * {@link ResponseStatus#SERVICE_UNAVAILABLE} if the memory was not reserved.
+     * @throws Exception if the route of the upload fails.
+     */
+    @Override
+    public Object handle(Request request, Response response) throws Exception {
+
+        Optional<UploadMemoryBudget.Reservation> reservation = budget.reserve(footprint);
+
+        if (!reservation.isPresent()) {
+
+            if (logger.isWarnEnabled()) {
+                logger.warn("Upload memory budget is used up, rejecting request: {}: {}.",
+                    request.requestMethod(), request.pathInfo());
+            }
+
+            response.status(SERVICE_UNAVAILABLE);
+            response.header("Retry-After", String.valueOf(budget.retryAfterSeconds()));
+
+            return "Server is busy with other uploads, try again later.";
+        }
+
+        try {
+
+            return route.handle(request, response);
+
+        } finally {
+            reservation.get().close();
+        }
+    }
+}
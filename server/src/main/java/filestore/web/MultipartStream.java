@@ -0,0 +1,506 @@
+package filestore.web;
+
+import com.google.common.base.Ascii;
+import io.nure.filestore.api.FileContent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The reader of {@code multipart/form-data} body, that streams the parts of the body as they arrive.
+ * {@link "https://tools.ietf.org/html/rfc7578"}.
+ *
+ * <p>Unlike {@link javax.servlet.http.HttpServletRequest#getParts()}, the parts are never buffered in memory or in
+ * temporary files: the body of a part is read straight from the input of the request through a buffer of
+ * {@link FileContent#CHUNK_SIZE} bytes, so a part of any size is passed through a bounded amount of memory. The parts
+ * must be read in the order they are sent, and each part is skipped once the next one is requested.
+ */
+public final class MultipartStream {
+
+    /**
+     * The maximal size of the headers of one part. A larger part is treated as malformed.
+     */
+    private static final int MAX_HEADERS_SIZE = 8 << 10;
+
+    /**
+     * The maximal length of the boundary by RFC 2046.
+     */
+    private static final int MAX_BOUNDARY_LENGTH = 70;
+
+    private static final byte CR = '\r';
+
+    private static final byte LF = '\n';
+
+    private static final byte DASH = '-';
+
+    /**
+     * The input of the body.
+     */
+    private final InputStream input;
+
+    /**
+     * The delimiter of the parts: a line break, two dashes and the boundary.
+     */
+    private final byte[] delimiter;
+
+    /**
+     * The buffer of the read bytes, that are not consumed yet.
+     */
+    private final byte[] buffer;
+
+    /**
+     * The position of the first not consumed byte in the buffer.
+     */
+    private int start;
+
+    /**
+     * The position after the last read byte in the buffer.
+     */
+    private int end;
+
+    /**
+     * Whether the input is read to the end.
+     */
+    private boolean exhausted;
+
+    /**
+     * Whether the closing delimiter of the body is read.
+     */
+    private boolean finished;
+
+    /**
+     * The body of the current part, or of the preamble before the first part.
+     */
+    private PartContent current;
+
+    /**
+     * Instantiates MultipartStream.
+     *
+     * @param input    the input of the body.
+     * @param boundary the boundary of the parts, taken from {@code Content-Type} header.
+     */
+    public MultipartStream(InputStream input, String boundary) {
+
+        checkNotNull(boundary);
+        checkArgument(!boundary.isEmpty() && boundary.length() <= MAX_BOUNDARY_LENGTH,
+            "Boundary \"%s\" is invalid.", boundary);
+
+        this.input = checkNotNull(input);
+        this.delimiter = ("\r\n--" + boundary).getBytes(US_ASCII);
+        this.buffer = new byte[FileContent.CHUNK_SIZE + delimiter.length];
+
+        // The first delimiter may go at the very start of the body, without the line break.
+        buffer[end++] = CR;
+        buffer[end++] = LF;
+        current = new PartContent();
+    }
+
+    /**
+     * Retrieves the boundary of the parts from the value of {@code Content-Type} header.
+     *
+     * @param contentType the value of {@code Content-Type} header of the request.
+     * @return the boundary, or {@link Optional#empty()} if the request is not {@code multipart/form-data}.
+     */
+    public static Optional<String> boundary(String contentType) {
+
+        if (contentType == null) {
+            return Optional.empty();
+        }
+
+        List<String> parameters = splitParameters(contentType);
+
+        if (!Ascii.equalsIgnoreCase(parameters.get(0), "multipart/form-data")) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(parseParameters(parameters).get("boundary"))
+            .filter(boundary -> !boundary.isEmpty() && boundary.length() <= MAX_BOUNDARY_LENGTH);
+    }
+
+    /**
+     * Reads the headers of the next part. The rest of the current part is skipped.
+     *
+     * @return the next part, or {@link Optional#empty()} if there are no more parts.
+     * @throws IOException if the body cannot be read or is malformed.
+     */
+    public Optional<Part> next() throws IOException {
+
+        if (finished) {
+            return Optional.empty();
+        }
+
+        byte[] skipped = new byte[FileContent.CHUNK_SIZE];
+
+        while (current.read(skipped, 0, skipped.length) != -1) {
+            // The rest of the part is skipped.
+        }
+
+        if (!request(2)) {
+            throw new MalformedMultipartException("Body ends after the delimiter.");
+        }
+
+        if (buffer[start] == DASH && buffer[start + 1] == DASH) {
+
+            finished = true;
+
+            return Optional.empty();
+        }
+
+        Map<String, String> headers = readHeaders();
+
+        current = new PartContent();
+
+        return Optional.of(new Part(headers, current));
+    }
+
+    /**
+     * Reads the headers of the part after the delimiter, up to the empty line.
+     */
+    private Map<String, String> readHeaders() throws IOException {
+
+        Map<String, String> headers = new HashMap<>();
+        int size = 0;
+        boolean delimiterLine = true;
+
+        while (true) {
+
+            String line = readLine();
+            size += line.length() + 2;
+
+            if (size > MAX_HEADERS_SIZE) {
+                throw new MalformedMultipartException("Headers of the part are too large.");
+            }
+
+            if (delimiterLine) {
+
+                // The rest of the line of the delimiter may only be a transport padding.
+                if (!line.trim().isEmpty()) {
+                    throw new MalformedMultipartException("Delimiter is followed by unexpected characters.");
+                }
+
+                delimiterLine = false;
+
+                continue;
+            }
+
+            if (line.isEmpty()) {
+                return headers;
+            }
+
+            int colon = line.indexOf(':');
+
+            if (colon > 0) {
+                headers.put(Ascii.toLowerCase(line.substring(0, colon).trim()), line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    /**
+     * Reads the line of a part header, that ends with a line break.
+     */
+    private String readLine() throws IOException {
+
+        int length = 0;
+
+        while (true) {
+
+            if (!request(length + 2)) {
+                throw new MalformedMultipartException("Body ends in the headers of the part.");
+            }
+
+            if (buffer[start + length] == CR && buffer[start + length + 1] == LF) {
+
+                String line = new String(buffer, start, length, UTF_8);
+                start += length + 2;
+
+                return line;
+            }
+
+            if (++length > MAX_HEADERS_SIZE) {
+                throw new MalformedMultipartException("Headers of the part are too large.");
+            }
+        }
+    }
+
+    /**
+     * Reads the input until the buffer has at least the number of not consumed bytes.
+     *
+     * @param count the number of bytes.
+     * @return {@code false} if the input ends earlier.
+     */
+    private boolean request(int count) throws IOException {
+
+        checkState(count <= buffer.length, "Requested %s bytes do not fit the buffer.", count);
+
+        while (end - start < count) {
+
+            if (exhausted) {
+                return false;
+            }
+
+            fill();
+        }
+
+        return true;
+    }
+
+    /**
+     * Moves the not consumed bytes to the start of the buffer and reads more bytes after them.
+     */
+    private void fill() throws IOException {
+
+        if (start > 0) {
+
+            System.arraycopy(buffer, start, buffer, 0, end - start);
+            end -= start;
+            start = 0;
+        }
+
+        int read = input.read(buffer, end, buffer.length - end);
+
+        if (read == -1) {
+            exhausted = true;
+        } else {
+            end += read;
+        }
+    }
+
+    /**
+     * Finds the delimiter that starts in the not consumed bytes of the buffer before the limit.
+     *
+     * @param limit the position in the buffer to stop the search at.
+     * @return the position of the delimiter, the position of the first byte that may start the delimiter which is
+     * not read completely yet, or the limit if the delimiter does not start before it.
+     */
+    private int findDelimiter(int limit) {
+
+        // The delimiter starts with a line break, that is rare in the binary contents, so the naive search skips
+        // almost every byte after one comparison.
+        for (int position = start; position < limit; ++position) {
+
+            int matched = 0;
+
+            while (matched < delimiter.length && position + matched < end
+                && buffer[position + matched] == delimiter[matched]) {
+
+                ++matched;
+            }
+
+            if (matched == delimiter.length || position + matched == end) {
+                return position;
+            }
+        }
+
+        return limit;
+    }
+
+    /**
+     * Splits the value of a header into the semicolon-separated parameters. The semicolons in quoted strings do not
+     * separate the parameters.
+     */
+    private static List<String> splitParameters(String value) {
+
+        List<String> parameters = new ArrayList<>();
+        boolean quoted = false;
+        int parameterStart = 0;
+
+        for (int position = 0; position < value.length(); ++position) {
+
+            char character = value.charAt(position);
+
+            if (character == '\\' && quoted) {
+                ++position;
+            } else if (character == '"') {
+                quoted = !quoted;
+            } else if (character == ';' && !quoted) {
+
+                parameters.add(value.substring(parameterStart, position).trim());
+                parameterStart = position + 1;
+            }
+        }
+
+        parameters.add(value.substring(parameterStart).trim());
+
+        return parameters;
+    }
+
+    /**
+     * Parses the parameters of a header, that go after its value, into a map by their names in lower case.
+     */
+    private static Map<String, String> parseParameters(List<String> parameters) {
+
+        Map<String, String> values = new HashMap<>();
+
+        for (String parameter : parameters.subList(1, parameters.size())) {
+
+            int equals = parameter.indexOf('=');
+
+            if (equals > 0) {
+
+                String value = parameter.substring(equals + 1).trim();
+
+                if (value.length() >= 2 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1).replace("\\\"", "\"").replace("\\\\", "\\");
+                }
+
+                values.put(Ascii.toLowerCase(parameter.substring(0, equals).trim()), value);
+            }
+        }
+
+        return values;
+    }
+
+    /**
+     * The body of a part, that is read from the buffer up to the delimiter.
+     */
+    private final class PartContent extends InputStream {
+
+        /**
+         * Whether the delimiter after the part is reached.
+         */
+        private boolean ended;
+
+        @Override
+        public int read() throws IOException {
+
+            byte[] single = new byte[1];
+
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int length) throws IOException {
+
+            checkNotNull(target);
+
+            if (ended || current != this) {
+                return -1;
+            }
+
+            if (length == 0) {
+                return 0;
+            }
+
+            while (true) {
+
+                int delimiterStart = findDelimiter(Math.min(end, start + length));
+
+                if (delimiterStart > start) {
+
+                    int read = Math.min(length, delimiterStart - start);
+                    System.arraycopy(buffer, start, target, offset, read);
+                    start += read;
+
+                    return read;
+                }
+
+                if (end - start >= delimiter.length) {
+
+                    start += delimiter.length;
+                    ended = true;
+
+                    return -1;
+                }
+
+                if (exhausted) {
+                    throw new MalformedMultipartException("Body ends before the closing delimiter.");
+                }
+
+                fill();
+            }
+        }
+    }
+
+    /**
+     * The part of {@code multipart/form-data} body.
+     */
+    public static final class Part {
+
+        /**
+         * The headers of the part by their names in lower case.
+         */
+        private final Map<String, String> headers;
+
+        /**
+         * The parameters of {@code Content-Disposition} header.
+         */
+        private final Map<String, String> disposition;
+
+        /**
+         * The body of the part.
+         */
+        private final InputStream content;
+
+        private Part(Map<String, String> headers, InputStream content) {
+
+            this.headers = headers;
+            this.content = content;
+
+            String value = headers.get("content-disposition");
+            this.disposition = value == null
+                ? new HashMap<>()
+                : parseParameters(splitParameters(value));
+        }
+
+        /**
+         * Retrieves the name of the field of the form.
+         *
+         * @return the name of the field, or {@code null} if it is not sent.
+         */
+        public String name() {
+            return disposition.get("name");
+        }
+
+        /**
+         * Retrieves the name of the submitted file.
+         *
+         * @return the name of the file, or {@code null} if the part is not a file.
+         */
+        public String fileName() {
+            return disposition.get("filename");
+        }
+
+        /**
+         * Retrieves the value of the header of the part.
+         *
+         * @param name the name of the header.
+         * @return the value of the header, or {@code null} if it is not sent.
+         */
+        public String header(String name) {
+            return headers.get(Ascii.toLowerCase(name));
+        }
+
+        /**
+         * Retrieves the body of the part. The body is read straight from the request, until the next part is
+         * requested.
+         *
+         * @return the stream of the body.
+         */
+        public InputStream content() {
+            return content;
+        }
+    }
+
+    /**
+     * The exception thrown when the body does not follow {@code multipart/form-data} format.
+     */
+    public static final class MalformedMultipartException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private MalformedMultipartException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package filestore.web;
+
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.FileMetadata;
+import io.nure.filestore.api.FileUploading;
+import io.nure.filestore.api.MimeType;
+import io.nure.filestore.api.UploadFile;
+import io.nure.filestore.storage.FileMetadataRecord;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.UserId;
+import org.slf4j.Logger;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The upload of all files of one {@code multipart/form-data} body.
+ *
+ * <p>The parts of the body are read one after another, but their contents are stored by {@link FileUploading}
+ * concurrently in the ingestion executor: while a file is hashed, compressed and written, the next one is already
+ * read from the request. The contents are passed to the executor through {@link ChunkPipe}s, and at most
+ * {@code maxInFlightFiles} files of the body are stored at once, so the memory of the upload stays bounded.
+ *
+ * <p>A worker of the ingestion executor stays busy with a file until its content is read from the request, so a
+ * slow client holds up to {@code maxInFlightFiles} workers for the whole transfer, that should be only a part of the
+ * workers. The files of the other requests wait in the queue of the executor when all workers are held. The busy
+ * workers and the waiting files are reported by the metrics {@code upload.ingestion.active} and
+ * {@code upload.ingestion.queued}. The number of the requests in progress, and so of the held workers, is bounded by
+ * {@link UploadMemoryBudget}.
+ *
+ * <p>The metadata of the stored files is committed in one batch once the body is read. A file that fails does not
+ * fail the others: the result of each file is reported separately. If the body itself cannot be read, the stored
+ * contents are discarded and nothing is committed.
+ */
+public final class MultipartUploading {
+
+    private static final Logger logger = getLogger(MultipartUploading.class);
+
+    /**
+     * The number of chunks of a file that may be read from the request ahead of the storing of the file.
+     */
+    private static final int PIPE_CAPACITY = 4;
+
+    /**
+     * The MIME type of the uploaded file, that is sent without 'Content-Type' header.
+     */
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    /**
+     * The process that stores the files and commits their metadata.
+     */
+    private final FileUploading process;
+
+    /**
+     * The executor that stores the contents of the files.
+     */
+    private final ExecutorService ingestion;
+
+    /**
+     * The maximal number of files of one body that are stored at once.
+     */
+    private final int maxInFlightFiles;
+
+    /**
+     * Instantiates MultipartUploading.
+     *
+     * @param process          the process that stores the files.
+     * @param ingestion        the executor that stores the contents of the files.
+     * @param maxInFlightFiles the maximal number of files of one body that are stored at once.
+     */
+    public MultipartUploading(FileUploading process, ExecutorService ingestion, int maxInFlightFiles) {
+
+        checkArgument(maxInFlightFiles > 0, "Number of files %s is not positive.", maxInFlightFiles);
+
+        this.process = checkNotNull(process);
+        this.ingestion = checkNotNull(ingestion);
+        this.maxInFlightFiles = maxInFlightFiles;
+    }
+
+    /**
+     * Retrieves the number of bytes, that the buffers of the upload of one body use at most: the buffers of the body
+     * and, for each file that is stored at once, the chunks in its pipe, the chunk that is being stored and the
+     * buffer of its encoding.
+     *
+     * @return the memory footprint of one upload in bytes.
+     */
+    public long memoryFootprint() {
+
+        return (2L + maxInFlightFiles * (PIPE_CAPACITY + 2L)) * FileContent.CHUNK_SIZE;
+    }
+
+    /**
+     * Uploads the files of all parts of the body, that have a file name, into the folder.
+     *
+     * @param body           the body of the request.
+     * @param parentFolderId the identifier of the destination folder of the files.
+     * @param ownerId        the identifier of the owner of the files.
+     * @return the results of the files in the order of the parts.
+     * @throws IOException if the body cannot be read or is malformed. No file is uploaded then.
+     */
+    public List<Result> upload(MultipartStream body, FolderId parentFolderId, UserId ownerId) throws IOException {
+
+        checkNotNull(body);
+        checkNotNull(parentFolderId);
+        checkNotNull(ownerId);
+
+        List<PendingFile> pendingFiles = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(maxInFlightFiles);
+        byte[] buffer = new byte[FileContent.CHUNK_SIZE];
+
+        try {
+
+            for (Optional<MultipartStream.Part> part = body.next(); part.isPresent(); part = body.next()) {
+
+                String fileName = part.get().fileName();
+
+                if (fileName == null) {
+                    continue;
+                }
+
+                String contentType = part.get().header("Content-Type");
+                ChunkPipe pipe = new ChunkPipe(PIPE_CAPACITY);
+                UploadFile command = new UploadFile(
+                    new FileName(fileName),
+                    new MimeType(contentType == null ? DEFAULT_MIME_TYPE : contentType),
+                    parentFolderId,
+                    ownerId,
+                    new FileContent(pipe)
+                );
+
+                pendingFiles.add(new PendingFile(fileName, submit(command, pipe, inFlight)));
+
+                transfer(part.get().content(), pipe, buffer);
+            }
+
+        } catch (IOException | RuntimeException e) {
+
+            discard(pendingFiles);
+
+            throw e;
+        }
+
+        return commit(pendingFiles);
+    }
+
+    /**
+     * Submits the storing of the file to the ingestion executor. Waits while too many files are stored.
+     */
+    private Future<FileMetadataRecord> submit(UploadFile command, ChunkPipe pipe, Semaphore inFlight)
+        throws InterruptedIOException {
+
+        try {
+
+            inFlight.acquire();
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+
+            throw new InterruptedIOException("Interrupted while waiting for the files to be stored.");
+        }
+
+        try {
+
+            return ingestion.submit(() -> {
+
+                try {
+
+                    return process.store(command);
+
+                } finally {
+
+                    pipe.drain();
+                    inFlight.release();
+                }
+            });
+
+        } catch (RejectedExecutionException e) {
+
+            inFlight.release();
+
+            throw e;
+        }
+    }
+
+    /**
+     * Passes the content of the part into the pipe. If the content cannot be read, the failure is passed instead of
+     * the end, so the file is not stored truncated.
+     */
+    private static void transfer(InputStream content, ChunkPipe pipe, byte[] buffer) throws IOException {
+
+        boolean ended = false;
+
+        try {
+
+            int read;
+
+            while ((read = content.read(buffer)) != -1) {
+                pipe.write(buffer, 0, read);
+            }
+
+            pipe.end();
+            ended = true;
+
+        } finally {
+
+            if (!ended) {
+                pipe.fail();
+            }
+        }
+    }
+
+    /**
+     * Waits for the stored files and commits the metadata of the successful ones in one batch. If the batch fails,
+     * the contents of the files, which metadata was not committed, are discarded by the commit itself.
+     */
+    private List<Result> commit(List<PendingFile> pendingFiles) throws InterruptedIOException {
+
+        List<FileMetadataRecord> stored = new ArrayList<>();
+        List<Result> results = new ArrayList<>();
+
+        for (PendingFile pendingFile : pendingFiles) {
+
+            try {
+
+                stored.add(pendingFile.stored.get());
+                results.add(null);
+
+            } catch (ExecutionException e) {
+
+                if (logger.isInfoEnabled()) {
+                    logger.info("File \"{}\" was not uploaded: {}.", pendingFile.fileName, e.getCause().getMessage());
+                }
+
+                results.add(new Result(pendingFile.fileName, null, e.getCause().getMessage()));
+
+            } catch (InterruptedException e) {
+
+                Thread.currentThread().interrupt();
+                discard(pendingFiles);
+
+                throw new InterruptedIOException("Interrupted while waiting for the files to be stored.");
+            }
+        }
+
+        Iterator<FileMetadata> committed = process.commit(stored).iterator();
+
+        for (int index = 0; index < results.size(); ++index) {
+
+            if (results.get(index) == null) {
+                results.set(index, new Result(pendingFiles.get(index).fileName, committed.next(), null));
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Waits for the stored files and deletes their contents, because their metadata is not going to be committed.
+     */
+    private void discard(List<PendingFile> pendingFiles) {
+
+        for (PendingFile pendingFile : pendingFiles) {
+
+            try {
+
+                process.discard(pendingFile.stored.get());
+
+            } catch (ExecutionException e) {
+
+                // The file was not stored.
+
+            } catch (InterruptedException e) {
+
+                // The file is stored and committed by nobody, if it is ever stored.
+                Thread.currentThread().interrupt();
+
+                return;
+
+            } catch (RuntimeException e) {
+
+                if (logger.isWarnEnabled()) {
+                    logger.warn("Cannot discard file \"" + pendingFile.fileName + "\".", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * The file that is being stored.
+     */
+    private static final class PendingFile {
+
+        private final String fileName;
+
+        private final Future<FileMetadataRecord> stored;
+
+        private PendingFile(String fileName, Future<FileMetadataRecord> stored) {
+
+            this.fileName = fileName;
+            this.stored = stored;
+        }
+    }
+
+    /**
+     * The result of the upload of one file of the body.
+     */
+    public static final class Result {
+
+        /**
+         * The name of the file, as it was sent.
+         */
+        private final String fileName;
+
+        /**
+         * The uploaded file or {@code null} if the upload has failed.
+         */
+        @Nullable
+        private final FileMetadata file;
+
+        /**
+         * The message of the failure or {@code null} if the file is uploaded.
+         */
+        @Nullable
+        private final String error;
+
+        private Result(String fileName, @Nullable FileMetadata file, @Nullable String error) {
+
+            this.fileName = fileName;
+            this.file = file;
+            this.error = error;
+        }
+
+        /**
+         * Retrieves the name of the file, as it was sent.
+         *
+         * @return the name of the file.
+         */
+        public String fileName() {
+            return fileName;
+        }
+
+        /**
+         * Retrieves the uploaded file.
+         *
+         * @return the metadata of the uploaded file, or {@link Optional#empty()} if the upload has failed.
+         */
+        public Optional<FileMetadata> file() {
+            return Optional.ofNullable(file);
+        }
+
+        /**
+         * Retrieves the message of the failure of the upload.
+         *
+         * @return the message of the failure, or {@link Optional#empty()} if the file is uploaded.
+         */
+        public Optional<String> error() {
+            return Optional.ofNullable(error);
+        }
+    }
+}
@@ -10,6 +10,21 @@ public final class ResponseStatus {
      */
     public final static int SUCCESS = 200;
 
+    /**
+     * The request is handled, but there is nothing to send in the body of the response.
+     */
+    public final static int NO_CONTENT = 204;
+
+    /**
+     * The server is delivering only the ranges of the content, that the client asked for by {@code Range} header.
+     */
+    public final static int PARTIAL_CONTENT = 206;
+
+    /**
+     * The content has not been changed since the client received it, so the client may use its copy.
+     */
+    public final static int NOT_MODIFIED = 304;
+
     /**
      * The server could not understand the request due to invalid syntax.
      */
@@ -30,16 +45,36 @@ public final class ResponseStatus {
      */
     public final static int NOT_FOUND = 404;
 
+    /**
+     * The request conflicts with the current state of the resource.
+     */
+    public final static int CONFLICT = 409;
+
+    /**
+     * None of the ranges the client asked for by {@code Range} header overlaps the content.
+     */
+    public final static int RANGE_NOT_SATISFIABLE = 416;
+
     /**
      * The request was well-formed but was unable to be followed due to semantic errors.
      */
     public final static int UNPROCESSABLE_ENTITY = 422;
 
+    /**
+     * The user has sent too many requests of this kind. The client may retry it after some of them are finished.
+     */
+    public final static int TOO_MANY_REQUESTS = 429;
+
     /**
      * The server encountered an unexpected condition which prevented it from fulfilling the request.
      */
     public final static int INTERNAL_SERVER_ERROR = 500;
 
+    /**
+     * The server cannot handle the request now because it is overloaded. The client may retry it later.
+     */
+    public final static int SERVICE_UNAVAILABLE = 503;
+
     /**
      * This allows only static reference to class, because there is no use of the instance of this class.
      */
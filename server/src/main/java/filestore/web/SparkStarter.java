@@ -1,5 +1,9 @@
 package filestore.web;
 
+import io.nure.filestore.api.InstantUploading;
+import io.nure.filestore.api.Thumbnails;
+import io.nure.filestore.api.UploadSessions;
+import io.nure.filestore.metrics.MetricRegistry;
 import io.nure.filestore.storage.FileContentRecord;
 import io.nure.filestore.storage.FileContentStorage;
 import io.nure.filestore.storage.FileMetadataRecord;
@@ -15,6 +19,8 @@ import spark.Request;
 import spark.Route;
 import spark.Spark;
 
+import java.util.concurrent.ExecutorService;
+
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.util.Arrays.asList;
 import static org.slf4j.LoggerFactory.getLogger;
@@ -24,6 +30,7 @@ import static spark.Spark.get;
 import static spark.Spark.path;
 import static spark.Spark.port;
 import static spark.Spark.post;
+import static spark.Spark.put;
 import static spark.Spark.staticFiles;
 
 /**
@@ -64,18 +71,60 @@ public class SparkStarter {
      */
     private final FileContentStorage fileContentStorage;
 
+    /**
+     * The registry of the open sessions of the uploads in chunks.
+     */
+    private final UploadSessions uploadSessions;
+
+    /**
+     * The upload of the files by the hashes of their contents.
+     */
+    private final InstantUploading instantUploading;
+
+    /**
+     * The generation of the thumbnails of the uploaded images.
+     */
+    private final Thumbnails thumbnails;
+
+    /**
+     * The executor that stores the files uploaded in one request concurrently.
+     */
+    private final ExecutorService uploadIngestion;
+
+    /**
+     * The budget of the memory of the uploads in progress.
+     */
+    private final UploadMemoryBudget uploadMemory;
+
+    /**
+     * The registry of metrics of the application.
+     */
+    private final MetricRegistry metrics;
+
     /**
      * Instantiates SparkStarter.
      *
-     * @param userStorage   storage of registered users.
-     * @param loggedInUsers storage of logged in users.
+     * @param userStorage      storage of registered users.
+     * @param loggedInUsers    storage of logged in users.
+     * @param uploadSessions   registry of upload sessions.
+     * @param instantUploading upload of files by hash.
+     * @param thumbnails       generation of thumbnails of uploaded images.
+     * @param uploadIngestion  executor that stores the files uploaded in one request.
+     * @param uploadMemory     budget of the memory of the uploads in progress.
+     * @param metrics          registry of metrics of the application.
      */
     public SparkStarter(
         UserStorage userStorage,
         LoggedInUsersStorage loggedInUsers,
         FolderStorage folderStorage,
         FileMetadataStorage fileMetadataStorage,
-        FileContentStorage fileContentStorage
+        FileContentStorage fileContentStorage,
+        UploadSessions uploadSessions,
+        InstantUploading instantUploading,
+        Thumbnails thumbnails,
+        ExecutorService uploadIngestion,
+        UploadMemoryBudget uploadMemory,
+        MetricRegistry metrics
     ) {
 
         if (logger.isInfoEnabled()) {
@@ -87,6 +136,12 @@ public class SparkStarter {
         this.folderStorage = checkNotNull(folderStorage);
         this.fileMetadataStorage = checkNotNull(fileMetadataStorage);
         this.fileContentStorage = checkNotNull(fileContentStorage);
+        this.uploadSessions = checkNotNull(uploadSessions);
+        this.instantUploading = checkNotNull(instantUploading);
+        this.thumbnails = checkNotNull(thumbnails);
+        this.uploadIngestion = checkNotNull(uploadIngestion);
+        this.uploadMemory = checkNotNull(uploadMemory);
+        this.metrics = checkNotNull(metrics);
     }
 
     /**
@@ -105,6 +160,19 @@ public class SparkStarter {
         initializeRoutes();
     }
 
+    /**
+     * Stops web part of application and waits until the requests in progress are finished.
+     */
+    public void stop() {
+
+        Spark.stop();
+        Spark.awaitStop();
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Stopped Spark.");
+        }
+    }
+
     /**
      * Initializes {@link Filter}s of {@link Request}s.
      */
@@ -117,9 +185,18 @@ public class SparkStarter {
             "/user",
             "/folder/:folderId/folder",
             "/folder/:folderId/file",
+            "/folder/:folderId/files",
+            "/folder/:folderId/file/hash",
+            "/challenge/:challengeId",
+            "/folder/:folderId/upload",
+            "/upload/:sessionId",
+            "/upload/:sessionId/chunk/:index",
+            "/upload/:sessionId/commit",
             "/file/:fileId",
             "/file/:fileId/content",
-            "/folder/rename"
+            "/file/:fileId/thumbnail",
+            "/folder/rename",
+            "/metrics"
         )
             .forEach(path -> before("/api" + path, new UserAuthenticationFilter(loggedInUsers)));
 
@@ -135,6 +212,11 @@ public class SparkStarter {
      */
     private void initializeRoutes() {
 
+        // One request holds only a part of the ingestion threads, so a slow client does not stall the others.
+        int maxInFlightFiles = ApplicationConfiguration.uploadIngestionFilesPerRequest();
+        UploadFilesRoute uploadFilesRoute = new UploadFilesRoute(folderStorage, fileMetadataStorage,
+            fileContentStorage, thumbnails, uploadIngestion, maxInFlightFiles);
+
         path("/api", () -> {
             post("/registration", new RegistrationRoute(userStorage, folderStorage));
             post("/login", new AuthenticationRoute(userStorage, loggedInUsers));
@@ -143,20 +225,46 @@ public class SparkStarter {
             get("/folder/:folderId/content", new GetFolderContentRoute(folderStorage, fileMetadataStorage));
             get("/user", new GetUserRoute(userStorage));
             post("/folder/:folderId/folder", new CreateFolderRoute(folderStorage));
-            post("/folder/:folderId/file",
-                new UploadFileRoute(folderStorage, fileMetadataStorage, fileContentStorage));
+            post("/folder/:folderId/file", withinUploadMemory(UploadFileRoute.MEMORY_FOOTPRINT,
+                new UploadFileRoute(folderStorage, fileMetadataStorage, fileContentStorage, thumbnails)));
+            post("/folder/:folderId/files",
+                withinUploadMemory(uploadFilesRoute.memoryFootprint(), uploadFilesRoute));
+            post("/folder/:folderId/file/hash", new UploadByHashRoute(instantUploading));
+            post("/challenge/:challengeId", withinUploadMemory(AnswerContentChallengeRoute.MEMORY_FOOTPRINT,
+                new AnswerContentChallengeRoute(instantUploading)));
+            post("/folder/:folderId/upload", new CreateUploadSessionRoute(folderStorage, uploadSessions));
+            get("/upload/:sessionId", new GetUploadSessionRoute(uploadSessions));
+            put("/upload/:sessionId/chunk/:index",
+                withinUploadMemory(UploadChunkRoute.MEMORY_FOOTPRINT, new UploadChunkRoute(uploadSessions)));
+            post("/upload/:sessionId/commit", withinUploadMemory(CommitUploadSessionRoute.MEMORY_FOOTPRINT,
+                new CommitUploadSessionRoute(folderStorage, fileMetadataStorage, fileContentStorage,
+                    uploadSessions, thumbnails)));
             post("/logout", new LogOutRoute(loggedInUsers));
             delete("/file/:fileId", new RemoveFileRoute(fileMetadataStorage, fileContentStorage));
             get("/file/:fileId/content", new GetFileContentRoute(fileContentStorage, fileMetadataStorage));
+            get("/file/:fileId/thumbnail", new GetThumbnailRoute(fileContentStorage, fileMetadataStorage));
             post("/folder/rename", new RenameFolderRoute(folderStorage));
             post("/file/rename", new RenameFileRoute(fileMetadataStorage));
             delete("/folder/:folderId", new RemoveFolderRoute(fileMetadataStorage,
                     fileContentStorage,
                     folderStorage));
+            get("/metrics", new GetMetricsRoute(metrics));
         });
 
         if (logger.isInfoEnabled()) {
             logger.info("Initialized Spark routes.");
         }
     }
+
+    /**
+     * Makes the route of the upload reserve the memory of its buffers in the upload memory budget.
+     *
+     * @param footprint the number of bytes, that the buffers of one request of the route use.
+     * @param route     the route of the upload.
+     * @return the route within the upload memory budget.
+     */
+    private Route withinUploadMemory(long footprint, Route route) {
+
+        return new MemoryBudgetedRoute(uploadMemory, footprint, route);
+    }
 }
@@ -0,0 +1,148 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import io.nure.filestore.api.ContentChallenge;
+import io.nure.filestore.api.FolderNotFoundException;
+import io.nure.filestore.api.InstantUploading;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.MimeType;
+import io.nure.filestore.api.OwnershipViolatedException;
+import io.nure.filestore.api.UploadByHash;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FileSize;
+import io.nure.filestore.storage.FolderId;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.BAD_REQUEST;
+import static io.nure.filestore.web.ResponseStatus.FORBIDDEN;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.NO_CONTENT;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static java.lang.String.format;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles client {@link Request}s to upload a file by the hash of its content, before the
+ * content is sent.
+ *
+ * <p>The body of the request is JSON with the {@code name}, the {@code size} in bytes, the SHA-256 {@code hash} of
+ * the content in hex and the optional {@code mimeType} of the file. If the server keeps the content, the response is
+ * {@link ContentChallenge} to answer by {@link AnswerContentChallengeRoute}. Otherwise the response is
+ * {@link ResponseStatus#NO_CONTENT} and the client uploads the content as usual.
+ */
+public class UploadByHashRoute implements Route {
+
+    private static final Logger logger = getLogger(UploadByHashRoute.class);
+
+    /**
+     * The MIME type of the uploaded file, that is sent without it.
+     */
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    /**
+     * The converter of the requests and responses from and into JSON.
+     */
+    private final Gson jsonParser = new GsonBuilder()
+        .registerTypeAdapter(ContentChallenge.class, new ContentChallengeSerializer())
+        .create();
+
+    /**
+     * The upload of the files by the hashes of their contents.
+     */
+    private final InstantUploading instantUploading;
+
+    /**
+     * Instantiates UploadByHashRoute.
+     *
+     * @param instantUploading the upload of the files by hash.
+     */
+    public UploadByHashRoute(InstantUploading instantUploading) {
+
+        this.instantUploading = checkNotNull(instantUploading);
+    }
+
+    /**
+     * Handles {@link Request} of client to upload the file by hash into the folder, that is owned by the
+     * {@link LoggedInUser}.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return JSON of the {@link ContentChallenge}, the empty body with {@link ResponseStatus#NO_CONTENT} if the content
+     * must be uploaded, or the error message.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+        FolderId folderId = new FolderId(request.params("folderId"));
+
+        try {
+
+            JsonObject body = jsonParser.fromJson(request.body(), JsonObject.class);
+            JsonElement mimeType = body.get("mimeType");
+
+            UploadByHash command = new UploadByHash(
+                new FileName(body.get("name").getAsString()),
+                new MimeType(mimeType == null ? DEFAULT_MIME_TYPE : mimeType.getAsString()),
+                folderId,
+                user.identifier(),
+                body.get("hash").getAsString(),
+                new FileSize(body.get("size").getAsLong())
+            );
+
+            Optional<ContentChallenge> challenge = instantUploading.challenge(command);
+
+            if (!challenge.isPresent()) {
+
+                response.status(NO_CONTENT);
+
+                return "";
+            }
+
+            response.status(SUCCESS);
+
+            return jsonParser.toJson(challenge.get(), ContentChallenge.class);
+
+        } catch (JsonParseException | NullPointerException | ClassCastException | IllegalStateException
+            | IllegalArgumentException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Invalid request body: {}. Error message: {}.", request.body(), e.getMessage());
+            }
+
+            response.status(BAD_REQUEST);
+
+            return format("Malformed request url: %s", request.url());
+
+        } catch (FolderNotFoundException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info(e.getMessage());
+            }
+
+            response.status(NOT_FOUND);
+
+            return e.getMessage();
+
+        } catch (OwnershipViolatedException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info(e.getMessage());
+            }
+
+            response.status(FORBIDDEN);
+
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.InvalidUploadChunkException;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.OwnershipViolatedException;
+import io.nure.filestore.api.UploadSession;
+import io.nure.filestore.api.UploadSessionConflictException;
+import io.nure.filestore.api.UploadSessionNotFoundException;
+import io.nure.filestore.api.UploadSessions;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.IOException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.BAD_REQUEST;
+import static io.nure.filestore.web.ResponseStatus.CONFLICT;
+import static io.nure.filestore.web.ResponseStatus.FORBIDDEN;
+import static io.nure.filestore.web.ResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static java.nio.channels.Channels.newChannel;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles client {@link Request}s to send a chunk of the file in {@link UploadSession}.
+ *
+ * <p>The body of the request is the bytes of the chunk. The chunk is streamed from the request straight into its
+ * place in the staging file, so the chunks may be sent in any order and in parallel, and a failed chunk is sent
+ * again alone.
+ */
+public class UploadChunkRoute implements Route {
+
+    private static final Logger logger = getLogger(UploadChunkRoute.class);
+
+    /**
+     * The number of bytes, that the buffers of one request use: the chunk that is written into the session.
+     */
+    static final long MEMORY_FOOTPRINT = FileContent.CHUNK_SIZE;
+
+    /**
+     * The converter of the responses into JSON.
+     */
+    private final Gson jsonParser = new GsonBuilder()
+        .registerTypeAdapter(UploadSession.class, new UploadSessionSerializer())
+        .create();
+
+    /**
+     * The registry of the open upload sessions.
+     */
+    private final UploadSessions uploadSessions;
+
+    /**
+     * Instantiates UploadChunkRoute.
+     *
+     * @param uploadSessions the registry of upload sessions.
+     */
+    public UploadChunkRoute(UploadSessions uploadSessions) {
+
+        this.uploadSessions = checkNotNull(uploadSessions);
+    }
+
+    /**
+     * Handles {@link Request} of client to write the chunk of the file in {@link UploadSession} of the
+     * {@link LoggedInUser}.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return JSON of the {@link UploadSession} with the chunks that are still missing, or the error message.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+        String sessionId = request.params("sessionId");
+
+        try {
+
+            UploadSession session = uploadSessions.session(sessionId, user.identifier());
+            int index = Integer.parseInt(request.params("index"));
+
+            session.writeChunk(index, newChannel(request.raw().getInputStream()));
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Received chunk {} of upload session \"{}\".", index, sessionId);
+            }
+
+            response.status(SUCCESS);
+
+            return jsonParser.toJson(session, UploadSession.class);
+
+        } catch (UploadSessionNotFoundException e) {
+
+            return makeErrorResponse(response, NOT_FOUND, e.getMessage());
+
+        } catch (OwnershipViolatedException e) {
+
+            return makeErrorResponse(response, FORBIDDEN, e.getMessage());
+
+        } catch (InvalidUploadChunkException | NumberFormatException e) {
+
+            return makeErrorResponse(response, BAD_REQUEST, e.getMessage());
+
+        } catch (UploadSessionConflictException e) {
+
+            return makeErrorResponse(response, CONFLICT, e.getMessage());
+
+        } catch (IOException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Cannot write chunk of upload session \"" + sessionId + "\".", e);
+            }
+
+            response.status(INTERNAL_SERVER_ERROR);
+
+            return "An error occurred when reading client request.";
+        }
+    }
+
+    /**
+     * Makes {@link Response} with the status and the message of the rejected chunk.
+     *
+     * @param response server response.
+     * @param status   the status of the response.
+     * @param message  the message of the error.
+     * @return the message of the error.
+     */
+    private String makeErrorResponse(Response response, int status, String message) {
+
+        if (logger.isInfoEnabled()) {
+            logger.info("Chunk is rejected: {}.", message);
+        }
+
+        response.status(status);
+
+        return message;
+    }
+}
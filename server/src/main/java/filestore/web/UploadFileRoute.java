@@ -10,11 +10,12 @@ import io.nure.filestore.api.FolderNotFoundException;
 import io.nure.filestore.api.LoggedInUser;
 import io.nure.filestore.api.MimeType;
 import io.nure.filestore.api.OwnershipViolatedException;
+import io.nure.filestore.api.Thumbnails;
 import io.nure.filestore.api.UploadFile;
+import io.nure.filestore.storage.BlobStoreException;
 import io.nure.filestore.storage.FileContentStorage;
 import io.nure.filestore.storage.FileMetadataStorage;
 import io.nure.filestore.storage.FileName;
-import io.nure.filestore.storage.FileSize;
 import io.nure.filestore.storage.FolderId;
 import io.nure.filestore.storage.FolderStorage;
 import io.nure.filestore.storage.UserId;
@@ -23,19 +24,17 @@ import spark.Request;
 import spark.Response;
 import spark.Route;
 
-import javax.servlet.MultipartConfigElement;
 import javax.servlet.ServletException;
-import javax.servlet.http.Part;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.google.common.io.ByteStreams.toByteArray;
 import static io.nure.filestore.web.ResponseStatus.BAD_REQUEST;
 import static io.nure.filestore.web.ResponseStatus.FORBIDDEN;
 import static io.nure.filestore.web.ResponseStatus.INTERNAL_SERVER_ERROR;
 import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
 import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static java.nio.channels.Channels.newChannel;
 import static org.slf4j.LoggerFactory.getLogger;
 
 /**
@@ -51,7 +50,7 @@ public class UploadFileRoute implements Route {
     private static final String FOLDER_ID_PARAMETER = "folderId";
 
     /**
-     * The name of the {@link Part} of the {@link Request} that maps to the uploaded {@link FileContent}.
+     * The name of the {@link MultipartStream.Part} of the {@link Request} that maps to the uploaded {@link FileContent}.
      */
     private static final String FILE_PART_NAME = "file";
 
@@ -60,6 +59,17 @@ public class UploadFileRoute implements Route {
      */
     private static final String CONTENT_TYPE = "Content-Type";
 
+    /**
+     * The MIME type of the uploaded file, that is sent without 'Content-Type' header.
+     */
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+
+    /**
+     * The number of bytes, that the buffers of one request use: the buffer of the body and the chunk of the content
+     * with the buffer of its encoding.
+     */
+    static final long MEMORY_FOOTPRINT = 3L * FileContent.CHUNK_SIZE;
+
     /**
      * The converter of Java {@link Object}s into their JSON representation.
      */
@@ -80,22 +90,30 @@ public class UploadFileRoute implements Route {
      */
     private final FileContentStorage fileContentStorage;
 
+    /**
+     * The generation of the thumbnails of the uploaded images.
+     */
+    private final Thumbnails thumbnails;
+
     /**
      * Creates instance of the UploadFileRoute with provided storages.
      *
      * @param folderStorage       an instance of {@link FolderStorage}.
      * @param fileMetadataStorage an instance of {@link FileMetadataStorage}.
      * @param fileContentStorage  an instance of {@link FileContentStorage}.
+     * @param thumbnails          the generation of the thumbnails of the uploaded images.
      */
     public UploadFileRoute(
         FolderStorage folderStorage,
         FileMetadataStorage fileMetadataStorage,
-        FileContentStorage fileContentStorage
+        FileContentStorage fileContentStorage,
+        Thumbnails thumbnails
     ) {
 
         this.folderStorage = checkNotNull(folderStorage);
         this.fileMetadataStorage = checkNotNull(fileMetadataStorage);
         this.fileContentStorage = checkNotNull(fileContentStorage);
+        this.thumbnails = checkNotNull(thumbnails);
 
         logDebug("Created instance of the UploadFileRoute.");
     }
@@ -116,8 +134,9 @@ public class UploadFileRoute implements Route {
 
         try {
 
-            FileContent fileContentToUpload = getFileContent(request);
-            UploadFile command = createCommand(request, destinationFolderId, loggedInUser, fileContentToUpload);
+            MultipartStream.Part filePart = getFilePart(request);
+            FileContent fileContentToUpload = new FileContent(newChannel(filePart.content()));
+            UploadFile command = createCommand(filePart, destinationFolderId, loggedInUser, fileContentToUpload);
 
             logDebug("Created UploadFile command: {}.", command);
 
@@ -128,6 +147,19 @@ public class UploadFileRoute implements Route {
 
             return sendSuccessfulResponse(response, uploadedFile);
 
+        } catch (MultipartStream.MalformedMultipartException e) {
+
+            return sendMalformedBodyResponse(response, e);
+
+        } catch (BlobStoreException e) {
+
+            // The end of the part is checked while its content is stored.
+            if (e.getCause() instanceof MultipartStream.MalformedMultipartException) {
+                return sendMalformedBodyResponse(response, (MultipartStream.MalformedMultipartException) e.getCause());
+            }
+
+            throw e;
+
         } catch (IOException e) {
 
             String errorMessage = "An error occurred when reading client request.";
@@ -212,55 +244,59 @@ public class UploadFileRoute implements Route {
     }
 
     /**
-     * Retrieves {@link FileContent} from the {@link Request}.
+     * Retrieves the {@link MultipartStream.Part} of the {@link Request} that contains the uploaded {@link FileContent}.
+     *
+     * <p>The body of the {@link Request} is not buffered in memory or in temporary files: the parts before the file
+     * are skipped, and the content of the file is streamed from the input of the request while it is stored.
      *
      * @param request the client {@link Request}, containing {@link FileContent}.
-     * @return retrieved {@link FileContent}.
-     * @throws IOException      if an I/O exception occurred during the reading of the requested {@link Part}.
-     * @throws ServletException if the {@link Request} is not of type {@code multipart/form-data}.
+     * @return the {@link MultipartStream.Part} of the file, which content is not read yet.
+     * @throws IOException      if an I/O exception occurred during the reading of the body of the {@link Request}.
+     * @throws ServletException if the {@link Request} is not of type {@code multipart/form-data} or has no file.
      */
-    private FileContent getFileContent(Request request) throws IOException, ServletException {
+    private MultipartStream.Part getFilePart(Request request) throws IOException, ServletException {
 
-        // The required action to explicitly tell the Jetty to treat the request as 'multipart/form-data'.
-        // Otherwise, 'null' is received from {@code request.raw().getPart(FILE_PART_NAME)}.
-        request.attribute("org.eclipse.jetty.multipartConfig", new MultipartConfigElement("/temp"));
+        String boundary = MultipartStream.boundary(request.raw().getContentType())
+            .orElseThrow(() -> new ServletException("Request has no multipart boundary."));
 
-        InputStream fileContentInputStream = request
-            .raw()
-            .getPart(FILE_PART_NAME)
-            .getInputStream();
+        MultipartStream body = new MultipartStream(request.raw().getInputStream(), boundary);
+        Optional<MultipartStream.Part> part = body.next();
 
-        return new FileContent(toByteArray(fileContentInputStream));
+        while (part.isPresent()) {
+
+            if (FILE_PART_NAME.equals(part.get().name()) && part.get().fileName() != null) {
+                return part.get();
+            }
+
+            part = body.next();
+        }
+
+        throw new ServletException(format("Request has no \"%s\" part.", FILE_PART_NAME));
     }
 
     /**
      * Creates the {@link UploadFile} command with required data.
      *
-     * @param request        the client {@link Request}.
+     * @param filePart       the {@link MultipartStream.Part} of the uploading file.
      * @param parentFolderId the {@link FolderId} of the parent {@link Folder} of the uploading file.
      * @param loggedInUser   the {@link LoggedInUser} that is the owner of the uploading file.
      * @param fileContent    the {@link FileContent} of the uploading file.
      * @return the created {@link UploadFile} command.
-     * @throws IOException      if an I/O exception occurred during the reading of the requested {@link Part}.
-     * @throws ServletException if the {@link Request} is not of type {@code multipart/form-data}.
      */
     private UploadFile createCommand(
-        Request request,
+        MultipartStream.Part filePart,
         FolderId parentFolderId,
         LoggedInUser loggedInUser,
         FileContent fileContent
-    ) throws IOException, ServletException {
+    ) {
 
-        Part file = request
-            .raw()
-            .getPart(FILE_PART_NAME);
+        String contentType = filePart.header(CONTENT_TYPE);
 
-        FileName name = new FileName(file.getSubmittedFileName());
-        MimeType mimeType = new MimeType(file.getHeader(CONTENT_TYPE));
-        FileSize size = new FileSize(file.getSize());
+        FileName name = new FileName(filePart.fileName());
+        MimeType mimeType = new MimeType(contentType == null ? DEFAULT_MIME_TYPE : contentType);
         UserId ownerId = loggedInUser.identifier();
 
-        return new UploadFile(name, mimeType, size, parentFolderId, ownerId, fileContent);
+        return new UploadFile(name, mimeType, parentFolderId, ownerId, fileContent);
     }
 
     /**
@@ -270,7 +306,7 @@ public class UploadFileRoute implements Route {
      */
     private FileUploading createProcess() {
 
-        return new FileUploading(folderStorage, fileMetadataStorage, fileContentStorage);
+        return new FileUploading(folderStorage, fileMetadataStorage, fileContentStorage, thumbnails);
     }
 
     /**
@@ -297,6 +333,25 @@ public class UploadFileRoute implements Route {
         response.status(INTERNAL_SERVER_ERROR);
     }
 
+    /**
+     * Sends 'Bad Request' {@link Response} to the body, that does not follow {@code multipart/form-data} format.
+     *
+     * @param response the server {@link Response}.
+     * @param e        the failure of the parsing of the body.
+     * @return the error message.
+     */
+    private String sendMalformedBodyResponse(Response response, MultipartStream.MalformedMultipartException e) {
+
+        String errorMessage = "Client request has malformed 'multipart/form-data' body.";
+
+        logInfo(errorMessage);
+        logDebug(e.getMessage());
+
+        sendBadRequestResponse(response);
+
+        return errorMessage;
+    }
+
     /**
      * Sends 'Bad Request' {@link Response}.
      *
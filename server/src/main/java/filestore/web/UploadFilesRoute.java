@@ -0,0 +1,181 @@
+package filestore.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+import io.nure.filestore.api.FileMetadata;
+import io.nure.filestore.api.FileUploading;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.api.Thumbnails;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.FolderStorage;
+import org.slf4j.Logger;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.nure.filestore.web.ResponseStatus.BAD_REQUEST;
+import static io.nure.filestore.web.ResponseStatus.INTERNAL_SERVER_ERROR;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static java.lang.String.format;
+import static org.slf4j.LoggerFactory.getLogger;
+
+/**
+ * The {@link Route} that handles client {@link Request}s to upload many files in one {@code multipart/form-data}
+ * request, for example a dropped folder of photos.
+ *
+ * <p>The files are stored concurrently by {@link MultipartUploading} and their metadata is committed in one batch.
+ * The response is JSON array with the result of each file, so a file that fails does not fail the others.
+ */
+public class UploadFilesRoute implements Route {
+
+    private static final Logger logger = getLogger(UploadFilesRoute.class);
+
+    /**
+     * The type of the list of the results of the files.
+     */
+    private static final Type RESULTS_TYPE = new TypeToken<List<MultipartUploading.Result>>() {
+    }.getType();
+
+    /**
+     * The converter of the responses into JSON.
+     */
+    private final Gson jsonParser = new GsonBuilder()
+        .registerTypeAdapter(FileMetadata.class, new FileMetadataSerializer())
+        .registerTypeAdapter(MultipartUploading.Result.class, new UploadResultSerializer())
+        .create();
+
+    /**
+     * The storage of the destination folders.
+     */
+    private final FolderStorage folderStorage;
+
+    /**
+     * The upload of the files of the requests.
+     */
+    private final MultipartUploading uploading;
+
+    /**
+     * Instantiates UploadFilesRoute.
+     *
+     * @param folderStorage       the storage of folders.
+     * @param fileMetadataStorage the storage of metadata of files.
+     * @param fileContentStorage  the storage of contents of files.
+     * @param thumbnails          the generation of the thumbnails of the uploaded images.
+     * @param ingestion           the executor that stores the contents of the files.
+     * @param maxInFlightFiles    the maximal number of files of one request that are stored at once.
+     */
+    public UploadFilesRoute(
+        FolderStorage folderStorage,
+        FileMetadataStorage fileMetadataStorage,
+        FileContentStorage fileContentStorage,
+        Thumbnails thumbnails,
+        ExecutorService ingestion,
+        int maxInFlightFiles
+    ) {
+
+        checkArgument(maxInFlightFiles > 0, "Number of files %s is not positive.", maxInFlightFiles);
+
+        this.folderStorage = checkNotNull(folderStorage);
+        this.uploading = new MultipartUploading(
+            new FileUploading(folderStorage, fileMetadataStorage, fileContentStorage, checkNotNull(thumbnails)),
+            ingestion,
+            maxInFlightFiles
+        );
+    }
+
+    /**
+     * Retrieves the number of bytes, that the buffers of one request use.
+     *
+     * @return the memory footprint of one request in bytes.
+     */
+    long memoryFootprint() {
+
+        return uploading.memoryFootprint();
+    }
+
+    /**
+     * Handles {@link Request} of client to upload the files into the folder, that is owned by the
+     * {@link LoggedInUser}.
+     *
+     * @param request  request of the client.
+     * @param response server response.
+     * @return JSON array of the results of the files, or the error message with {@link ResponseStatus#NOT_FOUND} if
+     * the folder was not found or {@link ResponseStatus#BAD_REQUEST} if the request is not
+     * {@code multipart/form-data}.
+     */
+    @Override
+    public Object handle(Request request, Response response) {
+
+        LoggedInUser user = CurrentLoggedInUser.user();
+        FolderId folderId = new FolderId(request.params("folderId"));
+        Optional<String> boundary = MultipartStream.boundary(request.raw().getContentType());
+
+        if (!boundary.isPresent()) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Client request is not of type 'multipart/form-data'.");
+            }
+
+            response.status(BAD_REQUEST);
+
+            return "Client request is not of type 'multipart/form-data'.";
+        }
+
+        if (!folderStorage.get(folderId, user.identifier()).isPresent()) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Destination folder with id \"{}\" was not found.", folderId.value());
+            }
+
+            response.status(NOT_FOUND);
+
+            return format("Destination folder was not found by id \"%s\".", folderId.value());
+        }
+
+        try {
+
+            MultipartStream body = new MultipartStream(request.raw().getInputStream(), boundary.get());
+            List<MultipartUploading.Result> results = uploading.upload(body, folderId, user.identifier());
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Uploaded {} files into the folder with id \"{}\".", results.size(), folderId.value());
+            }
+
+            response.status(SUCCESS);
+
+            return jsonParser.toJson(results, RESULTS_TYPE);
+
+        } catch (MultipartStream.MalformedMultipartException e) {
+
+            if (logger.isInfoEnabled()) {
+                logger.info("Malformed multipart body: {}.", e.getMessage());
+            }
+
+            response.status(BAD_REQUEST);
+
+            return e.getMessage();
+
+        } catch (IOException e) {
+
+            if (logger.isErrorEnabled()) {
+                logger.error("Cannot upload files.", e);
+            }
+
+            response.status(INTERNAL_SERVER_ERROR);
+
+            return "An error occurred when reading client request.";
+        }
+    }
+}
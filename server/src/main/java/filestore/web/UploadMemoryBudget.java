@@ -0,0 +1,204 @@
+package filestore.web;
+
+import io.nure.filestore.metrics.Counter;
+import io.nure.filestore.metrics.MetricRegistry;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * The server-wide budget of the memory, that the uploads in progress may use for their buffers.
+ *
+ * <p>An upload reserves the memory of its buffers before it reads the body of the request and releases it when it
+ * is done. While the budget is used up, the upload waits for the others to finish, so its request is not read from
+ * the socket and the client is slowed down by the flow control of TCP. If the memory is not released in time, the
+ * reservation is refused, so the request can be rejected instead of holding the thread of the server.
+ *
+ * <p>An upload that needs more than the whole budget reserves the whole budget, so it still runs alone.
+ */
+public final class UploadMemoryBudget {
+
+    /**
+     * The number of bytes that the uploads may reserve.
+     */
+    private final long capacity;
+
+    /**
+     * The maximal time an upload waits for its reservation.
+     */
+    private final Duration maxWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Signalled when a reservation is released.
+     */
+    private final Condition released = lock.newCondition();
+
+    /**
+     * The number of the reserved bytes. Guarded by {@link #lock}.
+     */
+    private long used;
+
+    /**
+     * The number of the reservations that had to wait for the memory.
+     */
+    private final Counter waited;
+
+    /**
+     * The number of the refused reservations.
+     */
+    private final Counter refused;
+
+    /**
+     * Instantiates UploadMemoryBudget.
+     *
+     * @param capacity the number of bytes that the uploads may reserve.
+     * @param maxWait  the maximal time an upload waits for its reservation.
+     * @param metrics  the registry of metrics, where the use of the budget is published.
+     */
+    public UploadMemoryBudget(long capacity, Duration maxWait, MetricRegistry metrics) {
+
+        checkArgument(capacity > 0, "Capacity %s is not positive.", capacity);
+        checkArgument(!maxWait.isNegative(), "Maximal wait %s is negative.", maxWait);
+        checkNotNull(metrics);
+
+        this.capacity = capacity;
+        this.maxWait = maxWait;
+        this.waited = metrics.counter("upload.memory.waited");
+        this.refused = metrics.counter("upload.memory.refused");
+
+        metrics.gauge("upload.memory.used.bytes", this::used);
+        metrics.gauge("upload.memory.capacity.bytes", () -> capacity);
+    }
+
+    /**
+     * Reserves the memory for the buffers of an upload. Waits while the budget is used up, but at most the maximal
+     * wait of the budget.
+     *
+     * @param bytes the number of bytes to reserve.
+     * @return the reservation to release when the upload is done, or {@link Optional#empty()} if the memory was not
+     * released in time or the thread was interrupted.
+     */
+    public Optional<Reservation> reserve(long bytes) {
+
+        checkArgument(bytes > 0, "Number of bytes %s is not positive.", bytes);
+
+        long reserved = Math.min(bytes, capacity);
+        long nanosLeft = maxWait.toNanos();
+
+        lock.lock();
+
+        try {
+
+            if (used + reserved > capacity) {
+                waited.increment();
+            }
+
+            while (used + reserved > capacity) {
+
+                if (nanosLeft <= 0) {
+
+                    refused.increment();
+
+                    return Optional.empty();
+                }
+
+                nanosLeft = released.awaitNanos(nanosLeft);
+            }
+
+            used += reserved;
+
+            return Optional.of(new Reservation(reserved));
+
+        } catch (InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+            refused.increment();
+
+            return Optional.empty();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the number of the bytes that are reserved by the uploads in progress.
+     *
+     * @return the number of the reserved bytes.
+     */
+    public long used() {
+
+        lock.lock();
+
+        try {
+
+            return used;
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves the time after which the client of the refused upload should try again.
+     *
+     * @return the number of whole seconds to wait, at least one.
+     */
+    public long retryAfterSeconds() {
+
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(maxWait.toNanos() + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private void release(long bytes) {
+
+        lock.lock();
+
+        try {
+
+            checkState(used >= bytes, "Released %s bytes, but only %s are reserved.", bytes, used);
+
+            used -= bytes;
+            released.signalAll();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The memory reserved for the buffers of one upload.
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final long bytes;
+
+        private boolean closed;
+
+        private Reservation(long bytes) {
+
+            this.bytes = bytes;
+        }
+
+        /**
+         * Releases the reserved memory. Releasing it again has no effect.
+         */
+        @Override
+        public void close() {
+
+            if (!closed) {
+
+                closed = true;
+                release(bytes);
+            }
+        }
+    }
+}
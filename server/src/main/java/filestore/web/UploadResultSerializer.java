@@ -0,0 +1,36 @@
+package filestore.web;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import io.nure.filestore.api.FileMetadata;
+
+import java.lang.reflect.Type;
+
+/**
+ * A {@link JsonSerializer} of {@link MultipartUploading.Result} objects. The uploaded file is serialized by the
+ * serializer of {@link FileMetadata}, that is registered in the same converter.
+ */
+public class UploadResultSerializer implements JsonSerializer<MultipartUploading.Result> {
+
+    /**
+     * Serializes passed {@link MultipartUploading.Result} to {@link JsonElement}.
+     *
+     * @param result the result of the upload of the file to serialize.
+     * @return serialized result.
+     */
+    @Override
+    public JsonElement serialize(MultipartUploading.Result result, Type typeOfSrc, JsonSerializationContext context) {
+
+        JsonObject wrapper = new JsonObject();
+
+        wrapper.addProperty("name", result.fileName());
+        wrapper.addProperty("uploaded", result.file().isPresent());
+
+        result.file().ifPresent(file -> wrapper.add("file", context.serialize(file, FileMetadata.class)));
+        result.error().ifPresent(error -> wrapper.addProperty("error", error));
+
+        return wrapper;
+    }
+}
@@ -0,0 +1,41 @@
+package filestore.web;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import io.nure.filestore.api.UploadSession;
+
+import java.lang.reflect.Type;
+
+/**
+ * A {@link JsonSerializer} of {@link UploadSession} objects, that tells the client which chunks are still to be sent.
+ */
+public class UploadSessionSerializer implements JsonSerializer<UploadSession> {
+
+    /**
+     * Serializes passed {@link UploadSession} to {@link JsonElement}.
+     *
+     * @param session the upload session to serialize.
+     * @return serialized upload session.
+     */
+    @Override
+    public JsonElement serialize(UploadSession session, Type typeOfSrc, JsonSerializationContext context) {
+
+        JsonObject wrapper = new JsonObject();
+        JsonArray missingChunks = new JsonArray();
+
+        session.missingChunks().forEach(index -> missingChunks.add(new JsonPrimitive(index)));
+
+        wrapper.addProperty("id", session.identifier());
+        wrapper.addProperty("name", session.fileName().value());
+        wrapper.addProperty("size", session.size());
+        wrapper.addProperty("chunkSize", session.chunkSize());
+        wrapper.addProperty("chunkCount", session.chunkCount());
+        wrapper.add("missingChunks", missingChunks);
+
+        return wrapper;
+    }
+}
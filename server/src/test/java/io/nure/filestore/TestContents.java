@@ -0,0 +1,67 @@
+package io.nure.filestore;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import io.nure.filestore.storage.BlobLocator;
+import io.nure.filestore.storage.BlobStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+
+import static com.google.common.io.ByteStreams.copy;
+import static java.nio.channels.Channels.newInputStream;
+
+/**
+ * The contents and metrics shared by the tests.
+ */
+public final class TestContents {
+
+    private TestContents() {
+    }
+
+    /**
+     * Creates the random content, that is the same for the same size.
+     *
+     * @param size the size of the content in bytes.
+     * @return the created content.
+     */
+    public static byte[] content(int size) {
+
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+
+        return content;
+    }
+
+    /**
+     * Reads the whole blob from the store.
+     *
+     * @param store   the store of the blob.
+     * @param locator the locator of the blob.
+     * @return the content of the blob.
+     * @throws IOException if the blob cannot be read.
+     */
+    public static byte[] read(BlobStore store, BlobLocator locator) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (ReadableByteChannel channel = store.open(locator)) {
+            copy(newInputStream(channel), output);
+        }
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Retrieves the current value of the metric.
+     *
+     * @param metrics the registry of the metric.
+     * @param name    the name of the metric.
+     * @return the value of the metric.
+     */
+    public static long metric(MetricRegistry metrics, String name) {
+
+        return metrics.values().get(name).longValue();
+    }
+}
@@ -0,0 +1,285 @@
+package io.nure.filestore.api;
+
+import com.google.common.hash.Hashing;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.DiskBlobStore;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FileSize;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.FolderName;
+import io.nure.filestore.storage.FolderRecord;
+import io.nure.filestore.storage.FolderStorage;
+import io.nure.filestore.storage.UserId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.content;
+import static java.nio.channels.Channels.newChannel;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("InstantUploading should ")
+class InstantUploadingTest {
+
+    private static final byte[] CONTENT = content(3 * FileContent.CHUNK_SIZE + 123);
+
+    private static final UserId OWNER_ID = new UserId("owner");
+
+    private static final FolderId FOLDER_ID = new FolderId("root");
+
+    private static final Duration EXPIRE_AFTER = Duration.ofMinutes(1);
+
+    private static final int MAX_CHALLENGES_PER_USER = 2;
+
+    private final FolderStorage folderStorage = new FolderStorage();
+
+    private final FileMetadataStorage metadataStorage = new FileMetadataStorage();
+
+    private final MutableClock clock = new MutableClock();
+
+    private FileContentStorage contentStorage;
+
+    private InstantUploading instantUploading;
+
+    private static UploadByHash command(byte[] content) {
+
+        return new UploadByHash(
+            new FileName("copy.txt"),
+            new MimeType("text/plain"),
+            FOLDER_ID,
+            OWNER_ID,
+            Hashing.sha256().hashBytes(content).toString(),
+            new FileSize(content.length)
+        );
+    }
+
+    private static ReadableByteChannel answer(ContentChallenge challenge) {
+
+        int offset = (int) challenge.offset();
+
+        return newChannel(new ByteArrayInputStream(
+            Arrays.copyOfRange(CONTENT, offset, offset + challenge.length())));
+    }
+
+    private static byte[] read(FileContent content) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        content.transferTo(newChannel(output));
+
+        return output.toByteArray();
+    }
+
+    /**
+     * Creates the storages with the uploaded original of {@link #CONTENT}. The content is compressed, so the
+     * challenged range is read from the decoded content.
+     */
+    private void setUp(Path directory) {
+
+        folderStorage.put(new FolderRecord(FOLDER_ID, new FolderName("root"), null, OWNER_ID));
+        contentStorage = new FileContentStorage(new DiskBlobStore(directory), ContentEncoding.GZIP);
+        FileUploading fileUploading = new FileUploading(folderStorage, metadataStorage, contentStorage);
+        instantUploading = new InstantUploading(fileUploading, metadataStorage, contentStorage, EXPIRE_AFTER,
+            MAX_CHALLENGES_PER_USER, clock);
+
+        fileUploading.handle(new UploadFile(
+            new FileName("original.txt"),
+            new MimeType("text/plain"),
+            FOLDER_ID,
+            OWNER_ID,
+            new FileContent(CONTENT)
+        ));
+    }
+
+    @DisplayName("upload the file by hash, if the challenge is answered.")
+    @Test
+    void testUploadingByHash(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        ContentChallenge challenge = instantUploading.challenge(command(CONTENT)).get();
+        FileMetadata file = instantUploading.answer(challenge.identifier(), OWNER_ID, answer(challenge));
+
+        assertWithMessage("Challenged range is out of the content.")
+            .that(challenge.offset() + challenge.length())
+            .isAtMost((long) CONTENT.length);
+
+        assertWithMessage("File uploaded by hash does not have the content.")
+            .that(read(contentStorage.content(file.identifier()).get()))
+            .isEqualTo(CONTENT);
+
+        assertWithMessage("File uploaded by hash does not share the content.")
+            .that(contentStorage.deduplicationRatio())
+            .isEqualTo(2.0);
+    }
+
+    @DisplayName("challenge only the beginning of the large content.")
+    @Test
+    void testChallengingBeginningOfLargeContent(@TempDir Path directory) {
+
+        setUp(directory);
+
+        byte[] large = content((int) InstantUploading.CHALLENGE_WINDOW * 4);
+
+        new FileUploading(folderStorage, metadataStorage, contentStorage).handle(new UploadFile(
+            new FileName("large.bin"),
+            new MimeType("application/octet-stream"),
+            FOLDER_ID,
+            OWNER_ID,
+            new FileContent(large)
+        ));
+
+        for (int attempt = 0; attempt < MAX_CHALLENGES_PER_USER; ++attempt) {
+
+            ContentChallenge challenge = instantUploading.challenge(command(large)).get();
+
+            assertWithMessage("Challenged range is out of the beginning of the content.")
+                .that(challenge.offset() + challenge.length())
+                .isAtMost(InstantUploading.CHALLENGE_WINDOW);
+        }
+    }
+
+    @DisplayName("not challenge the content, that is not kept.")
+    @Test
+    void testNotChallengingUnknownContent(@TempDir Path directory) {
+
+        setUp(directory);
+
+        assertWithMessage("Unknown content is challenged.")
+            .that(instantUploading.challenge(command(content(100))).isPresent())
+            .isFalse();
+
+        byte[] shorter = Arrays.copyOf(CONTENT, CONTENT.length - 1);
+
+        assertWithMessage("Content of another size is challenged.")
+            .that(instantUploading.challenge(new UploadByHash(
+                new FileName("copy.txt"),
+                new MimeType("text/plain"),
+                FOLDER_ID,
+                OWNER_ID,
+                Hashing.sha256().hashBytes(CONTENT).toString(),
+                new FileSize(shorter.length)
+            )).isPresent())
+            .isFalse();
+    }
+
+    @DisplayName("reject the wrong answer and not accept another one.")
+    @Test
+    void testRejectingWrongAnswer(@TempDir Path directory) {
+
+        setUp(directory);
+
+        ContentChallenge challenge = instantUploading.challenge(command(CONTENT)).get();
+
+        assertThrows(
+            ContentChallengeFailedException.class,
+            () -> instantUploading.answer(challenge.identifier(), OWNER_ID,
+                newChannel(new ByteArrayInputStream(new byte[challenge.length()]))),
+            "Wrong answer is accepted."
+        );
+
+        assertThrows(
+            ContentChallengeNotFoundException.class,
+            () -> instantUploading.answer(challenge.identifier(), OWNER_ID, answer(challenge)),
+            "Challenge is answered twice."
+        );
+
+        assertWithMessage("File is uploaded by the wrong answer.")
+            .that(metadataStorage.getAll())
+            .hasSize(1);
+    }
+
+    @DisplayName("reject the answer to the expired challenge.")
+    @Test
+    void testRejectingExpiredChallenge(@TempDir Path directory) {
+
+        setUp(directory);
+
+        ContentChallenge challenge = instantUploading.challenge(command(CONTENT)).get();
+
+        clock.advance(EXPIRE_AFTER.plusSeconds(1));
+
+        assertThrows(
+            ContentChallengeNotFoundException.class,
+            () -> instantUploading.answer(challenge.identifier(), OWNER_ID, answer(challenge)),
+            "Expired challenge is answered."
+        );
+    }
+
+    @DisplayName("drop the oldest challenge of the user over the limit.")
+    @Test
+    void testDroppingOldestChallenge(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        ContentChallenge oldest = instantUploading.challenge(command(CONTENT)).get();
+
+        for (int challenge = 0; challenge < MAX_CHALLENGES_PER_USER; ++challenge) {
+            instantUploading.challenge(command(CONTENT));
+        }
+
+        assertWithMessage("Challenges of the user are not limited.")
+            .that(instantUploading.count())
+            .isEqualTo(MAX_CHALLENGES_PER_USER);
+
+        assertThrows(
+            ContentChallengeNotFoundException.class,
+            () -> instantUploading.answer(oldest.identifier(), OWNER_ID, answer(oldest)),
+            "Dropped challenge is answered."
+        );
+    }
+
+    @DisplayName("remove the expired challenges.")
+    @Test
+    void testExpiringChallenges(@TempDir Path directory) {
+
+        setUp(directory);
+
+        instantUploading.challenge(command(CONTENT));
+        clock.advance(EXPIRE_AFTER.plusSeconds(1));
+        instantUploading.expire();
+
+        assertWithMessage("Expired challenge is kept.")
+            .that(instantUploading.count())
+            .isEqualTo(0);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.EPOCH;
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package io.nure.filestore.api;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.DiskBlobStore;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.FolderName;
+import io.nure.filestore.storage.FolderRecord;
+import io.nure.filestore.storage.FolderStorage;
+import io.nure.filestore.storage.UserId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.channels.Channels.newInputStream;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@DisplayName("Thumbnails should ")
+class ThumbnailsTest {
+
+    private static final int SIZE = 64;
+
+    private static final UserId OWNER_ID = new UserId("owner");
+
+    private static final FolderId FOLDER_ID = new FolderId("root");
+
+    private final FolderStorage folderStorage = new FolderStorage();
+
+    private final FileMetadataStorage metadataStorage = new FileMetadataStorage();
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    private FileContentStorage contentStorage;
+
+    private Thumbnails thumbnails;
+
+    private void setUp(Path directory) {
+
+        folderStorage.put(new FolderRecord(FOLDER_ID, new FolderName("root"), null, OWNER_ID));
+        contentStorage = new FileContentStorage(new DiskBlobStore(directory), ContentEncoding.GZIP);
+        thumbnails = new Thumbnails(contentStorage, SIZE, 1, 10, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        thumbnails.close();
+    }
+
+    private static byte[] image(int width, int height) throws IOException {
+
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        for (int x = 0; x < width; ++x) {
+            image.setRGB(x, height / 2, 0xff0000);
+        }
+
+        ImageIO.write(image, "png", output);
+
+        return output.toByteArray();
+    }
+
+    private FileMetadata upload(FileUploading uploading, String mimeType, byte[] content) {
+
+        return uploading.handle(new UploadFile(
+            new FileName("file"),
+            new MimeType(mimeType),
+            FOLDER_ID,
+            OWNER_ID,
+            new FileContent(content)
+        ));
+    }
+
+    private Optional<BufferedImage> readThumbnail(FileMetadata file) throws IOException {
+
+        Optional<FileContent> thumbnail = contentStorage.thumbnail(file.identifier());
+
+        if (!thumbnail.isPresent()) {
+            return Optional.empty();
+        }
+
+        try (FileContent content = thumbnail.get()) {
+            return Optional.of(ImageIO.read(newInputStream(content.channel())));
+        }
+    }
+
+    private static String dimensions(BufferedImage image) {
+
+        return image.getWidth() + "x" + image.getHeight();
+    }
+
+    @DisplayName("scale the image down to fit the thumbnail size and keep its aspect ratio.")
+    @Test
+    void testScalingImageDown(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        FileMetadata file = upload(new FileUploading(folderStorage, metadataStorage, contentStorage), "image/png",
+            image(1000, 500));
+
+        thumbnails.generate(file.identifier());
+
+        BufferedImage thumbnail = readThumbnail(file).get();
+
+        assertWithMessage("Thumbnail does not fit the thumbnail size.")
+            .that(dimensions(thumbnail))
+            .isEqualTo("64x32");
+
+        assertWithMessage("Generated thumbnail is not counted.")
+            .that(metrics.values().get("thumbnails.generated"))
+            .isEqualTo(1L);
+    }
+
+    @DisplayName("not keep the thumbnail of the content, that is not an image.")
+    @Test
+    void testSkippingUnknownContent(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        FileMetadata file = upload(new FileUploading(folderStorage, metadataStorage, contentStorage), "image/png",
+            "not an image".getBytes(UTF_8));
+
+        thumbnails.generate(file.identifier());
+
+        assertWithMessage("Thumbnail is kept for the content, that is not an image.")
+            .that(readThumbnail(file).isPresent())
+            .isFalse();
+
+        assertWithMessage("Failed thumbnail is not counted.")
+            .that(metrics.values().get("thumbnails.failed"))
+            .isEqualTo(1L);
+    }
+
+    @DisplayName("generate the thumbnails of the uploaded images in the background.")
+    @Test
+    void testGeneratingAfterUpload(@TempDir Path directory) throws IOException, InterruptedException {
+
+        setUp(directory);
+
+        FileUploading uploading = new FileUploading(folderStorage, metadataStorage, contentStorage, thumbnails);
+        FileMetadata image = upload(uploading, "image/png", image(10, 20));
+        FileMetadata document = upload(uploading, "text/plain", image(30, 40));
+
+        for (int attempt = 0; attempt < 100 && !readThumbnail(image).isPresent(); ++attempt) {
+            Thread.sleep(50);
+        }
+
+        BufferedImage thumbnail = readThumbnail(image).get();
+
+        assertWithMessage("Small image is scaled.")
+            .that(dimensions(thumbnail))
+            .isEqualTo("10x20");
+
+        assertWithMessage("Thumbnail is generated for the file, that is not an image.")
+            .that(readThumbnail(document).isPresent())
+            .isFalse();
+    }
+}
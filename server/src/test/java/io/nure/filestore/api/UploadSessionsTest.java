@@ -0,0 +1,238 @@
+package io.nure.filestore.api;
+
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.UserId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.content;
+import static java.nio.channels.Channels.newChannel;
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("UploadSessions should ")
+class UploadSessionsTest {
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final byte[] CONTENT = content(3 * CHUNK_SIZE + 123);
+
+    private static final UserId OWNER_ID = new UserId("owner");
+
+    private static final Duration EXPIRE_AFTER = Duration.ofHours(1);
+
+    private static final int MAX_SESSIONS_PER_USER = 2;
+
+    private static ReadableByteChannel chunk(int index) {
+
+        int start = index * CHUNK_SIZE;
+
+        return newChannel(new ByteArrayInputStream(
+            Arrays.copyOfRange(CONTENT, start, Math.min(CONTENT.length, start + CHUNK_SIZE))));
+    }
+
+    private static UploadSession createSession(UploadSessions sessions) throws IOException {
+
+        return sessions.create(new FileName("video.mp4"), new MimeType("video/mp4"), CONTENT.length,
+            new FolderId("root"), OWNER_ID);
+    }
+
+    private static byte[] read(FileContent content) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        content.transferTo(newChannel(output));
+
+        return output.toByteArray();
+    }
+
+    @DisplayName("assemble the chunks that are sent in any order and again.")
+    @Test
+    void testAssemblingChunks(@TempDir Path directory) throws IOException {
+
+        UploadSessions sessions = new UploadSessions(directory, CHUNK_SIZE, EXPIRE_AFTER, MAX_SESSIONS_PER_USER,
+            new MutableClock());
+        UploadSession session = createSession(sessions);
+
+        session.writeChunk(3, chunk(3));
+        session.writeChunk(1, chunk(1));
+        session.writeChunk(1, chunk(1));
+
+        assertWithMessage("Missing chunks are wrong.")
+            .that(session.missingChunks())
+            .containsExactly(0, 2)
+            .inOrder();
+
+        assertThrows(UploadSessionConflictException.class, session::seal,
+            "Session with missing chunks is sealed.");
+
+        session.writeChunk(0, chunk(0));
+        session.writeChunk(2, chunk(2));
+
+        try (FileContent content = session.seal()) {
+
+            assertWithMessage("Chunks are assembled incorrectly.")
+                .that(Arrays.equals(read(content), CONTENT))
+                .isTrue();
+        }
+
+        assertThrows(UploadSessionConflictException.class, () -> session.writeChunk(0, chunk(0)),
+            "Chunk is accepted after the seal.");
+    }
+
+    @DisplayName("let only one commit seal the session until it is unsealed.")
+    @Test
+    void testSealingOnce(@TempDir Path directory) throws IOException {
+
+        UploadSessions sessions = new UploadSessions(directory, CHUNK_SIZE, EXPIRE_AFTER, MAX_SESSIONS_PER_USER,
+            new MutableClock());
+        UploadSession session = createSession(sessions);
+
+        for (int index = 0; index < session.chunkCount(); ++index) {
+            session.writeChunk(index, chunk(index));
+        }
+
+        session.seal().close();
+
+        assertThrows(UploadSessionConflictException.class, session::seal,
+            "Session is sealed by the repeated commit.");
+
+        session.unseal();
+
+        try (FileContent content = session.seal()) {
+
+            assertWithMessage("Unsealed session is not committed again.")
+                .that(Arrays.equals(read(content), CONTENT))
+                .isTrue();
+        }
+    }
+
+    @DisplayName("reject the chunks out of the file or of the wrong length.")
+    @Test
+    void testRejectingInvalidChunks(@TempDir Path directory) throws IOException {
+
+        UploadSessions sessions = new UploadSessions(directory, CHUNK_SIZE, EXPIRE_AFTER, MAX_SESSIONS_PER_USER,
+            new MutableClock());
+        UploadSession session = createSession(sessions);
+
+        for (int index : asList(-1, 4)) {
+
+            assertThrows(InvalidUploadChunkException.class, () -> session.writeChunk(index, chunk(0)),
+                "Chunk out of the file is accepted.");
+        }
+
+        assertThrows(InvalidUploadChunkException.class, () -> session.writeChunk(0, chunk(3)),
+            "Short chunk is accepted.");
+
+        assertThrows(InvalidUploadChunkException.class, () -> session.writeChunk(3, chunk(0)),
+            "Long last chunk is accepted.");
+
+        assertWithMessage("Rejected chunks are received.")
+            .that(session.missingChunks())
+            .containsExactly(0, 1, 2, 3);
+    }
+
+    @DisplayName("check the owner of the session.")
+    @Test
+    void testCheckingOwner(@TempDir Path directory) throws IOException {
+
+        UploadSessions sessions = new UploadSessions(directory, CHUNK_SIZE, EXPIRE_AFTER, MAX_SESSIONS_PER_USER,
+            new MutableClock());
+        UploadSession session = createSession(sessions);
+
+        assertWithMessage("Session is not found by its owner.")
+            .that(sessions.session(session.identifier(), OWNER_ID))
+            .isEqualTo(session);
+
+        assertThrows(OwnershipViolatedException.class,
+            () -> sessions.session(session.identifier(), new UserId("stranger")),
+            "Session is given to another user.");
+    }
+
+    @DisplayName("expire the abandoned sessions with their staging files.")
+    @Test
+    void testExpiringSessions(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        UploadSessions sessions = new UploadSessions(directory, CHUNK_SIZE, EXPIRE_AFTER, MAX_SESSIONS_PER_USER,
+            clock);
+        UploadSession abandoned = createSession(sessions);
+        UploadSession active = createSession(sessions);
+
+        clock.advance(EXPIRE_AFTER);
+        active.writeChunk(0, chunk(0));
+        clock.advance(Duration.ofMinutes(1));
+        sessions.expire();
+
+        assertThrows(UploadSessionNotFoundException.class, () -> sessions.session(abandoned.identifier(), OWNER_ID),
+            "Abandoned session is not expired.");
+
+        assertWithMessage("Active session is expired.")
+            .that(sessions.session(active.identifier(), OWNER_ID))
+            .isEqualTo(active);
+
+        assertWithMessage("Staging file of the expired session is kept.")
+            .that(Files.exists(directory.resolve(abandoned.identifier())))
+            .isFalse();
+    }
+
+    @DisplayName("limit the open sessions of the user.")
+    @Test
+    void testLimitingSessionsOfUser(@TempDir Path directory) throws IOException {
+
+        UploadSessions sessions = new UploadSessions(directory, CHUNK_SIZE, EXPIRE_AFTER, MAX_SESSIONS_PER_USER,
+            new MutableClock());
+        UploadSession first = createSession(sessions);
+
+        createSession(sessions);
+
+        assertThrows(UploadSessionLimitException.class, () -> createSession(sessions),
+            "Session over the limit is opened.");
+
+        sessions.remove(first);
+
+        assertWithMessage("Session is not opened in place of the removed one.")
+            .that(createSession(sessions).ownerId())
+            .isEqualTo(OWNER_ID);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.EPOCH;
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package io.nure.filestore.storage;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.metric;
+import static io.nure.filestore.TestContents.read;
+import static java.lang.String.format;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.channels.Channels.newInputStream;
+
+@DisplayName("CachingBlobStore should ")
+class CachingBlobStoreTest {
+
+    private static final int CONTENT_SIZE = 1024;
+
+    private static final long CAPACITY = CONTENT_SIZE * 64;
+
+    private static BlobLocator write(BlobStore store, String name) throws IOException {
+
+        BlobLocator locator = new BlobLocator(name);
+        byte[] content = new byte[CONTENT_SIZE];
+        content[0] = (byte) name.hashCode();
+
+        try (BlobWriter writer = store.create()) {
+
+            writer.write(ByteBuffer.wrap(content));
+            writer.commit(locator);
+        }
+
+        return locator;
+    }
+
+    /**
+     * Creates the store, which channels cannot be memory-mapped.
+     */
+    private static BlobStore unmappable(BlobStore store) {
+
+        return new BlobStore() {
+
+            @Override
+            public BlobWriter create() throws IOException {
+                return store.create();
+            }
+
+            @Override
+            public ReadableByteChannel open(BlobLocator locator) throws IOException {
+                return newChannel(newInputStream(store.open(locator)));
+            }
+
+            @Override
+            public boolean delete(BlobLocator locator) throws IOException {
+                return store.delete(locator);
+            }
+
+            @Override
+            public List<BlobLocator> locators() throws IOException {
+                return store.locators();
+            }
+        };
+    }
+
+    @DisplayName("serve repeated reads from memory.")
+    @Test
+    void testServingRepeatedReads(@TempDir Path directory) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+        CachingBlobStore store = new CachingBlobStore(new DiskBlobStore(directory), CAPACITY, metrics);
+        BlobLocator locator = write(store, "popular");
+
+        byte[] first = read(store, locator);
+        byte[] second = read(store, locator);
+
+        assertWithMessage("Cached content differs from the stored one.")
+            .that(second)
+            .isEqualTo(first);
+
+        assertWithMessage("Repeated read is not a hit.")
+            .that(metric(metrics, "blob.cache.hits"))
+            .isEqualTo(1L);
+
+        assertWithMessage("First read is not a miss.")
+            .that(metric(metrics, "blob.cache.misses"))
+            .isEqualTo(1L);
+
+        assertWithMessage("Cache size is not counted in bytes.")
+            .that(metric(metrics, "blob.cache.bytes"))
+            .isEqualTo((long) CONTENT_SIZE);
+    }
+
+    @DisplayName("keep popular contents during a scan.")
+    @Test
+    void testResistingScan(@TempDir Path directory) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+        CachingBlobStore store = new CachingBlobStore(new DiskBlobStore(directory), CAPACITY, metrics);
+        BlobLocator popular = write(store, "popular");
+
+        for (int read = 0; read < 5; ++read) {
+            read(store, popular);
+        }
+
+        for (int scanned = 0; scanned < 1000; ++scanned) {
+            read(store, write(store, format("scanned-%d", scanned)));
+        }
+
+        assertWithMessage("Cache exceeds its capacity.")
+            .that(store.size())
+            .isAtMost(CAPACITY);
+
+        long hits = metric(metrics, "blob.cache.hits");
+        read(store, popular);
+
+        assertWithMessage("Popular content is evicted by the scan.")
+            .that(metric(metrics, "blob.cache.hits"))
+            .isEqualTo(hits + 1);
+    }
+
+    @DisplayName("not serve deleted content.")
+    @Test
+    void testInvalidatingDeletedContent(@TempDir Path directory) throws IOException {
+
+        CachingBlobStore store = new CachingBlobStore(new DiskBlobStore(directory), CAPACITY, new MetricRegistry());
+        BlobLocator locator = write(store, "deleted");
+
+        read(store, locator);
+        store.delete(locator);
+
+        assertWithMessage("Deleted content is kept in the cache.")
+            .that(store.size())
+            .isEqualTo(0L);
+    }
+
+    @DisplayName("cache the content that cannot be mapped only once it is read to its end.")
+    @Test
+    void testCachingUnmappableContentOnceRead(@TempDir Path directory) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+        CachingBlobStore store = new CachingBlobStore(unmappable(new DiskBlobStore(directory)), CAPACITY, metrics);
+        BlobLocator locator = write(store, "streamed");
+
+        try (ReadableByteChannel channel = store.open(locator)) {
+            channel.read(ByteBuffer.allocate(10));
+        }
+
+        assertWithMessage("Partly read content is cached.")
+            .that(store.size())
+            .isEqualTo(0L);
+
+        byte[] streamed = read(store, locator);
+
+        assertWithMessage("Content read to its end is not cached.")
+            .that(store.size())
+            .isEqualTo((long) CONTENT_SIZE);
+
+        assertWithMessage("Cached content differs from the streamed one.")
+            .that(read(store, locator))
+            .isEqualTo(streamed);
+
+        assertWithMessage("Content read to its end is not served from memory.")
+            .that(metric(metrics, "blob.cache.hits"))
+            .isEqualTo(1L);
+    }
+
+    @DisplayName("pass the content too large to be cached as the mapped buffer without reading it.")
+    @Test
+    void testMappingLargeContent(@TempDir Path directory) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+        CachingBlobStore store = new CachingBlobStore(new DiskBlobStore(directory), CAPACITY, metrics);
+        BlobLocator locator = new BlobLocator("large");
+        byte[] content = new byte[4 * CONTENT_SIZE];
+        content[content.length - 1] = 1;
+
+        try (BlobWriter writer = store.create()) {
+
+            writer.write(ByteBuffer.wrap(content));
+            writer.commit(locator);
+        }
+
+        try (ReadableByteChannel channel = store.open(locator)) {
+
+            Optional<ByteBuffer> mapped = MappableChannel.map(channel);
+
+            assertWithMessage("Large content is not mapped.")
+                .that(mapped.isPresent())
+                .isTrue();
+
+            byte[] sent = new byte[mapped.get().remaining()];
+            mapped.get().get(sent);
+
+            assertWithMessage("Mapped content differs from the stored one.")
+                .that(sent)
+                .isEqualTo(content);
+        }
+
+        assertWithMessage("Large content is cached.")
+            .that(store.size())
+            .isEqualTo(0L);
+    }
+}
@@ -0,0 +1,342 @@
+package io.nure.filestore.storage;
+
+import com.google.common.base.Strings;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import io.nure.filestore.api.FileContent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.api.IdGenerator.generateId;
+import static java.nio.channels.Channels.newChannel;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+@DisplayName("FileContentStorage should ")
+class FileContentStorageTest {
+
+    private static FileContentStorage createStorage(Path directory) {
+
+        return new FileContentStorage(new DiskBlobStore(directory), ContentEncoding.GZIP);
+    }
+
+    private static StorageJournal<FileId, FileContentRecord> openJournal(Path directory) throws IOException {
+
+        return new StorageJournal<>(directory.resolve("file-contents.journal"), new FileContentRecordCodec(),
+            Durability.SYNC, Duration.ofMillis(10));
+    }
+
+    private static byte[] readContent(FileContentStorage storage, FileId fileId) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+        try (FileContent content = storage.content(fileId).get()) {
+            content.transferTo(newChannel(output));
+        }
+
+        return output.toByteArray();
+    }
+
+    private static long countBlobs(Path directory) throws IOException {
+
+        try (Stream<Path> files = Files.walk(directory)) {
+
+            return files
+                .filter(Files::isRegularFile)
+                .count();
+        }
+    }
+
+    @DisplayName("keep content on the disk and read it back.")
+    @Test
+    void testStoringContent(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId fileId = new FileId(generateId());
+        byte[] content = "content of the file".getBytes(UTF_8);
+
+        storage.store(fileId, new FileContent(content), FileType.DOC);
+
+        assertWithMessage("Content is not written to the disk.")
+            .that(countBlobs(directory))
+            .isEqualTo(1L);
+
+        assertWithMessage("Read content differs from the stored one.")
+            .that(readContent(storage, fileId))
+            .isEqualTo(content);
+    }
+
+    @DisplayName("stream content that spans several chunks.")
+    @Test
+    void testStoringContentOfSeveralChunks(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId fileId = new FileId(generateId());
+        byte[] content = new byte[FileContent.CHUNK_SIZE * 3 + 17];
+        new Random(42).nextBytes(content);
+
+        storage.store(fileId, new FileContent(content), FileType.IMAGE);
+
+        assertWithMessage("Content of several chunks is corrupted.")
+            .that(readContent(storage, fileId))
+            .isEqualTo(content);
+
+        assertWithMessage("Content of the image is not addressed by its hash.")
+            .that(storage.get(fileId).get().locator().value())
+            .isEqualTo(Hashing.sha256().hashBytes(content).toString());
+    }
+
+    @DisplayName("compress content of the compressible type and decompress it on read.")
+    @Test
+    void testCompressingContent(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId fileId = new FileId(generateId());
+        byte[] content = Strings.repeat("name,size,type\n", 10_000).getBytes(UTF_8);
+
+        storage.store(fileId, new FileContent(content), FileType.SPREADSHEET);
+
+        assertWithMessage("Content is not compressed.")
+            .that(storage.get(fileId).get().encoding())
+            .isEqualTo(ContentEncoding.GZIP);
+
+        assertWithMessage("Content is not decompressed on read.")
+            .that(readContent(storage, fileId))
+            .isEqualTo(content);
+
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+
+        try (FileContent encodedContent = storage.encodedContent(fileId).get()) {
+            encodedContent.transferTo(newChannel(encoded));
+        }
+
+        assertWithMessage("Compressed content is not smaller.")
+            .that(encoded.size())
+            .isAtMost(content.length / 10);
+
+        assertWithMessage("Encoded content is not in GZIP format.")
+            .that(ByteStreams.toByteArray(new GZIPInputStream(new ByteArrayInputStream(encoded.toByteArray()))))
+            .isEqualTo(content);
+    }
+
+    @DisplayName("map not compressed content kept on the disk without reading it.")
+    @Test
+    void testMappingContent(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId imageId = new FileId(generateId());
+        FileId documentId = new FileId(generateId());
+        byte[] content = "content of the file".getBytes(UTF_8);
+
+        storage.store(imageId, new FileContent(content), FileType.IMAGE);
+        storage.store(documentId, new FileContent(content), FileType.DOC);
+
+        try (FileContent image = storage.content(imageId).get()) {
+
+            ByteBuffer mapped = image.map().get();
+            byte[] bytes = new byte[mapped.remaining()];
+            mapped.get(bytes);
+
+            assertWithMessage("Mapped content differs from the stored one.")
+                .that(bytes)
+                .isEqualTo(content);
+        }
+
+        try (FileContent document = storage.content(documentId).get()) {
+
+            assertWithMessage("Compressed content is mapped.")
+                .that(document.map().isPresent())
+                .isFalse();
+        }
+    }
+
+    @DisplayName("delete content of the deleted record.")
+    @Test
+    void testDeletingContent(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId deletedId = new FileId(generateId());
+        FileId keptId = new FileId(generateId());
+
+        storage.store(deletedId, new FileContent(new byte[]{1, 2, 3}), FileType.DOC);
+        storage.store(keptId, new FileContent(new byte[]{4, 5, 6}), FileType.DOC);
+        storage.delete(deletedId);
+
+        assertWithMessage("Content of the deleted record is not deleted.")
+            .that(countBlobs(directory))
+            .isEqualTo(1L);
+
+        assertWithMessage("Content of the deleted record is available.")
+            .that(storage.content(deletedId).isPresent())
+            .isFalse();
+
+        assertWithMessage("Content of another record is lost.")
+            .that(storage.content(keptId).isPresent())
+            .isTrue();
+    }
+
+    @DisplayName("keep one blob for equal contents until the last file is deleted.")
+    @Test
+    void testDeduplicatingContent(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId firstId = new FileId(generateId());
+        FileId secondId = new FileId(generateId());
+
+        storage.store(firstId, new FileContent(new byte[]{1, 2, 3}), FileType.DOC);
+        storage.store(secondId, new FileContent(new byte[]{1, 2, 3}), FileType.DOC);
+
+        assertWithMessage("Equal contents are written twice.")
+            .that(countBlobs(directory))
+            .isEqualTo(1L);
+
+        assertWithMessage("Deduplication ratio is wrong.")
+            .that(storage.deduplicationRatio())
+            .isEqualTo(2.0);
+
+        storage.delete(firstId);
+
+        assertWithMessage("Shared content is deleted while it is referenced.")
+            .that(readContent(storage, secondId))
+            .isEqualTo(new byte[]{1, 2, 3});
+
+        storage.delete(secondId);
+
+        assertWithMessage("Content is not deleted with the last reference.")
+            .that(countBlobs(directory))
+            .isEqualTo(0L);
+    }
+
+    @DisplayName("keep content for the record restored from the journal.")
+    @Test
+    void testRestoringRecordWithContent(@TempDir Path directory) throws IOException {
+
+        FileId fileId = new FileId(generateId());
+        byte[] content = {7, 8, 9};
+        Path blobs = directory.resolve("blobs");
+
+        try (StorageJournal<FileId, FileContentRecord> journal = openJournal(directory)) {
+
+            FileContentStorage storage = createStorage(blobs);
+            storage.attachJournal(journal);
+            storage.store(fileId, new FileContent(content), FileType.DOC);
+        }
+
+        FileContentStorage restored = createStorage(blobs);
+
+        try (StorageJournal<FileId, FileContentRecord> journal = openJournal(directory)) {
+
+            restored.attachJournal(journal);
+        }
+
+        assertWithMessage("Content of the restored record is lost.")
+            .that(readContent(restored, fileId))
+            .isEqualTo(content);
+    }
+
+    @DisplayName("find content by hash and link new record to it without writing it again.")
+    @Test
+    void testLinkingKeptContent(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId original = new FileId(generateId());
+        FileId copy = new FileId(generateId());
+        byte[] content = "content of the file".getBytes(UTF_8);
+        String hash = Hashing.sha256().hashBytes(content).toString();
+
+        FileContentRecord stored = storage.store(original, new FileContent(content), FileType.DOC);
+
+        assertWithMessage("Kept content is not found by hash.")
+            .that(storage.findByHash(hash))
+            .containsExactly(stored);
+
+        storage.link(copy, stored.locator());
+        storage.delete(original);
+
+        assertWithMessage("Linked record does not reference the content.")
+            .that(readContent(storage, copy))
+            .isEqualTo(content);
+
+        storage.delete(copy);
+
+        assertWithMessage("Record is linked to the content, that is no longer kept.")
+            .that(storage.link(original, stored.locator()).isPresent())
+            .isFalse();
+    }
+
+    @DisplayName("share the thumbnail between equal contents and delete it with the last of them.")
+    @Test
+    void testDeletingThumbnailWithContent(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId original = new FileId(generateId());
+        FileId copy = new FileId(generateId());
+        byte[] content = "content of the image".getBytes(UTF_8);
+
+        storage.store(original, new FileContent(content), FileType.IMAGE);
+        storage.store(copy, new FileContent(content), FileType.IMAGE);
+
+        assertWithMessage("Thumbnail is not kept for the stored content.")
+            .that(storage.storeThumbnail(original, new FileContent("thumbnail".getBytes(UTF_8))))
+            .isTrue();
+
+        storage.delete(original);
+
+        try (FileContent thumbnail = storage.thumbnail(copy).orElse(null)) {
+
+            assertWithMessage("Thumbnail is not shared by the equal content.")
+                .that(thumbnail)
+                .isNotNull();
+        }
+
+        storage.delete(copy);
+
+        assertWithMessage("Thumbnail is not deleted with the last reference to the content.")
+            .that(countBlobs(directory))
+            .isEqualTo(0L);
+
+        assertWithMessage("Thumbnail is kept for the deleted file.")
+            .that(storage.storeThumbnail(copy, new FileContent("thumbnail".getBytes(UTF_8))))
+            .isFalse();
+    }
+
+    @DisplayName("keep the thumbnail while the content is referenced in another encoding.")
+    @Test
+    void testKeepingThumbnailOfOtherEncoding(@TempDir Path directory) throws IOException {
+
+        FileContentStorage storage = createStorage(directory);
+        FileId image = new FileId(generateId());
+        FileId document = new FileId(generateId());
+        byte[] content = "content of the image".getBytes(UTF_8);
+
+        storage.store(image, new FileContent(content), FileType.IMAGE);
+        storage.store(document, new FileContent(content), FileType.DOC);
+        storage.storeThumbnail(image, new FileContent("thumbnail".getBytes(UTF_8)));
+        storage.delete(image);
+
+        try (FileContent thumbnail = storage.thumbnail(document).orElse(null)) {
+
+            assertWithMessage("Thumbnail of the content, that is kept compressed, is deleted.")
+                .that(thumbnail)
+                .isNotNull();
+        }
+
+        storage.delete(document);
+
+        assertWithMessage("Thumbnail is not deleted with the last encoding of the content.")
+            .that(countBlobs(directory))
+            .isEqualTo(0L);
+    }
+}
@@ -182,6 +182,20 @@ class FolderStorageTest {
             .isFalse();
     }
 
+    @DisplayName("return empty object when retrieving deleted root folder.")
+    @Test
+    void testRetrievingDeletedRootFolder() {
+
+        FolderRecord record = createFolderRecord(createFolderId());
+        FolderStorage storage = createStorage(record);
+
+        storage.delete(record.identifier());
+
+        assertWithMessage("Deleted root folder is still retrieved.")
+            .that(storage.getRoot(record.ownerId()).isPresent())
+            .isFalse();
+    }
+
     @DisplayName("retrieve children of parent folder.")
     @Test
     void testRetrievingChildrenFolders() {
@@ -195,6 +209,59 @@ class FolderStorageTest {
             .containsExactlyElementsIn(ImmutableList.of(childFolder));
     }
 
+    @DisplayName("not retrieve deleted children of parent folder.")
+    @Test
+    void testRetrievingChildrenFoldersAfterDeletion() {
+
+        FolderRecord rootFolder = createFolderRecord();
+        FolderRecord childFolder = createFolderRecord(createFolderId(), rootFolder.identifier(), createUserId());
+        FolderStorage storage = createStorage(rootFolder, childFolder);
+
+        storage.delete(childFolder.identifier());
+
+        assertWithMessage("Deleted folder is still retrieved as a child of the parent folder.")
+            .that(storage.getChildren(rootFolder.identifier()))
+            .isEmpty();
+    }
+
+    @DisplayName("retrieve children of the new parent folder after the child folder was moved.")
+    @Test
+    void testRetrievingChildrenFoldersAfterReplacing() {
+
+        FolderRecord formerParent = createFolderRecord();
+        FolderRecord newParent = createFolderRecord();
+        FolderId childId = createFolderId();
+        UserId ownerId = createUserId();
+        FolderRecord childFolder = createFolderRecord(childId, formerParent.identifier(), ownerId);
+        FolderRecord movedChildFolder = createFolderRecord(childId, newParent.identifier(), ownerId);
+        FolderStorage storage = createStorage(formerParent, newParent, childFolder);
+
+        storage.put(movedChildFolder);
+
+        assertWithMessage("Moved folder is still retrieved as a child of the former parent folder.")
+            .that(storage.getChildren(formerParent.identifier()))
+            .isEmpty();
+
+        assertWithMessage("Moved folder is not retrieved as a child of the new parent folder.")
+            .that(storage.getChildren(newParent.identifier()))
+            .containsExactly(movedChildFolder);
+    }
+
+    @DisplayName("retrieve children of parent folder owned by the user.")
+    @Test
+    void testRetrievingChildrenFoldersOfOwner() {
+
+        FolderRecord rootFolder = createFolderRecord();
+        UserId ownerId = createUserId();
+        FolderRecord ownedChild = createFolderRecord(createFolderId(), rootFolder.identifier(), ownerId);
+        FolderRecord strangerChild = createFolderRecord(createFolderId(), rootFolder.identifier(), createUserId());
+        FolderStorage storage = createStorage(rootFolder, ownedChild, strangerChild);
+
+        assertWithMessage("Cannot retrieve children of parent folder owned by the user.")
+            .that(storage.getChildren(rootFolder.identifier(), ownerId))
+            .containsExactly(ownedChild);
+    }
+
     @DisplayName("retrieve record by identifiers of folder and its owner.")
     @Test
     void testRetrievingRecordByFolderIdAndUserId() {
@@ -219,4 +286,97 @@ class FolderStorageTest {
             .that(storage.get(createFolderId(), createUserId()).isPresent())
             .isFalse();
     }
+
+    @DisplayName("return empty object if the folder is owned by another user.")
+    @Test
+    void testRetrievingRecordOfAnotherOwner() {
+
+        FolderId folderId = createFolderId();
+        FolderStorage storage = createStorage(createFolderRecord(folderId, createUserId()));
+
+        assertWithMessage("Folder of another owner is retrieved.")
+            .that(storage.get(folderId, createUserId()).isPresent())
+            .isFalse();
+    }
+
+    @DisplayName("change the version of the children of the folder on every modification of them.")
+    @Test
+    void testChangingChildrenVersion() {
+
+        FolderRecord formerParent = createFolderRecord();
+        FolderRecord newParent = createFolderRecord();
+        FolderRecord unrelated = createFolderRecord();
+        FolderId childId = createFolderId();
+        UserId ownerId = createUserId();
+        FolderStorage storage = createStorage(formerParent, newParent, unrelated);
+
+        long initialVersion = storage.childrenVersion(formerParent.identifier());
+        long unrelatedVersion = storage.childrenVersion(unrelated.identifier());
+
+        storage.put(createFolderRecord(childId, formerParent.identifier(), ownerId));
+
+        long createdVersion = storage.childrenVersion(formerParent.identifier());
+
+        assertWithMessage("Version is not changed by the created child folder.")
+            .that(createdVersion)
+            .isNotEqualTo(initialVersion);
+
+        long newParentVersion = storage.childrenVersion(newParent.identifier());
+
+        storage.put(createFolderRecord(childId, newParent.identifier(), ownerId));
+
+        assertWithMessage("Version of the former parent is not changed by the moved child folder.")
+            .that(storage.childrenVersion(formerParent.identifier()))
+            .isNotEqualTo(createdVersion);
+
+        assertWithMessage("Version of the new parent is not changed by the moved child folder.")
+            .that(storage.childrenVersion(newParent.identifier()))
+            .isNotEqualTo(newParentVersion);
+
+        newParentVersion = storage.childrenVersion(newParent.identifier());
+
+        storage.delete(childId);
+
+        assertWithMessage("Version is not changed by the deleted child folder.")
+            .that(storage.childrenVersion(newParent.identifier()))
+            .isNotEqualTo(newParentVersion);
+
+        assertWithMessage("Version of the folder with unchanged children is changed.")
+            .that(storage.childrenVersion(unrelated.identifier()))
+            .isEqualTo(unrelatedVersion);
+    }
+
+    @DisplayName("give the children of the folder a fresh version when they are created again after all were deleted.")
+    @Test
+    void testRenewingVersionOfEmptiedChildren() {
+
+        FolderRecord parent = createFolderRecord();
+        FolderId childId = createFolderId();
+        UserId ownerId = createUserId();
+        FolderStorage storage = createStorage(parent);
+
+        long initialVersion = storage.childrenVersion(parent.identifier());
+
+        storage.put(createFolderRecord(childId, parent.identifier(), ownerId));
+
+        long createdVersion = storage.childrenVersion(parent.identifier());
+
+        storage.delete(childId);
+
+        assertWithMessage("Version of the folder without children is not the initial one.")
+            .that(storage.childrenVersion(parent.identifier()))
+            .isEqualTo(initialVersion);
+
+        storage.put(createFolderRecord(childId, parent.identifier(), ownerId));
+
+        long recreatedVersion = storage.childrenVersion(parent.identifier());
+
+        assertWithMessage("Version of the recreated children is reused.")
+            .that(recreatedVersion)
+            .isNotEqualTo(createdVersion);
+
+        assertWithMessage("Version of the recreated children is the initial one.")
+            .that(recreatedVersion)
+            .isNotEqualTo(initialVersion);
+    }
 }
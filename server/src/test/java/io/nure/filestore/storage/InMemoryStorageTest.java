@@ -0,0 +1,186 @@
+package io.nure.filestore.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.api.IdGenerator.generateId;
+import static java.util.Arrays.asList;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("InMemoryStorage should ")
+class InMemoryStorageTest {
+
+    /**
+     * The storage of folders with a unique index by name and a composite index by parent and owner.
+     */
+    private static final class IndexedFolderStorage extends InMemoryStorage<FolderId, FolderRecord> {
+
+        private final UniqueIndex<FolderName, FolderId, FolderRecord> nameIndex = uniqueIndex(FolderRecord::name);
+
+        private final MultiIndex<CompositeKey, FolderId, FolderRecord> parentAndOwnerIndex =
+            multiIndex(record -> CompositeKey.of(record.parentId(), record.ownerId()));
+    }
+
+    private static FolderRecord createFolderRecord(String name, FolderId parentId, UserId ownerId) {
+
+        return new FolderRecord(new FolderId(generateId()), new FolderName(name), parentId, ownerId);
+    }
+
+    private static FolderId createFolderId() {
+
+        return new FolderId(generateId());
+    }
+
+    private static UserId createUserId() {
+
+        return new UserId(generateId());
+    }
+
+    @DisplayName("retrieve record by unique index.")
+    @Test
+    void testRetrievingRecordByUniqueIndex() {
+
+        IndexedFolderStorage storage = new IndexedFolderStorage();
+        FolderRecord record = createFolderRecord("folder", null, createUserId());
+
+        storage.put(record);
+
+        assertWithMessage("Cannot retrieve record by unique index.")
+            .that(storage.nameIndex.get(record.name()).get())
+            .isEqualTo(record);
+    }
+
+    @DisplayName("reject record with a taken unique key.")
+    @Test
+    void testRejectingTakenUniqueKey() {
+
+        IndexedFolderStorage storage = new IndexedFolderStorage();
+        FolderRecord record = createFolderRecord("folder", null, createUserId());
+        FolderRecord duplicate = createFolderRecord("folder", null, createUserId());
+
+        storage.put(record);
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> storage.put(duplicate),
+            "Record with a taken unique key was put."
+        );
+
+        assertWithMessage("Rejected record is stored.")
+            .that(storage.get(duplicate.identifier()).isPresent())
+            .isFalse();
+    }
+
+    @DisplayName("put the batch of records until one of them has a taken unique key.")
+    @Test
+    void testPuttingBatch() {
+
+        IndexedFolderStorage storage = new IndexedFolderStorage();
+        UserId ownerId = createUserId();
+        FolderRecord first = createFolderRecord("first", null, ownerId);
+        FolderRecord second = createFolderRecord("second", null, ownerId);
+        FolderRecord duplicate = createFolderRecord("first", null, ownerId);
+        FolderRecord last = createFolderRecord("last", null, ownerId);
+
+        assertThrows(
+            IllegalArgumentException.class,
+            () -> storage.putAll(asList(first, second, duplicate, last)),
+            "Batch with a taken unique key was put."
+        );
+
+        assertWithMessage("Records before the rejected one are not stored.")
+            .that(storage.getAll())
+            .containsExactly(first, second);
+    }
+
+    @DisplayName("release unique key of deleted record.")
+    @Test
+    void testReleasingUniqueKeyOfDeletedRecord() {
+
+        IndexedFolderStorage storage = new IndexedFolderStorage();
+        FolderRecord record = createFolderRecord("folder", null, createUserId());
+        FolderRecord newRecord = createFolderRecord("folder", null, createUserId());
+
+        storage.put(record);
+        storage.delete(record.identifier());
+        storage.put(newRecord);
+
+        assertWithMessage("Unique key of deleted record is not released.")
+            .that(storage.nameIndex.get(newRecord.name()).get())
+            .isEqualTo(newRecord);
+    }
+
+    @DisplayName("retrieve records by composite key.")
+    @Test
+    void testRetrievingRecordsByCompositeKey() {
+
+        IndexedFolderStorage storage = new IndexedFolderStorage();
+        FolderId parentId = createFolderId();
+        UserId ownerId = createUserId();
+        FolderRecord ownedChild = createFolderRecord("owned", parentId, ownerId);
+        FolderRecord foreignChild = createFolderRecord("foreign", parentId, createUserId());
+        FolderRecord root = createFolderRecord("root", null, ownerId);
+
+        storage.put(ownedChild);
+        storage.put(foreignChild);
+        storage.put(root);
+
+        assertWithMessage("Cannot retrieve records by composite key.")
+            .that(storage.parentAndOwnerIndex.get(CompositeKey.of(parentId, ownerId)))
+            .containsExactly(ownedChild);
+    }
+
+    @DisplayName("iterate over all records while they are modified concurrently.")
+    @Test
+    void testIteratingWhileModifying() throws Exception {
+
+        IndexedFolderStorage storage = new IndexedFolderStorage();
+        UserId ownerId = createUserId();
+        FolderId parentId = createFolderId();
+        ExecutorService writer = newSingleThreadExecutor();
+
+        try {
+
+            Future<?> writing = writer.submit(() -> {
+
+                for (int i = 0; i < 10_000; ++i) {
+
+                    FolderRecord record = createFolderRecord("folder" + i, parentId, ownerId);
+
+                    storage.put(record);
+
+                    if (i % 2 == 0) {
+                        storage.delete(record.identifier());
+                    }
+                }
+            });
+
+            while (!writing.isDone()) {
+
+                long count = storage.getAll().stream().count();
+
+                assertWithMessage("Iteration returned more records than were put.")
+                    .that(count)
+                    .isAtMost(10_000L);
+            }
+
+            writing.get();
+
+            assertWithMessage("Concurrent iteration corrupted the storage.")
+                .that(storage.getAll())
+                .hasSize(5_000);
+
+            assertWithMessage("Index is not consistent with the storage.")
+                .that(storage.parentAndOwnerIndex.count(CompositeKey.of(parentId, ownerId)))
+                .isEqualTo(5_000);
+
+        } finally {
+            writer.shutdownNow();
+        }
+    }
+}
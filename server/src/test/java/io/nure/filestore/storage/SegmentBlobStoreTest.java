@@ -0,0 +1,243 @@
+package io.nure.filestore.storage;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.metric;
+import static io.nure.filestore.TestContents.read;
+
+@DisplayName("SegmentBlobStore should ")
+class SegmentBlobStoreTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    private static final int SMALL_BLOB_LIMIT = 4 * 1024;
+
+    private static SegmentBlobStore openStore(Path directory, MetricRegistry metrics) throws IOException {
+
+        return new SegmentBlobStore(directory.resolve("segments"), new DiskBlobStore(directory.resolve("blobs")),
+            SEGMENT_SIZE, SMALL_BLOB_LIMIT, metrics);
+    }
+
+    private static byte[] content(int size, int seed) {
+
+        byte[] content = new byte[size];
+        Arrays.fill(content, (byte) seed);
+
+        return content;
+    }
+
+    private static void write(BlobStore store, BlobLocator locator, byte[] content) throws IOException {
+
+        try (BlobWriter writer = store.create()) {
+
+            writer.write(ByteBuffer.wrap(content));
+            writer.commit(locator);
+        }
+    }
+
+    private static long countFiles(Path directory) throws IOException {
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    @DisplayName("pack small contents into one segment and keep large contents in separate files.")
+    @Test
+    void testPackingSmallContents(@TempDir Path directory) throws IOException {
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            for (int blob = 0; blob < 10; ++blob) {
+                write(store, new BlobLocator("small-" + blob), content(100, blob));
+            }
+
+            write(store, new BlobLocator("large"), content(SMALL_BLOB_LIMIT + 1, 42));
+
+            assertWithMessage("Small contents are not packed into one segment.")
+                .that(countFiles(directory.resolve("segments")))
+                .isEqualTo(1L);
+
+            assertWithMessage("Small content is read differently.")
+                .that(read(store, new BlobLocator("small-7")))
+                .isEqualTo(content(100, 7));
+
+            assertWithMessage("Large content is read differently.")
+                .that(read(store, new BlobLocator("large")))
+                .isEqualTo(content(SMALL_BLOB_LIMIT + 1, 42));
+
+            assertWithMessage("Store lists wrong contents.")
+                .that(store.locators())
+                .hasSize(11);
+        }
+    }
+
+    @DisplayName("keep only the last content of the locator, whether it is small or large.")
+    @Test
+    void testReplacingContentOfOtherSize(@TempDir Path directory) throws IOException {
+
+        BlobLocator small = new BlobLocator("small");
+        BlobLocator large = new BlobLocator("large");
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            write(store, small, content(100, 1));
+            write(store, small, content(SMALL_BLOB_LIMIT + 1, 2));
+            write(store, large, content(SMALL_BLOB_LIMIT + 1, 3));
+            write(store, large, content(100, 4));
+
+            assertWithMessage("Content replaced by the large one is read differently.")
+                .that(read(store, small))
+                .isEqualTo(content(SMALL_BLOB_LIMIT + 1, 2));
+
+            assertWithMessage("Content replaced by the small one is read differently.")
+                .that(read(store, large))
+                .isEqualTo(content(100, 4));
+
+            assertWithMessage("Store lists replaced contents twice.")
+                .that(store.locators())
+                .containsExactly(small, large);
+
+            assertWithMessage("Replaced large content is kept.")
+                .that(new DiskBlobStore(directory.resolve("blobs")).locators())
+                .containsExactly(small);
+        }
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            assertWithMessage("Content replaced by the large one is restored.")
+                .that(read(store, small))
+                .isEqualTo(content(SMALL_BLOB_LIMIT + 1, 2));
+        }
+    }
+
+    @DisplayName("restore the index of the contents and the tombstones from the segments.")
+    @Test
+    void testRestoringIndex(@TempDir Path directory) throws IOException {
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            for (int blob = 0; blob < 40; ++blob) {
+                write(store, new BlobLocator("blob-" + blob), content(SMALL_BLOB_LIMIT, blob));
+            }
+
+            store.delete(new BlobLocator("blob-3"));
+        }
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            assertWithMessage("Contents are lost on restart.")
+                .that(store.locators())
+                .hasSize(39);
+
+            assertWithMessage("Restored content is read differently.")
+                .that(read(store, new BlobLocator("blob-33")))
+                .isEqualTo(content(SMALL_BLOB_LIMIT, 33));
+
+            assertWithMessage("Deleted content is restored.")
+                .that(store.locators())
+                .doesNotContain(new BlobLocator("blob-3"));
+
+            write(store, new BlobLocator("appended"), content(10, 1));
+        }
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            assertWithMessage("Content appended after restart is lost.")
+                .that(read(store, new BlobLocator("appended")))
+                .isEqualTo(content(10, 1));
+        }
+    }
+
+    @DisplayName("ignore a torn entry at the end of the segment.")
+    @Test
+    void testIgnoringTornEntry(@TempDir Path directory) throws IOException {
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            write(store, new BlobLocator("first"), content(100, 1));
+            write(store, new BlobLocator("second"), content(100, 2));
+        }
+
+        Path segment = directory.resolve("segments").resolve("segment-0000000001.dat");
+
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+
+            file.seek(200);
+            file.write(0xFF);
+        }
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            assertWithMessage("Torn entry is restored.")
+                .that(store.locators())
+                .containsExactly(new BlobLocator("first"));
+
+            write(store, new BlobLocator("third"), content(100, 3));
+
+            assertWithMessage("Torn entry is not overwritten.")
+                .that(read(store, new BlobLocator("third")))
+                .isEqualTo(content(100, 3));
+        }
+    }
+
+    @DisplayName("reclaim space of deleted contents by compaction.")
+    @Test
+    void testCompactingSegments(@TempDir Path directory) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+
+        try (SegmentBlobStore store = openStore(directory, metrics)) {
+
+            for (int blob = 0; blob < 60; ++blob) {
+                write(store, new BlobLocator("blob-" + blob), content(SMALL_BLOB_LIMIT, blob));
+            }
+
+            for (int blob = 0; blob < 60; ++blob) {
+
+                if (blob % 4 != 0) {
+                    store.delete(new BlobLocator("blob-" + blob));
+                }
+            }
+
+            long segments = countFiles(directory.resolve("segments"));
+
+            store.compact();
+
+            assertWithMessage("Segments are not compacted.")
+                .that(countFiles(directory.resolve("segments")))
+                .isLessThan(segments);
+
+            assertWithMessage("Compactions are not counted.")
+                .that(metric(metrics, "blob.segments.compactions"))
+                .isGreaterThan(0L);
+
+            assertWithMessage("Moved content is read differently.")
+                .that(read(store, new BlobLocator("blob-4")))
+                .isEqualTo(content(SMALL_BLOB_LIMIT, 4));
+        }
+
+        try (SegmentBlobStore store = openStore(directory, new MetricRegistry())) {
+
+            assertWithMessage("Compacted store is restored with wrong contents.")
+                .that(store.locators())
+                .hasSize(15);
+
+            assertWithMessage("Deleted content is resurrected by compaction.")
+                .that(store.locators())
+                .doesNotContain(new BlobLocator("blob-5"));
+        }
+    }
+}
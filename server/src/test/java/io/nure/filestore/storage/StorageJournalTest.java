@@ -0,0 +1,129 @@
+package io.nure.filestore.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.UUID.randomUUID;
+
+@DisplayName("StorageJournal should ")
+class StorageJournalTest {
+
+    private static final Duration BATCH_INTERVAL = Duration.ofMillis(10);
+
+    private static UserRecord createUserRecord(String login) {
+
+        return new UserRecord(new UserId(randomUUID().toString()), new LoginName(login), "qwerty123A");
+    }
+
+    private static UserStorage restoreStorage(Path file) throws IOException {
+
+        UserStorage storage = new UserStorage();
+
+        try (StorageJournal<UserId, UserRecord> journal = new StorageJournal<>(
+            file, new UserRecordCodec(), Durability.SYNC, BATCH_INTERVAL)) {
+
+            storage.attachJournal(journal);
+        }
+
+        return storage;
+    }
+
+    @DisplayName("restore put and deleted records on replay.")
+    @Test
+    void testReplayingJournal(@TempDir Path directory) throws IOException {
+
+        Path file = directory.resolve("users.journal");
+        UserRecord kept = createUserRecord("kept");
+        UserRecord deleted = createUserRecord("deleted");
+        UserRecord renamed = createUserRecord("before");
+        UserRecord newName = new UserRecord(renamed.identifier(), new LoginName("after"), renamed.passwordHash());
+
+        try (StorageJournal<UserId, UserRecord> journal = new StorageJournal<>(
+            file, new UserRecordCodec(), Durability.SYNC, BATCH_INTERVAL)) {
+
+            UserStorage storage = new UserStorage();
+            storage.attachJournal(journal);
+
+            storage.put(kept);
+            storage.put(deleted);
+            storage.put(renamed);
+            storage.delete(deleted.identifier());
+            storage.put(newName);
+        }
+
+        UserStorage restored = restoreStorage(file);
+
+        assertWithMessage("Journal is not replayed.")
+            .that(restored.getAll())
+            .containsExactly(kept, newName);
+
+        assertWithMessage("Index of restored storage is not consistent.")
+            .that(restored.get(new LoginName("before")).isPresent())
+            .isFalse();
+    }
+
+    @DisplayName("write batched entries on close.")
+    @Test
+    void testWritingBatchedEntriesOnClose(@TempDir Path directory) throws IOException {
+
+        Path file = directory.resolve("users.journal");
+        UserRecord record = createUserRecord("login");
+
+        try (StorageJournal<UserId, UserRecord> journal = new StorageJournal<>(
+            file, new UserRecordCodec(), Durability.OS_BUFFERED, BATCH_INTERVAL)) {
+
+            UserStorage storage = new UserStorage();
+            storage.attachJournal(journal);
+
+            storage.put(record);
+        }
+
+        assertWithMessage("Batched entry is lost on close.")
+            .that(restoreStorage(file).get(record.identifier()).get())
+            .isEqualTo(record);
+    }
+
+    @DisplayName("discard torn entry at the end of the journal.")
+    @Test
+    void testDiscardingTornEntry(@TempDir Path directory) throws IOException {
+
+        Path file = directory.resolve("users.journal");
+        Path segment = directory.resolve("users.journal.00000000000000000001");
+        UserRecord first = createUserRecord("first");
+        UserRecord second = createUserRecord("second");
+        long firstEntryEnd;
+
+        try (StorageJournal<UserId, UserRecord> journal = new StorageJournal<>(
+            file, new UserRecordCodec(), Durability.SYNC, BATCH_INTERVAL)) {
+
+            UserStorage storage = new UserStorage();
+            storage.attachJournal(journal);
+
+            storage.put(first);
+            firstEntryEnd = segment.toFile().length();
+            storage.put(second);
+        }
+
+        try (FileChannel channel = FileChannel.open(segment, WRITE)) {
+            channel.truncate(segment.toFile().length() - 1);
+        }
+
+        UserStorage restored = restoreStorage(file);
+
+        assertWithMessage("Torn entry is replayed.")
+            .that(restored.getAll())
+            .containsExactly(first);
+
+        assertWithMessage("Torn entry is not truncated.")
+            .that(segment.toFile().length())
+            .isEqualTo(firstEntryEnd);
+    }
+}
@@ -0,0 +1,172 @@
+package io.nure.filestore.storage;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.util.Arrays.asList;
+import static java.util.UUID.randomUUID;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("StorageSnapshot should ")
+class StorageSnapshotTest {
+
+    private static final Duration BATCH_INTERVAL = Duration.ofMillis(10);
+
+    private static UserRecord createUserRecord(String login) {
+
+        return new UserRecord(new UserId(randomUUID().toString()), new LoginName(login), "qwerty123A");
+    }
+
+    private static StorageJournal<UserId, UserRecord> openJournal(Path directory) throws IOException {
+
+        return new StorageJournal<>(directory.resolve("users.journal"), new UserRecordCodec(), Durability.SYNC,
+            BATCH_INTERVAL);
+    }
+
+    private static StorageSnapshot<UserId, UserRecord> createSnapshot(Path directory) {
+
+        return new StorageSnapshot<>(directory.resolve("users.snapshot"), new UserRecordCodec());
+    }
+
+    private static UserStorage restoreStorage(Path directory) throws IOException {
+
+        UserStorage storage = new UserStorage();
+
+        try (StorageJournal<UserId, UserRecord> journal = openJournal(directory)) {
+            storage.attachJournal(journal, createSnapshot(directory));
+        }
+
+        return storage;
+    }
+
+    private static long countSegments(Path directory) throws IOException {
+
+        try (Stream<Path> files = Files.list(directory)) {
+
+            return files
+                .filter(file -> file.getFileName().toString().startsWith("users.journal."))
+                .count();
+        }
+    }
+
+    @DisplayName("restore records of the snapshot and of the journal tail.")
+    @Test
+    void testRestoringSnapshotAndJournalTail(@TempDir Path directory) throws IOException {
+
+        UserRecord checkpointed = createUserRecord("checkpointed");
+        UserRecord deleted = createUserRecord("deleted");
+        UserRecord logged = createUserRecord("logged");
+
+        try (StorageJournal<UserId, UserRecord> journal = openJournal(directory)) {
+
+            UserStorage storage = new UserStorage();
+            storage.attachJournal(journal, createSnapshot(directory));
+
+            storage.put(checkpointed);
+            storage.put(deleted);
+
+            assertWithMessage("Checkpoint saved wrong number of records.")
+                .that(storage.checkpoint())
+                .isEqualTo(2L);
+
+            storage.delete(deleted.identifier());
+            storage.put(logged);
+        }
+
+        UserStorage restored = restoreStorage(directory);
+
+        assertWithMessage("Storage is not restored from the snapshot and the journal.")
+            .that(restored.getAll())
+            .containsExactly(checkpointed, logged);
+
+        assertWithMessage("Index of restored storage is not consistent.")
+            .that(restored.get(new LoginName("deleted")).isPresent())
+            .isFalse();
+    }
+
+    @DisplayName("discard journal segments covered by the checkpoint.")
+    @Test
+    void testDiscardingCoveredSegments(@TempDir Path directory) throws IOException {
+
+        try (StorageJournal<UserId, UserRecord> journal = openJournal(directory)) {
+
+            UserStorage storage = new UserStorage();
+            storage.attachJournal(journal, createSnapshot(directory));
+
+            storage.put(createUserRecord("first"));
+            storage.checkpoint();
+            storage.put(createUserRecord("second"));
+            storage.checkpoint();
+        }
+
+        assertWithMessage("Covered journal segments are not deleted.")
+            .that(countSegments(directory))
+            .isEqualTo(1L);
+
+        assertWithMessage("Records are lost after checkpoints.")
+            .that(restoreStorage(directory).getAll())
+            .hasSize(2);
+    }
+
+    @DisplayName("continue numbering of entries after the checkpoint.")
+    @Test
+    void testContinuingSequenceAfterCheckpoint(@TempDir Path directory) throws IOException {
+
+        UserRecord beforeRestart = createUserRecord("before");
+        UserRecord afterRestart = createUserRecord("after");
+
+        try (StorageJournal<UserId, UserRecord> journal = openJournal(directory)) {
+
+            UserStorage storage = new UserStorage();
+            storage.attachJournal(journal, createSnapshot(directory));
+
+            storage.put(beforeRestart);
+            storage.checkpoint();
+        }
+
+        try (StorageJournal<UserId, UserRecord> journal = openJournal(directory)) {
+
+            UserStorage storage = new UserStorage();
+            storage.attachJournal(journal, createSnapshot(directory));
+
+            storage.put(afterRestart);
+        }
+
+        assertWithMessage("Entries logged after restart are skipped.")
+            .that(restoreStorage(directory).getAll())
+            .containsExactly(beforeRestart, afterRestart);
+    }
+
+    @DisplayName("reject snapshot with a wrong checksum.")
+    @Test
+    void testRejectingBrokenSnapshot(@TempDir Path directory) throws IOException {
+
+        StorageSnapshot<UserId, UserRecord> snapshot = createSnapshot(directory);
+
+        snapshot.write(1, asList(createUserRecord("first"), createUserRecord("second")));
+
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve("users.snapshot").toFile(), "rw")) {
+
+            file.seek(file.length() / 2);
+            int value = file.read();
+            file.seek(file.length() / 2);
+            file.write(value ^ 0xFF);
+        }
+
+        assertThrows(
+            StorageSnapshotException.class,
+            () -> snapshot.load(record -> {
+            }),
+            "Broken snapshot is loaded."
+        );
+    }
+}
@@ -0,0 +1,253 @@
+package io.nure.filestore.storage;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.content;
+import static io.nure.filestore.TestContents.metric;
+import static io.nure.filestore.TestContents.read;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+
+@DisplayName("StripedBlobStore should ")
+class StripedBlobStoreTest {
+
+    private static final int STRIPE_UNIT = 1024;
+
+    private static void write(BlobStore store, BlobLocator locator, byte[] content) throws IOException {
+
+        try (BlobWriter writer = store.create()) {
+
+            writer.write(ByteBuffer.wrap(content));
+            writer.commit(locator);
+        }
+    }
+
+    private static List<Path> directories(Path root, int count) {
+
+        Path[] directories = new Path[count];
+
+        for (int directory = 0; directory < count; ++directory) {
+            directories[directory] = root.resolve("disk-" + directory);
+        }
+
+        return asList(directories);
+    }
+
+    @DisplayName("spread contents over the directories.")
+    @Test
+    void testSpreadingContents(@TempDir Path root) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 3), 0, metrics)) {
+
+            for (int blob = 0; blob < 30; ++blob) {
+                write(store, new BlobLocator("blob-" + blob), content(100 + blob));
+            }
+
+            for (int directory = 0; directory < 3; ++directory) {
+
+                assertWithMessage("Contents are not spread over the directories.")
+                    .that(new DiskBlobStore(root.resolve("disk-" + directory)).locators())
+                    .hasSize(10);
+            }
+
+            assertWithMessage("Content is read differently.")
+                .that(read(store, new BlobLocator("blob-17")))
+                .isEqualTo(content(117));
+
+            assertWithMessage("Read bytes are not counted per directory.")
+                .that(metric(metrics, "blob.directories.0.read.bytes")
+                    + metric(metrics, "blob.directories.1.read.bytes")
+                    + metric(metrics, "blob.directories.2.read.bytes"))
+                .isEqualTo(117L);
+        }
+    }
+
+    @DisplayName("place new contents into the directory with the fewest bytes.")
+    @Test
+    void testPlacingContentsByBytes(@TempDir Path root) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 2), 0, metrics)) {
+
+            write(store, new BlobLocator("large"), content(10_000));
+
+            for (int blob = 0; blob < 5; ++blob) {
+                write(store, new BlobLocator("small-" + blob), content(100));
+            }
+
+            assertWithMessage("Small contents are not placed beside the large one.")
+                .that(new DiskBlobStore(root.resolve("disk-1")).locators())
+                .hasSize(5);
+
+            assertWithMessage("Bytes are not counted per directory.")
+                .that(metric(metrics, "blob.directories.0.bytes") + metric(metrics, "blob.directories.1.bytes"))
+                .isEqualTo(10_500L);
+        }
+    }
+
+    @DisplayName("replace the content and delete its previous blobs only after the new ones.")
+    @Test
+    void testReplacingContent(@TempDir Path root) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+        BlobLocator locator = new BlobLocator("replaced");
+        byte[] striped = content(4 * STRIPE_UNIT + 17);
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 2), STRIPE_UNIT, metrics)) {
+
+            write(store, locator, content(100));
+            write(store, locator, content(200));
+
+            assertWithMessage("Content replaced in place is read differently.")
+                .that(read(store, locator))
+                .isEqualTo(content(200));
+
+            write(store, locator, striped);
+
+            assertWithMessage("Content replaced by the striped one is read differently.")
+                .that(read(store, locator))
+                .isEqualTo(striped);
+
+            assertWithMessage("Blobs of the replaced content are counted.")
+                .that(metric(metrics, "blob.directories.0.bytes") + metric(metrics, "blob.directories.1.bytes"))
+                .isEqualTo((long) striped.length);
+        }
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 2), STRIPE_UNIT, new MetricRegistry())) {
+
+            assertWithMessage("Blobs of the replaced content are kept.")
+                .that(new DiskBlobStore(root.resolve("disk-0")).locators().size()
+                    + new DiskBlobStore(root.resolve("disk-1")).locators().size())
+                .isEqualTo(2);
+
+            assertWithMessage("Replaced content is restored differently.")
+                .that(read(store, locator))
+                .isEqualTo(striped);
+        }
+    }
+
+    @DisplayName("stripe large contents over the directories and read them back.")
+    @Test
+    void testStripingContents(@TempDir Path root) throws IOException {
+
+        MetricRegistry metrics = new MetricRegistry();
+        byte[] partialUnit = content(10 * STRIPE_UNIT + 17);
+        byte[] wholeUnits = content(9 * STRIPE_UNIT);
+        byte[] small = content(STRIPE_UNIT);
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 4), STRIPE_UNIT, metrics)) {
+
+            write(store, new BlobLocator("partial.gz"), partialUnit);
+            write(store, new BlobLocator("whole"), wholeUnits);
+            write(store, new BlobLocator("small"), small);
+
+            for (int directory = 0; directory < 4; ++directory) {
+
+                assertWithMessage("Content is not striped over all directories.")
+                    .that(metric(metrics, "blob.directories." + directory + ".written.bytes"))
+                    .isAtLeast(4L * STRIPE_UNIT);
+            }
+
+            assertWithMessage("Striped content is read differently.")
+                .that(read(store, new BlobLocator("partial.gz")))
+                .isEqualTo(partialUnit);
+
+            assertWithMessage("Content of whole units is read differently.")
+                .that(read(store, new BlobLocator("whole")))
+                .isEqualTo(wholeUnits);
+
+            assertWithMessage("Content of one unit is striped.")
+                .that(store.locators())
+                .containsExactly(new BlobLocator("partial.gz"), new BlobLocator("whole"), new BlobLocator("small"));
+        }
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 4), 0, new MetricRegistry())) {
+
+            assertWithMessage("Striped content is not restored.")
+                .that(read(store, new BlobLocator("partial.gz")))
+                .isEqualTo(partialUnit);
+
+            store.delete(new BlobLocator("partial.gz"));
+            store.delete(new BlobLocator("whole"));
+        }
+
+        for (int directory = 0; directory < 4; ++directory) {
+
+            assertWithMessage("Stripes of deleted content are kept.")
+                .that(new DiskBlobStore(root.resolve("disk-" + directory)).locators())
+                .doesNotContain(new BlobLocator("whole__" + directory + "_4_" + STRIPE_UNIT));
+        }
+    }
+
+    @DisplayName("delete stripes of an incomplete content on restore.")
+    @Test
+    void testDeletingIncompleteStripes(@TempDir Path root) throws IOException {
+
+        DiskBlobStore disk = new DiskBlobStore(root.resolve("disk-1"));
+
+        write(disk, new BlobLocator("lost__1_2_1024"), content(STRIPE_UNIT));
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 2), STRIPE_UNIT, new MetricRegistry())) {
+
+            assertWithMessage("Incomplete content is restored.")
+                .that(store.locators())
+                .isEmpty();
+        }
+
+        assertWithMessage("Incomplete stripes are kept.")
+            .that(disk.locators())
+            .isEmpty();
+    }
+
+    @DisplayName("move contents into an added directory.")
+    @Test
+    void testRebalancingAddedDirectory(@TempDir Path root) throws IOException {
+
+        try (StripedBlobStore store = new StripedBlobStore(singletonList(root.resolve("disk-0")), 0,
+            new MetricRegistry())) {
+
+            for (int blob = 0; blob < 20; ++blob) {
+                write(store, new BlobLocator("blob-" + blob), content(100));
+            }
+        }
+
+        MetricRegistry metrics = new MetricRegistry();
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 2), 0, metrics)) {
+
+            assertWithMessage("Wrong number of contents is moved.")
+                .that(store.rebalance())
+                .isEqualTo(10);
+
+            assertWithMessage("Contents are not moved into the added directory.")
+                .that(metric(metrics, "blob.directories.1.blobs"))
+                .isEqualTo(10L);
+
+            for (int blob = 0; blob < 20; ++blob) {
+
+                assertWithMessage("Moved content is read differently.")
+                    .that(read(store, new BlobLocator("blob-" + blob)))
+                    .isEqualTo(content(100));
+            }
+        }
+
+        try (StripedBlobStore store = new StripedBlobStore(directories(root, 2), 0, new MetricRegistry())) {
+
+            assertWithMessage("Contents are duplicated by rebalancing.")
+                .that(store.locators())
+                .hasSize(20);
+        }
+    }
+}
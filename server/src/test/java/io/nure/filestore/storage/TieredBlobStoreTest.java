@@ -0,0 +1,258 @@
+package io.nure.filestore.storage;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.metric;
+import static io.nure.filestore.TestContents.read;
+
+@DisplayName("TieredBlobStore should ")
+class TieredBlobStoreTest {
+
+    private static final Duration COLD_AFTER = Duration.ofDays(30);
+
+    private static final byte[] CONTENT = new byte[64 * 1024];
+
+    private static void write(BlobStore store, BlobLocator locator) throws IOException {
+
+        try (BlobWriter writer = store.create()) {
+
+            writer.write(ByteBuffer.wrap(CONTENT));
+            writer.commit(locator);
+        }
+    }
+
+    @DisplayName("move content that was not read for a long time into the compressed cold tier.")
+    @Test
+    void testDemotingColdContent(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        MetricRegistry metrics = new MetricRegistry();
+        DiskBlobStore warm = new DiskBlobStore(directory.resolve("warm"));
+        DiskBlobStore cold = new DiskBlobStore(directory.resolve("cold"));
+        TieredBlobStore store = new TieredBlobStore(warm, cold, COLD_AFTER, true, directory.resolve("reads"), clock, metrics);
+        BlobLocator locator = new BlobLocator("content");
+
+        write(store, locator);
+        clock.advance(COLD_AFTER.plusMinutes(1));
+        store.demote();
+
+        assertWithMessage("Cold content is kept in the warm tier.")
+            .that(warm.locators())
+            .isEmpty();
+
+        assertWithMessage("Cold content is not compressed.")
+            .that(read(cold, locator).length)
+            .isLessThan(CONTENT.length);
+
+        assertWithMessage("Cold content is read differently.")
+            .that(read(store, locator))
+            .isEqualTo(CONTENT);
+
+        assertWithMessage("Demotion is not counted.")
+            .that(metric(metrics, "blob.tier.demotions"))
+            .isEqualTo(1L);
+    }
+
+    @DisplayName("keep identity content uncompressed in the cold tier, if the compression is turned on.")
+    @Test
+    void testKeepingIdentityContentUncompressed(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        DiskBlobStore warm = new DiskBlobStore(directory.resolve("warm"));
+        DiskBlobStore cold = new DiskBlobStore(directory.resolve("cold"));
+        TieredBlobStore store = new TieredBlobStore(warm, cold, COLD_AFTER, false, directory.resolve("reads"), clock,
+            new MetricRegistry());
+        BlobLocator locator = new BlobLocator("image");
+
+        write(store, locator);
+        clock.advance(COLD_AFTER.plusMinutes(1));
+        store.demote();
+
+        assertWithMessage("Identity content is compressed in the cold tier.")
+            .that(read(cold, new BlobLocator("image.uncompressed")))
+            .isEqualTo(CONTENT);
+
+        TieredBlobStore restarted = new TieredBlobStore(warm, cold, COLD_AFTER, false, directory.resolve("reads"),
+            clock, new MetricRegistry());
+
+        assertWithMessage("Uncompressed cold content is read differently after the restart.")
+            .that(read(restarted, locator))
+            .isEqualTo(CONTENT);
+
+        assertWithMessage("Uncompressed cold content is listed under another locator.")
+            .that(restarted.locators())
+            .containsExactly(locator);
+    }
+
+    @DisplayName("keep recently read content in the warm tier.")
+    @Test
+    void testKeepingRecentlyReadContent(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        DiskBlobStore warm = new DiskBlobStore(directory.resolve("warm"));
+        TieredBlobStore store = new TieredBlobStore(warm, new DiskBlobStore(directory.resolve("cold")), COLD_AFTER,
+            true, directory.resolve("reads"), clock, new MetricRegistry());
+        BlobLocator locator = new BlobLocator("content");
+
+        write(store, locator);
+        clock.advance(COLD_AFTER.minusDays(1));
+        read(store, locator);
+        clock.advance(Duration.ofDays(2));
+        store.demote();
+
+        assertWithMessage("Recently read content is demoted.")
+            .that(warm.locators())
+            .containsExactly(locator);
+    }
+
+    @DisplayName("keep content that is read from the cache in front of it in the warm tier.")
+    @Test
+    void testKeepingContentReadFromCache(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        DiskBlobStore warm = new DiskBlobStore(directory.resolve("warm"));
+        TieredBlobStore tiers = new TieredBlobStore(warm, new DiskBlobStore(directory.resolve("cold")), COLD_AFTER,
+            true, directory.resolve("reads"), clock, new MetricRegistry());
+        MetricRegistry metrics = new MetricRegistry();
+        CachingBlobStore store = new CachingBlobStore(tiers, 64L * CONTENT.length, metrics, tiers::recordRead);
+        BlobLocator locator = new BlobLocator("content");
+
+        write(store, locator);
+        read(store, locator);
+        clock.advance(COLD_AFTER.minusDays(1));
+        read(store, locator);
+        clock.advance(Duration.ofDays(2));
+        tiers.demote();
+
+        assertWithMessage("Content is not read from the cache.")
+            .that(metric(metrics, "blob.cache.hits"))
+            .isEqualTo(1L);
+
+        assertWithMessage("Content read from the cache is demoted.")
+            .that(warm.locators())
+            .containsExactly(locator);
+    }
+
+    @DisplayName("restore the times of the reads after the restart.")
+    @Test
+    void testRestoringReadTimes(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        DiskBlobStore warm = new DiskBlobStore(directory.resolve("warm"));
+        DiskBlobStore cold = new DiskBlobStore(directory.resolve("cold"));
+        TieredBlobStore store = new TieredBlobStore(warm, cold, COLD_AFTER, true, directory.resolve("reads"), clock,
+            new MetricRegistry());
+        BlobLocator locator = new BlobLocator("content");
+
+        write(store, locator);
+        store.close();
+        clock.advance(COLD_AFTER.plusMinutes(1));
+
+        TieredBlobStore restarted = new TieredBlobStore(warm, cold, COLD_AFTER, true, directory.resolve("reads"), clock,
+            new MetricRegistry());
+        restarted.demote();
+
+        assertWithMessage("Content that was not read before the restart is kept in the warm tier.")
+            .that(warm.locators())
+            .isEmpty();
+    }
+
+    @DisplayName("move cold content that is read again back into the warm tier.")
+    @Test
+    void testPromotingReadContent(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        MetricRegistry metrics = new MetricRegistry();
+        DiskBlobStore warm = new DiskBlobStore(directory.resolve("warm"));
+        DiskBlobStore cold = new DiskBlobStore(directory.resolve("cold"));
+        TieredBlobStore store = new TieredBlobStore(warm, cold, COLD_AFTER, true, directory.resolve("reads"), clock, metrics);
+        BlobLocator locator = new BlobLocator("content");
+
+        write(store, locator);
+        clock.advance(COLD_AFTER.plusMinutes(1));
+        store.demote();
+        store.scheduleMigrations(Duration.ofHours(1));
+
+        read(store, locator);
+        read(store, locator);
+        store.close();
+
+        assertWithMessage("Content read again is not promoted.")
+            .that(warm.locators())
+            .containsExactly(locator);
+
+        assertWithMessage("Promoted content is kept in the cold tier.")
+            .that(cold.locators())
+            .isEmpty();
+
+        assertWithMessage("Promoted content is read differently.")
+            .that(read(store, locator))
+            .isEqualTo(CONTENT);
+    }
+
+    @DisplayName("delete content from all tiers.")
+    @Test
+    void testDeletingContent(@TempDir Path directory) throws IOException {
+
+        MutableClock clock = new MutableClock();
+        DiskBlobStore warm = new DiskBlobStore(directory.resolve("warm"));
+        DiskBlobStore cold = new DiskBlobStore(directory.resolve("cold"));
+        TieredBlobStore store = new TieredBlobStore(warm, cold, COLD_AFTER, true, directory.resolve("reads"), clock, new MetricRegistry());
+        BlobLocator demoted = new BlobLocator("demoted");
+        BlobLocator recent = new BlobLocator("recent");
+
+        write(store, demoted);
+        clock.advance(COLD_AFTER.plusMinutes(1));
+        store.demote();
+        write(store, recent);
+
+        assertWithMessage("Cold content is not deleted.")
+            .that(store.delete(demoted))
+            .isTrue();
+
+        assertWithMessage("Warm content is not deleted.")
+            .that(store.delete(recent))
+            .isTrue();
+
+        assertWithMessage("Deleted contents are listed.")
+            .that(store.locators())
+            .isEmpty();
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant now = Instant.EPOCH;
+
+        private void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -3,10 +3,18 @@ package io.nure.filestore.storage;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import static com.google.common.truth.Truth.assertWithMessage;
 import static java.lang.String.format;
 import static java.util.Arrays.stream;
 import static java.util.UUID.randomUUID;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.IntStream.range;
 
 @DisplayName("User Storage should ")
 class UserStorageTest {
@@ -187,4 +195,79 @@ class UserStorageTest {
             .that(storage.get(createLoginName(), passwordHash).isPresent())
             .isFalse();
     }
+
+    @DisplayName("not put record if its login name is taken by another user.")
+    @Test
+    void testPuttingRecordWithTakenLogin() {
+
+        LoginName loginName = createLoginName();
+        UserRecord formerRecord = createUserRecord(createUserId(), loginName.value(), "password1");
+        UserRecord newRecord = createUserRecord(createUserId(), loginName.value(), "password2");
+        UserStorage storage = createStorage(formerRecord);
+
+        assertWithMessage("Record with taken login name is put into the storage.")
+            .that(storage.putIfLoginAbsent(newRecord))
+            .isFalse();
+
+        assertWithMessage("Record is replaced by the record with the same login name.")
+            .that(storage.get(loginName).get())
+            .isEqualTo(formerRecord);
+    }
+
+    @DisplayName("retrieve record by the new login name after replacing.")
+    @Test
+    void testRetrievingReplacedRecordByLogin() {
+
+        UserId userId = createUserId();
+        UserRecord formerRecord = createUserRecord(userId, "login1", "password1");
+        UserRecord newRecord = createUserRecord(userId, "login2", "password2");
+        UserStorage storage = createStorage(formerRecord);
+
+        storage.put(newRecord);
+
+        assertWithMessage("Record is retrieved by the former login name.")
+            .that(storage.get(formerRecord.loginName()).isPresent())
+            .isFalse();
+
+        assertWithMessage("Cannot retrieve record by the new login name.")
+            .that(storage.get(newRecord.loginName()).get())
+            .isEqualTo(newRecord);
+    }
+
+    @DisplayName("put only one of the records with the same login name put concurrently.")
+    @Test
+    void testPuttingRecordsWithSameLoginConcurrently() throws Exception {
+
+        int attempts = 32;
+        UserStorage storage = createStorage();
+        ExecutorService executor = newFixedThreadPool(8);
+
+        try {
+
+            List<Callable<Boolean>> registrations = range(0, attempts)
+                .mapToObj(attempt -> (Callable<Boolean>) () -> storage.putIfLoginAbsent(
+                    createUserRecord(createUserId(), "login", "password")))
+                .collect(toList());
+
+            long succeeded = 0;
+
+            for (Future<Boolean> result : executor.invokeAll(registrations)) {
+
+                if (result.get()) {
+                    ++succeeded;
+                }
+            }
+
+            assertWithMessage("More than one record with the same login name is put.")
+                .that(succeeded)
+                .isEqualTo(1);
+
+            assertWithMessage("More than one record with the same login name is stored.")
+                .that(storage.getAll())
+                .hasSize(1);
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package io.nure.filestore.web;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.nCopies;
+
+@DisplayName("ByteRange should ")
+class ByteRangeTest {
+
+    private static final long LENGTH = 1000;
+
+    @DisplayName("parse the ranges of all forms and clip them to the content.")
+    @Test
+    void testParsingRanges() {
+
+        assertWithMessage("Range is parsed incorrectly.")
+            .that(ByteRange.parse("bytes=0-99", LENGTH))
+            .isEqualTo(Optional.of(asList(new ByteRange(0, 99))));
+
+        assertWithMessage("Open range is parsed incorrectly.")
+            .that(ByteRange.parse("bytes=900-", LENGTH))
+            .isEqualTo(Optional.of(asList(new ByteRange(900, 999))));
+
+        assertWithMessage("Suffix range is parsed incorrectly.")
+            .that(ByteRange.parse("bytes=-100", LENGTH))
+            .isEqualTo(Optional.of(asList(new ByteRange(900, 999))));
+
+        assertWithMessage("Range is not clipped to the content.")
+            .that(ByteRange.parse("bytes=990-2000", LENGTH))
+            .isEqualTo(Optional.of(asList(new ByteRange(990, 999))));
+
+        assertWithMessage("Suffix range is not clipped to the content.")
+            .that(ByteRange.parse("bytes=-5000", LENGTH))
+            .isEqualTo(Optional.of(asList(new ByteRange(0, 999))));
+    }
+
+    @DisplayName("sort the ranges and coalesce the overlapping and adjacent ones.")
+    @Test
+    void testCoalescingRanges() {
+
+        assertWithMessage("Ranges are not coalesced.")
+            .that(ByteRange.parse("bytes=500-599, 0-9, 550-700, 701-710, -10", LENGTH))
+            .isEqualTo(Optional.of(asList(new ByteRange(0, 9), new ByteRange(500, 710), new ByteRange(990, 999))));
+    }
+
+    @DisplayName("ignore invalid headers.")
+    @Test
+    void testIgnoringInvalidHeaders() {
+
+        for (String header : asList(null, "", "items=0-1", "bytes=", "bytes=a-b", "bytes=5", "bytes=10-5",
+            "bytes=-", "bytes=1-2-3", "bytes=99999999999999999999-")) {
+
+            assertWithMessage("Invalid header is not ignored: %s.", header)
+                .that(ByteRange.parse(header, LENGTH))
+                .isEqualTo(Optional.empty());
+        }
+
+        assertWithMessage("Too many ranges are not ignored.")
+            .that(ByteRange.parse("bytes=" + String.join(",", nCopies(65, "0-0")), LENGTH))
+            .isEqualTo(Optional.empty());
+    }
+
+    @DisplayName("find no ranges out of the content.")
+    @Test
+    void testUnsatisfiableRanges() {
+
+        assertWithMessage("Ranges out of the content are satisfied.")
+            .that(ByteRange.parse("bytes=1000-, -0", LENGTH))
+            .isEqualTo(Optional.of(emptyList()));
+
+        assertWithMessage("Suffix range of empty content is satisfied.")
+            .that(ByteRange.parse("bytes=-10", 0))
+            .isEqualTo(Optional.of(emptyList()));
+    }
+
+    @DisplayName("create the value of Content-Range header.")
+    @Test
+    void testCreatingContentRange() {
+
+        assertWithMessage("Content-Range is created incorrectly.")
+            .that(new ByteRange(100, 199).contentRange(LENGTH))
+            .isEqualTo("bytes 100-199/1000");
+    }
+}
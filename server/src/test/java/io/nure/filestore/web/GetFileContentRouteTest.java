@@ -0,0 +1,357 @@
+package io.nure.filestore.web;
+
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.DiskBlobStore;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileId;
+import io.nure.filestore.storage.FileMetadataRecord;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FileSize;
+import io.nure.filestore.storage.FileType;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.UserId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import spark.Request;
+import spark.Response;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.content;
+import static io.nure.filestore.web.ResponseStatus.NOT_MODIFIED;
+import static io.nure.filestore.web.ResponseStatus.PARTIAL_CONTENT;
+import static io.nure.filestore.web.ResponseStatus.RANGE_NOT_SATISFIABLE;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+@DisplayName("GetFileContentRoute should ")
+class GetFileContentRouteTest {
+
+    private static final int CHUNK_SIZE = FileContent.CHUNK_SIZE;
+
+    private static final byte[] CONTENT = content(3 * CHUNK_SIZE + 123);
+
+    private static final FileId FILE_ID = new FileId("file");
+
+    private static final UserId OWNER_ID = new UserId("owner");
+
+    /**
+     * Creates the route to the content, that is kept as it is or compressed. The compressed content is not seekable,
+     * so it is skipped up to the ranges by reading.
+     */
+    private static GetFileContentRoute createRoute(Path directory, ContentEncoding compression) {
+
+        return createRoute(directory, compression, "notes.txt");
+    }
+
+    private static GetFileContentRoute createRoute(Path directory, ContentEncoding compression, String fileName) {
+
+        FileContentStorage contentStorage = new FileContentStorage(new DiskBlobStore(directory), compression);
+        FileMetadataStorage metadataStorage = new FileMetadataStorage();
+
+        contentStorage.store(FILE_ID, new FileContent(CONTENT), FileType.DOC);
+        metadataStorage.put(new FileMetadataRecord(new FileName(fileName), FILE_ID, FileType.DOC,
+            new FileSize(CONTENT.length), new FolderId("root"), OWNER_ID));
+
+        CurrentLoggedInUser.setUser(new LoggedInUser(OWNER_ID));
+
+        return new GetFileContentRoute(contentStorage, metadataStorage);
+    }
+
+    private static Request createMockRequest(Map<String, String> queryParams, Map<String, String> headers) {
+
+        return new Request() {
+
+            @Override
+            public String params(String param) {
+                return FILE_ID.value();
+            }
+
+            @Override
+            public String queryParams(String queryParam) {
+                return queryParams.get(queryParam);
+            }
+
+            @Override
+            public String headers(String header) {
+                return headers.get(header);
+            }
+        };
+    }
+
+    private static Response createMockResponse(MockHttpServletResponse raw) {
+
+        return new Response() {
+
+            @Override
+            public void status(int statusCode) {
+                raw.setStatus(statusCode);
+            }
+
+            @Override
+            public int status() {
+                return raw.getStatus();
+            }
+
+            @Override
+            public void header(String header, String value) {
+                raw.setHeader(header, value);
+            }
+
+            @Override
+            public void type(String contentType) {
+                raw.setContentType(contentType);
+            }
+
+            @Override
+            public HttpServletResponse raw() {
+                return raw;
+            }
+        };
+    }
+
+    private static MockHttpServletResponse download(GetFileContentRoute route, Map<String, String> headers) {
+
+        return download(route, new HashMap<>(), headers);
+    }
+
+    private static MockHttpServletResponse download(GetFileContentRoute route, Map<String, String> queryParams,
+                                                    Map<String, String> headers) {
+
+        MockHttpServletResponse raw = new MockHttpServletResponse();
+
+        route.handle(createMockRequest(queryParams, headers), createMockResponse(raw));
+
+        return raw;
+    }
+
+    private static Map<String, String> range(String range) {
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Range", range);
+
+        return headers;
+    }
+
+    @DisplayName("send the content as binary attachment with its type, length and name.")
+    @Test
+    void testSendingBinaryContent(@TempDir Path directory) {
+
+        GetFileContentRoute route = createRoute(directory, ContentEncoding.IDENTITY,
+            "\u0437\u0432\u0456\u0442 \"v2\".txt");
+
+        MockHttpServletResponse response = download(route, new HashMap<>());
+
+        assertWithMessage("Content is not sent successfully.")
+            .that(response.getStatus())
+            .isEqualTo(SUCCESS);
+
+        assertWithMessage("Content-Type is not guessed by the name of the file.")
+            .that(response.getContentType())
+            .isEqualTo("text/plain");
+
+        assertWithMessage("Content-Length is wrong.")
+            .that(response.contentLength())
+            .isEqualTo((long) CONTENT.length);
+
+        assertWithMessage("Content-Disposition does not carry the ASCII and UTF-8 names of the file.")
+            .that(response.getHeader("Content-Disposition"))
+            .isEqualTo("attachment; filename=\"____ _v2_.txt\"; "
+                + "filename*=UTF-8''%D0%B7%D0%B2%D1%96%D1%82%20%22v2%22.txt");
+
+        assertWithMessage("Content is not sent as raw bytes.")
+            .that(response.body())
+            .isEqualTo(CONTENT);
+    }
+
+    @DisplayName("send the content encoded to Base64 only if the client asks for it.")
+    @Test
+    void testSendingBase64OnRequest(@TempDir Path directory) {
+
+        GetFileContentRoute route = createRoute(directory, ContentEncoding.GZIP);
+        Map<String, String> queryParams = new HashMap<>();
+        queryParams.put("encoding", "base64");
+
+        MockHttpServletResponse response = download(route, queryParams, range("bytes=0-9"));
+
+        assertWithMessage("Base64 content is not sent successfully.")
+            .that(response.getStatus())
+            .isEqualTo(SUCCESS);
+
+        assertWithMessage("Base64 content is not sent as text.")
+            .that(response.getContentType())
+            .isEqualTo("text/plain");
+
+        assertWithMessage("Content is not encoded to Base64 as a whole.")
+            .that(new String(response.body(), US_ASCII))
+            .isEqualTo(Base64.getEncoder().encodeToString(CONTENT));
+
+        queryParams.put("encoding", "binary");
+
+        assertWithMessage("Content is encoded to Base64 without the opt-in.")
+            .that(download(route, queryParams, new HashMap<>()).body())
+            .isEqualTo(CONTENT);
+    }
+
+    @DisplayName("send a range that crosses the chunks of the content.")
+    @Test
+    void testSendingRangeAcrossChunks(@TempDir Path directory) {
+
+        for (ContentEncoding compression : ContentEncoding.values()) {
+
+            GetFileContentRoute route = createRoute(directory.resolve(compression.value()), compression);
+            int first = CHUNK_SIZE - 10;
+            int last = 2 * CHUNK_SIZE + 10;
+
+            MockHttpServletResponse response = download(route, range(format("bytes=%d-%d", first, last)));
+
+            assertWithMessage("Range is not sent as partial content.")
+                .that(response.getStatus())
+                .isEqualTo(PARTIAL_CONTENT);
+
+            assertWithMessage("Content-Range is wrong.")
+                .that(response.getHeader("Content-Range"))
+                .isEqualTo(format("bytes %d-%d/%d", first, last, CONTENT.length));
+
+            assertWithMessage("Content-Length is wrong.")
+                .that(response.contentLength())
+                .isEqualTo((long) last - first + 1);
+
+            assertWithMessage("Range of %s content is sent with wrong bytes.", compression.value())
+                .that(response.body())
+                .isEqualTo(Arrays.copyOfRange(CONTENT, first, last + 1));
+        }
+    }
+
+    @DisplayName("send several ranges as the parts of multipart body.")
+    @Test
+    void testSendingSeveralRanges(@TempDir Path directory) throws IOException {
+
+        for (ContentEncoding compression : ContentEncoding.values()) {
+
+            GetFileContentRoute route = createRoute(directory.resolve(compression.value()), compression);
+
+            MockHttpServletResponse response = download(route,
+                range(format("bytes=-100, 0-9, %d-%d", CHUNK_SIZE - 1, 2 * CHUNK_SIZE)));
+
+            String contentType = response.getContentType();
+            String boundary = contentType.substring(contentType.indexOf("boundary=") + "boundary=".length());
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            int[][] ranges = {{0, 9}, {CHUNK_SIZE - 1, 2 * CHUNK_SIZE}, {CONTENT.length - 100, CONTENT.length - 1}};
+
+            for (int[] range : ranges) {
+
+                expected.write(format("--%s\r\nContent-Type: text/plain\r\nContent-Range: bytes %d-%d/%d\r\n\r\n",
+                    boundary, range[0], range[1], CONTENT.length).getBytes(US_ASCII));
+                expected.write(CONTENT, range[0], range[1] - range[0] + 1);
+                expected.write("\r\n".getBytes(US_ASCII));
+            }
+
+            expected.write(format("--%s--\r\n", boundary).getBytes(US_ASCII));
+
+            assertWithMessage("Several ranges are not sent as partial content.")
+                .that(response.getStatus())
+                .isEqualTo(PARTIAL_CONTENT);
+
+            assertWithMessage("Several ranges are not sent as multipart body.")
+                .that(contentType)
+                .startsWith("multipart/byteranges; boundary=");
+
+            assertWithMessage("Parts of %s content are sent with wrong bytes.", compression.value())
+                .that(response.body())
+                .isEqualTo(expected.toByteArray());
+
+            assertWithMessage("Content-Length of multipart body is wrong.")
+                .that(response.contentLength())
+                .isEqualTo((long) expected.size());
+        }
+    }
+
+    @DisplayName("send the whole content if it is changed since the range was asked.")
+    @Test
+    void testCheckingIfRange(@TempDir Path directory) {
+
+        GetFileContentRoute route = createRoute(directory, ContentEncoding.IDENTITY);
+        String entityTag = download(route, new HashMap<>()).getHeader("ETag");
+
+        Map<String, String> headers = range("bytes=100-199");
+        headers.put("If-Range", "\"changed\"");
+
+        MockHttpServletResponse changed = download(route, headers);
+
+        assertWithMessage("Range of changed content is sent.")
+            .that(changed.getStatus())
+            .isEqualTo(SUCCESS);
+
+        assertWithMessage("Whole content is not sent.")
+            .that(changed.body())
+            .isEqualTo(CONTENT);
+
+        headers.put("If-Range", entityTag);
+
+        assertWithMessage("Range of the same content is not sent.")
+            .that(download(route, headers).body())
+            .isEqualTo(Arrays.copyOfRange(CONTENT, 100, 200));
+    }
+
+    @DisplayName("reject the ranges out of the content.")
+    @Test
+    void testRejectingUnsatisfiableRange(@TempDir Path directory) {
+
+        GetFileContentRoute route = createRoute(directory, ContentEncoding.IDENTITY);
+
+        MockHttpServletResponse response = download(route, range(format("bytes=%d-", CONTENT.length)));
+
+        assertWithMessage("Range out of the content is not rejected.")
+            .that(response.getStatus())
+            .isEqualTo(RANGE_NOT_SATISFIABLE);
+
+        assertWithMessage("Content-Range of rejected range is wrong.")
+            .that(response.getHeader("Content-Range"))
+            .isEqualTo(format("bytes */%d", CONTENT.length));
+    }
+
+    @DisplayName("answer that the content is not modified if the client has its entity tag.")
+    @Test
+    void testAnsweringNotModified(@TempDir Path directory) {
+
+        GetFileContentRoute route = createRoute(directory, ContentEncoding.IDENTITY);
+        String entityTag = download(route, new HashMap<>()).getHeader("ETag");
+
+        Map<String, String> headers = new HashMap<>();
+        headers.put("If-None-Match", "\"other\", W/" + entityTag);
+
+        MockHttpServletResponse response = download(route, headers);
+
+        assertWithMessage("Current content is not answered as not modified.")
+            .that(response.getStatus())
+            .isEqualTo(NOT_MODIFIED);
+
+        assertWithMessage("Not modified content is sent.")
+            .that(response.body())
+            .isEqualTo(new byte[0]);
+
+        assertWithMessage("Entity tag of not modified content is not sent.")
+            .that(response.getHeader("ETag"))
+            .isEqualTo(entityTag);
+
+        headers.put("If-None-Match", "\"other\"");
+
+        assertWithMessage("Content with another entity tag is not sent.")
+            .that(download(route, headers).body())
+            .isEqualTo(CONTENT);
+    }
+}
@@ -0,0 +1,131 @@
+package io.nure.filestore.web;
+
+import io.nure.filestore.api.LoggedInUser;
+import io.nure.filestore.storage.FileId;
+import io.nure.filestore.storage.FileMetadataRecord;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FileName;
+import io.nure.filestore.storage.FileSize;
+import io.nure.filestore.storage.FileType;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.FolderName;
+import io.nure.filestore.storage.FolderRecord;
+import io.nure.filestore.storage.FolderStorage;
+import io.nure.filestore.storage.UserId;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import spark.Request;
+import spark.Response;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.web.ResponseStatus.NOT_FOUND;
+import static io.nure.filestore.web.ResponseStatus.NOT_MODIFIED;
+import static io.nure.filestore.web.ResponseStatus.SUCCESS;
+
+@DisplayName("GetFolderContentRoute should ")
+class GetFolderContentRouteTest {
+
+    private static final FolderId FOLDER_ID = new FolderId("folder");
+
+    private static final UserId OWNER_ID = new UserId("owner");
+
+    private static Request createMockRequest(String ifNoneMatch) {
+
+        return new Request() {
+
+            @Override
+            public String params(String param) {
+                return FOLDER_ID.value();
+            }
+
+            @Override
+            public String headers(String header) {
+                return "If-None-Match".equals(header) ? ifNoneMatch : null;
+            }
+        };
+    }
+
+    private static Response createMockResponse(Map<String, String> headers) {
+
+        return new Response() {
+
+            private int status;
+
+            @Override
+            public void status(int statusCode) {
+                status = statusCode;
+            }
+
+            @Override
+            public int status() {
+                return status;
+            }
+
+            @Override
+            public void header(String header, String value) {
+                headers.put(header, value);
+            }
+        };
+    }
+
+    private static FileMetadataRecord createFile(String fileId) {
+
+        return new FileMetadataRecord(new FileName(fileId + ".txt"), new FileId(fileId), FileType.DOC,
+            new FileSize(100), FOLDER_ID, OWNER_ID);
+    }
+
+    @DisplayName("answer that the content is not modified until a child of the folder is changed.")
+    @Test
+    void testAnsweringNotModified() {
+
+        FolderStorage folderStorage = new FolderStorage();
+        FileMetadataStorage fileMetadataStorage = new FileMetadataStorage();
+        GetFolderContentRoute route = new GetFolderContentRoute(folderStorage, fileMetadataStorage);
+
+        folderStorage.put(new FolderRecord(FOLDER_ID, new FolderName("folder"), null, OWNER_ID));
+        fileMetadataStorage.put(createFile("first"));
+        CurrentLoggedInUser.setUser(new LoggedInUser(OWNER_ID));
+
+        Map<String, String> headers = new HashMap<>();
+        Response response = createMockResponse(headers);
+
+        route.handle(createMockRequest(null), response);
+
+        String entityTag = headers.get("ETag");
+
+        assertWithMessage("Entity tag of the folder content is not sent.")
+            .that(entityTag)
+            .isNotNull();
+
+        Response notModified = createMockResponse(new HashMap<>());
+
+        assertWithMessage("Not modified content is sent.")
+            .that(route.handle(createMockRequest(entityTag), notModified))
+            .isEqualTo("");
+
+        assertWithMessage("Current content is not answered as not modified.")
+            .that(notModified.status())
+            .isEqualTo(NOT_MODIFIED);
+
+        fileMetadataStorage.put(createFile("second"));
+
+        Response modified = createMockResponse(new HashMap<>());
+        route.handle(createMockRequest(entityTag), modified);
+
+        assertWithMessage("Content with the uploaded file is answered as not modified.")
+            .that(modified.status())
+            .isEqualTo(SUCCESS);
+
+        CurrentLoggedInUser.setUser(new LoggedInUser(new UserId("stranger")));
+
+        Response stranger = createMockResponse(new HashMap<>());
+        route.handle(createMockRequest("*"), stranger);
+
+        assertWithMessage("Folder of another user is answered as not modified.")
+            .that(stranger.status())
+            .isEqualTo(NOT_FOUND);
+    }
+}
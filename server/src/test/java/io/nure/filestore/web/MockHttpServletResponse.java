@@ -0,0 +1,250 @@
+package io.nure.filestore.web;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The mock of {@link HttpServletResponse}. Collects the headers and the bytes written into the output stream.
+ */
+class MockHttpServletResponse implements HttpServletResponse {
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private final Map<String, String> headers = new HashMap<>();
+
+    private final ServletOutputStream outputStream = new ServletOutputStream() {
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+        }
+
+        @Override
+        public void write(int b) {
+            body.write(b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            body.write(bytes, offset, length);
+        }
+    };
+
+    private int status;
+
+    private String contentType;
+
+    private long contentLength = -1;
+
+    /**
+     * Retrieves the bytes written into the output stream.
+     *
+     * @return the body of the response.
+     */
+    byte[] body() {
+        return body.toByteArray();
+    }
+
+    /**
+     * Retrieves the length of the content set by {@link #setContentLengthLong(long)}.
+     *
+     * @return the length of the content, or {@code -1} if it is not set.
+     */
+    long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void addCookie(Cookie cookie) {
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+        return headers.containsKey(name);
+    }
+
+    @Override
+    public String encodeURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectURL(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeUrl(String url) {
+        return url;
+    }
+
+    @Override
+    public String encodeRedirectUrl(String url) {
+        return url;
+    }
+
+    @Override
+    public void sendError(int sc, String msg) {
+        status = sc;
+    }
+
+    @Override
+    public void sendError(int sc) {
+        status = sc;
+    }
+
+    @Override
+    public void sendRedirect(String location) {
+    }
+
+    @Override
+    public void setDateHeader(String name, long date) {
+        headers.put(name, String.valueOf(date));
+    }
+
+    @Override
+    public void addDateHeader(String name, long date) {
+        headers.put(name, String.valueOf(date));
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        headers.put(name, value);
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        headers.put(name, String.valueOf(value));
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        headers.put(name, String.valueOf(value));
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+    }
+
+    @Override
+    public void setStatus(int sc, String sm) {
+        status = sc;
+    }
+
+    @Override
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return headers.get(name);
+    }
+
+    @Override
+    public Collection<String> getHeaders(String name) {
+        return headers.containsKey(name) ? Collections.singletonList(headers.get(name)) : Collections.emptyList();
+    }
+
+    @Override
+    public Collection<String> getHeaderNames() {
+        return headers.keySet();
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        return null;
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() {
+        return new PrintWriter(outputStream);
+    }
+
+    @Override
+    public void setCharacterEncoding(String charset) {
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setContentLengthLong(long len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setContentType(String type) {
+        contentType = type;
+    }
+
+    @Override
+    public void setBufferSize(int size) {
+    }
+
+    @Override
+    public int getBufferSize() {
+        return 0;
+    }
+
+    @Override
+    public void flushBuffer() {
+    }
+
+    @Override
+    public void resetBuffer() {
+        body.reset();
+    }
+
+    @Override
+    public boolean isCommitted() {
+        return false;
+    }
+
+    @Override
+    public void reset() {
+
+        body.reset();
+        headers.clear();
+    }
+
+    @Override
+    public void setLocale(Locale loc) {
+    }
+
+    @Override
+    public Locale getLocale() {
+        return null;
+    }
+}
@@ -0,0 +1,162 @@
+package io.nure.filestore.web;
+
+import io.nure.filestore.api.FileContent;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static io.nure.filestore.TestContents.content;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("MultipartStream should ")
+class MultipartStreamTest {
+
+    private static final String BOUNDARY = "----boundary7MA4YWxkTrZu0gW";
+
+    private static byte[] body(Object... fragments) throws IOException {
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        for (Object fragment : fragments) {
+            body.write(fragment instanceof byte[] ? (byte[]) fragment : fragment.toString().getBytes(UTF_8));
+        }
+
+        return body.toByteArray();
+    }
+
+    /**
+     * Creates the input, that returns at most the number of bytes per read, as a network input does.
+     */
+    private static InputStream input(byte[] body, int readSize) {
+
+        return new FilterInputStream(new ByteArrayInputStream(body)) {
+
+            @Override
+            public int read(byte[] target, int offset, int length) throws IOException {
+                return super.read(target, offset, Math.min(length, readSize));
+            }
+        };
+    }
+
+    private static byte[] readAll(InputStream input) throws IOException {
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1000];
+        int read;
+
+        while ((read = input.read(buffer)) != -1) {
+            output.write(buffer, 0, read);
+        }
+
+        return output.toByteArray();
+    }
+
+    @DisplayName("stream the parts, that are larger than its buffer.")
+    @Test
+    void testStreamingLargeParts() throws IOException {
+
+        byte[] file = content(3 * FileContent.CHUNK_SIZE + 17);
+        byte[] body = body(
+            "preamble\r\n--", BOUNDARY, "\r\n",
+            "Content-Disposition: form-data; name=\"description\"\r\n\r\n",
+            "notes\r\n--", BOUNDARY, "\r\n",
+            "Content-Disposition: form-data; name=\"file\"; filename=\"a; b \\\"c\\\".bin\"\r\n",
+            "Content-Type: application/octet-stream\r\n\r\n",
+            file, "\r\n--", BOUNDARY, "--\r\nepilogue");
+
+        for (int readSize : new int[]{1, 7, FileContent.CHUNK_SIZE + 1}) {
+
+            MultipartStream stream = new MultipartStream(input(body, readSize), BOUNDARY);
+
+            MultipartStream.Part description = stream.next().get();
+
+            assertWithMessage("Field is read incorrectly.")
+                .that(new String(readAll(description.content()), UTF_8))
+                .isEqualTo("notes");
+
+            MultipartStream.Part filePart = stream.next().get();
+
+            assertWithMessage("Quoted file name is parsed incorrectly.")
+                .that(filePart.fileName())
+                .isEqualTo("a; b \"c\".bin");
+
+            assertWithMessage("Header of the part is read incorrectly.")
+                .that(filePart.header("Content-Type"))
+                .isEqualTo("application/octet-stream");
+
+            assertWithMessage("Content of the file is read incorrectly by %s bytes.", readSize)
+                .that(Arrays.equals(readAll(filePart.content()), file))
+                .isTrue();
+
+            assertWithMessage("Part after the closing delimiter is found.")
+                .that(stream.next())
+                .isEqualTo(Optional.empty());
+        }
+    }
+
+    @DisplayName("skip the parts, that are not read.")
+    @Test
+    void testSkippingParts() throws IOException {
+
+        byte[] body = body(
+            "--", BOUNDARY, "\r\n",
+            "Content-Disposition: form-data; name=\"skipped\"\r\n\r\n",
+            content(FileContent.CHUNK_SIZE * 2), "\r\n--", BOUNDARY, "\r\n",
+            "Content-Disposition: form-data; name=\"file\"; filename=\"empty.txt\"\r\n\r\n",
+            "\r\n--", BOUNDARY, "--");
+
+        MultipartStream stream = new MultipartStream(input(body, 100), BOUNDARY);
+
+        stream.next();
+        MultipartStream.Part filePart = stream.next().get();
+
+        assertWithMessage("Part is not found after the skipped one.")
+            .that(filePart.name())
+            .isEqualTo("file");
+
+        assertWithMessage("Empty part is read incorrectly.")
+            .that(readAll(filePart.content()))
+            .isEqualTo(new byte[0]);
+    }
+
+    @DisplayName("reject the body, that ends before the closing delimiter.")
+    @Test
+    void testRejectingTruncatedBody() throws IOException {
+
+        byte[] body = body(
+            "--", BOUNDARY, "\r\n",
+            "Content-Disposition: form-data; name=\"file\"; filename=\"cut.bin\"\r\n\r\n",
+            content(1000));
+
+        MultipartStream.Part filePart = new MultipartStream(input(body, 100), BOUNDARY).next().get();
+
+        assertThrows(MultipartStream.MalformedMultipartException.class, () -> readAll(filePart.content()),
+            "Truncated body is not rejected.");
+    }
+
+    @DisplayName("take the boundary only from multipart/form-data type.")
+    @Test
+    void testRetrievingBoundary() {
+
+        assertWithMessage("Quoted boundary is retrieved incorrectly.")
+            .that(MultipartStream.boundary("Multipart/Form-Data; charset=utf-8; boundary=\"a;b\""))
+            .isEqualTo(Optional.of("a;b"));
+
+        assertWithMessage("Boundary of another type is retrieved.")
+            .that(MultipartStream.boundary("multipart/mixed; boundary=abc"))
+            .isEqualTo(Optional.empty());
+
+        assertWithMessage("Missing boundary is retrieved.")
+            .that(MultipartStream.boundary("multipart/form-data"))
+            .isEqualTo(Optional.empty());
+    }
+}
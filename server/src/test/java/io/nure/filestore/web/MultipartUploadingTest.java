@@ -0,0 +1,197 @@
+package io.nure.filestore.web;
+
+import io.nure.filestore.api.FileContent;
+import io.nure.filestore.api.FileUploading;
+import io.nure.filestore.storage.ContentEncoding;
+import io.nure.filestore.storage.DiskBlobStore;
+import io.nure.filestore.storage.FileContentStorage;
+import io.nure.filestore.storage.FileMetadataRecord;
+import io.nure.filestore.storage.FileMetadataStorage;
+import io.nure.filestore.storage.FolderId;
+import io.nure.filestore.storage.FolderName;
+import io.nure.filestore.storage.FolderRecord;
+import io.nure.filestore.storage.FolderStorage;
+import io.nure.filestore.storage.UserId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.stream.Collectors.toList;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@DisplayName("MultipartUploading should ")
+class MultipartUploadingTest {
+
+    private static final String BOUNDARY = "----boundary";
+
+    private final UserId ownerId = new UserId("owner");
+
+    private final FolderId folderId = new FolderId("folder");
+
+    private final FolderStorage folderStorage = new FolderStorage();
+
+    private final FileMetadataStorage metadataStorage = new FileMetadataStorage();
+
+    private FileContentStorage contentStorage;
+
+    private ExecutorService ingestion;
+
+    private MultipartUploading uploading;
+
+    private void setUp(Path directory) {
+
+        folderStorage.put(new FolderRecord(folderId, new FolderName("folder"), null, ownerId));
+        contentStorage = new FileContentStorage(new DiskBlobStore(directory), ContentEncoding.IDENTITY);
+        ingestion = newFixedThreadPool(2);
+        uploading = new MultipartUploading(
+            new FileUploading(folderStorage, metadataStorage, contentStorage),
+            ingestion,
+            2
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+
+        ingestion.shutdownNow();
+    }
+
+    private static MultipartStream body(int files, boolean closed) throws IOException {
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        Random random = new Random(files);
+
+        body.write(format("--%s\r\nContent-Disposition: form-data; name=\"description\"\r\n\r\nphotos\r\n", BOUNDARY)
+            .getBytes(UTF_8));
+
+        for (int file = 0; file < files; ++file) {
+
+            byte[] content = new byte[(file % 3) * FileContent.CHUNK_SIZE + 100];
+            random.nextBytes(content);
+
+            body.write(format("--%s\r\nContent-Disposition: form-data; name=\"files\"; filename=\"file-%d.bin\"\r\n"
+                + "\r\n", BOUNDARY, file).getBytes(UTF_8));
+            body.write(content);
+            body.write("\r\n".getBytes(UTF_8));
+        }
+
+        if (closed) {
+            body.write(format("--%s--\r\n", BOUNDARY).getBytes(UTF_8));
+        }
+
+        return new MultipartStream(new ByteArrayInputStream(body.toByteArray()), BOUNDARY);
+    }
+
+    @DisplayName("upload all files of the body and report them in the order of the parts.")
+    @Test
+    void testUploadingFiles(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        List<MultipartUploading.Result> results = uploading.upload(body(10, true), folderId, ownerId);
+
+        assertWithMessage("Files are not reported in the order of the parts.")
+            .that(results.stream().map(MultipartUploading.Result::fileName).collect(toList()))
+            .containsExactly("file-0.bin", "file-1.bin", "file-2.bin", "file-3.bin", "file-4.bin",
+                "file-5.bin", "file-6.bin", "file-7.bin", "file-8.bin", "file-9.bin")
+            .inOrder();
+
+        assertWithMessage("Not all files are uploaded.")
+            .that(results.stream().filter(result -> result.file().isPresent()).count())
+            .isEqualTo(10L);
+
+        assertWithMessage("Metadata of the files is not committed.")
+            .that(metadataStorage.get(folderId))
+            .hasSize(10);
+    }
+
+    @DisplayName("report the failure of each file separately.")
+    @Test
+    void testReportingFailedFiles(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        List<MultipartUploading.Result> results =
+            uploading.upload(body(3, true), folderId, new UserId("stranger"));
+
+        assertWithMessage("Failed files are not reported.")
+            .that(results.stream().filter(result -> result.error().isPresent()).count())
+            .isEqualTo(3L);
+
+        assertWithMessage("Metadata of the failed files is committed.")
+            .that(metadataStorage.getAll())
+            .isEmpty();
+    }
+
+    @DisplayName("discard the stored contents if the body is malformed.")
+    @Test
+    void testDiscardingContentsOfMalformedBody(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        assertThrows(
+            IOException.class,
+            () -> uploading.upload(body(5, false), folderId, ownerId),
+            "Malformed body is uploaded."
+        );
+
+        assertWithMessage("Metadata of the files of the malformed body is committed.")
+            .that(metadataStorage.getAll())
+            .isEmpty();
+
+        assertWithMessage("Contents of the files of the malformed body are not discarded.")
+            .that(contentStorage.getAll())
+            .isEmpty();
+    }
+
+    @DisplayName("discard the stored contents, which metadata fails to be committed.")
+    @Test
+    void testDiscardingContentsOfFailedCommit(@TempDir Path directory) throws IOException {
+
+        setUp(directory);
+
+        FileMetadataStorage failingStorage = new FileMetadataStorage() {
+
+            @Override
+            public void putAll(Collection<FileMetadataRecord> records) {
+
+                put(records.iterator().next());
+
+                throw new IllegalStateException("Journal is closed.");
+            }
+        };
+        MultipartUploading failingUploading = new MultipartUploading(
+            new FileUploading(folderStorage, failingStorage, contentStorage),
+            ingestion,
+            2
+        );
+
+        assertThrows(
+            IllegalStateException.class,
+            () -> failingUploading.upload(body(3, true), folderId, ownerId),
+            "Failed commit is not reported."
+        );
+
+        assertWithMessage("Contents of the files, which metadata is not committed, are not discarded.")
+            .that(contentStorage.getAll())
+            .hasSize(failingStorage.getAll().size());
+
+        assertWithMessage("Content of the committed file is discarded.")
+            .that(contentStorage.get(failingStorage.getAll().iterator().next().identifier()).isPresent())
+            .isTrue();
+    }
+}
@@ -0,0 +1,97 @@
+package io.nure.filestore.web;
+
+import io.nure.filestore.metrics.MetricRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static com.google.common.truth.Truth.assertWithMessage;
+import static java.util.concurrent.Executors.newSingleThreadExecutor;
+
+@DisplayName("UploadMemoryBudget should ")
+class UploadMemoryBudgetTest {
+
+    @DisplayName("refuse the reservation that does not fit into the budget in time.")
+    @Test
+    void testRefusingReservation() {
+
+        MetricRegistry metrics = new MetricRegistry();
+        UploadMemoryBudget budget = new UploadMemoryBudget(100, Duration.ofMillis(10), metrics);
+
+        Optional<UploadMemoryBudget.Reservation> first = budget.reserve(60);
+        Optional<UploadMemoryBudget.Reservation> second = budget.reserve(60);
+
+        assertWithMessage("Reservation within the budget is refused.")
+            .that(first.isPresent())
+            .isTrue();
+
+        assertWithMessage("Reservation over the budget is granted.")
+            .that(second.isPresent())
+            .isFalse();
+
+        assertWithMessage("Refused reservation is not counted.")
+            .that(metrics.values().get("upload.memory.refused"))
+            .isEqualTo(1L);
+
+        first.get().close();
+        first.get().close();
+
+        assertWithMessage("Released memory is still used.")
+            .that(budget.used())
+            .isEqualTo(0L);
+    }
+
+    @DisplayName("grant the waiting reservation once the memory is released.")
+    @Test
+    void testWaitingForReleasedMemory() throws Exception {
+
+        UploadMemoryBudget budget = new UploadMemoryBudget(100, Duration.ofSeconds(10), new MetricRegistry());
+        UploadMemoryBudget.Reservation first = budget.reserve(80).get();
+        ExecutorService uploader = newSingleThreadExecutor();
+
+        try {
+
+            Future<Optional<UploadMemoryBudget.Reservation>> second = uploader.submit(() -> budget.reserve(80));
+
+            Thread.sleep(50);
+
+            assertWithMessage("Reservation over the budget is granted before the memory is released.")
+                .that(second.isDone())
+                .isFalse();
+
+            first.close();
+
+            assertWithMessage("Reservation is not granted after the memory is released.")
+                .that(second.get().isPresent())
+                .isTrue();
+
+            assertWithMessage("Granted reservation is not counted as used.")
+                .that(budget.used())
+                .isEqualTo(80L);
+
+        } finally {
+            uploader.shutdownNow();
+        }
+    }
+
+    @DisplayName("let the reservation larger than the budget take the whole budget.")
+    @Test
+    void testReservingMoreThanBudget() {
+
+        UploadMemoryBudget budget = new UploadMemoryBudget(100, Duration.ZERO, new MetricRegistry());
+
+        Optional<UploadMemoryBudget.Reservation> reservation = budget.reserve(1_000);
+
+        assertWithMessage("Reservation larger than the budget is refused.")
+            .that(reservation.isPresent())
+            .isTrue();
+
+        assertWithMessage("Reservation larger than the budget does not take the whole budget.")
+            .that(budget.used())
+            .isEqualTo(100L);
+    }
+}